@@ -0,0 +1,139 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.annotation.processors;
+
+import static com.mastfrog.acteur.annotation.processors.ClasspathResourceIndexProcessor.CLASSPATH_RESOURCE_INDEX_ANNOTATION;
+import com.mastfrog.annotation.AnnotationUtils;
+import com.mastfrog.annotation.registries.AbstractLineOrientedRegistrationAnnotationProcessor;
+import com.mastfrog.util.service.ServiceProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.FilerException;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedSourceVersion;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Processes the &#064;ClasspathResourceIndex annotation, writing a gzipped
+ * copy of each listed resource, and an index of lengths, ETags and CRC32
+ * checksums in the annotated class's package, so ClasspathResources does not need to compress
+ * or hash anything at startup.
+ *
+ * @author Tim Boudreau
+ */
+@ServiceProvider(Processor.class)
+@SupportedAnnotationTypes(CLASSPATH_RESOURCE_INDEX_ANNOTATION)
+@SupportedSourceVersion(SourceVersion.RELEASE_8)
+public class ClasspathResourceIndexProcessor extends AbstractLineOrientedRegistrationAnnotationProcessor {
+
+    public static final String CLASSPATH_RESOURCE_INDEX_ANNOTATION = "com.mastfrog.acteur.resources.ClasspathResourceIndex";
+    // Must match ClasspathResourceIndex.INDEX_NAME
+    public static final String INDEX_NAME = "acteur-resources.index";
+
+    @Override
+    protected void handleOne(Element e, AnnotationMirror anno, int order, AnnotationUtils utils) {
+        String pkg = utils.packageName(e);
+        String indexPath = (pkg.isEmpty() ? "" : pkg.replace('.', '/') + '/') + INDEX_NAME;
+        Filer filer = utils.processingEnv().getFiler();
+        for (String name : utils.annotationValues(anno, "value", String.class)) {
+            byte[] bytes;
+            try {
+                bytes = read(filer, pkg, name);
+            } catch (IOException ex) {
+                fail("Could not read classpath resource " + name + " in " + pkg
+                        + " - it must be in the class output before this class is compiled: " + ex, e, anno);
+                continue;
+            }
+            try {
+                byte[] gzipped = gzip(bytes);
+                long gzipLength = -1;
+                // Not worth sending compressed if it doesn't get smaller
+                if (gzipped.length < bytes.length) {
+                    FileObject out = filer.createResource(StandardLocation.CLASS_OUTPUT, pkg, name + ".gz", e);
+                    try (OutputStream os = out.openOutputStream()) {
+                        os.write(gzipped);
+                    }
+                    gzipLength = gzipped.length;
+                }
+                addLine(indexPath, name + '\t' + bytes.length + '\t' + gzipLength + '\t' + etag(bytes)
+                        + '\t' + Long.toHexString(crc(bytes)), e);
+            } catch (FilerException ex) {
+                // Listed twice in the same package
+                utils.warn("Resource " + name + " listed more than once in " + pkg, e);
+            } catch (IOException | NoSuchAlgorithmException ex) {
+                fail("Could not compress " + name + ": " + ex, e, anno);
+            }
+        }
+    }
+
+    private static byte[] read(Filer filer, String pkg, String name) throws IOException {
+        FileObject fo = filer.getResource(StandardLocation.CLASS_OUTPUT, pkg, name);
+        try (InputStream in = fo.openInputStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            for (int count; (count = in.read(buf)) > 0;) {
+                out.write(buf, 0, count);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(bytes.length / 2 + 32);
+        try (GZIPOutputStream out = new GZIPOutputStream(result, 8192) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(bytes);
+        }
+        return result.toByteArray();
+    }
+
+    private static long crc(byte[] bytes) {
+        // Cheap enough to verify at startup, so a resource edited after
+        // this class was compiled is noticed even if its length is unchanged
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return crc.getValue();
+    }
+
+    private static String etag(byte[] bytes) throws NoSuchAlgorithmException {
+        return new BigInteger(1, MessageDigest.getInstance("SHA-1").digest(bytes)).toString(36);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.binary;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.mastfrog.acteur.ContentNegotiator.Encoding;
+import com.mastfrog.marshallers.netty.NettyContentMarshallers;
+import com.mastfrog.mime.MimeType;
+import com.mastfrog.util.codec.Codec;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Holds an ObjectMapper, Codec and set of marshallers for each enabled binary
+ * format, derived from the application's ObjectMapper so they share its
+ * configuration and registered modules.
+ *
+ * @author Tim Boudreau
+ */
+@Singleton
+final class BinaryCodecs {
+
+    private final Map<BinaryFormat, ObjectMapper> mappers = new EnumMap<>(BinaryFormat.class);
+    private final Map<BinaryFormat, Encoding> encodings = new EnumMap<>(BinaryFormat.class);
+    private final Encoding json;
+    private final NettyContentMarshallers jsonMarshallers;
+    private final Codec jsonCodec;
+
+    @Inject
+    BinaryCodecs(ObjectMapper mapper, EnabledFormats enabled, NettyContentMarshallers jsonMarshallers, Codec jsonCodec) {
+        this.jsonMarshallers = jsonMarshallers;
+        this.jsonCodec = jsonCodec;
+        json = new Encoding(MimeType.JSON_UTF_8, jsonMarshallers, jsonCodec);
+        for (BinaryFormat fmt : enabled.formats()) {
+            ObjectMapper m = mapper.copyWith(fmt.createFactory());
+            mappers.put(fmt, m);
+            encodings.put(fmt, new Encoding(fmt.mimeType(),
+                    NettyContentMarshallers.getDefault(m), new MapperCodec(m)));
+        }
+    }
+
+    Set<BinaryFormat> formats() {
+        return mappers.keySet();
+    }
+
+    ObjectMapper mapper(BinaryFormat fmt) {
+        return mappers.get(fmt);
+    }
+
+    Encoding encoding(BinaryFormat fmt) {
+        return encodings.get(fmt);
+    }
+
+    Codec codec(BinaryFormat fmt) {
+        Encoding enc = encodings.get(fmt);
+        return enc == null ? null : enc.codec();
+    }
+
+    Encoding json(MimeType responseType) {
+        if (responseType == null) {
+            return json;
+        }
+        return new Encoding(responseType, jsonMarshallers, jsonCodec);
+    }
+
+    BinaryFormat find(MimeType type) {
+        if (type == null) {
+            return null;
+        }
+        for (BinaryFormat fmt : mappers.keySet()) {
+            if (fmt.matches(type)) {
+                return fmt;
+            }
+        }
+        return null;
+    }
+}
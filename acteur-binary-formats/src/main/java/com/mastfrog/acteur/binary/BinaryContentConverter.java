@@ -0,0 +1,57 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.binary;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.mastfrog.acteur.ContentConverter;
+import com.mastfrog.giulius.Dependencies;
+import com.mastfrog.mime.MimeType;
+import com.mastfrog.util.codec.Codec;
+import java.nio.charset.Charset;
+
+/**
+ * ContentConverter which reads request bodies whose content type is one of
+ * the enabled binary formats with the corresponding ObjectMapper.
+ *
+ * @author Tim Boudreau
+ */
+@Singleton
+final class BinaryContentConverter extends ContentConverter {
+
+    private final BinaryCodecs codecs;
+
+    @Inject
+    BinaryContentConverter(Codec codec, Provider<Charset> charset, Dependencies deps, BinaryCodecs codecs) {
+        super(codec, charset, deps);
+        this.codecs = codecs;
+    }
+
+    @Override
+    protected Codec codecFor(MimeType mimeType) {
+        BinaryFormat fmt = codecs.find(mimeType);
+        return fmt == null ? super.codecFor(mimeType) : codecs.codec(fmt);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.binary;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.mastfrog.acteur.ContentNegotiator;
+import com.mastfrog.acteur.HttpEvent;
+import static com.mastfrog.acteur.binary.BinaryFormatsModule.SETTINGS_KEY_BINARY_FORMATS_PREFERENCE;
+import static com.mastfrog.acteur.binary.BinaryFormatsModule.SETTINGS_KEY_NEGOTIATE_RESPONSE_WRITERS;
+import com.mastfrog.acteur.server.QValues;
+import com.mastfrog.mime.MimeType;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.util.preconditions.ConfigurationError;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import java.awt.image.RenderedImage;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Picks a binary format for responses whose body is an object that would
+ * otherwise be written as JSON, based on the q-values in the request's
+ * <code>Accept</code> header, using the server's preference order to break
+ * ties. Wildcards only ever select JSON.
+ *
+ * @author Tim Boudreau
+ */
+@Singleton
+final class BinaryContentNegotiator implements ContentNegotiator {
+
+    private final BinaryCodecs codecs;
+    private final boolean negotiateWriters;
+    // null entry = JSON
+    private final List<BinaryFormat> preference = new ArrayList<>();
+
+    @Inject
+    BinaryContentNegotiator(BinaryCodecs codecs, Settings settings) {
+        this.codecs = codecs;
+        negotiateWriters = settings.getBoolean(SETTINGS_KEY_NEGOTIATE_RESPONSE_WRITERS, false);
+        String pref = settings.getString(SETTINGS_KEY_BINARY_FORMATS_PREFERENCE);
+        if (pref == null) {
+            preference.addAll(codecs.formats());
+            preference.add(null);
+        } else {
+            for (String tok : pref.split(",")) {
+                tok = tok.trim();
+                if (tok.isEmpty()) {
+                    continue;
+                }
+                BinaryFormat fmt = BinaryFormat.forToken(tok);
+                if (fmt == null && !"json".equalsIgnoreCase(tok)) {
+                    throw new ConfigurationError("Unknown format '" + tok + "' in "
+                            + SETTINGS_KEY_BINARY_FORMATS_PREFERENCE + ": " + pref);
+                }
+                if ((fmt == null || codecs.formats().contains(fmt)) && !preference.contains(fmt)) {
+                    preference.add(fmt);
+                }
+            }
+            if (!preference.contains(null)) {
+                preference.add(null);
+            }
+        }
+    }
+
+    @Override
+    public Encoding negotiate(HttpEvent evt, MimeType responseType, Object message) {
+        if (responseType != null && !isJson(responseType)) {
+            // The application explicitly asked for something else
+            return null;
+        }
+        if (message == null ? !negotiateWriters : !isMarshalledAsJson(message)) {
+            return null;
+        }
+        BinaryFormat fmt = choose(evt.header(HttpHeaderNames.ACCEPT));
+        return fmt == null ? codecs.json(responseType) : codecs.encoding(fmt);
+    }
+
+    static boolean isMarshalledAsJson(Object message) {
+        return !(message instanceof CharSequence || message instanceof byte[]
+                || message instanceof ByteBuf || message instanceof ByteBuffer
+                || message instanceof InputStream || message instanceof RenderedImage);
+    }
+
+    static boolean isJson(MimeType type) {
+        // Compare the string form, which ignores quirks of how suffixes
+        // such as +json get parsed
+        String t = type.toString();
+        int ix = t.indexOf(';');
+        if (ix >= 0) {
+            t = t.substring(0, ix);
+        }
+        t = t.trim().toLowerCase();
+        return t.startsWith("application/") && (t.equals("application/json") || t.endsWith("+json"));
+    }
+
+    /**
+     * Choose a format given an Accept header.
+     *
+     * @param accept The header
+     * @return A format, or null for JSON
+     */
+    BinaryFormat choose(CharSequence accept) {
+        if (accept == null || accept.length() == 0) {
+            return null;
+        }
+        double[] qs = new double[preference.size()];
+        boolean anyBinary = false;
+        for (String range : accept.toString().split(",")) {
+            String type = QValues.value(range);
+            double q = QValues.quality(range);
+            for (int i = 0; i < qs.length; i++) {
+                BinaryFormat fmt = preference.get(i);
+                boolean match = fmt == null ? acceptsJson(type) : fmt.matches(type);
+                if (match) {
+                    qs[i] = Math.max(qs[i], q);
+                    anyBinary |= fmt != null && q > 0;
+                }
+            }
+        }
+        if (!anyBinary) {
+            return null;
+        }
+        int best = -1;
+        for (int i = 0; i < qs.length; i++) {
+            if (qs[i] > 0 && (best < 0 || qs[i] > qs[best])) {
+                best = i;
+            }
+        }
+        return best < 0 ? null : preference.get(best);
+    }
+
+    private static boolean acceptsJson(String type) {
+        return "*/*".equals(type) || "application/*".equalsIgnoreCase(type)
+                || "application/json".equalsIgnoreCase(type);
+    }
+}
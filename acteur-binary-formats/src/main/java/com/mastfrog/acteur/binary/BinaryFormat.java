@@ -0,0 +1,122 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.binary;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.mastfrog.mime.MimeType;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+
+/**
+ * Binary formats Jackson can read and write, which can be negotiated with
+ * clients via the <code>Accept</code> and <code>Content-Type</code> headers.
+ *
+ * @author Tim Boudreau
+ */
+public enum BinaryFormat {
+    CBOR("cbor", "application/cbor"),
+    SMILE("smile", "application/x-jackson-smile"),
+    MESSAGE_PACK("msgpack", "application/msgpack", "application/x-msgpack",
+            "application/vnd.msgpack");
+
+    private final String token;
+    private final MimeType mimeType;
+    private final String[] aliases;
+
+    BinaryFormat(String token, String mimeType, String... aliases) {
+        this.token = token;
+        this.mimeType = MimeType.parse(mimeType);
+        this.aliases = aliases;
+    }
+
+    /**
+     * The content type sent with responses in this format.
+     *
+     * @return A mime type
+     */
+    public MimeType mimeType() {
+        return mimeType;
+    }
+
+    /**
+     * The name used for this format in settings.
+     *
+     * @return The name
+     */
+    public String token() {
+        return token;
+    }
+
+    JsonFactory createFactory() {
+        switch (this) {
+            case CBOR:
+                return new CBORFactory();
+            case SMILE:
+                return new SmileFactory();
+            case MESSAGE_PACK:
+                return new MessagePackFactory();
+            default:
+                throw new AssertionError(this);
+        }
+    }
+
+    /**
+     * Determine if a type and subtype (ignoring parameters) name this format.
+     *
+     * @param type A type such as <code>application/cbor</code>
+     * @return true if it matches
+     */
+    public boolean matches(CharSequence type) {
+        if (type == null) {
+            return false;
+        }
+        String t = type.toString().trim();
+        if (mimeType.toString().equalsIgnoreCase(t)) {
+            return true;
+        }
+        for (String alias : aliases) {
+            if (alias.equalsIgnoreCase(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean matches(MimeType type) {
+        if (type == null || !type.secondaryType().isPresent()) {
+            return false;
+        }
+        return matches(type.primaryType() + "/" + type.secondaryType().get());
+    }
+
+    static BinaryFormat forToken(String token) {
+        for (BinaryFormat f : values()) {
+            if (f.token.equalsIgnoreCase(token)) {
+                return f;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.binary;
+
+import com.google.inject.AbstractModule;
+import com.mastfrog.acteur.ContentConverter;
+import com.mastfrog.acteur.ContentNegotiator;
+import com.mastfrog.giulius.annotations.Setting;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Install this module alongside ServerModule to allow clients to send and
+ * receive CBOR, Smile or MessagePack instead of JSON. Request bodies are read
+ * according to their <code>Content-Type</code>; objects attached to responses
+ * (whose content type is unset or JSON) are written in whatever format the
+ * <code>Accept</code> header prefers, falling back to JSON. The binary
+ * ObjectMappers are copies of the application's ObjectMapper, so share its
+ * configuration and modules.
+ *
+ * @author Tim Boudreau
+ */
+public final class BinaryFormatsModule extends AbstractModule {
+
+    /**
+     * Comma-delimited list of format names (cbor, smile, msgpack, json)
+     * used to break ties when the client accepts more than one with the same
+     * q-value. Formats not listed are not preferred over JSON.
+     */
+    @Setting(value = "Order of preference for response formats when a client accepts "
+            + "several equally - comma-delimited list of cbor, smile, msgpack, json", defaultValue = "cbor,smile,msgpack,json")
+    public static final String SETTINGS_KEY_BINARY_FORMATS_PREFERENCE = "binary.formats.preference";
+    /**
+     * If true, the output of ResponseWriters on responses whose content type
+     * is unset or JSON is negotiated too, so Output.writeObject() will write
+     * the negotiated format. Off by default, since writers commonly assemble
+     * JSON out of strings and objects, which cannot be mixed with a binary
+     * format.
+     */
+    @Setting(value = "If true, apply binary format negotiation to ResponseWriter.Output.writeObject() "
+            + "for responses with no content type or a JSON content type", type = Setting.ValueType.BOOLEAN,
+            defaultValue = "false")
+    public static final String SETTINGS_KEY_NEGOTIATE_RESPONSE_WRITERS = "binary.formats.response.writers";
+
+    private final Set<BinaryFormat> formats;
+
+    public BinaryFormatsModule() {
+        this(BinaryFormat.values());
+    }
+
+    public BinaryFormatsModule(BinaryFormat... formats) {
+        if (formats.length == 0) {
+            throw new IllegalArgumentException("No formats");
+        }
+        this.formats = EnumSet.copyOf(Arrays.asList(formats));
+    }
+
+    @Override
+    protected void configure() {
+        bind(EnabledFormats.class).toInstance(new EnabledFormats(formats));
+        bind(ContentNegotiator.class).to(BinaryContentNegotiator.class);
+        bind(ContentConverter.class).to(BinaryContentConverter.class);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.binary;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mastfrog.acteur.ContentNegotiator.Encoding;
+import static com.mastfrog.acteur.binary.BinaryFormat.CBOR;
+import static com.mastfrog.acteur.binary.BinaryFormat.MESSAGE_PACK;
+import static com.mastfrog.acteur.binary.BinaryFormat.SMILE;
+import static com.mastfrog.acteur.binary.BinaryFormatsModule.SETTINGS_KEY_BINARY_FORMATS_PREFERENCE;
+import com.mastfrog.marshallers.netty.NettyContentMarshallers;
+import com.mastfrog.mime.MimeType;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.settings.SettingsBuilder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class BinaryContentNegotiatorTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private BinaryCodecs codecs(BinaryFormat... formats) {
+        EnumSet<BinaryFormat> set = EnumSet.noneOf(BinaryFormat.class);
+        for (BinaryFormat f : formats) {
+            set.add(f);
+        }
+        return new BinaryCodecs(mapper, new EnabledFormats(set),
+                NettyContentMarshallers.getDefault(mapper), new MapperCodec(mapper));
+    }
+
+    private BinaryContentNegotiator negotiator(String preference, BinaryFormat... formats) throws Exception {
+        SettingsBuilder sb = new SettingsBuilder();
+        if (preference != null) {
+            sb.add(SETTINGS_KEY_BINARY_FORMATS_PREFERENCE, preference);
+        }
+        Settings settings = sb.build();
+        return new BinaryContentNegotiator(codecs(formats), settings);
+    }
+
+    @Test
+    public void testChoose() throws Exception {
+        BinaryContentNegotiator neg = negotiator(null, CBOR, SMILE, MESSAGE_PACK);
+        assertNull(neg.choose(null));
+        assertNull(neg.choose("*/*"));
+        assertNull(neg.choose("application/json"));
+        assertNull(neg.choose("application/*, text/html"));
+        assertEquals(CBOR, neg.choose("application/cbor"));
+        assertEquals(SMILE, neg.choose("application/x-jackson-smile"));
+        assertEquals(MESSAGE_PACK, neg.choose("application/x-msgpack"));
+        assertEquals(MESSAGE_PACK, neg.choose("application/msgpack;q=0.9, application/json;q=0.5"));
+        assertNull(neg.choose("application/msgpack;q=0.4, application/json;q=0.5"));
+        assertNull(neg.choose("application/cbor;q=0"));
+        assertEquals(SMILE, neg.choose("application/cbor;q=0.5, application/x-jackson-smile"));
+        // ties go to the server's preference
+        assertEquals(CBOR, neg.choose("application/x-jackson-smile, application/cbor, application/json"));
+        assertEquals(CBOR, neg.choose("application/cbor;q=garbage, application/cbor;q=0.3"));
+    }
+
+    @Test
+    public void testPreferenceOrder() throws Exception {
+        BinaryContentNegotiator neg = negotiator("msgpack, json, cbor", CBOR, MESSAGE_PACK);
+        assertEquals(MESSAGE_PACK, neg.choose("application/cbor, application/msgpack"));
+        assertNull(neg.choose("application/cbor, application/json"));
+        assertEquals(CBOR, neg.choose("application/cbor, application/json;q=0.8"));
+        // smile is not enabled
+        assertNull(neg.choose("application/x-jackson-smile"));
+    }
+
+    @Test
+    public void testOnlyJacksonPayloadsAreNegotiated() throws Exception {
+        BinaryContentNegotiator neg = negotiator(null, CBOR);
+        assertTrue(BinaryContentNegotiator.isMarshalledAsJson(new LinkedHashMap<>()));
+        assertFalse(BinaryContentNegotiator.isMarshalledAsJson("hello"));
+        assertFalse(BinaryContentNegotiator.isMarshalledAsJson(new byte[1]));
+        assertFalse(BinaryContentNegotiator.isMarshalledAsJson(Unpooled.EMPTY_BUFFER));
+        assertTrue(BinaryContentNegotiator.isMarshalledAsJson(MimeType.parse("application/json")));
+        assertTrue(BinaryContentNegotiator.isJson(MimeType.JSON_UTF_8));
+        assertTrue(BinaryContentNegotiator.isJson(MimeType.parse("application/hal+json")));
+        assertFalse(BinaryContentNegotiator.isJson(MimeType.HTML_UTF_8));
+    }
+
+    @Test
+    public void testRoundTripThroughMarshallersAndConverter() throws Exception {
+        BinaryCodecs codecs = codecs(CBOR, SMILE, MESSAGE_PACK);
+        BinaryContentConverter converter = new BinaryContentConverter(new MapperCodec(mapper),
+                () -> UTF_8, null, codecs);
+        Thing thing = new Thing();
+        thing.name = "thing";
+        thing.count = 23;
+        thing.flag = true;
+        ByteBuf json = Unpooled.buffer();
+        codecs.json(null).marshallers().write(thing, json);
+        for (BinaryFormat fmt : BinaryFormat.values()) {
+            Encoding enc = codecs.encoding(fmt);
+            assertEquals(fmt.mimeType(), enc.contentType());
+            ByteBuf buf = Unpooled.buffer();
+            enc.marshallers().write(thing, buf);
+            assertNotEquals(fmt + " wrote JSON", json, buf);
+            assertEquals(fmt.toString(), thing, converter.toObject(buf, fmt.mimeType(), Thing.class));
+            assertEquals(thing, converter.toObject(json, MimeType.JSON_UTF_8, Thing.class));
+            // The string form is the same bytes, Base64 encoded
+            byte[] bytes = enc.codec().writeValueAsBytes(thing);
+            assertEquals(fmt.toString(), Base64.getEncoder().encodeToString(bytes),
+                    enc.codec().writeValueAsString(thing));
+        }
+    }
+
+    public static final class Thing {
+
+        public String name;
+        public int count;
+        public boolean flag;
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Thing)) {
+                return false;
+            }
+            Thing t = (Thing) o;
+            return name.equals(t.name) && count == t.count && flag == t.flag;
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode() + count;
+        }
+
+        @Override
+        public String toString() {
+            return name + ":" + count + ":" + flag;
+        }
+    }
+}
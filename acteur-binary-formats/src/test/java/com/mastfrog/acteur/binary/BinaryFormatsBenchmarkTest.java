@@ -0,0 +1,183 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.binary;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Reports payload size and encode / decode throughput of each binary format
+ * relative to JSON, for a payload typical of service-to-service traffic. As a
+ * test it only checks that each format round-trips the payload in fewer bytes
+ * than JSON; run main() (optionally with -Dbenchmark.iterations=N) for the
+ * numbers.
+ *
+ * @author Tim Boudreau
+ */
+public class BinaryFormatsBenchmarkTest {
+
+    @Test
+    public void testFormatsRoundTripSmallerThanJson() throws Exception {
+        ObjectMapper json = new ObjectMapper();
+        List<Record> payload = payload(250);
+        int jsonBytes = roundTrip("json", json, payload);
+        for (BinaryFormat fmt : BinaryFormat.values()) {
+            int bytes = roundTrip(fmt.token(), json.copyWith(fmt.createFactory()), payload);
+            assertTrue(fmt + " should be smaller than JSON: " + bytes + " vs " + jsonBytes,
+                    bytes < jsonBytes);
+        }
+    }
+
+    private static int roundTrip(String name, ObjectMapper mapper, List<Record> payload) throws Exception {
+        byte[] bytes = mapper.writeValueAsBytes(payload);
+        Record[] check = mapper.readValue(bytes, Record[].class);
+        assertEquals(name, payload, Arrays.asList(check));
+        return bytes.length;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0])
+                : Integer.getInteger("benchmark.iterations", 20000);
+        List<Result> results = run(iterations);
+        for (Result r : results) {
+            System.out.println(r.format(results.get(0)));
+        }
+    }
+
+    static List<Result> run(int iterations) throws Exception {
+        ObjectMapper json = new ObjectMapper();
+        List<Record> payload = payload(250);
+        List<Result> results = new ArrayList<>();
+        results.add(measure("json", json, payload, iterations));
+        for (BinaryFormat fmt : BinaryFormat.values()) {
+            results.add(measure(fmt.token(), json.copyWith(fmt.createFactory()), payload, iterations));
+        }
+        return results;
+    }
+
+    static Result measure(String name, ObjectMapper mapper, List<Record> payload, int iterations) throws Exception {
+        byte[] bytes = mapper.writeValueAsBytes(payload);
+        roundTrip(name, mapper, payload);
+        // warm up
+        for (int i = 0; i < Math.max(50, iterations / 10); i++) {
+            mapper.readValue(mapper.writeValueAsBytes(payload), Record[].class);
+        }
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += mapper.writeValueAsBytes(payload).length;
+        }
+        long encodeNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += mapper.readValue(bytes, Record[].class).length;
+        }
+        long decodeNanos = System.nanoTime() - start;
+        assertTrue(sink > 0);
+        return new Result(name, bytes.length, iterations, encodeNanos, decodeNanos);
+    }
+
+    static List<Record> payload(int count) {
+        Random rnd = new Random(2026);
+        List<Record> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Record r = new Record();
+            r.id = rnd.nextLong();
+            r.name = "record-" + i;
+            r.active = rnd.nextBoolean();
+            r.score = rnd.nextDouble() * 1000;
+            r.tags = Arrays.asList("alpha", "beta-" + (i % 7), "gamma");
+            r.samples = new int[16];
+            for (int j = 0; j < r.samples.length; j++) {
+                r.samples[j] = rnd.nextInt(100000);
+            }
+            result.add(r);
+        }
+        return result;
+    }
+
+    static final class Result {
+
+        final String name;
+        final int bytes;
+        final int iterations;
+        final long encodeNanos;
+        final long decodeNanos;
+
+        Result(String name, int bytes, int iterations, long encodeNanos, long decodeNanos) {
+            this.name = name;
+            this.bytes = bytes;
+            this.iterations = iterations;
+            this.encodeNanos = encodeNanos;
+            this.decodeNanos = decodeNanos;
+        }
+
+        double encodeOpsPerSecond() {
+            return iterations / (encodeNanos / 1000000000D);
+        }
+
+        double decodeOpsPerSecond() {
+            return iterations / (decodeNanos / 1000000000D);
+        }
+
+        String format(Result json) {
+            return String.format("%-8s %7d bytes (%3.0f%% of JSON)  encode %8.0f ops/s (%4.2fx)  decode %8.0f ops/s (%4.2fx)",
+                    name, bytes, 100D * bytes / json.bytes,
+                    encodeOpsPerSecond(), encodeOpsPerSecond() / json.encodeOpsPerSecond(),
+                    decodeOpsPerSecond(), decodeOpsPerSecond() / json.decodeOpsPerSecond());
+        }
+    }
+
+    public static final class Record {
+
+        public long id;
+        public String name;
+        public boolean active;
+        public double score;
+        public List<String> tags;
+        public int[] samples;
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Record)) {
+                return false;
+            }
+            Record r = (Record) o;
+            return id == r.id && name.equals(r.name) && active == r.active
+                    && score == r.score && tags.equals(r.tags)
+                    && Arrays.equals(samples, r.samples);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(id);
+        }
+    }
+}
@@ -159,6 +159,67 @@ public final class ByteRanges implements Iterable<Range> {
         return valid;
     }
 
+    /**
+     * Resolve these ranges against some number of servable bytes the way RFC
+     * 7233 describes: ranges which extend past the end are truncated, a
+     * suffix range longer than the total covers all of it, and ranges which
+     * cannot be satisfied are dropped. The result is sorted, and ranges which
+     * overlap, or are separated by no more than <code>maxGap</code> bytes,
+     * are merged, so the same bytes are never sent twice.
+     *
+     * @param max The total bytes available to serve
+     * @param maxGap The largest gap between two ranges which should be
+     * merged, rather than sent separately
+     * @return A list of ranges, empty if none can be satisfied or these
+     * ranges are invalid
+     */
+    public List<BoundedRangeNetty> coalesce(long max, long maxGap) {
+        List<long[]> spans = new ArrayList<>(ranges.length);
+        if (valid && max > 0) {
+            for (Range range : ranges) {
+                long start;
+                long end;
+                if (range instanceof EndRange) {
+                    long suffix = ((EndRange) range).endOffset;
+                    if (suffix == 0) {
+                        continue;
+                    }
+                    start = Math.max(0, max - suffix);
+                    end = max - 1;
+                } else {
+                    start = range.start(max);
+                    if (start < 0 || start >= max) {
+                        continue;
+                    }
+                    end = range instanceof RangeImpl
+                            ? Math.min(((RangeImpl) range).end, max - 1)
+                            : range.end(max);
+                    if (end < start) {
+                        continue;
+                    }
+                }
+                spans.add(new long[]{start, end});
+            }
+        }
+        spans.sort((a, b) -> Long.compare(a[0], b[0]));
+        List<BoundedRangeNetty> result = new ArrayList<>(spans.size());
+        long[] current = null;
+        for (long[] span : spans) {
+            if (current != null && span[0] <= current[1] + 1 + maxGap) {
+                current[1] = Math.max(current[1], span[1]);
+            } else {
+                if (current != null) {
+                    result.add(new BoundedRangeNetty(current[0], current[1], max));
+                }
+                current = span;
+            }
+        }
+        if (current != null) {
+            result.add(new BoundedRangeNetty(current[0], current[1], max));
+        }
+        return result;
+    }
+
     @Override
     public Iterator<Range> iterator() {
         return asList(ranges).iterator();
@@ -25,6 +25,7 @@ package com.mastfrog.acteur.headers;
 
 import io.netty.handler.codec.http.cookie.ClientCookieDecoder;
 import io.netty.handler.codec.http.cookie.Cookie;
+import java.util.List;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -112,6 +113,35 @@ public class ByteRangesTest {
         assertFalse(ranges.isValid());
     }
 
+    @Test
+    public void testCoalesce() {
+        ByteRanges ranges = new ByteRanges("bytes=50-59, 0-9, 5-14, 200-300, -5");
+        assertTrue(ranges.isValid());
+        List<BoundedRangeNetty> result = ranges.coalesce(100, 0);
+        assertEquals(result.toString(), 3, result.size());
+        assertEquals("bytes 0-14/100", result.get(0).toString());
+        assertEquals("bytes 50-59/100", result.get(1).toString());
+        assertEquals("bytes 95-99/100", result.get(2).toString());
+
+        result = ranges.coalesce(100, 34);
+        assertEquals(result.toString(), 3, result.size());
+        result = ranges.coalesce(100, 35);
+        assertEquals(result.toString(), 1, result.size());
+        assertEquals("bytes 0-99/100", result.get(0).toString());
+
+        result = new ByteRanges("bytes=10-19,20-29").coalesce(100, 0);
+        assertEquals(1, result.size());
+        assertEquals("bytes 10-29/100", result.get(0).toString());
+
+        result = new ByteRanges("bytes=90-1000,-500").coalesce(100, 0);
+        assertEquals(1, result.size());
+        assertEquals("bytes 0-99/100", result.get(0).toString());
+
+        assertTrue(new ByteRanges("bytes=100-200,-0").coalesce(100, 0).isEmpty());
+        assertTrue(new ByteRanges("bytes=0-10").coalesce(0, 0).isEmpty());
+        assertTrue(new ByteRanges("bytes=44-35").coalesce(100, 0).isEmpty());
+    }
+
     @Test
     public void testBoundedRange() {
         BoundedRange br = new BoundedRange(5, 10, 20);
@@ -0,0 +1,191 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.multipart;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.handler.codec.http.multipart.InterfaceHttpPostRequestDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The decoded fields and files of a multipart/form-data or urlencoded request
+ * body, available for injection into acteurs following a page whose
+ * &#064;Early annotation uses FormDataHandler. Closed (deleting any temporary
+ * files) when the response has been sent or the connection closes.
+ *
+ * @author Tim Boudreau
+ */
+public final class FormData implements AutoCloseable {
+
+    private final List<FormField> fields;
+    private final List<UploadedFile> files;
+    private final long length;
+    private InterfaceHttpPostRequestDecoder decoder;
+
+    FormData(List<FormField> fields, List<UploadedFile> files, long length, InterfaceHttpPostRequestDecoder decoder) {
+        this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+        this.files = Collections.unmodifiableList(new ArrayList<>(files));
+        this.length = length;
+        this.decoder = decoder;
+    }
+
+    /**
+     * All non-file fields, in the order they were received.
+     *
+     * @return The fields
+     */
+    public List<FormField> fields() {
+        return fields;
+    }
+
+    /**
+     * All uploaded files, in the order they were received.
+     *
+     * @return The files
+     */
+    public List<UploadedFile> files() {
+        return files;
+    }
+
+    /**
+     * Get the value of the first field with the passed name.
+     *
+     * @param name The name
+     * @return The value or null
+     */
+    public String field(String name) {
+        for (FormField f : fields) {
+            if (name.equals(f.name())) {
+                return f.value();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the values of all fields with the passed name.
+     *
+     * @param name The name
+     * @return The values, possibly empty
+     */
+    public List<String> fieldValues(String name) {
+        List<String> result = new ArrayList<>(2);
+        for (FormField f : fields) {
+            if (name.equals(f.name())) {
+                result.add(f.value());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the first file uploaded with the passed field name.
+     *
+     * @param name The name
+     * @return A file or null
+     */
+    public UploadedFile file(String name) {
+        for (UploadedFile f : files) {
+            if (name.equals(f.name())) {
+                return f;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get all files uploaded with the passed field name.
+     *
+     * @param name The name
+     * @return The files, possibly empty
+     */
+    public List<UploadedFile> files(String name) {
+        List<UploadedFile> result = new ArrayList<>(2);
+        for (UploadedFile f : files) {
+            if (name.equals(f.name())) {
+                result.add(f);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The number of bytes of request body received.
+     *
+     * @return The length
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Bind the non-file fields to an object of the passed type, using
+     * Jackson's conversion rules; fields which occur more than once are
+     * passed as lists.
+     *
+     * @param <T> The type
+     * @param mapper The object mapper
+     * @param type The type
+     * @return An object
+     */
+    public <T> T toObject(ObjectMapper mapper, Class<T> type) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (FormField f : fields) {
+            Object old = values.get(f.name());
+            if (old == null) {
+                values.put(f.name(), f.value());
+            } else if (old instanceof List<?>) {
+                @SuppressWarnings("unchecked")
+                List<Object> list = (List<Object>) old;
+                list.add(f.value());
+            } else {
+                List<Object> list = new ArrayList<>(3);
+                list.add(old);
+                list.add(f.value());
+                values.put(f.name(), list);
+            }
+        }
+        return mapper.convertValue(values, type);
+    }
+
+    /**
+     * Release any in-memory content and delete any temporary files which have
+     * not been moved elsewhere.
+     */
+    @Override
+    public synchronized void close() {
+        if (decoder != null) {
+            decoder.destroy();
+            decoder = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FormData" + fields + files;
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.multipart;
+
+import com.mastfrog.acteur.ChunkHandler;
+import com.mastfrog.acteur.Closables;
+import com.mastfrog.acteur.HttpEvent;
+import com.mastfrog.giulius.annotations.Setting;
+import static com.mastfrog.giulius.annotations.Setting.ValueType.INTEGER;
+import static com.mastfrog.giulius.annotations.Setting.ValueType.STRING;
+import com.mastfrog.settings.Settings;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
+import static io.netty.handler.codec.http.HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE;
+import static io.netty.handler.codec.http.HttpResponseStatus.UNSUPPORTED_MEDIA_TYPE;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.multipart.Attribute;
+import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
+import io.netty.handler.codec.http.multipart.FileUpload;
+import io.netty.handler.codec.http.multipart.HttpData;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder.EndOfDataDecoderException;
+import io.netty.handler.codec.http.multipart.InterfaceHttpData;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.ArrayList;
+import java.util.List;
+import javax.inject.Inject;
+
+/**
+ * ChunkHandler for use with &#064;Early pages, which decodes
+ * multipart/form-data and application/x-www-form-urlencoded request bodies
+ * incrementally as chunks arrive, using Netty's HttpPostRequestDecoder,
+ * rather than aggregating the body in memory first. Parts larger than
+ * <code>multipart.spill.threshold</code> are written to temporary files as
+ * they are decoded, so memory use is bounded however large the upload.
+ * <p>
+ * Reference it from a page as
+ * <code>&#064;Early(value=FormDataHandler.class, send100continue=true)</code>
+ * and install FormDataModule; once the body is complete, the chain resumes with
+ * a {@link FormData} available for injection. Subclasses can observe parts as
+ * they complete, or override {@link #onFormData(FormData)} to convert the
+ * form into other types for injection.
+ *
+ * @author Tim Boudreau
+ */
+public class FormDataHandler extends ChunkHandler {
+
+    /**
+     * Size above which a part is written to a temporary file rather than
+     * held in memory.
+     */
+    @Setting(value = "Bytes of a multipart or urlencoded form part held in memory before it is "
+            + "written to a temporary file", type = INTEGER, defaultValue = "16384")
+    public static final String SETTINGS_KEY_MULTIPART_SPILL_THRESHOLD = "multipart.spill.threshold";
+    /**
+     * Maximum size of any single part; 0 means unlimited.
+     */
+    @Setting(value = "Maximum bytes in any single form part before failing with 413 - 0 for no limit",
+            type = INTEGER, defaultValue = "0")
+    public static final String SETTINGS_KEY_MULTIPART_MAX_PART_LENGTH = "multipart.max.part.length";
+    /**
+     * Maximum size of the entire request body; 0 means unlimited.
+     */
+    @Setting(value = "Maximum bytes of multipart or urlencoded request body before failing with 413 - "
+            + "0 for no limit", type = INTEGER, defaultValue = "0")
+    public static final String SETTINGS_KEY_MULTIPART_MAX_REQUEST_LENGTH = "multipart.max.request.length";
+    /**
+     * Maximum number of parts (fields and files) in one request.
+     */
+    @Setting(value = "Maximum number of fields and files in a multipart or urlencoded request body",
+            type = INTEGER, defaultValue = "1000")
+    public static final String SETTINGS_KEY_MULTIPART_MAX_PARTS = "multipart.max.parts";
+    /**
+     * Folder temporary files for large parts are created in.
+     */
+    @Setting(value = "Folder for temporary files holding large form parts - defaults to "
+            + "java.io.tmpdir", type = STRING)
+    public static final String SETTINGS_KEY_MULTIPART_SPILL_DIR = "multipart.spill.dir";
+    public static final long DEFAULT_MULTIPART_SPILL_THRESHOLD = DefaultHttpDataFactory.MINSIZE;
+    public static final int DEFAULT_MULTIPART_MAX_PARTS = 1000;
+    // The decoder compacts its buffer of undecoded bytes once it grows past
+    // this; Netty's default of 10Mb would defeat the spill threshold
+    private static final int DISCARD_THRESHOLD = 64 * 1024;
+    private static final byte[] CR = {'\r'};
+
+    private final HttpRequest request;
+    private final Closables closables;
+    private final long spillThreshold;
+    private final long maxPartLength;
+    private final long maxRequestLength;
+    private final int maxParts;
+    private final String spillDir;
+    private final List<FormField> fields = new ArrayList<>();
+    private final List<UploadedFile> files = new ArrayList<>();
+    private HttpPostRequestDecoder decoder;
+    private long received;
+    private boolean heldCr;
+    private boolean finished;
+
+    @Inject
+    public FormDataHandler(HttpEvent evt, Settings settings, Closables closables) {
+        this(evt.request(), settings, closables);
+    }
+
+    FormDataHandler(HttpRequest request, Settings settings, Closables closables) {
+        // The decoder will consume the content of a request which is also
+        // HttpContent, which the superclass will pass to us as well
+        this.request = new DefaultHttpRequest(request.protocolVersion(), request.method(),
+                request.uri(), request.headers());
+        this.closables = closables;
+        spillThreshold = settings.getLong(SETTINGS_KEY_MULTIPART_SPILL_THRESHOLD, DEFAULT_MULTIPART_SPILL_THRESHOLD);
+        maxPartLength = settings.getLong(SETTINGS_KEY_MULTIPART_MAX_PART_LENGTH, 0);
+        maxRequestLength = settings.getLong(SETTINGS_KEY_MULTIPART_MAX_REQUEST_LENGTH, 0);
+        maxParts = settings.getInt(SETTINGS_KEY_MULTIPART_MAX_PARTS, DEFAULT_MULTIPART_MAX_PARTS);
+        spillDir = settings.getString(SETTINGS_KEY_MULTIPART_SPILL_DIR);
+    }
+
+    /**
+     * Called as each non-file field is completely decoded.
+     *
+     * @param field The field
+     * @throws Exception If something goes wrong
+     */
+    protected void onField(FormField field) throws Exception {
+        // do nothing
+    }
+
+    /**
+     * Called as each uploaded file is completely decoded.
+     *
+     * @param file The file
+     * @throws Exception If something goes wrong
+     */
+    protected void onFile(UploadedFile file) throws Exception {
+        // do nothing
+    }
+
+    /**
+     * Called when the complete body has been decoded; by default, returns an
+     * array containing only the passed form data, so it is available to
+     * subsequent acteurs.
+     *
+     * @param data The form data
+     * @return The objects to make available for injection
+     * @throws Exception If something goes wrong
+     */
+    protected Object[] onFormData(FormData data) throws Exception {
+        return new Object[]{data};
+    }
+
+    @Override
+    protected final void onContent(ChannelHandlerContext ctx, ByteBuf chunk, HttpHeaders trailersOrHeaders, boolean done) throws Exception {
+        if (finished) {
+            return;
+        }
+        try {
+            if (decoder == null) {
+                if (!isForm(request)) {
+                    fail(ctx, UNSUPPORTED_MEDIA_TYPE, new IOException("Not a form: "
+                            + request.headers().get(HttpHeaderNames.CONTENT_TYPE)));
+                    return;
+                }
+                if (maxRequestLength > 0 && HttpUtil.getContentLength(request, -1L) > maxRequestLength) {
+                    fail(ctx, REQUEST_ENTITY_TOO_LARGE, new IOException("Request body exceeds "
+                            + maxRequestLength + " bytes"));
+                    return;
+                }
+                decoder = createDecoder();
+            }
+            received += chunk.readableBytes();
+            if (maxRequestLength > 0 && received > maxRequestLength) {
+                fail(ctx, REQUEST_ENTITY_TOO_LARGE, new IOException("Request body exceeds "
+                        + maxRequestLength + " bytes"));
+                return;
+            }
+            offer(chunk, done);
+            drain();
+            InterfaceHttpData partial = decoder.currentPartialHttpData();
+            if (partial instanceof HttpData) {
+                checkPartLength((HttpData) partial);
+            }
+            if (done) {
+                if (partial != null) {
+                    throw new IOException("Request body ends in the middle of " + partial.getName());
+                }
+                finished = true;
+                FormData data = new FormData(fields, files, received, decoder);
+                decoder = null;
+                if (closables != null) {
+                    closables.add(data);
+                }
+                cleanup(ctx);
+                resume(onFormData(data));
+            }
+        } catch (PartTooLargeException ex) {
+            fail(ctx, REQUEST_ENTITY_TOO_LARGE, ex);
+        } catch (Exception ex) {
+            fail(ctx, BAD_REQUEST, ex);
+        }
+    }
+
+    private static boolean isForm(HttpRequest request) {
+        String contentType = request.headers().get(HttpHeaderNames.CONTENT_TYPE);
+        if (contentType == null) {
+            return false;
+        }
+        contentType = contentType.trim().toLowerCase();
+        return contentType.startsWith(HttpHeaderValues.MULTIPART_FORM_DATA.toString())
+                || contentType.startsWith(HttpHeaderValues.APPLICATION_X_WWW_FORM_URLENCODED.toString());
+    }
+
+    private HttpPostRequestDecoder createDecoder() {
+        Charset charset = HttpUtil.getCharset(request, UTF_8);
+        DefaultHttpDataFactory factory = new DefaultHttpDataFactory(spillThreshold, charset);
+        if (spillDir != null) {
+            factory.setBaseDir(spillDir);
+        }
+        // File.deleteOnExit() leaks a path per upload for the life of the
+        // process; FormData.close() deletes them
+        factory.setDeleteOnExit(false);
+        HttpPostRequestDecoder result = new HttpPostRequestDecoder(factory, request, charset);
+        result.setDiscardThreshold(DISCARD_THRESHOLD);
+        return result;
+    }
+
+    private void offer(ByteBuf chunk, boolean done) {
+        // The decoder copies what it needs; the superclass releases the chunk
+        ByteBuf buf = chunk;
+        ByteBuf composite = null;
+        if (heldCr) {
+            heldCr = false;
+            buf = composite = Unpooled.wrappedBuffer(Unpooled.wrappedBuffer(CR), chunk.retain());
+        }
+        try {
+            // Netty's multipart decoder keeps the CR of a CRLF split across
+            // chunks in the data of the part that precedes the boundary, so
+            // hold a trailing CR back until we know what follows it
+            if (!done && buf.isReadable() && buf.getByte(buf.writerIndex() - 1) == '\r') {
+                heldCr = true;
+                buf = buf.slice(buf.readerIndex(), buf.readableBytes() - 1);
+            }
+            decoder.offer(done ? new DefaultLastHttpContent(buf) : new DefaultHttpContent(buf));
+        } finally {
+            if (composite != null) {
+                composite.release();
+            }
+        }
+    }
+
+    private void drain() throws Exception {
+        try {
+            while (decoder.hasNext()) {
+                InterfaceHttpData data = decoder.next();
+                if (data == null) {
+                    break;
+                }
+                if (fields.size() + files.size() >= maxParts) {
+                    throw new PartTooLargeException("More than " + maxParts + " parts in request body");
+                }
+                switch (data.getHttpDataType()) {
+                    case Attribute:
+                        checkPartLength((HttpData) data);
+                        FormField field = new FormField((Attribute) data);
+                        fields.add(field);
+                        onField(field);
+                        break;
+                    case FileUpload:
+                        checkPartLength((HttpData) data);
+                        UploadedFile file = new UploadedFile((FileUpload) data);
+                        files.add(file);
+                        onFile(file);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (EndOfDataDecoderException end) {
+            // Thrown by hasNext() once the closing boundary has been read
+        }
+    }
+
+    private void checkPartLength(HttpData data) throws PartTooLargeException {
+        if (maxPartLength > 0 && data.length() > maxPartLength) {
+            throw new PartTooLargeException("Form part " + data.getName() + " exceeds "
+                    + maxPartLength + " bytes");
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        finished = true;
+        destroyDecoder();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        if (!finished) {
+            finished = true;
+            destroyDecoder();
+        }
+        super.handlerRemoved(ctx);
+    }
+
+    private void destroyDecoder() {
+        if (decoder != null) {
+            // Deletes any temporary files and releases in-memory parts
+            decoder.destroy();
+            decoder = null;
+        }
+        fields.clear();
+        files.clear();
+    }
+
+    private void cleanup(ChannelHandlerContext ctx) {
+        // Out of the pipeline, so the next request on a keep-alive
+        // connection is not fed to us
+        if (ctx.pipeline().context(this) != null) {
+            ctx.pipeline().remove(this);
+        }
+    }
+
+    private void fail(ChannelHandlerContext ctx, HttpResponseStatus status, Throwable err) throws Exception {
+        finished = true;
+        destroyDecoder();
+        cleanup(ctx);
+        onFailure(ctx, status, err);
+    }
+
+    /**
+     * Called if the body cannot be decoded, is not a form or exceeds one of
+     * the configured limits. The default implementation sends an error
+     * response and closes the connection, since the remainder of the request
+     * body may still be in flight.
+     *
+     * @param ctx The channel context
+     * @param status The suggested response status
+     * @param err The failure
+     * @throws Exception If something goes wrong
+     */
+    protected void onFailure(ChannelHandlerContext ctx, HttpResponseStatus status, Throwable err) throws Exception {
+        String msg = err.getMessage() == null ? err.getClass().getSimpleName() : err.getMessage();
+        sendErrorAndClose(ctx, status, msg);
+    }
+
+    private static final class PartTooLargeException extends IOException {
+
+        PartTooLargeException(String msg) {
+            super(msg);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.multipart;
+
+import com.mastfrog.util.preconditions.Exceptions;
+import io.netty.handler.codec.http.multipart.Attribute;
+import java.io.IOException;
+
+/**
+ * A non-file field of a multipart/form-data or urlencoded request body.
+ *
+ * @author Tim Boudreau
+ */
+public final class FormField {
+
+    private final Attribute attribute;
+
+    FormField(Attribute attribute) {
+        this.attribute = attribute;
+    }
+
+    /**
+     * The field name.
+     *
+     * @return The name
+     */
+    public String name() {
+        return attribute.getName();
+    }
+
+    /**
+     * The field value. Values larger than the spill threshold are held on
+     * disk, and read each time this is called.
+     *
+     * @return The value
+     */
+    public String value() {
+        try {
+            return attribute.getValue();
+        } catch (IOException ex) {
+            return Exceptions.chuck(ex);
+        }
+    }
+
+    /**
+     * The length of the value in bytes.
+     *
+     * @return The length
+     */
+    public long length() {
+        return attribute.length();
+    }
+
+    @Override
+    public String toString() {
+        return name() + "=" + (attribute.isInMemory() ? value() : "(" + length() + " bytes on disk)");
+    }
+}
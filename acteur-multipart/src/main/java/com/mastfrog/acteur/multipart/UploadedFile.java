@@ -0,0 +1,140 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.multipart;
+
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.handler.codec.http.multipart.FileUpload;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A file part of a multipart/form-data request body. Files smaller than the
+ * spill threshold are held in memory, larger ones in a temporary file; either
+ * way, the content is discarded when the FormData it belongs to is closed,
+ * which happens automatically once the response has been sent, unless it has
+ * been moved somewhere permanent with {@link #moveTo(Path)}.
+ *
+ * @author Tim Boudreau
+ */
+public final class UploadedFile {
+
+    private final FileUpload upload;
+
+    UploadedFile(FileUpload upload) {
+        this.upload = upload;
+    }
+
+    /**
+     * The form field name.
+     *
+     * @return The name
+     */
+    public String name() {
+        return upload.getName();
+    }
+
+    /**
+     * The file name supplied by the client, which should not be trusted as a
+     * path.
+     *
+     * @return The file name
+     */
+    public String filename() {
+        return upload.getFilename();
+    }
+
+    /**
+     * The content type supplied by the client.
+     *
+     * @return The content type
+     */
+    public String contentType() {
+        return upload.getContentType();
+    }
+
+    /**
+     * The number of bytes uploaded.
+     *
+     * @return The length
+     */
+    public long length() {
+        return upload.length();
+    }
+
+    /**
+     * Whether the content is held in memory rather than in a temporary file.
+     *
+     * @return True if it is in memory
+     */
+    public boolean isInMemory() {
+        return upload.isInMemory();
+    }
+
+    /**
+     * Get the temporary file holding the content, if it is not held in
+     * memory.
+     *
+     * @return The file, or null
+     * @throws IOException If something goes wrong
+     */
+    public Path file() throws IOException {
+        return upload.isInMemory() ? null : upload.getFile().toPath();
+    }
+
+    /**
+     * Open a stream over the content; may be called more than once.
+     *
+     * @return A stream
+     * @throws IOException If something goes wrong
+     */
+    public InputStream openStream() throws IOException {
+        if (upload.isInMemory()) {
+            return new ByteBufInputStream(upload.getByteBuf().duplicate());
+        }
+        return Files.newInputStream(upload.getFile().toPath());
+    }
+
+    /**
+     * Move the content to the passed file (renaming the temporary file if
+     * possible), after which it is no longer deleted when the request is
+     * finished.
+     *
+     * @param dest The destination
+     * @return The destination
+     * @throws IOException If the file cannot be written
+     */
+    public Path moveTo(Path dest) throws IOException {
+        if (!upload.renameTo(dest.toFile())) {
+            throw new IOException("Could not move " + filename() + " to " + dest);
+        }
+        return dest;
+    }
+
+    @Override
+    public String toString() {
+        return name() + ":" + filename() + " (" + contentType() + ", " + length() + " bytes)";
+    }
+}
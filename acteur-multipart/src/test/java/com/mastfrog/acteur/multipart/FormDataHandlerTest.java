@@ -0,0 +1,274 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.multipart;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import static com.mastfrog.acteur.multipart.FormDataHandler.SETTINGS_KEY_MULTIPART_MAX_PART_LENGTH;
+import static com.mastfrog.acteur.multipart.FormDataHandler.SETTINGS_KEY_MULTIPART_MAX_REQUEST_LENGTH;
+import static com.mastfrog.acteur.multipart.FormDataHandler.SETTINGS_KEY_MULTIPART_SPILL_THRESHOLD;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.settings.SettingsBuilder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import static io.netty.handler.codec.http.HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE;
+import static io.netty.handler.codec.http.HttpResponseStatus.UNSUPPORTED_MEDIA_TYPE;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class FormDataHandlerTest {
+
+    private static final String BOUNDARY = "----acteurBoundary7MA4YWxk";
+
+    @Test
+    public void testMultipartDecodedIncrementally() throws Throwable {
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            big.append(i).append(' ');
+        }
+        byte[] body = multipart(
+                "name", null, "Joe Blow",
+                "small", "small.txt", "tiny file",
+                "big", "big.txt", big.toString());
+        List<String> seen = new ArrayList<>();
+        FormDataHandler handler = new FormDataHandler(multipartRequest(), settings(
+                SETTINGS_KEY_MULTIPART_SPILL_THRESHOLD, "100"), null) {
+            @Override
+            protected void onField(FormField field) {
+                seen.add(field.name());
+            }
+
+            @Override
+            protected void onFile(UploadedFile file) {
+                seen.add(file.name());
+            }
+        };
+        List<Object> resumed = new ArrayList<>();
+        handler.setResumer(objs -> resumed.addAll(Arrays.asList(objs)));
+        EmbeddedChannel ch = new EmbeddedChannel(handler);
+        feed(ch, Arrays.copyOfRange(body, 0, body.length / 2), 7, false);
+        assertTrue(resumed.isEmpty());
+        assertEquals("Fields should be delivered as they arrive", Arrays.asList("name", "small"), seen);
+        feed(ch, Arrays.copyOfRange(body, body.length / 2, body.length), 13, true);
+        assertEquals(Arrays.asList("name", "small", "big"), seen);
+        assertEquals(1, resumed.size());
+        assertNull("Handler should have removed itself", ch.pipeline().get(FormDataHandler.class));
+
+        FormData data = (FormData) resumed.get(0);
+        assertEquals(body.length, data.length());
+        assertEquals("Joe Blow", data.field("name"));
+        UploadedFile small = data.file("small");
+        assertNotNull(small);
+        assertEquals("small.txt", small.filename());
+        assertEquals("text/plain", small.contentType());
+        assertTrue(small.isInMemory());
+        assertNull(small.file());
+        assertEquals("tiny file", read(small.openStream()));
+
+        UploadedFile bigFile = data.file("big");
+        assertFalse("Should have spilled to disk", bigFile.isInMemory());
+        Path path = bigFile.file();
+        assertTrue(Files.exists(path));
+        assertEquals(big.length(), bigFile.length());
+        assertEquals(big.toString(), read(bigFile.openStream()));
+        data.close();
+        assertFalse("Temporary file should be deleted on close", Files.exists(path));
+        assertNull(ch.readOutbound());
+        ch.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testChunkBoundaries() throws Throwable {
+        byte[] body = multipart("a", null, "first\r\nvalue", "f", "f.txt", "file\rcontent\r", "b", null, "last");
+        for (int chunkSize = 1; chunkSize < body.length; chunkSize++) {
+            FormDataHandler handler = new FormDataHandler(multipartRequest(), settings(
+                    SETTINGS_KEY_MULTIPART_SPILL_THRESHOLD, "4"), null);
+            List<Object> resumed = new ArrayList<>();
+            handler.setResumer(objs -> resumed.addAll(Arrays.asList(objs)));
+            EmbeddedChannel ch = new EmbeddedChannel(handler);
+            feed(ch, body, chunkSize, true);
+            assertEquals("Chunk size " + chunkSize, 1, resumed.size());
+            try (FormData data = (FormData) resumed.get(0)) {
+                assertEquals("Chunk size " + chunkSize, "first\r\nvalue", data.field("a"));
+                assertEquals("Chunk size " + chunkSize, "last", data.field("b"));
+                assertEquals("Chunk size " + chunkSize, "file\rcontent\r", read(data.file("f").openStream()));
+            }
+            ch.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testUrlEncoded() throws Throwable {
+        HttpRequest req = new DefaultHttpRequest(HTTP_1_1, HttpMethod.POST, "/things");
+        req.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/x-www-form-urlencoded");
+        FormDataHandler handler = new FormDataHandler(req, settings(), null);
+        List<Object> resumed = new ArrayList<>();
+        handler.setResumer(objs -> resumed.addAll(Arrays.asList(objs)));
+        EmbeddedChannel ch = new EmbeddedChannel(handler);
+        feed(ch, "name=J%C3%B6rg+Blow&count=23&tags=a&tags=b".getBytes(UTF_8), 3, true);
+        assertEquals(1, resumed.size());
+        try (FormData data = (FormData) resumed.get(0)) {
+            assertEquals("Jörg Blow", data.field("name"));
+            assertEquals(Arrays.asList("a", "b"), data.fieldValues("tags"));
+            Thing thing = data.toObject(new ObjectMapper(), Thing.class);
+            assertEquals("Jörg Blow", thing.name);
+            assertEquals(23, thing.count);
+            assertEquals(Arrays.asList("a", "b"), thing.tags);
+        }
+        ch.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testPartTooLarge() throws Throwable {
+        char[] chars = new char[5000];
+        Arrays.fill(chars, 'x');
+        byte[] body = multipart("name", null, "Joe", "big", "big.txt", new String(chars));
+        FormDataHandler handler = new FormDataHandler(multipartRequest(), settings(
+                SETTINGS_KEY_MULTIPART_SPILL_THRESHOLD, "100",
+                SETTINGS_KEY_MULTIPART_MAX_PART_LENGTH, "1000"), null);
+        List<Object> resumed = new ArrayList<>();
+        handler.setResumer(objs -> resumed.addAll(Arrays.asList(objs)));
+        EmbeddedChannel ch = new EmbeddedChannel(handler);
+        feed(ch, body, 256, true);
+        FullHttpResponse resp = ch.readOutbound();
+        assertNotNull(resp);
+        assertEquals(REQUEST_ENTITY_TOO_LARGE, resp.status());
+        resp.release();
+        assertTrue(resumed.isEmpty());
+        assertFalse(ch.isOpen());
+    }
+
+    @Test
+    public void testRequestTooLarge() throws Throwable {
+        byte[] body = multipart("a", null, "12345678901234567890", "b", null, "12345678901234567890");
+        FormDataHandler handler = new FormDataHandler(multipartRequest(), settings(
+                SETTINGS_KEY_MULTIPART_MAX_REQUEST_LENGTH, "100"), null);
+        EmbeddedChannel ch = new EmbeddedChannel(handler);
+        feed(ch, body, 16, true);
+        FullHttpResponse resp = ch.readOutbound();
+        assertNotNull(resp);
+        assertEquals(REQUEST_ENTITY_TOO_LARGE, resp.status());
+        resp.release();
+        assertFalse(ch.isOpen());
+    }
+
+    @Test
+    public void testNotAForm() throws Throwable {
+        HttpRequest req = new DefaultHttpRequest(HTTP_1_1, HttpMethod.POST, "/things");
+        req.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json");
+        EmbeddedChannel ch = new EmbeddedChannel(new FormDataHandler(req, settings(), null));
+        feed(ch, "{}".getBytes(UTF_8), 2, true);
+        FullHttpResponse resp = ch.readOutbound();
+        assertNotNull(resp);
+        assertEquals(UNSUPPORTED_MEDIA_TYPE, resp.status());
+        resp.release();
+    }
+
+    private static HttpRequest multipartRequest() {
+        HttpRequest req = new DefaultHttpRequest(HTTP_1_1, HttpMethod.POST, "/upload");
+        req.headers().set(HttpHeaderNames.CONTENT_TYPE, "multipart/form-data; boundary=" + BOUNDARY);
+        return req;
+    }
+
+    private static Settings settings(String... keysAndValues) throws IOException {
+        SettingsBuilder sb = new SettingsBuilder();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            sb.add(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return sb.build();
+    }
+
+    // Triples of name, filename (null for a plain field) and content
+    private static byte[] multipart(String... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < parts.length; i += 3) {
+            sb.append("--").append(BOUNDARY).append("\r\n");
+            sb.append("Content-Disposition: form-data; name=\"").append(parts[i]).append('"');
+            if (parts[i + 1] != null) {
+                sb.append("; filename=\"").append(parts[i + 1]).append("\"\r\n");
+                sb.append("Content-Type: text/plain");
+            }
+            sb.append("\r\n\r\n").append(parts[i + 2]).append("\r\n");
+        }
+        sb.append("--").append(BOUNDARY).append("--\r\n");
+        return sb.toString().getBytes(UTF_8);
+    }
+
+    private static void feed(EmbeddedChannel ch, byte[] bytes, int chunkSize, boolean last) {
+        for (int i = 0; i < bytes.length; i += chunkSize) {
+            if (!ch.isOpen()) {
+                return;
+            }
+            ByteBuf buf = Unpooled.directBuffer(chunkSize);
+            buf.writeBytes(bytes, i, Math.min(chunkSize, bytes.length - i));
+            ch.writeInbound(new DefaultHttpContent(buf));
+        }
+        if (last && ch.isOpen()) {
+            ch.writeInbound(new DefaultLastHttpContent());
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream i = in) {
+            byte[] buf = new byte[512];
+            for (int n; (n = i.read(buf)) > 0;) {
+                out.write(buf, 0, n);
+            }
+        }
+        return new String(out.toByteArray(), UTF_8);
+    }
+
+    public static final class Thing {
+
+        public String name;
+        public int count;
+        public List<String> tags;
+    }
+}
@@ -0,0 +1,493 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.resources;
+
+import com.mastfrog.acteur.HttpEvent;
+import com.mastfrog.acteur.Response;
+import com.mastfrog.acteur.header.entities.CacheControl;
+import com.mastfrog.acteur.header.entities.CacheControlTypes;
+import com.mastfrog.acteur.headers.HeaderValueType;
+import static com.mastfrog.acteur.headers.Headers.ACCEPT_ENCODING;
+import static com.mastfrog.acteur.headers.Headers.CACHE_CONTROL;
+import static com.mastfrog.acteur.headers.Headers.CONTENT_ENCODING;
+import static com.mastfrog.acteur.headers.Headers.CONTENT_LENGTH;
+import static com.mastfrog.acteur.headers.Headers.CONTENT_TYPE;
+import static com.mastfrog.acteur.headers.Headers.ETAG;
+import static com.mastfrog.acteur.headers.Headers.EXPIRES;
+import static com.mastfrog.acteur.headers.Headers.LAST_MODIFIED;
+import static com.mastfrog.acteur.headers.Headers.VARY;
+import static com.mastfrog.acteur.headers.Method.HEAD;
+import static com.mastfrog.acteur.resources.DynamicFileResources.INTERNAL_COMPRESS_HEADER;
+import static com.mastfrog.acteur.resources.DynamicFileResources.SETTINGS_KEY_ZERO_COPY;
+import com.mastfrog.mime.MimeType;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.shutdown.hooks.ShutdownHookRegistry;
+import com.mastfrog.util.strings.Strings;
+import com.mastfrog.util.time.TimeUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import static io.netty.handler.codec.http.HttpHeaderValues.IDENTITY;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.AsciiString;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves the entries of an uncompressed tar or zip archive straight out of
+ * the archive file, without unpacking it. At startup only the tar headers,
+ * or the zip central directory, are read, to build an index of each entry's
+ * offset, length, timestamp and ETag; requests are answered with a slice of
+ * the archive, sent as a FileRegion on plain-text connections, or read with
+ * positional reads otherwise. Entries named like a precompressed copy of
+ * another entry (<code>app.js.gz</code>, <code>app.js.br</code>,
+ * <code>app.js.zst</code>) are sent in its place to clients which accept
+ * that encoding.
+ * <p>
+ * Zip entries must be stored uncompressed (<code>zip -0</code>); for zip
+ * archives the ETag is derived from the CRC-32 recorded for each entry, and
+ * for tar archives from its timestamp and length.
+ *
+ * @author Tim Boudreau
+ */
+public final class ArchiveResources implements StaticResources {
+
+    private static final AsciiString TRUE = AsciiString.of("true");
+    private final File archive;
+    private final FileChannel channel;
+    private final Map<String, Entry> entries;
+    private final String[] patterns;
+    private final MimeTypes types;
+    private final ExpiresPolicy policy;
+    private final boolean zeroCopy;
+
+    public ArchiveResources(File archive, MimeTypes types, ExpiresPolicy policy, Settings settings,
+            ShutdownHookRegistry onShutdown) throws IOException {
+        this.archive = archive;
+        this.types = types;
+        this.policy = policy;
+        zeroCopy = settings.getBoolean(SETTINGS_KEY_ZERO_COPY, true);
+        channel = FileChannel.open(archive.toPath(), StandardOpenOption.READ);
+        if (onShutdown != null) {
+            onShutdown.addResource(channel);
+        }
+        List<Entry> all = archive.getName().toLowerCase().endsWith(".zip")
+                ? readZip(channel, archive) : readTar(channel);
+        Map<String, Entry> byName = new HashMap<>(all.size() * 2);
+        for (Entry e : all) {
+            byName.put(e.name, e);
+        }
+        // Precompressed copies are served in place of the entry they are
+        // a copy of, not under their own names
+        for (Entry e : all) {
+            Precompressed.Encoding enc = Precompressed.Encoding.forSidecarName(e.name);
+            if (enc != null) {
+                Entry original = byName.get(e.name.substring(0, e.name.length() - enc.suffix.length()));
+                if (original != null && e.lastModified >= original.lastModified) {
+                    original.variants.put(enc, e);
+                    byName.remove(e.name);
+                }
+            }
+        }
+        entries = byName;
+        List<String> names = new ArrayList<>(byName.keySet());
+        Collections.sort(names);
+        patterns = names.toArray(new String[names.size()]);
+    }
+
+    @Override
+    public Resource get(String path) {
+        Entry entry = entries.get(path);
+        return entry == null ? null : new ArchiveResource(entry);
+    }
+
+    @Override
+    public String[] getPatterns() {
+        return patterns;
+    }
+
+    private static List<Entry> readTar(FileChannel channel) throws IOException {
+        List<Entry> result = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(512);
+        byte[] h = header.array();
+        long size = channel.size();
+        long position = 0;
+        // Set by GNU long name and PAX extended headers for the next entry
+        String nextName = null;
+        while (position + 512 <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            if (isZeros(h)) {
+                break;
+            }
+            String name = string(h, 0, 100);
+            long length = number(h, 124, 12);
+            long lastModified = number(h, 136, 12) * 1000;
+            byte type = h[156];
+            if (string(h, 257, 6).startsWith("ustar")) {
+                String prefix = string(h, 345, 155);
+                if (!prefix.isEmpty()) {
+                    name = prefix + '/' + name;
+                }
+            }
+            long dataStart = position + 512;
+            switch (type) {
+                case 'L':
+                    nextName = readString(channel, dataStart, length);
+                    break;
+                case 'x':
+                    String paxPath = paxPath(readString(channel, dataStart, length));
+                    if (paxPath != null) {
+                        nextName = paxPath;
+                    }
+                    break;
+                case '0':
+                case 0:
+                    if (nextName != null) {
+                        name = nextName;
+                        nextName = null;
+                    }
+                    name = normalize(name);
+                    result.add(new Entry(name, dataStart, length, lastModified,
+                            Long.toString(lastModified, 36) + '-' + Long.toString(length, 36)));
+                    break;
+                default:
+                    // Directories, links, devices
+                    nextName = null;
+            }
+            position = dataStart + ((length + 511) / 512) * 512;
+        }
+        return result;
+    }
+
+    private static List<Entry> readZip(FileChannel channel, File archive) throws IOException {
+        long size = channel.size();
+        // The end of central directory record is 22 bytes plus a comment
+        // of up to 64K
+        int tailLength = (int) Math.min(size, 22 + 65535);
+        ByteBuffer tail = ByteBuffer.allocate(tailLength).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, tail, size - tailLength);
+        int eocd = -1;
+        for (int i = tailLength - 22; i >= 0; i--) {
+            if (tail.getInt(i) == 0x06054b50) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0) {
+            throw new IOException("Not a zip file: " + archive);
+        }
+        int count = tail.getShort(eocd + 10) & 0xFFFF;
+        long directorySize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+        long directoryOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+        if (count == 0xFFFF || directoryOffset == 0xFFFFFFFFL) {
+            throw new IOException("Zip64 archives are not supported: " + archive);
+        }
+        ByteBuffer dir = ByteBuffer.allocate((int) directorySize).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, dir, directoryOffset);
+        ByteBuffer local = ByteBuffer.allocate(30).order(ByteOrder.LITTLE_ENDIAN);
+        List<Entry> result = new ArrayList<>(count);
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            if (dir.getInt(pos) != 0x02014b50) {
+                throw new IOException("Corrupt zip central directory in " + archive);
+            }
+            int method = dir.getShort(pos + 10) & 0xFFFF;
+            int time = dir.getShort(pos + 12) & 0xFFFF;
+            int date = dir.getShort(pos + 14) & 0xFFFF;
+            long crc = dir.getInt(pos + 16) & 0xFFFFFFFFL;
+            long length = dir.getInt(pos + 24) & 0xFFFFFFFFL;
+            int nameLength = dir.getShort(pos + 28) & 0xFFFF;
+            int extraLength = dir.getShort(pos + 30) & 0xFFFF;
+            int commentLength = dir.getShort(pos + 32) & 0xFFFF;
+            long headerOffset = dir.getInt(pos + 42) & 0xFFFFFFFFL;
+            String name = new String(dir.array(), pos + 46, nameLength, UTF_8);
+            pos += 46 + nameLength + extraLength + commentLength;
+            if (name.endsWith("/")) {
+                continue;
+            }
+            if (method != 0) {
+                throw new IOException(name + " in " + archive + " is compressed; zip archives "
+                        + "served directly must store entries uncompressed (zip -0)");
+            }
+            // The local header's extra field can differ from the central
+            // directory's, so the data offset has to come from there
+            local.clear();
+            readFully(channel, local, headerOffset);
+            long dataStart = headerOffset + 30 + (local.getShort(26) & 0xFFFF) + (local.getShort(28) & 0xFFFF);
+            result.add(new Entry(normalize(name), dataStart, length, dosTime(date, time),
+                    Long.toString(crc, 36) + '-' + Long.toString(length, 36)));
+        }
+        return result;
+    }
+
+    private static long dosTime(int date, int time) {
+        return LocalDateTime.of(1980 + (date >> 9), Math.max(1, (date >> 5) & 0xF), Math.max(1, date & 0x1F),
+                time >> 11, (time >> 5) & 0x3F, (time & 0x1F) * 2)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static String normalize(String name) {
+        while (name.startsWith("./")) {
+            name = name.substring(2);
+        }
+        while (name.startsWith("/")) {
+            name = name.substring(1);
+        }
+        return name;
+    }
+
+    private static String paxPath(String records) {
+        // Records look like "30 path=some/long/file/name\n"
+        for (String record : records.split("\n")) {
+            int space = record.indexOf(' ');
+            if (space > 0 && record.startsWith("path=", space + 1)) {
+                return record.substring(space + 6);
+            }
+        }
+        return null;
+    }
+
+    private static String readString(FileChannel channel, long position, long length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) length);
+        readFully(channel, buf, position);
+        return string(buf.array(), 0, (int) length);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int count = channel.read(buf, position);
+            if (count < 0) {
+                throw new EOFException("Truncated archive");
+            }
+            position += count;
+        }
+    }
+
+    private static boolean isZeros(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String string(byte[] bytes, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && bytes[end] != 0) {
+            end++;
+        }
+        return new String(bytes, offset, end - offset, UTF_8);
+    }
+
+    private static long number(byte[] bytes, int offset, int length) {
+        if ((bytes[offset] & 0x80) != 0) {
+            // GNU base-256 encoding for values too large for octal
+            long result = bytes[offset] & 0x7F;
+            for (int i = offset + 1; i < offset + length; i++) {
+                result = (result << 8) | (bytes[i] & 0xFF);
+            }
+            return result;
+        }
+        long result = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '7') {
+                result = (result * 8) + (b - '0');
+            } else if (b == 0 || (b == ' ' && result > 0)) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private static final class Entry {
+
+        final String name;
+        final long offset;
+        final long length;
+        final long lastModified;
+        final String etag;
+        final Map<Precompressed.Encoding, Entry> variants = new EnumMap<>(Precompressed.Encoding.class);
+
+        Entry(String name, long offset, long length, long lastModified, String etag) {
+            this.name = name;
+            this.offset = offset;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.etag = etag;
+        }
+    }
+
+    private final class ArchiveResource implements Resource {
+
+        private final Entry entry;
+
+        ArchiveResource(Entry entry) {
+            this.entry = entry;
+        }
+
+        private Precompressed.Encoding variant(HttpEvent evt) {
+            if (entry.variants.isEmpty()) {
+                return null;
+            }
+            for (Precompressed.Encoding enc : Precompressed.acceptable(evt.header(ACCEPT_ENCODING))) {
+                if (entry.variants.containsKey(enc)) {
+                    return enc;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void decorateResponse(HttpEvent evt, String path, Response response, boolean chunked) {
+            Precompressed.Encoding variant = variant(evt);
+            response.add(VARY, new HeaderValueType<?>[]{ACCEPT_ENCODING});
+            ZonedDateTime expires = policy.get(types.get(path), evt.path());
+            Duration maxAge = expires == null ? Duration.ofHours(2)
+                    : Duration.between(ZonedDateTime.now(), expires);
+            response.add(CACHE_CONTROL, new CacheControl(CacheControlTypes.Public, CacheControlTypes.must_revalidate)
+                    .add(CacheControlTypes.max_age, maxAge))
+                    .add(LAST_MODIFIED, TimeUtil.fromUnixTimestamp(entry.lastModified).withNano(0))
+                    .add(ETAG, variant == null ? entry.etag : entry.etag + "-" + variant.headerValue);
+            MimeType contentType = getContentType();
+            if (contentType != null) {
+                response.add(CONTENT_TYPE, contentType);
+            }
+            if (expires != null) {
+                response.add(EXPIRES, expires);
+            }
+            if (variant != null) {
+                response.add(INTERNAL_COMPRESS_HEADER, TRUE)
+                        .add(CONTENT_ENCODING, variant.headerValue);
+            }
+            response.chunked(chunked);
+        }
+
+        @Override
+        public void attachBytes(HttpEvent evt, Response response, boolean chunked) throws IOException {
+            if (evt.method() == HEAD) {
+                return;
+            }
+            Precompressed.Encoding variant = variant(evt);
+            Entry toSend = variant == null ? entry : entry.variants.get(variant);
+            CharSequence acceptEncoding = evt.header(ACCEPT_ENCODING);
+            // Let the pipeline's compressor handle compressible entries with
+            // no precompressed copy, which it cannot do with a FileRegion
+            boolean compressInPipeline = variant == null && acceptEncoding != null
+                    && (Strings.charSequenceContains(acceptEncoding, HttpHeaderValues.GZIP, true)
+                    || Strings.charSequenceContains(acceptEncoding, HttpHeaderValues.DEFLATE, true))
+                    && types.shouldCompress(getContentType());
+            if (!compressInPipeline && zeroCopy && evt.channel().pipeline().get(SslHandler.class) == null) {
+                response.add(INTERNAL_COMPRESS_HEADER, TRUE);
+                if (variant == null) {
+                    response.add(CONTENT_ENCODING, IDENTITY);
+                }
+                if (!chunked) {
+                    response.add(CONTENT_LENGTH, toSend.length);
+                }
+                response.contentWriter(new RegionWriter(toSend, chunked, !evt.requestsConnectionStayOpen()));
+            } else {
+                response.content(read(toSend, evt.channel().alloc()));
+            }
+        }
+
+        private ByteBuf read(Entry entry, ByteBufAllocator alloc) throws IOException {
+            int length = (int) entry.length;
+            ByteBuf buf = alloc.ioBuffer(length, length);
+            try {
+                long position = entry.offset;
+                while (buf.isWritable()) {
+                    // Positional, so concurrent requests can share the channel
+                    int count = buf.writeBytes(channel, position, buf.writableBytes());
+                    if (count < 0) {
+                        throw new EOFException("Archive truncated: " + archive);
+                    }
+                    position += count;
+                }
+                return buf;
+            } catch (IOException ex) {
+                buf.release();
+                throw ex;
+            }
+        }
+
+        @Override
+        public MimeType getContentType() {
+            return types.get(entry.name);
+        }
+    }
+
+    private final class RegionWriter implements ChannelFutureListener {
+
+        private final Entry entry;
+        private final boolean chunked;
+        private final boolean close;
+
+        RegionWriter(Entry entry, boolean chunked, boolean close) {
+            this.entry = entry;
+            this.chunked = chunked;
+            this.close = close;
+        }
+
+        @Override
+        public void operationComplete(ChannelFuture future) {
+            if (future.cause() != null) {
+                future.channel().close();
+                return;
+            }
+            // The archive is opened lazily and closed when the region is released
+            future = future.channel().write(new DefaultFileRegion(archive, entry.offset, entry.length));
+            if (chunked) {
+                future = future.channel().writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+            } else {
+                future.channel().flush();
+            }
+            if (close) {
+                future.addListener(CLOSE);
+            }
+        }
+    }
+}
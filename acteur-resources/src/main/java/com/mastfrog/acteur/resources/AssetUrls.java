@@ -0,0 +1,218 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.resources;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.mastfrog.acteur.HttpEvent;
+import com.mastfrog.acteur.Response;
+import com.mastfrog.acteur.header.entities.CacheControl;
+import com.mastfrog.acteur.header.entities.CacheControlTypes;
+import static com.mastfrog.acteur.headers.Headers.CACHE_CONTROL;
+import static com.mastfrog.acteur.resources.ResourcesPage.SETTINGS_KEY_STATIC_RESOURCES_BASE_URL_PATH;
+import com.mastfrog.giulius.annotations.Setting;
+import com.mastfrog.mime.MimeType;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.util.preconditions.Exceptions;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maps the names of static resources to URLs which contain a fingerprint of
+ * their content, such as <code>/static/app.3f9a1c0d2e.js</code> for
+ * <code>app.js</code>. If {@link #SETTINGS_KEY_FINGERPRINT} is set,
+ * FileResources, ClasspathResources and MergedResources serve each resource
+ * under its fingerprinted name as well as its own, with
+ * <code>Cache-Control: public, immutable, max-age=31536000</code> so browsers
+ * and CDNs never revalidate it; since the URL changes whenever the content
+ * does, pages which get their URLs from here always load current content.
+ * <p>
+ * A request for a fingerprinted name whose fingerprint is out of date (say, a
+ * cached page written before the file changed) gets the current content with
+ * the resource's usual caching headers.
+ *
+ * @author Tim Boudreau
+ */
+@Singleton
+public final class AssetUrls {
+
+    /**
+     * If true, static resources are also served under names containing a
+     * fingerprint of their content, and cached forever.
+     */
+    @Setting(value = "Serve static resources under URLs containing a hash of their content as well as their "
+            + "own, with immutable, one-year caching headers", type = Setting.ValueType.BOOLEAN,
+            defaultValue = "false")
+    public static final String SETTINGS_KEY_FINGERPRINT = "resources.fingerprint";
+    /**
+     * The URL path fingerprinted resource names are appended to. If unset, it
+     * is derived from the static.base.url.path pattern if that is a literal
+     * prefix followed by <code>(.*)</code>, and is otherwise
+     * <code>/</code>.
+     */
+    @Setting(value = "URL path prefix for fingerprinted static resource URLs (by default, derived from "
+            + "static.base.url.path)")
+    public static final String SETTINGS_KEY_ASSET_URL_BASE = "resources.asset.url.base";
+    private static final Pattern FINGERPRINTED = Pattern.compile("^(.*?)\\.([0-9a-f]{10})((?:\\.[^./]+)?)$");
+    private static final Pattern LITERAL_PREFIX = Pattern.compile("^\\^?/?([\\w\\-/.]*?)/?\\(\\.\\*\\)\\$?$");
+    private static final CacheControl IMMUTABLE = new CacheControl(CacheControlTypes.Public,
+            CacheControlTypes.immutable).add(CacheControlTypes.max_age, Duration.ofDays(365));
+    private final Provider<StaticResources> resources;
+    private final boolean enabled;
+    private final String base;
+
+    @Inject
+    AssetUrls(Provider<StaticResources> resources, Settings settings) {
+        this.resources = resources;
+        enabled = settings.getBoolean(SETTINGS_KEY_FINGERPRINT, false);
+        String base = settings.getString(SETTINGS_KEY_ASSET_URL_BASE);
+        if (base == null) {
+            base = "/";
+            String pattern = settings.getString(SETTINGS_KEY_STATIC_RESOURCES_BASE_URL_PATH);
+            if (pattern != null) {
+                Matcher m = LITERAL_PREFIX.matcher(pattern);
+                if (m.find() && !m.group(1).isEmpty()) {
+                    base = "/" + m.group(1) + "/";
+                }
+            }
+        } else if (!base.endsWith("/")) {
+            base += "/";
+        }
+        this.base = base;
+    }
+
+    /**
+     * Get the URL path for a resource - fingerprinted if fingerprinting is
+     * enabled and the resource exists, and plain otherwise.
+     *
+     * @param name The name of the resource, as passed to
+     * StaticResources.get()
+     * @return A URL path
+     */
+    public String url(String name) {
+        if (name.startsWith("/")) {
+            name = name.substring(1);
+        }
+        if (enabled) {
+            String fingerprint = resources.get().fingerprint(name);
+            if (fingerprint != null) {
+                return base + fingerprintedName(name, fingerprint);
+            }
+        }
+        return base + name;
+    }
+
+    /**
+     * Compute a fingerprint from a hash of a resource's content.
+     *
+     * @param hash The hash, in whatever format
+     * @return Ten hex digits
+     */
+    static String fingerprint(String hash) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(hash.getBytes(UTF_8));
+            StringBuilder sb = new StringBuilder(10);
+            for (int i = 0; i < 5; i++) {
+                sb.append(Character.forDigit((digest[i] >> 4) & 0xF, 16))
+                        .append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            return Exceptions.chuck(ex);
+        }
+    }
+
+    static String fingerprintedName(String name, String fingerprint) {
+        int dot = name.lastIndexOf('.');
+        if (dot <= name.lastIndexOf('/') + 1) {
+            // No extension, or a dot-file
+            return name + '.' + fingerprint;
+        }
+        return name.substring(0, dot) + '.' + fingerprint + name.substring(dot);
+    }
+
+    /**
+     * Get the name of the resource a fingerprinted name refers to.
+     *
+     * @param path A path
+     * @return The name without the fingerprint, or null if it does not
+     * contain one
+     */
+    static String logicalName(String path) {
+        Matcher m = FINGERPRINTED.matcher(path);
+        return m.find() ? m.group(1) + m.group(3) : null;
+    }
+
+    /**
+     * Look up a resource requested by its fingerprinted name, for use by
+     * StaticResources implementations when there is no resource with the
+     * literal name.
+     *
+     * @param resources The resources
+     * @param path The requested path
+     * @return A resource or null
+     */
+    static Resource fingerprinted(StaticResources resources, String path) {
+        Matcher m = FINGERPRINTED.matcher(path);
+        if (!m.find()) {
+            return null;
+        }
+        String name = m.group(1) + m.group(3);
+        Resource result = resources.get(name);
+        if (result != null && m.group(2).equals(resources.fingerprint(name))) {
+            return new ImmutableResource(result);
+        }
+        return result;
+    }
+
+    private static final class ImmutableResource implements Resource {
+
+        private final Resource delegate;
+
+        ImmutableResource(Resource delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void decorateResponse(HttpEvent evt, String path, Response response, boolean chunked) throws Exception {
+            delegate.decorateResponse(evt, path, response, chunked);
+            response.add(CACHE_CONTROL, IMMUTABLE);
+        }
+
+        @Override
+        public void attachBytes(HttpEvent evt, Response response, boolean chunked) throws Exception {
+            delegate.attachBytes(evt, response, chunked);
+        }
+
+        @Override
+        public MimeType getContentType() {
+            return delegate.getContentType();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.resources;
+
+import static java.lang.annotation.ElementType.TYPE;
+import java.lang.annotation.Retention;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+import java.lang.annotation.Target;
+
+/**
+ * Lists classpath resources, relative to the annotated class, to be
+ * compressed and hashed at build time rather than when ClasspathResources
+ * starts. The annotation processor writes a <code>.gz</code> copy of each
+ * resource alongside it, and an index of their lengths, ETags and CRC32
+ * checksums named {@link #INDEX_NAME} in the same package; ClasspathResources
+ * uses those for any name in the index whose length and checksum still match,
+ * and does the work itself for anything else. Use the
+ * class and names you pass to ClasspathResourceInfo.
+ * <p>
+ * The resources must already be in the class output when the annotated class
+ * is compiled - as they are when they live in <code>src/main/resources</code>
+ * in a Maven build.
+ *
+ * @author Tim Boudreau
+ */
+@Retention(SOURCE)
+@Target(TYPE)
+public @interface ClasspathResourceIndex {
+
+    /**
+     * The name of the index file, in the package of the annotated class.
+     */
+    String INDEX_NAME = "acteur-resources.index";
+
+    /**
+     * Resource names, relative to the annotated class.
+     *
+     * @return The names
+     */
+    String[] value();
+}
@@ -67,6 +67,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoField;
 import java.util.ArrayList;
@@ -75,9 +76,15 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 import java.util.zip.GZIPOutputStream;
 
 /**
+ * Serves resources from the classpath, loaded into memory at startup. If the
+ * class resources are relative to was annotated with
+ * &#064;ClasspathResourceIndex, ETags and gzipped copies of the resources it
+ * lists come from the build, and none are computed here.
  *
  * @author Tim Boudreau
  */
@@ -92,6 +99,7 @@ public final class ClasspathResources implements StaticResources {
     private final DeploymentMode mode;
     private final ByteBufAllocator allocator;
     private final boolean internalGzip;
+    private final boolean fingerprints;
 
     @Inject
     public ClasspathResources(MimeTypes types, ClasspathResourceInfo info, DeploymentMode mode, ByteBufAllocator allocator, Settings settings) throws Exception {
@@ -101,14 +109,16 @@ public final class ClasspathResources implements StaticResources {
         Checks.notNull("mode", mode);
         this.allocator = allocator;
         internalGzip = settings.getBoolean("internal.gzip", false);
+        fingerprints = settings.getBoolean(AssetUrls.SETTINGS_KEY_FINGERPRINT, false);
         this.types = types;
         this.mode = mode;
         this.relativeTo = info.relativeTo();
         List<String> l = new ArrayList<>();
         String resourcesBasePath = settings.getString(RESOURCES_BASE_PATH, "");
+        Map<String, IndexEntry> index = IndexEntry.read(relativeTo);
 
         for (String nm : info.names()) {
-            this.names.put(nm, new ClasspathResource(nm));
+            this.names.put(nm, new ClasspathResource(nm, index.get(nm)));
             String pat = Strings.joinPath(resourcesBasePath, nm);
             l.add(pat);
         }
@@ -128,7 +138,17 @@ public final class ClasspathResources implements StaticResources {
                 return Exceptions.chuck(ex);
             }
         }
-        return names.get(path);
+        Resource result = names.get(path);
+        if (result == null && fingerprints) {
+            result = AssetUrls.fingerprinted(this, path);
+        }
+        return result;
+    }
+
+    @Override
+    public String fingerprint(String path) {
+        ClasspathResource res = (ClasspathResource) names.get(path);
+        return res == null ? null : res.fingerprint;
     }
 
     @Override
@@ -164,39 +184,75 @@ public final class ClasspathResources implements StaticResources {
         final ByteBuf bytes;
         final ByteBuf compressed;
         private final String hash;
+        final String fingerprint;
         final String name;
         private final int length;
 
-        ClasspathResource(String name) throws Exception {
+        ClasspathResource(String name, IndexEntry entry) throws Exception {
             Checks.notNull("name", name);
             this.name = name;
             ByteBuf bytes = allocator.directBuffer();
+            String hash = null;
+            CRC32 crc = new CRC32();
             try (InputStream in = relativeTo.getResourceAsStream(name)) {
                 if (in == null) {
                     throw new FileNotFoundException(name);
                 }
                 try (ByteBufOutputStream out = new ByteBufOutputStream(bytes)) {
-                    try (HashingOutputStream hashOut = HashingOutputStream.sha1(out)) {
-                        Streams.copy(in, hashOut, 512);
-                        hash = hashOut.getHashAsString();
+                    if (entry != null) {
+                        // Hashed at build time; the checksum is to verify that
+                        Streams.copy(in, new CheckedOutputStream(out, crc), 8192);
+                    } else {
+                        try (HashingOutputStream hashOut = HashingOutputStream.sha1(out)) {
+                            Streams.copy(in, hashOut, 512);
+                            hash = hashOut.getHashAsString();
+                        }
                     }
                 }
             }
             bytes.retain();
             this.bytes = Unpooled.unreleasableBuffer(bytes);
-            if (internalGzip) {
+            length = bytes.readableBytes();
+            if (entry != null && (entry.length != length || entry.crc != crc.getValue())) {
+                // Stale index - the resource was changed after compilation
+                entry = null;
+                try (HashingOutputStream hashOut = HashingOutputStream.sha1(Streams.nullOutputStream())) {
+                    try (ByteBufInputStream in = new ByteBufInputStream(bytes.duplicate())) {
+                        Streams.copy(in, hashOut, 512);
+                    }
+                    hash = hashOut.getHashAsString();
+                }
+            }
+            if (entry != null) {
+                this.hash = entry.etag;
+                this.compressed = entry.gzipLength < 0 ? null : loadGzipped(name, entry.gzipLength);
+            } else if (internalGzip) {
+                this.hash = hash;
                 int sizeEstimate = (int) Math.ceil(bytes.readableBytes() * 1.001) + 12;
                 ByteBuf compressed = allocator.directBuffer(sizeEstimate);
                 gzip(bytes, compressed);
                 bytes.resetReaderIndex();
                 this.compressed = Unpooled.unreleasableBuffer(compressed);
                 assert check();
-
             } else {
+                this.hash = hash;
                 compressed = null;
             }
             bytes.resetReaderIndex();
-            length = bytes.readableBytes();
+            fingerprint = AssetUrls.fingerprint(this.hash);
+        }
+
+        private ByteBuf loadGzipped(String name, int gzipLength) throws IOException {
+            ByteBuf result = allocator.directBuffer(gzipLength);
+            try (InputStream in = relativeTo.getResourceAsStream(name + ".gz")) {
+                if (in == null) {
+                    throw new FileNotFoundException(name + ".gz");
+                }
+                try (ByteBufOutputStream out = new ByteBufOutputStream(result)) {
+                    Streams.copy(in, out, 8192);
+                }
+            }
+            return Unpooled.unreleasableBuffer(result);
         }
 
         private boolean check() throws Exception {
@@ -237,14 +293,14 @@ public final class ClasspathResources implements StaticResources {
             if (type != null) {
                 response.add(CONTENT_TYPE, type);
             }
-            if (internalGzip) {
+            if (internalGzip || compressed != null) {
                 // Flag it so the standard compressor ignores us
                 response.add(INTERNAL_COMPRESS_HEADER, "true");
             }
             if (chunked) {
                 response.add(Headers.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
             }
-            if (isGzip(evt)) {
+            if (sendGzipped(evt)) {
                 response.add(Headers.CONTENT_ENCODING, HttpHeaderValues.GZIP.toString());
                 if (!chunked) {
                     response.add(Headers.CONTENT_LENGTH, (long) compressed.readableBytes());
@@ -259,7 +315,7 @@ public final class ClasspathResources implements StaticResources {
 
         @Override
         public void attachBytes(HttpEvent evt, Response response, boolean chunked) {
-            if (isGzip(evt)) {
+            if (sendGzipped(evt)) {
                 CompressedBytesSender sender = new CompressedBytesSender(compressed, !evt.requestsConnectionStayOpen(), chunked);
                 response.contentWriter(sender);
             } else {
@@ -268,6 +324,11 @@ public final class ClasspathResources implements StaticResources {
             }
         }
 
+        private boolean sendGzipped(HttpEvent evt) {
+            // Compressed at build time, or at startup if internal.gzip is set
+            return compressed != null && acceptsGzip(evt);
+        }
+
         @Override
         public MimeType getContentType() {
             MimeType mt = types.get(name);
@@ -275,15 +336,53 @@ public final class ClasspathResources implements StaticResources {
         }
     }
 
-    boolean isGzip(HttpEvent evt) {
-        if (!internalGzip) {
-            return false;
-        }
+    boolean acceptsGzip(HttpEvent evt) {
         CharSequence acceptEncoding = evt.header(Headers.ACCEPT_ENCODING);
         return acceptEncoding != null && 
                 Strings.charSequenceContains(acceptEncoding, "gzip", true);
     }
 
+    /**
+     * An entry in the index written at build time for the
+     * &#064;ClasspathResourceIndex annotation.
+     */
+    private static final class IndexEntry {
+
+        final int length;
+        final int gzipLength;
+        final String etag;
+        final long crc;
+
+        IndexEntry(int length, int gzipLength, String etag, long crc) {
+            this.length = length;
+            this.gzipLength = gzipLength;
+            this.etag = etag;
+            this.crc = crc;
+        }
+
+        static Map<String, IndexEntry> read(Class<?> relativeTo) throws IOException {
+            Map<String, IndexEntry> result = new HashMap<>();
+            try (InputStream in = relativeTo.getResourceAsStream(ClasspathResourceIndex.INDEX_NAME)) {
+                if (in == null) {
+                    return result;
+                }
+                for (String line : Streams.readString(in, UTF_8).split("\n")) {
+                    String[] parts = line.trim().split("\t");
+                    if (parts.length != 5 || line.startsWith("#")) {
+                        continue;
+                    }
+                    try {
+                        result.put(parts[0], new IndexEntry(Integer.parseInt(parts[1]),
+                                Integer.parseInt(parts[2]), parts[3], Long.parseLong(parts[4], 16)));
+                    } catch (NumberFormatException ex) {
+                        // Not ours, or corrupt - do it the slow way
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
     static final class BytesSender extends ResponseWriter {
 
         private final ByteBuf bytes;
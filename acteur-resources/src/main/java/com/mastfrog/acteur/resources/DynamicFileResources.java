@@ -26,12 +26,17 @@ package com.mastfrog.acteur.resources;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
 import com.mastfrog.acteur.Closables;
 import com.mastfrog.acteur.HttpEvent;
 import com.mastfrog.acteur.Response;
 import com.mastfrog.acteur.header.entities.CacheControl;
 import com.mastfrog.acteur.header.entities.CacheControlTypes;
+import com.mastfrog.acteur.header.entities.Connection;
 import com.mastfrog.acteur.headers.BoundedRangeNetty;
 import com.mastfrog.acteur.headers.ByteRanges;
 import com.mastfrog.acteur.headers.HeaderValueType;
@@ -39,6 +44,7 @@ import com.mastfrog.acteur.headers.Headers;
 import static com.mastfrog.acteur.headers.Headers.ACCEPT_ENCODING;
 import static com.mastfrog.acteur.headers.Headers.ACCEPT_RANGES;
 import static com.mastfrog.acteur.headers.Headers.CACHE_CONTROL;
+import static com.mastfrog.acteur.headers.Headers.CONNECTION;
 import static com.mastfrog.acteur.headers.Headers.CONTENT_ENCODING;
 import static com.mastfrog.acteur.headers.Headers.CONTENT_LENGTH;
 import static com.mastfrog.acteur.headers.Headers.CONTENT_RANGE;
@@ -50,11 +56,12 @@ import static com.mastfrog.acteur.headers.Headers.RANGE;
 import static com.mastfrog.acteur.headers.Headers.VARY;
 import com.mastfrog.acteur.headers.Method;
 import static com.mastfrog.acteur.headers.Method.HEAD;
-import com.mastfrog.acteur.headers.Range;
+import static com.mastfrog.acteur.server.ServerModule.BACKGROUND_THREAD_POOL_NAME;
 import com.mastfrog.acteur.spi.ApplicationControl;
 import com.mastfrog.giulius.annotations.Setting;
 import com.mastfrog.mime.MimeType;
 import com.mastfrog.settings.Settings;
+import com.mastfrog.shutdown.hooks.ShutdownHookRegistry;
 import com.mastfrog.util.preconditions.Exceptions;
 import com.mastfrog.util.streams.HashingOutputStream;
 import com.mastfrog.util.streams.Streams;
@@ -63,54 +70,88 @@ import com.mastfrog.util.time.TimeUtil;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
-import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.compression.JZlibEncoder;
-import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.channel.DefaultFileRegion;
 import io.netty.handler.codec.http.DefaultHttpContent;
 import io.netty.handler.codec.http.DefaultLastHttpContent;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.stream.ChunkedNioFile;
 import static io.netty.handler.codec.http.HttpHeaderValues.IDENTITY;
 import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
-import static io.netty.handler.codec.http.HttpResponseStatus.NOT_IMPLEMENTED;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
 import static io.netty.handler.codec.http.HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE;
 import io.netty.util.AsciiString;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import static java.lang.Math.max;
-import java.nio.Buffer;
-import java.nio.ByteBuffer;
-import java.nio.channels.ClosedByInterruptException;
-import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.time.Duration;
 import java.time.ZonedDateTime;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.List;
-import java.util.NoSuchElementException;
+import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ExecutionException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 import javax.inject.Provider;
 
 /**
  * Version of FileResources that does not cache bytes in-memory, just uses
- * Netty's FileRegion, and inode numbers for etags.
+ * Netty's FileRegion (or chunked reads over TLS), and inode numbers or hashes
+ * for etags.
  *
  * @author Tim Boudreau
  */
+@Singleton
 public class DynamicFileResources implements StaticResources {
 
-    @Setting(value = "The maximum buffer size for HTTP range responses when using DynamicFileResources",
-            type = Setting.ValueType.INTEGER, defaultValue = "4096")
+    /**
+     * Formerly the buffer size for range responses; now used as the default
+     * for SETTINGS_KEY_CHUNK_SIZE if that is not set.
+     *
+     * @deprecated Use SETTINGS_KEY_CHUNK_SIZE
+     */
+    @Deprecated
+    @Setting(value = "The maximum buffer size for HTTP range responses when using DynamicFileResources "
+            + "(deprecated - use dynresources.chunk.size)",
+            type = Setting.ValueType.INTEGER, defaultValue = "8192")
     public static final String SETTINGS_KEY_MAX_RANGE_BUFFER_SIZE = "dynresources.range.buffer.size";
-    private static final int DEFAULT_RANGE_BUFFER_SIZE = 4096;
+    /**
+     * The size of the chunks files are read in when they cannot be sent
+     * using zero-copy (i.e. over TLS).
+     */
+    @Setting(value = "The size of chunks files are read in, when using DynamicFileResources on connections "
+            + "where zero-copy file transfer cannot be used",
+            type = Setting.ValueType.INTEGER, defaultValue = "8192")
+    public static final String SETTINGS_KEY_CHUNK_SIZE = "dynresources.chunk.size";
+    private static final int DEFAULT_CHUNK_SIZE = 8192;
+    /**
+     * If true (the default), uncompressed responses on connections that are
+     * not encrypted are written as a FileRegion, so the operating system can
+     * copy the file to the socket directly (sendfile) without the bytes
+     * passing through user space.
+     */
+    @Setting(value = "When using DynamicFileResources, send uncompressed files over plain-text connections "
+            + "using zero-copy file transfer", type = Setting.ValueType.BOOLEAN, defaultValue = "true")
+    public static final String SETTINGS_KEY_ZERO_COPY = "dynresources.zero.copy";
     private final File dir;
     private final ExpiresPolicy policy;
     private final MimeTypes types;
@@ -138,43 +179,249 @@ public class DynamicFileResources implements StaticResources {
             type = Setting.ValueType.INTEGER, defaultValue = "480")
     public static final String SETTINGS_KEY_HASH_ETAG_CACHE_EXPIRY_MINUTES = "dyn.resources.hash.etag.cache.expiry.minutes";
     private final boolean hashEtags;
-    private final LoadingCache<File, EtagCacheEntry> etagCache;
+    /**
+     * The maximum number of files whose metadata (existence, length,
+     * timestamp, ETag, content type and precompressed siblings) is cached.
+     */
+    @Setting(value = "The maximum number of files DynamicFileResources caches metadata such as length, "
+            + "timestamp and ETag for", type = Setting.ValueType.INTEGER, defaultValue = "10000")
+    public static final String SETTINGS_KEY_METADATA_CACHE_SIZE = "dynresources.metadata.cache.size";
+    private static final int DEFAULT_METADATA_CACHE_SIZE = 10000;
+    /**
+     * How old cached file metadata can get before it is checked against the
+     * file again; the check happens in the background, and the old metadata
+     * is used until it completes.  Ignored if SETTINGS_KEY_WATCH is set.
+     */
+    @Setting(value = "Milliseconds after which DynamicFileResources re-checks the cached metadata of "
+            + "a file, in the background", type = Setting.ValueType.INTEGER, defaultValue = "2000")
+    public static final String SETTINGS_KEY_METADATA_REFRESH_MILLIS = "dynresources.metadata.refresh.millis";
+    private static final int DEFAULT_METADATA_REFRESH_MILLIS = 2000;
+    /**
+     * If true, a WatchService is used to notice changed files, rather than
+     * re-checking cached metadata periodically.
+     */
+    @Setting(value = "Use a WatchService to notice files served by DynamicFileResources changing, rather than "
+            + "periodically re-checking them", type = Setting.ValueType.BOOLEAN, defaultValue = "false")
+    public static final String SETTINGS_KEY_WATCH = "dynresources.watch";
+    private final LoadingCache<File, FileInfo> metadata;
+    /**
+     * The total number of bytes of small, frequently requested files (and
+     * their gzipped forms) to hold in memory, so they can be sent without
+     * reading the disk; 0 (the default) disables the cache.
+     */
+    @Setting(value = "Bytes of memory DynamicFileResources may use to keep frequently requested small files "
+            + "in memory; 0 disables it", type = Setting.ValueType.INTEGER, defaultValue = "0")
+    public static final String SETTINGS_KEY_HOT_CACHE_BYTES = "dynresources.hot.cache.bytes";
+    /**
+     * The largest file which will be held in memory if the hot-file cache is
+     * enabled; larger files are always read from disk.
+     */
+    @Setting(value = "The largest file DynamicFileResources will keep in memory, if "
+            + "dynresources.hot.cache.bytes is set", type = Setting.ValueType.INTEGER, defaultValue = "65536")
+    public static final String SETTINGS_KEY_HOT_CACHE_MAX_FILE_SIZE = "dynresources.hot.cache.max.file.size";
+    private static final int DEFAULT_HOT_CACHE_MAX_FILE_SIZE = 65536;
+    /**
+     * The number of times a file must be requested before it is loaded into
+     * the hot-file cache.
+     */
+    @Setting(value = "The number of requests for a file before DynamicFileResources keeps it in memory, if "
+            + "dynresources.hot.cache.bytes is set", type = Setting.ValueType.INTEGER, defaultValue = "3")
+    public static final String SETTINGS_KEY_HOT_CACHE_MIN_HITS = "dynresources.hot.cache.min.hits";
+    private static final int DEFAULT_HOT_CACHE_MIN_HITS = 3;
+    private final HotFileCache hotFiles;
+    private final Executor background;
     private final boolean neverKeepAlive;
-    private final int rangeBufferSize;
+    /**
+     * The maximum number of ranges (after overlapping and nearby ones have
+     * been merged) to send in response to a request with a Range header; if
+     * more are requested, the header is ignored and the whole file is sent.
+     */
+    @Setting(value = "The maximum number of byte ranges DynamicFileResources will send for one request; "
+            + "if more are requested, the whole file is sent", type = Setting.ValueType.INTEGER,
+            defaultValue = "32")
+    public static final String SETTINGS_KEY_MAX_RANGES = "dynresources.max.ranges";
+    private static final int DEFAULT_MAX_RANGES = 32;
+    // Ranges closer together than the rough size of the headers of a
+    // part of a multipart/byteranges response are sent as one
+    private static final long RANGE_COALESCE_GAP = 80;
+    /**
+     * If true (the default), when a file such as <code>foo.js</code> has a
+     * sibling <code>foo.js.br</code>, <code>foo.js.zst</code> or
+     * <code>foo.js.gz</code> which is not older than it, that is sent to
+     * clients which accept that encoding, and the file is never compressed on
+     * the fly.
+     */
+    @Setting(value = "When using DynamicFileResources, serve precompressed .br, .zst or .gz siblings of files "
+            + "to clients which accept those encodings", type = Setting.ValueType.BOOLEAN, defaultValue = "true")
+    public static final String SETTINGS_KEY_PRECOMPRESSED = "dynresources.precompressed";
+    private final int chunkSize;
+    private final int maxRanges;
+    private final boolean precompressed;
+    private final boolean zeroCopy;
+    private final Provider<Closables> onChannelClose;
+    private final Set<File> hashing = ConcurrentHashMap.newKeySet();
 
-    @Inject
+    /**
+     * Create an instance which does its background work on the common
+     * fork-join pool; the watcher and hot file cache, if enabled by settings,
+     * are not closed on shutdown - prefer the injected constructor.
+     */
     public DynamicFileResources(File dir, MimeTypes types, ExpiresPolicy policy, ApplicationControl ctrl, ByteBufAllocator alloc, Settings settings,
             Provider<Closables> onChannelClose) {
+        this(dir, types, policy, ctrl, alloc, settings, onChannelClose, ForkJoinPool.commonPool(), null);
+    }
+
+    @Inject
+    public DynamicFileResources(File dir, MimeTypes types, ExpiresPolicy policy, ApplicationControl ctrl, ByteBufAllocator alloc, Settings settings,
+            Provider<Closables> onChannelClose, @Named(BACKGROUND_THREAD_POOL_NAME) ExecutorService background,
+            ShutdownHookRegistry onShutdown) {
         this.hashEtags = settings.getBoolean(SETTINGS_KEY_USE_HASH_ETAG, false);
         neverKeepAlive = settings.getBoolean("neverKeepAlive", false);
-        rangeBufferSize = max(64, settings.getInt(SETTINGS_KEY_MAX_RANGE_BUFFER_SIZE, DEFAULT_RANGE_BUFFER_SIZE));
+        chunkSize = max(64, settings.getInt(SETTINGS_KEY_CHUNK_SIZE,
+                settings.getInt(SETTINGS_KEY_MAX_RANGE_BUFFER_SIZE, DEFAULT_CHUNK_SIZE)));
+        zeroCopy = settings.getBoolean(SETTINGS_KEY_ZERO_COPY, true);
+        maxRanges = max(1, settings.getInt(SETTINGS_KEY_MAX_RANGES, DEFAULT_MAX_RANGES));
+        precompressed = settings.getBoolean(SETTINGS_KEY_PRECOMPRESSED, true);
+        this.onChannelClose = onChannelClose;
         this.dir = dir;
         this.policy = policy;
         this.types = types;
         this.ctrl = ctrl;
         this.alloc = alloc;
-        if (hashEtags) {
-            int etagCacheExpiryMinutes = settings.getInt(SETTINGS_KEY_HASH_ETAG_CACHE_EXPIRY_MINUTES, 8 * 60);
-            etagCache = CacheBuilder.newBuilder()
-                    .concurrencyLevel(5)
-                    .maximumSize(500)
-                    .softValues()
-                    .expireAfterAccess(etagCacheExpiryMinutes, TimeUnit.MINUTES)
-                    .build(new EtagCacheLoader());
+        this.background = background;
+        boolean watch = settings.getBoolean(SETTINGS_KEY_WATCH, false);
+        int expiryMinutes = settings.getInt(SETTINGS_KEY_HASH_ETAG_CACHE_EXPIRY_MINUTES, 8 * 60);
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .concurrencyLevel(5)
+                .maximumSize(max(1, settings.getInt(SETTINGS_KEY_METADATA_CACHE_SIZE, DEFAULT_METADATA_CACHE_SIZE)))
+                .expireAfterAccess(expiryMinutes, TimeUnit.MINUTES);
+        if (!watch) {
+            builder.refreshAfterWrite(max(1, settings.getInt(SETTINGS_KEY_METADATA_REFRESH_MILLIS,
+                    DEFAULT_METADATA_REFRESH_MILLIS)), TimeUnit.MILLISECONDS);
+        }
+        metadata = builder.build(CacheLoader.asyncReloading(new FileInfoLoader(), background));
+        long hotBytes = settings.getLong(SETTINGS_KEY_HOT_CACHE_BYTES, 0);
+        if (hotBytes > 0) {
+            hotFiles = new HotFileCache(hotBytes,
+                    settings.getInt(SETTINGS_KEY_HOT_CACHE_MAX_FILE_SIZE, DEFAULT_HOT_CACHE_MAX_FILE_SIZE),
+                    max(1, settings.getInt(SETTINGS_KEY_HOT_CACHE_MIN_HITS, DEFAULT_HOT_CACHE_MIN_HITS)),
+                    max(1, settings.getInt(SETTINGS_KEY_METADATA_CACHE_SIZE, DEFAULT_METADATA_CACHE_SIZE)),
+                    background);
+            if (onShutdown != null) {
+                onShutdown.addResource(hotFiles);
+            }
         } else {
-            etagCache = null;
+            hotFiles = null;
+        }
+        if (watch) {
+            try {
+                ResourceWatcher watcher = new ResourceWatcher(dir.toPath(), new Invalidator());
+                if (onShutdown != null) {
+                    onShutdown.addResource(watcher);
+                }
+            } catch (IOException ex) {
+                Exceptions.chuck(ex);
+            }
         }
     }
 
     @Override
     public Resource get(String path) {
         File f = new File(dir, path);
-        if (f.exists() && f.isFile() && f.canRead()) {
-            return new DynFileResource(f);
+        FileInfo info = metadata.getUnchecked(f);
+        if (info.readable) {
+            if (hashEtags && info.hash == null) {
+                hashInBackground(f, info);
+            }
+            HotFileCache.HotFile hot = hotFiles == null ? null
+                    : hotFiles.get(f, info, types.shouldCompress(info.contentType) && info.sidecars.isEmpty());
+            return new DynFileResource(f, info, hot);
         }
         return null;
     }
 
+    /**
+     * Drops cached metadata for files as the WatchService reports them
+     * changing.
+     */
+    private final class Invalidator implements ResourceWatcher.Listener {
+
+        @Override
+        public void changed(java.nio.file.Path relativePath) {
+            File f = new File(dir, relativePath.toString());
+            metadata.invalidate(f);
+            Precompressed.Encoding enc = Precompressed.Encoding.forSidecarName(f.getName());
+            if (enc != null) {
+                String name = f.getName();
+                metadata.invalidate(new File(f.getParentFile(), name.substring(0, name.length() - enc.suffix.length())));
+            }
+            // A folder may have been deleted or renamed
+            String prefix = f.getPath() + File.separatorChar;
+            metadata.asMap().keySet().removeIf(file -> file.getPath().startsWith(prefix));
+        }
+
+        @Override
+        public void overflow() {
+            metadata.invalidateAll();
+        }
+    }
+
+    /**
+     * Loads file metadata on a cache miss - just a stat, with the hash for
+     * the ETag, if those are in use, computed in the background - and
+     * refreshes it in the background, keeping any hash if the file has not
+     * changed.
+     */
+    private final class FileInfoLoader extends CacheLoader<File, FileInfo> {
+
+        @Override
+        public FileInfo load(File file) {
+            return FileInfo.stat(file, types, precompressed);
+        }
+
+        @Override
+        public ListenableFuture<FileInfo> reload(File file, FileInfo old) {
+            // Called on a background thread
+            FileInfo result = FileInfo.stat(file, types, precompressed);
+            if (hashEtags && result.readable) {
+                result = result.withHash(result.sameFileAs(old) && old.hash != null
+                        ? old.hash : hash(file));
+            }
+            return Futures.immediateFuture(result);
+        }
+    }
+
+    private void hashInBackground(File file, FileInfo info) {
+        // Serve the stat-based ETag until the hash is available, rather than
+        // reading the entire file on the request thread
+        if (hashing.add(file)) {
+            background.execute(() -> {
+                try {
+                    String hash = hash(file);
+                    if (hash != null) {
+                        metadata.asMap().computeIfPresent(file, (f, current)
+                                -> current.hash == null && current.sameFileAs(info)
+                                ? current.withHash(hash) : current);
+                    }
+                } finally {
+                    hashing.remove(file);
+                }
+            });
+        }
+    }
+
+    static String hash(File file) {
+        HashingOutputStream hashOut = HashingOutputStream.sha1(Streams.nullOutputStream());
+        try (FileInputStream in = new FileInputStream(file)) {
+            Streams.copy(in, hashOut, 8192);
+            hashOut.close();
+        } catch (IOException ex) {
+            // Deleted while we were looking - we will find out on refresh
+            return null;
+        }
+        return Strings.toBase64(hashOut.getDigest());
+    }
+
     @Override
     public String[] getPatterns() {
         return null;
@@ -183,17 +430,24 @@ public class DynamicFileResources implements StaticResources {
     private class DynFileResource implements Resource {
 
         final File file;
+        final FileInfo info;
         final MimeType contentType;
+        final HotFileCache.HotFile hot;
 
-        DynFileResource(File file) {
+        DynFileResource(File file, FileInfo info, HotFileCache.HotFile hot) {
             this.file = file;
-            contentType = types.get(file.getName());
+            this.info = info;
+            this.hot = hot;
+            contentType = info.contentType;
         }
 
         @Override
         public void decorateResponse(HttpEvent evt, String path, Response response, boolean chunked) {
+            CharSequence acceptEncoding = evt.header(ACCEPT_ENCODING);
+            ByteRanges ranges = evt.header(RANGE);
+            Precompressed.Variant variant = precompressed(acceptEncoding, ranges);
             String ua = evt.header(HttpHeaderNames.USER_AGENT.toString());
-            if (ua != null && !ua.contains("MSIE")) {
+            if (variant != null || (ua != null && !ua.contains("MSIE"))) {
                 response.add(VARY, new HeaderValueType<?>[]{ACCEPT_ENCODING});
             }
             ZonedDateTime expires = policy.get(types.get(path), evt.path());
@@ -203,8 +457,8 @@ public class DynamicFileResources implements StaticResources {
             CacheControl cc = new CacheControl(CacheControlTypes.Public, CacheControlTypes.must_revalidate)
                     .add(CacheControlTypes.max_age, maxAge);
             response.add(CACHE_CONTROL, cc)
-                    .add(LAST_MODIFIED, TimeUtil.fromUnixTimestamp(file.lastModified()).withNano(0))
-                    .add(ETAG, etag())
+                    .add(LAST_MODIFIED, TimeUtil.fromUnixTimestamp(info.lastModified).withNano(0))
+                    .add(ETAG, variant == null ? info.etag() : variant.etag(info.etag()))
                     .add(ACCEPT_RANGES, HttpHeaderValues.BYTES);
 
             MimeType contentType = getContentType();
@@ -215,94 +469,58 @@ public class DynamicFileResources implements StaticResources {
             if (expires != null) {
                 response.add(EXPIRES, expires);
             }
-            CharSequence acceptEncoding = evt.header(ACCEPT_ENCODING);
+            if (variant != null) {
+                // Already compressed, so the compressor must leave it alone
+                response.add(INTERNAL_COMPRESS_HEADER, TRUE)
+                        .add(CONTENT_ENCODING, variant.encoding.headerValue);
+                if (evt.method() != HEAD && !chunked) {
+                    response.add(CONTENT_LENGTH, variant.length);
+                }
+            }
             if (evt.method() == HEAD) {
                 return;
             }
-            long length = file.length();
-            ByteRanges ranges = evt.header(RANGE);
+            if (variant != null) {
+                response.chunked(chunked);
+                return;
+            }
+            long length = info.length;
             boolean hasGzip = acceptEncoding != null && Strings.charSequenceContains(acceptEncoding, HttpHeaderValues.GZIP, true);
             boolean hasDeflate = acceptEncoding != null && Strings.charSequenceContains(acceptEncoding, HttpHeaderValues.DEFLATE, true);
             boolean gzipOrDeflate = hasGzip
                     || hasDeflate;
-            boolean willCompress = gzipOrDeflate && types.shouldCompress(contentType);
-            if (ranges != null) {
-                if (!ranges.isValid()) {
-                    response.status(BAD_REQUEST);
-                    response.content("Invalid range " + ranges);
-                    return;
-                }
-                if (ranges.size() > 1 /* && willCompress*/) { // PENDING: We do it correctly, need multiple range Content-Range header to be written
-                    response.status(NOT_IMPLEMENTED);
-                    response.content("Multiple ranges not supported in compressed responses, but requested " + ranges);
-                    return;
-                }
-                Range first = ranges.first();
-                if (first.toBoundedRange(length).isRangeNotSatisfiable()) {
-                    response.status(REQUESTED_RANGE_NOT_SATISFIABLE);
-                    response.content("Unsatisfiable range in file of length " + length + ": " + ranges.first());
-                    return;
-                }
-                if (first.end(length) < 0) {
-                    response.status(REQUESTED_RANGE_NOT_SATISFIABLE);
-                    response.content("Requested past end of file at " + length);
-                    return;
-                }
-                response.add(CONTENT_RANGE, first.toBoundedRange(length));
+            if (ranges != null && !ranges.isValid()) {
+                response.status(BAD_REQUEST);
+                response.content("Invalid range " + ranges);
+                return;
+            }
+            List<BoundedRangeNetty> toSend = rangesToSend(ranges, length);
+            if (toSend != null && toSend.isEmpty()) {
+                response.status(REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.content("Unsatisfiable range in file of length " + length + ": " + ranges);
+                return;
+            }
+            // Multiple ranges are sent as multipart/byteranges, and never
+            // compressed - the ranges refer to the uncompressed bytes
+            boolean multipart = toSend != null && toSend.size() > 1;
+            // If a precompressed version exists, but not in an encoding the
+            // client accepts, send the file as-is
+            boolean willCompress = !multipart && gzipOrDeflate && types.shouldCompress(contentType)
+                    && info.sidecars.isEmpty();
+            if (toSend != null && !multipart) {
+                response.add(CONTENT_RANGE, toSend.get(0));
             }
             if (!willCompress) {
-                if (evt.method() != Method.HEAD && !chunked) {
-                    response.add(CONTENT_LENGTH, length);
+                // The length of a multipart response is set in attachBytes()
+                if (!chunked && !multipart) {
+                    response.add(CONTENT_LENGTH, toSend == null ? length : toSend.get(0).length());
                 }
             } else {
-                if (evt.method() != Method.HEAD) {
-                    response.add(INTERNAL_COMPRESS_HEADER, TRUE).add(CONTENT_ENCODING, hasGzip ? HttpHeaderValues.GZIP : HttpHeaderValues.DEFLATE);
-                }
+                response.add(INTERNAL_COMPRESS_HEADER, TRUE).add(CONTENT_ENCODING, hasGzip ? HttpHeaderValues.GZIP : HttpHeaderValues.DEFLATE);
             }
             response.chunked(chunked);
         }
 
-        private String etag() {
-            try {
-                return hashEtags ? hashEtag() : inodeEtag();
-            } catch (ExecutionException ex) {
-                return Exceptions.chuck(ex);
-            }
-        }
-
-        private String hashEtag() throws ExecutionException {
-            EtagCacheEntry etg = etagCache.get(file);
-            if (!etg.stillValid(file)) {
-                etagCache.refresh(file);
-                etg = etagCache.get(file);
-            }
-            return etg.hash;
-        }
-
-        private String inodeEtag() {
-            try {
-                java.nio.file.Path path = file.toPath();
-                BasicFileAttributes attr = Files.readAttributes(path, BasicFileAttributes.class);
-                Object fileKey = attr.fileKey();
-                if (fileKey != null) {
-                    String s = fileKey.toString();
-                    if (s.contains("ino=")) {
-                        String inode = s.substring(s.indexOf("ino=") + 4, s.indexOf(')'));
-                        try {
-                            long val = Long.parseLong(inode);
-                            return Long.toString(val, 36);
-                        } catch (NumberFormatException nfe) {
-                            ctrl.internalOnError(nfe);
-                        }
-                        return inode;
-                    }
-                }
-            } catch (IOException ex) {
-                ctrl.internalOnError(ex);
-            }
-            return null;
-        }
-
         @Override
         public void attachBytes(HttpEvent evt, Response response, boolean chunked) throws Exception {
             if (evt.method() == Method.HEAD) {
@@ -313,193 +531,113 @@ public class DynamicFileResources implements StaticResources {
             boolean hasDeflate = acceptEncoding != null && Strings.charSequenceContains(acceptEncoding, HttpHeaderValues.DEFLATE, true);
             boolean gzipOrDeflate = hasGzip
                     || hasDeflate;
-            boolean willCompress = gzipOrDeflate && types.shouldCompress(contentType);
 
-//            System.out.println("ACCEPT ENCODING IS " + acceptEncoding + " CHUNKED " + chunked + " hasGzip "
-//                    + hasGzip + " hasDeflate " + hasDeflate + " willCompress " + willCompress + " response " + response);
-//
             final ByteRanges ranges = evt.header(Headers.RANGE);
-            final long length = file.length();
-            if (ranges != null && ranges.size() > 0) {
-                response.add(CONTENT_RANGE, ranges.first().toBoundedRange(length));
-            } else if (!willCompress) {
-                if (!chunked) {
-                    response.add(CONTENT_LENGTH, length);
+            Precompressed.Variant variant = precompressed(acceptEncoding, ranges);
+            if (variant != null) {
+                response.add(CONTENT_ENCODING, variant.encoding.headerValue);
+                attachFile(evt, response, variant.file, FileParts.of(0, variant.length), chunked);
+                return;
+            }
+            final long length = info.length;
+            List<BoundedRangeNetty> toSend = rangesToSend(ranges, length);
+            if (toSend != null && toSend.isEmpty()) {
+                response.status(REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            } else if (toSend == null && ranges != null) {
+                // We are ignoring the Range header
+                response.status(OK);
+            }
+            boolean multipart = toSend != null && toSend.size() > 1;
+            boolean willCompress = !multipart && gzipOrDeflate && types.shouldCompress(contentType)
+                    && info.sidecars.isEmpty();
+            if (hot != null && toSend == null) {
+                ByteBuf body = !willCompress ? hot.content() : hasGzip ? hot.gzipped() : null;
+                if (body != null) {
+                    response.add(INTERNAL_COMPRESS_HEADER, TRUE)
+                            .add(CONTENT_ENCODING, willCompress ? HttpHeaderValues.GZIP : IDENTITY);
+                    response.content(body);
+                    return;
                 }
             }
             if (!willCompress) {
                 response.add(CONTENT_ENCODING, IDENTITY);
-
-                response.contentWriter(new ChannelFutureListener() {
-
-                    ReplaceRangeIterator it = ranges == null ? null : new ReplaceRangeIterator(ranges, length);
-                    boolean done = false;
-
-                    SeekableByteChannel channel;
-
-                    private ByteBuf readBytes(Range range) throws IOException {
-                        // XXX for streaming large audio video files, this fails with
-//OutOfMemoryError: Cannot reserve 38496007 bytes of direct buffer
-// memory (allocated: 4375169, limit: 25165824                        
-                        int len = (int) (range == null ? length : range.length(length));
-                        ByteBuffer buffer = ByteBuffer.allocateDirect(len);
-                        if (range != null) {
-                            channel.position(range.start(length));
-                        }
-                        int read = 0;
-                        while (read < len) {
-                            read += channel.read(buffer);
-                        }
-                        ((Buffer) buffer).flip();
-                        return Unpooled.wrappedBuffer(buffer);
-                    }
-
-                    @Override
-                    public void operationComplete(ChannelFuture f) throws Exception {
-                        if (f.cause() != null) {
-                            ctrl.internalOnError(f.cause());
-                            f.channel().close();
-                            return;
-                        }
-                        if (done) {
-//                            System.out.println("SEND LAST CHUNK FOR COMPRESSED " + ((HttpEvent) evt).path());
-                            if (chunked) {
-                                f = f.channel().writeAndFlush(new DefaultLastHttpContent());
-                            }
-                            String conn = evt.header(HttpHeaderNames.CONNECTION);
-                            if (neverKeepAlive || (conn != null && HttpHeaderValues.CLOSE.contentEquals(conn))) {
-                                f.addListener(CLOSE);
-                            }
-                            return;
-                        }
-                        if (channel == null) {
-                            channel = Files.newByteChannel(file.toPath(), StandardOpenOption.READ);
-                            f.channel().closeFuture().addListener((ChannelFutureListener) (ChannelFuture f1) -> {
-                                channel.close();
-                            });
-                        }
-                        ByteBuf buf = null;
-                        try {
-                            if (it == null) {
-                                buf = readBytes(null);
-//                            FileRegion reg = new DefaultFileRegion(file, 0, length);
-                                done = true;
-                                channel.close();
-                            } else {
-                                if (it.hasNext()) {
-                                    Range range = it.take(rangeBufferSize);
-//                                long count = range.length(length);
-//                                FileRegion reg = new DefaultFileRegion(file, range.start(length), count);
-//                                f = f.channel().writeAndFlush(reg);
-                                    buf = readBytes(range);
-                                    done = !it.hasNext();
-                                } else {
-                                    // initially empty iterator
-                                    channel.close();
-                                    done = true;
-                                }
-                            }
-                        } catch (ClosedByInterruptException ex) {
-                            ctrl.internalOnError(ex);
-                            f.channel().close();
-                            return;
-                        }
-                        if (buf != null) {
-                            if (chunked) {
-                                f = f.channel().writeAndFlush(new DefaultHttpContent(buf));
-                            } else {
-                                f = f.channel().writeAndFlush(buf);
-                            }
-                        }
-                        f.addListener(this);
-                    }
-                });
-
-//                response.contentWriter(new ResponseWriter() {
-//                    @Override
-//                    public ResponseWriter.Status write(Event<?> evt, ResponseWriter.Output out, int iteration) throws Exception {
-//                        if (ranges == null) {
-//                            FileRegion reg = new DefaultFileRegion(file, 0, length);
-//                            out.write(reg);
-//                            return Status.DONE;
-//                        } else {
-//                            for (Range range : ranges) {
-//                                long count = range.length(length);
-//                                FileRegion reg = new DefaultFileRegion(file, range.start(length), count);
-//                                out.write(reg);
-//                            }
-//                            return Status.DONE;
-//                        }
-//                    }
-//                });
+                FileParts parts;
+                if (multipart) {
+                    parts = FileParts.multipart(toSend, contentType, length);
+                    response.add(CONTENT_TYPE, parts.contentType());
+                } else if (toSend != null) {
+                    BoundedRangeNetty range = toSend.get(0);
+                    response.add(CONTENT_RANGE, range);
+                    parts = FileParts.of(range.start(), range.length());
+                } else {
+                    parts = FileParts.of(0, length);
+                }
+                attachFile(evt, response, file, parts, chunked);
                 return;
             } else {
-                ByteBuf buf = Unpooled.buffer();
-                response.add(Headers.CONTENT_ENCODING, hasGzip ? "gzip" : "deflate");
-                // XXX should not do the entire file in one hunk - could be very large
-                try {
-                    if (ranges == null) {
-                        Enc enc = new Enc(hasGzip);
-                        enc.encode(evt.ctx(), Unpooled.wrappedBuffer(Files.readAllBytes(file.toPath())), buf);
-                    } else {
-                        Enc enc = new Enc(hasGzip);
-                        try (SeekableByteChannel channel = Files.newByteChannel(file.toPath(), StandardOpenOption.READ)) {
-                            for (Range r : ranges) {
-                                int rangeLength = (int) r.length(length);
-                                if (rangeLength > 0) {
-                                    ByteBuffer buffer = ByteBuffer.allocate(rangeLength);
-                                    channel.position(r.start(length));
-                                    channel.read(buffer);
-                                    // Need to cast to Buffer to avoid
-                                    // java.lang.NoSuchMethodError: java.nio.ByteBuffer.flip()Ljava/nio/ByteBuffer
-                                    // because > jdk-8 returns ByteBuffer
-                                    ((Buffer) buffer).flip();
-                                    enc.encode(evt.ctx(), Unpooled.wrappedBuffer(buffer), buf);
-                                }
-                            }
-                        }
-                    }
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                    buf.release();
-                    evt.channel().close();
-                    throw ex;
+                response.add(CONTENT_ENCODING, hasGzip ? HttpHeaderValues.GZIP : HttpHeaderValues.DEFLATE);
+                FileParts parts;
+                if (toSend == null) {
+                    parts = FileParts.of(0, length);
+                } else {
+                    BoundedRangeNetty range = toSend.get(0);
+                    response.add(CONTENT_RANGE, range);
+                    parts = FileParts.of(range.start(), range.length());
                 }
                 if (!chunked) {
-                    response.add(Headers.CONTENT_LENGTH, (long) buf.readableBytes());
+                    // The compressed length is not known until it has been
+                    // sent, so the end of the body is the end of the connection
+                    response.add(CONNECTION, Connection.close);
                 }
+                FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                onChannelClose.get().add(fileChannel);
+                DeflatingFileWriter writer = new DeflatingFileWriter(evt, fileChannel, parts, chunked, hasGzip);
+                onChannelClose.get().add(writer);
+                response.contentWriter(writer);
+            }
+        }
 
-                response.contentWriter(new ChannelFutureListener() {
-                    boolean first = true;
+        private void attachFile(HttpEvent evt, Response response, File file, FileParts parts, boolean chunked) throws IOException {
+            if (!chunked) {
+                response.add(CONTENT_LENGTH, parts.length());
+            }
+            // SslHandler can only encrypt ByteBufs, so a FileRegion can
+            // only be used on a plain-text connection
+            if (zeroCopy && evt.channel().pipeline().get(SslHandler.class) == null) {
+                // A FileRegion bypasses the compressor, so make sure it
+                // does not start compressing this response
+                response.add(INTERNAL_COMPRESS_HEADER, TRUE);
+                response.contentWriter(new FileRegionWriter(evt, file, parts, chunked));
+            } else {
+                FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                onChannelClose.get().add(fileChannel);
+                response.contentWriter(new ChunkedFileWriter(evt, fileChannel, parts, chunked));
+            }
+        }
 
-                    @Override
-                    public void operationComplete(ChannelFuture f) throws Exception {
-                        if (f.cause() != null) {
-                            ctrl.internalOnError(f.cause());
-                            f.channel().close();
-                        }
-                        if (!first) {
-//                            System.out.println("SEND LAST CHUNK FOR COMPRESSED " + ((HttpEvent) evt).path());
-                            if (chunked) {
-                                f = f.channel().writeAndFlush(new DefaultLastHttpContent());
-                            }
-                            String conn = evt.header(HttpHeaderNames.CONNECTION);
-                            if (neverKeepAlive || (conn != null && HttpHeaderValues.CLOSE.contentEquals(conn))) {
-                                f.addListener(CLOSE);
-                            }
-                            return;
-                        }
-//                        System.out.println("SEND COMPRESSED CHUNK OF " + buf.readableBytes() + " " + ((HttpEvent) evt).path());
-                        if (chunked) {
-                            f = f.channel().writeAndFlush(new DefaultHttpContent(buf));
-                        } else {
-                            f = f.channel().writeAndFlush(buf);
-                        }
-                        first = false;
-                        f.addListener(this);
-                    }
-                });
+        /**
+         * Get the precompressed sibling of the file to send, if there is
+         * one the client accepts. Range requests are always served from the
+         * original file, whose bytes the ranges refer to.
+         */
+        private Precompressed.Variant precompressed(CharSequence acceptEncoding, ByteRanges ranges) {
+            return ranges == null ? Precompressed.find(info.sidecars, acceptEncoding) : null;
+        }
+
+        /**
+         * Get the ranges to send, or null if the whole file should be sent -
+         * either because there is no Range header, or because it asks for
+         * more ranges than we are willing to send, in which case RFC 7233
+         * allows it to be ignored. The result is empty if no range can be
+         * satisfied.
+         */
+        private List<BoundedRangeNetty> rangesToSend(ByteRanges ranges, long length) {
+            if (ranges == null || !ranges.isValid() || ranges.size() == 0) {
+                return null;
             }
+            List<BoundedRangeNetty> result = ranges.coalesce(length, RANGE_COALESCE_GAP);
+            return result.size() > maxRanges ? null : result;
         }
 
         @Override
@@ -508,247 +646,406 @@ public class DynamicFileResources implements StaticResources {
         }
     }
 
-    static final class Enc extends JZlibEncoder {
+    /**
+     * Writes the body of an uncompressed response once the headers have been
+     * flushed, writing as much as the channel will take before waiting for it
+     * to drain, then the last chunk, if chunked, closing the connection if
+     * the request asked for that.
+     */
+    private abstract class FileContentWriter implements ChannelFutureListener {
+
+        final HttpEvent evt;
+        final boolean chunked;
+        private final FileParts parts;
+        private int cursor;
+        private boolean partStarted;
+        private boolean done;
+
+        FileContentWriter(HttpEvent evt, FileParts parts, boolean chunked) {
+            this.evt = evt;
+            this.parts = parts;
+            this.chunked = chunked;
+        }
 
-        Enc(boolean gzip) {
-            super(gzip ? ZlibWrapper.GZIP : ZlibWrapper.ZLIB, 8);
+        /**
+         * Write some or all of the file bytes of one part.
+         *
+         * @param channel The channel
+         * @param part The part
+         * @return The future of the write, or null if the part is complete
+         * @throws Exception If something goes wrong
+         */
+        abstract ChannelFuture writeBody(Channel channel, FileParts.Part part) throws Exception;
+
+        void onDone() throws Exception {
+            // do nothing
         }
 
-        @Override
-        protected void encode(ChannelHandlerContext ctx, ByteBuf in, ByteBuf out) throws Exception {
-            super.encode(ctx, in, out);
+        void onFailure() {
+            // do nothing
         }
-    }
 
-    /*
-    static final class ChunkedGzipContentWriter extends ResponseWriter {
+        boolean closeWhenDone() {
+            return neverKeepAlive;
+        }
 
-        private final File file;
-        private final int length;
-        private SeekableByteChannel fileChannel;
-        private final Iterator<Range> rangeIterator;
-        private final Closables onChannelClose;
-        private final Enc enc = new Enc();
-        private final int chunkSize;
-        private final ByteBuffer readBuffer;
-        ChunkedGzipContentWriter(File file, int length, ByteRanges ranges, Closables onChannelClose, int chunkSize) {
-            readBuffer = ByteBuffer.allocateDirect((int) Math.min(file.length(), length));
-            this.file = file;
-            this.length = length;
-            this.onChannelClose = onChannelClose;
-            this.rangeIterator = ranges == null ? CollectionUtils.singletonIterator(new FullRange(length)) : ranges.iterator();
-            // Make a set of new ranges that reflect the chnunk size and use those
-            this.chunkSize = chunkSize;
+        ChannelFuture write(Channel channel, Object msg) {
+            if (chunked && msg instanceof ByteBuf) {
+                msg = new DefaultHttpContent((ByteBuf) msg);
+            }
+            return channel.write(msg);
         }
 
-        @Override
-        public Status write(Event<?> evt, Output out, int iteration) throws Exception {
-            switch(iteration) {
-                case 0 :
-                    fileChannel = Files.newByteChannel(file.toPath(), StandardOpenOption.READ);
-                    onChannelClose.add(fileChannel);
+        private ChannelFuture writeMore(Channel channel) throws Exception {
+            List<FileParts.Part> all = parts.parts();
+            ChannelFuture last = null;
+            while (cursor <= all.size() && (last == null || channel.isWritable())) {
+                if (cursor == all.size()) {
+                    cursor++;
+                    if (parts.trailer() != null) {
+                        last = write(channel, Unpooled.wrappedBuffer(parts.trailer()));
+                    }
                     break;
+                }
+                FileParts.Part part = all.get(cursor);
+                if (!partStarted) {
+                    partStarted = true;
+                    if (part.header != null) {
+                        last = write(channel, Unpooled.wrappedBuffer(part.header));
+                    }
+                }
+                ChannelFuture body = writeBody(channel, part);
+                if (body == null) {
+                    cursor++;
+                    partStarted = false;
+                } else {
+                    last = body;
+                }
             }
-            Range range = rangeIterator.hasNext() ? rangeIterator.next() : null;
-            if (range == null) {
-                out.write(LastHttpContent.EMPTY_LAST_CONTENT);
-                return Status.DONE;
-            } else {
-                ByteBuffer readInto = readBuffer;
-                readBuffer.reset();
-                fileChannel.position(range.start(length));
-
-                boolean isDone = fileChannel.position() == fileChannel.size();
-                int byteCount = fileChannel.read(readBuffer);
-                ByteBuf outbuffer = evt.channel().alloc().ioBuffer(chunkSize);
-                this.enc.encode(evt.ctx(), Unpooled.wrappedBuffer(readBuffer), outbuffer);
+            if (last != null) {
+                channel.flush();
+            }
+            return last;
+        }
 
-                return Status.NOT_DONE;
+        @Override
+        public final void operationComplete(ChannelFuture f) throws Exception {
+            if (f.cause() != null) {
+                onFailure();
+                onDone();
+                ctrl.internalOnError(f.cause());
+                f.channel().close();
+                return;
+            }
+            ChannelFuture next = done ? null : writeMore(f.channel());
+            if (next != null) {
+                next.addListener(this);
+                return;
+            }
+            done = true;
+            onDone();
+            if (chunked) {
+                f = f.channel().writeAndFlush(new DefaultLastHttpContent());
+            } else {
+                f.channel().flush();
+            }
+            String conn = evt.header(HttpHeaderNames.CONNECTION);
+            if (closeWhenDone() || (conn != null && HttpHeaderValues.CLOSE.contentEquals(conn))) {
+                f.addListener(CLOSE);
             }
         }
+    }
 
-        static final class Enc extends JZlibEncoder {
+    /**
+     * Hands the file to the transport as FileRegions, so the kernel can copy
+     * it straight to the socket without it passing through user space.
+     */
+    private final class FileRegionWriter extends FileContentWriter {
 
-            @Override
-            protected void encode(ChannelHandlerContext ctx, ByteBuf in, ByteBuf out) throws Exception {
-                super.encode(ctx, in, out);
-            }
+        private final File file;
+        private boolean written;
 
+        FileRegionWriter(HttpEvent evt, File file, FileParts parts, boolean chunked) {
+            super(evt, parts, chunked);
+            this.file = file;
+        }
 
+        @Override
+        ChannelFuture writeBody(Channel channel, FileParts.Part part) {
+            if (written || part.count <= 0) {
+                written = false;
+                return null;
+            }
+            written = true;
+            // The file is opened lazily and closed when the region is released
+            return write(channel, new DefaultFileRegion(file, part.start, part.count));
         }
 
+        @Override
+        void onFailure() {
+            // Most likely the file was deleted, and the cached metadata
+            // is stale; make sure the next request sees that
+            metadata.invalidate(file);
+        }
     }
-    static final class FullRange implements Range {
 
-        final long length;
+    /**
+     * Fallback for connections a FileRegion cannot be written to (TLS),
+     * reading the file in chunks into buffers from the channel's allocator.
+     */
+    private final class ChunkedFileWriter extends FileContentWriter {
 
-        public FullRange(long length) {
-            this.length = length;
-        }
+        private final FileChannel fileChannel;
+        private ChunkedNioFile input;
 
-        @Override
-        public long start(long max) {
-            return 0;
+        ChunkedFileWriter(HttpEvent evt, FileChannel fileChannel, FileParts parts, boolean chunked) {
+            super(evt, parts, chunked);
+            this.fileChannel = fileChannel;
         }
 
         @Override
-        public long end(long max) {
-            return length - 1;
+        ChannelFuture writeBody(Channel channel, FileParts.Part part) throws Exception {
+            if (input == null) {
+                // Reads are positional, so several of these can share the
+                // file channel; closing one would close it, so we don't
+                input = new ChunkedNioFile(fileChannel, part.start, part.count, chunkSize);
+            }
+            ByteBuf buf = input.isEndOfInput() ? null : input.readChunk(channel.alloc());
+            if (buf == null) {
+                input = null;
+                return null;
+            }
+            return write(channel, buf);
         }
 
         @Override
-        public BoundedRange toBoundedRange(long max) {
-            throw new UnsupportedOperationException("Not supported");
+        void onDone() throws Exception {
+            // Also registered with Closables, for the case the
+            // channel is closed before we get here
+            fileChannel.close();
         }
     }
+
+    /**
+     * Compresses a file as it is sent, a chunk at a time, so the memory used
+     * is one input chunk, its compressed output and the deflater's own state,
+     * however large the file is.
      */
-    static final class EtagCacheLoader extends CacheLoader<File, EtagCacheEntry> {
+    private final class DeflatingFileWriter extends FileContentWriter implements AutoCloseable {
+
+        private static final int GZIP_MAGIC = 0x8b1f;
+        private static final int MAX_READS_PER_WRITE = 16;
+        private final FileChannel fileChannel;
+        private final boolean gzip;
+        private final Deflater deflater;
+        private final CRC32 crc;
+        private long position = -1;
+        private long remaining;
+        private boolean headerWritten;
+        private boolean finished;
+
+        DeflatingFileWriter(HttpEvent evt, FileChannel fileChannel, FileParts parts, boolean chunked, boolean gzip) {
+            super(evt, parts, chunked);
+            this.fileChannel = fileChannel;
+            this.gzip = gzip;
+            // Gzip is raw deflate plus a header and trailer we write ourselves
+            this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, gzip);
+            this.crc = gzip ? new CRC32() : null;
+        }
 
         @Override
-        public EtagCacheEntry load(File k) throws Exception {
-            if (!k.exists()) {
-                return new EtagCacheEntry("<deleted>", 0);
+        synchronized ChannelFuture writeBody(Channel channel, FileParts.Part part) throws Exception {
+            if (finished) {
+                return null;
             }
-            HashingOutputStream hashOut = HashingOutputStream.sha1(Streams.nullOutputStream());;
-            try (FileInputStream in = new FileInputStream(k)) {
-                Streams.copy(in, hashOut, 1024);
-            } finally {
-                hashOut.close();
+            if (position < 0) {
+                position = part.start;
+                remaining = part.count;
+            }
+            ByteBuf out = channel.alloc().heapBuffer(chunkSize);
+            try {
+                if (gzip && !headerWritten) {
+                    headerWritten = true;
+                    out.writeShortLE(GZIP_MAGIC).writeByte(Deflater.DEFLATED)
+                            .writeByte(0).writeIntLE(0).writeByte(0).writeByte(0xFF);
+                }
+                // The deflater buffers internally, so a read may produce no
+                // output; keep going until there is something to write (an
+                // empty chunk would end the response), but don't hog the
+                // event loop reading a highly compressible file
+                int reads = 0;
+                while (!finished && (out.readableBytes() == 0
+                        || (reads++ < MAX_READS_PER_WRITE && out.readableBytes() < chunkSize))) {
+                    if (remaining > 0) {
+                        out = deflateChunk(channel.alloc(), out);
+                    } else {
+                        deflater.finish();
+                        out = drain(out);
+                        if (gzip) {
+                            out.writeIntLE((int) crc.getValue()).writeIntLE((int) deflater.getBytesRead());
+                        }
+                        finished = true;
+                    }
+                }
+            } catch (Exception | Error e) {
+                out.release();
+                throw e;
             }
-            byte[] digest = hashOut.getDigest();
-            return new EtagCacheEntry(Strings.toBase64(digest), k.lastModified());
+            return write(channel, out);
         }
-    }
-
-    private static final class EtagCacheEntry {
 
-        private final String hash;
-        private final long lastModified;
-
-        public EtagCacheEntry(String hash, long lastModified) {
-            this.hash = hash;
-            this.lastModified = lastModified;
+        private ByteBuf deflateChunk(ByteBufAllocator alloc, ByteBuf out) throws IOException {
+            int toRead = (int) Math.min(chunkSize, remaining);
+            ByteBuf in = alloc.heapBuffer(toRead);
+            try {
+                int count = in.writeBytes(fileChannel, position, toRead);
+                if (count <= 0) {
+                    // File was truncated underneath us
+                    remaining = 0;
+                    return out;
+                }
+                position += count;
+                remaining -= count;
+                int offset = in.arrayOffset() + in.readerIndex();
+                if (gzip) {
+                    crc.update(in.array(), offset, count);
+                }
+                deflater.setInput(in.array(), offset, count);
+                // Drain fully before the buffer goes back to the pool - once
+                // the deflater needs input, it has copied what it needs
+                return drain(out);
+            } finally {
+                in.release();
+            }
         }
 
-        public boolean stillValid(File f) {
-            return f.exists() && f.lastModified() == lastModified;
+        private ByteBuf drain(ByteBuf out) {
+            for (;;) {
+                // Leave room for the gzip trailer, too
+                out.ensureWritable(512);
+                int count = deflater.deflate(out.array(), out.arrayOffset() + out.writerIndex(),
+                        out.writableBytes());
+                if (count <= 0) {
+                    return out;
+                }
+                out.writerIndex(out.writerIndex() + count);
+            }
         }
 
         @Override
-        public int hashCode() {
-            int hash = 3;
-            hash = 67 * hash + Objects.hashCode(this.hash);
-            hash = 67 * hash + (int) (this.lastModified ^ (this.lastModified >>> 32));
-            return hash;
+        boolean closeWhenDone() {
+            return super.closeWhenDone() || !chunked;
         }
 
         @Override
-        public boolean equals(Object obj) {
-            if (this == obj) {
-                return true;
-            }
-            if (obj == null) {
-                return false;
-            }
-            if (getClass() != obj.getClass()) {
-                return false;
-            }
-            final EtagCacheEntry other = (EtagCacheEntry) obj;
-            if (this.lastModified != other.lastModified) {
-                return false;
-            }
-            if (!Objects.equals(this.hash, other.hash)) {
-                return false;
-            }
-            return true;
+        void onDone() throws Exception {
+            close();
         }
 
         @Override
-        public String toString() {
-            return hash + ":" + TimeUtil.toIsoFormat(new Date(lastModified));
+        public synchronized void close() throws IOException {
+            deflater.end();
+            fileChannel.close();
         }
     }
 
-    static class ReplaceRangeIterator {
-
-        private final List<Range> ranges = new ArrayList<>();
-        private int cursor = 0;
-        private final long totalBytes;
+    /**
+     * What we know about a file as of the last time it was looked at.
+     */
+    static final class FileInfo {
 
-        ReplaceRangeIterator(ByteRanges ranges, long totalBytes) {
-            for (Range r : ranges) {
-                this.ranges.add(r);
-            }
-            this.totalBytes = totalBytes;
-        }
+        private static final boolean UNIX_ATTRIBUTES
+                = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+        static final FileInfo MISSING = new FileInfo(false, 0, 0, null, null, null,
+                Collections.<Precompressed.Encoding, Precompressed.Variant>emptyMap());
+        final boolean readable;
+        final long length;
+        final long lastModified;
+        // Derived from inode, length and timestamp
+        final String statEtag;
+        // SHA-1 of the content, if hash etags are used and it has been computed
+        final String hash;
+        final MimeType contentType;
+        final Map<Precompressed.Encoding, Precompressed.Variant> sidecars;
 
-        public boolean hasNext() {
-            return cursor < ranges.size();
+        private FileInfo(boolean readable, long length, long lastModified, String statEtag, String hash,
+                MimeType contentType, Map<Precompressed.Encoding, Precompressed.Variant> sidecars) {
+            this.readable = readable;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.statEtag = statEtag;
+            this.hash = hash;
+            this.contentType = contentType;
+            this.sidecars = sidecars;
         }
 
-        public Range take(int maxLength) {
-            if (!hasNext()) {
-                throw new NoSuchElementException();
-            }
-            Range r = ranges.get(cursor);
-            long len = r.length(totalBytes);
-            if (len >= maxLength) {
-                long st = r.start(totalBytes);
-                long en = r.end(totalBytes);
-//                System.out.println("HAVE OUT OF RANGE " + st + " - " + en + " for max " + maxLength);
-                FakeRange result = new FakeRange(st, st + len);
-//                System.out.println("  RETURN A " + result);
-                if (st + len < en) {
-                    FakeRange substitute = new FakeRange(st + len, en);
-//                    System.out.println("  PUT BACK A " + substitute);
-                    ranges.set(cursor, substitute);
+        static FileInfo stat(File file, MimeTypes types, boolean precompressed) {
+            java.nio.file.Path path = file.toPath();
+            long length;
+            long lastModified;
+            Long inode = null;
+            try {
+                if (UNIX_ATTRIBUTES) {
+                    Map<String, Object> attrs = Files.readAttributes(path, "unix:size,lastModifiedTime,isRegularFile,ino");
+                    if (!Boolean.TRUE.equals(attrs.get("isRegularFile"))) {
+                        return MISSING;
+                    }
+                    length = (Long) attrs.get("size");
+                    lastModified = ((FileTime) attrs.get("lastModifiedTime")).toMillis();
+                    inode = (Long) attrs.get("ino");
                 } else {
-//                    System.out.println("  done, increment cursor");
-                    cursor++;
+                    BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                    if (!attrs.isRegularFile()) {
+                        return MISSING;
+                    }
+                    length = attrs.size();
+                    lastModified = attrs.lastModifiedTime().toMillis();
                 }
-                return result;
-            } else {
-//                System.out.println("  normal done, increment cursor");
-                cursor++;
-            }
-            return r;
-        }
-
-        static class FakeRange implements Range {
-
-            private final long start;
-            private final long end;
-
-            FakeRange(long start, long end) {
-                this.start = start;
-                this.end = end;
+            } catch (IOException ex) {
+                return MISSING;
             }
-
-            @Override
-            public long start(long max) {
-                return start;
+            if (!Files.isReadable(path)) {
+                return MISSING;
             }
-
-            @Override
-            public long end(long max) {
-                return end;
+            StringBuilder etag = new StringBuilder(32);
+            if (inode != null) {
+                etag.append(Long.toString(inode, 36)).append('-');
             }
-
-            @Override
-            public long length(long max) {
-                return end - start;
+            etag.append(Long.toString(length, 36)).append('-').append(Long.toString(lastModified, 36));
+            Map<Precompressed.Encoding, Precompressed.Variant> sidecars
+                    = Collections.<Precompressed.Encoding, Precompressed.Variant>emptyMap();
+            if (precompressed) {
+                for (Precompressed.Encoding enc : Precompressed.Encoding.values()) {
+                    File sidecar = enc.existingSidecar(file);
+                    if (sidecar != null) {
+                        if (sidecars.isEmpty()) {
+                            sidecars = new EnumMap<>(Precompressed.Encoding.class);
+                        }
+                        sidecars.put(enc, new Precompressed.Variant(enc, sidecar, sidecar.length()));
+                    }
+                }
             }
+            return new FileInfo(true, length, lastModified, etag.toString(), null,
+                    types.get(file.getName()), sidecars);
+        }
 
-            @Override
-            public BoundedRangeNetty toBoundedRange(long max) {
-                return new BoundedRangeNetty(start(max), end(max), max);
-            }
+        FileInfo withHash(String hash) {
+            return new FileInfo(readable, length, lastModified, statEtag, hash, contentType, sidecars);
+        }
 
-            public String toString() {
-                return "FakeRange(" + start + ":" + end + ")";
-            }
+        boolean sameFileAs(FileInfo other) {
+            return readable == other.readable && length == other.length
+                    && lastModified == other.lastModified && Objects.equals(statEtag, other.statEtag);
+        }
 
+        String etag() {
+            // Until the hash is available, if one is wanted
+            return hash == null ? statEtag : hash;
         }
 
+        @Override
+        public String toString() {
+            return statEtag + ":" + hash + ":" + TimeUtil.toIsoFormat(new Date(lastModified));
+        }
     }
 }
@@ -0,0 +1,143 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.resources;
+
+import com.mastfrog.acteur.headers.BoundedRange;
+import com.mastfrog.mime.MimeType;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The body of a response for some or all of a file: one or more spans of the
+ * file, each of which may be preceded by some bytes (the headers of a part of
+ * a multipart/byteranges response), and possibly some bytes after the last
+ * one.
+ *
+ * @author Tim Boudreau
+ */
+final class FileParts {
+
+    private final List<Part> parts;
+    private final byte[] trailer;
+    private final MimeType contentType;
+    private final long length;
+
+    private FileParts(List<Part> parts, byte[] trailer, MimeType contentType) {
+        this.parts = parts;
+        this.trailer = trailer;
+        this.contentType = contentType;
+        long len = trailer == null ? 0 : trailer.length;
+        for (Part part : parts) {
+            len += part.count + (part.header == null ? 0 : part.header.length);
+        }
+        this.length = len;
+    }
+
+    static FileParts of(long start, long count) {
+        return new FileParts(Collections.singletonList(new Part(null, start, count)), null, null);
+    }
+
+    /**
+     * Create the body of a multipart/byteranges response, as described in
+     * RFC 7233.
+     *
+     * @param ranges The ranges, which should not overlap
+     * @param partType The type of the file, or null
+     * @param total The file length
+     * @return The parts
+     */
+    static FileParts multipart(List<? extends BoundedRange> ranges, MimeType partType, long total) {
+        String boundary = newBoundary();
+        List<Part> parts = new ArrayList<>(ranges.size());
+        for (BoundedRange range : ranges) {
+            StringBuilder sb = new StringBuilder(100);
+            if (!parts.isEmpty()) {
+                sb.append("\r\n");
+            }
+            sb.append("--").append(boundary).append("\r\n");
+            if (partType != null) {
+                sb.append("Content-Type: ").append(partType).append("\r\n");
+            }
+            sb.append("Content-Range: bytes ").append(range.start()).append('-')
+                    .append(range.end()).append('/').append(total).append("\r\n\r\n");
+            parts.add(new Part(sb.toString().getBytes(US_ASCII), range.start(), range.length()));
+        }
+        byte[] trailer = ("\r\n--" + boundary + "--\r\n").getBytes(US_ASCII);
+        return new FileParts(parts, trailer, MimeType.create("multipart", "byteranges")
+                .withParameter("boundary", boundary));
+    }
+
+    private static String newBoundary() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        return Long.toString(rnd.nextLong() & Long.MAX_VALUE, 36)
+                + Long.toString(rnd.nextLong() & Long.MAX_VALUE, 36);
+    }
+
+    List<Part> parts() {
+        return parts;
+    }
+
+    /**
+     * Bytes to send after the last part, or null.
+     *
+     * @return The trailer
+     */
+    byte[] trailer() {
+        return trailer;
+    }
+
+    /**
+     * The content type to send, if not that of the file.
+     *
+     * @return A content type or null
+     */
+    MimeType contentType() {
+        return contentType;
+    }
+
+    /**
+     * The total number of bytes in the body.
+     *
+     * @return The length
+     */
+    long length() {
+        return length;
+    }
+
+    static final class Part {
+
+        final byte[] header;
+        final long start;
+        final long count;
+
+        Part(byte[] header, long start, long count) {
+            this.header = header;
+            this.start = start;
+            this.count = count;
+        }
+    }
+}
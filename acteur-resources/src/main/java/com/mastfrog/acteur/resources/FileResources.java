@@ -34,8 +34,10 @@ import com.mastfrog.acteur.header.entities.CacheControlTypes;
 import com.mastfrog.acteur.headers.HeaderValueType;
 import com.mastfrog.acteur.headers.Headers;
 import com.mastfrog.giulius.DeploymentMode;
+import com.mastfrog.giulius.annotations.Setting;
 import com.mastfrog.mime.MimeType;
 import com.mastfrog.settings.Settings;
+import com.mastfrog.shutdown.hooks.ShutdownHookRegistry;
 import com.mastfrog.url.Path;
 import com.mastfrog.util.preconditions.Checks;
 import com.mastfrog.util.preconditions.Exceptions;
@@ -65,15 +67,22 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.ZonedDateTime;
 import static java.time.temporal.ChronoField.MILLI_OF_SECOND;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.GZIPOutputStream;
 
 /**
@@ -81,6 +90,14 @@ import java.util.zip.GZIPOutputStream;
  * file bytes <b>in memory</b>. In practice, sites are usually small and this is
  * a non-issue, and this performs very well (it will notice if the timestamp on
  * a file has changed and reload it).
+ * <p>
+ * For larger trees, set <code>file.resources.lazy</code> to memory-map files
+ * on first use instead, and <code>file.resources.watch</code> (which it turns
+ * on by default) to pick up changes via a WatchService rather than checking
+ * timestamps on every request.  In lazy mode, replace files by writing a new
+ * file and renaming it over the old one - a mapped file which is truncated in
+ * place while it is being sent will crash the JVM with SIGBUS.  Files smaller
+ * than 64Kb are copied rather than mapped, so are not affected.
  *
  * @author Tim Boudreau
  */
@@ -88,42 +105,186 @@ import java.util.zip.GZIPOutputStream;
 public final class FileResources implements StaticResources {
 
     private final MimeTypes types;
-    private final Map<String, Resource> names = new HashMap<>();
-    private final String[] patterns;
+    private final Map<String, FileResource2> names = new ConcurrentHashMap<>();
+    private volatile String[] patterns;
     private final DeploymentMode mode;
     private final ByteBufAllocator allocator;
     private final boolean internalGzip;
     private final File dir;
     private final boolean debug;
+    private final boolean lazy;
+    private final boolean watching;
+    private final boolean fingerprints;
+    private final String resourcesBasePath;
+    private final ExpiresPolicy policy;
+    private final ExecutorService background;
 
     public static final String RESOURCES_BASE_PATH = "resources.base.path";
+    private static final int MAP_THRESHOLD = 64 * 1024;
+    /**
+     * If true, files are not read at startup; each is memory-mapped the first
+     * time it is requested, and the hashes used for ETags are computed on a
+     * background thread (until one is ready, an ETag derived from the file's
+     * timestamp and length is used). That makes startup fast for large trees
+     * of files, and avoids holding a copy of every file on the heap.
+     */
+    @Setting(value = "Memory-map files served by FileResources when they are first requested, "
+            + "hashing them in the background, rather than reading every file into memory at startup",
+            type = Setting.ValueType.BOOLEAN, defaultValue = "false")
+    public static final String SETTINGS_KEY_LAZY = "file.resources.lazy";
+    /**
+     * If true, FileResources uses a WatchService to notice files being
+     * created, modified or deleted, rather than checking the timestamp of
+     * the file on each request.  Defaults to the value of
+     * SETTINGS_KEY_LAZY.
+     */
+    @Setting(value = "Watch the folder served by FileResources for files being created, changed or deleted "
+            + "(defaults to the value of file.resources.lazy)", type = Setting.ValueType.BOOLEAN)
+    public static final String SETTINGS_KEY_WATCH = "file.resources.watch";
 
-    @Inject
     public FileResources(File dir, MimeTypes types, DeploymentMode mode, ByteBufAllocator allocator, Settings settings, ExpiresPolicy policy) throws Exception {
+        this(dir, types, mode, allocator, settings, policy, null);
+    }
+
+    @Inject
+    public FileResources(File dir, MimeTypes types, DeploymentMode mode, ByteBufAllocator allocator, Settings settings, ExpiresPolicy policy, ShutdownHookRegistry onShutdown) throws Exception {
         Checks.notNull("allocator", allocator);
         Checks.notNull("types", types);
         Checks.notNull("dir", dir);
         Checks.notNull("mode", mode);
         this.dir = dir;
         this.allocator = allocator;
+        this.policy = policy;
         internalGzip = settings.getBoolean("internal.gzip", false);
+        lazy = settings.getBoolean(SETTINGS_KEY_LAZY, false);
+        watching = settings.getBoolean(SETTINGS_KEY_WATCH, lazy);
+        fingerprints = settings.getBoolean(AssetUrls.SETTINGS_KEY_FINGERPRINT, false);
         this.types = types;
         this.mode = mode;
+        debug = settings.getBoolean("acteur.debug", false);
+        resourcesBasePath = settings.getString(RESOURCES_BASE_PATH, "");
+        if (lazy) {
+            background = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "file-resources-" + dir.getName());
+                t.setDaemon(true);
+                t.setPriority(Thread.NORM_PRIORITY - 1);
+                return t;
+            });
+            if (onShutdown != null) {
+                onShutdown.add(background);
+            }
+        } else {
+            background = null;
+        }
         List<String> l = new ArrayList<>();
         scan(dir, "", l);
         patterns = l.toArray(new String[l.size()]);
-        debug = settings.getBoolean("acteur.debug", false);
-        String resourcesBasePath = settings.getString(RESOURCES_BASE_PATH, "");
         for (String name : l) {
-            String pth = Strings.joinPath(resourcesBasePath, name);
-            if (debug) {
-                System.out.println("STATIC RES: " + name + " -> " + pth);
+            add(name);
+        }
+        if (watching) {
+            ResourceWatcher watcher = new ResourceWatcher(dir.toPath(), new Invalidator());
+            if (onShutdown != null) {
+                onShutdown.addResource(watcher);
             }
-            Path p = Path.parse(pth);
-            ZonedDateTime expires = policy.get(types.get(pth), p);
-            Duration maxAge = expires == null ? Duration.ofHours(2)
-                    :  Duration.between(ZonedDateTime.now(), expires);
-            this.names.put(pth, new FileResource2(name, maxAge));
+        }
+    }
+
+    private String pathFor(String name) {
+        return Strings.joinPath(resourcesBasePath, name);
+    }
+
+    private FileResource2 add(String name) throws Exception {
+        String pth = pathFor(name);
+        if (debug) {
+            System.out.println("STATIC RES: " + name + " -> " + pth);
+        }
+        Path p = Path.parse(pth);
+        ZonedDateTime expires = policy.get(types.get(pth), p);
+        Duration maxAge = expires == null ? Duration.ofHours(2)
+                :  Duration.between(ZonedDateTime.now(), expires);
+        FileResource2 result = new FileResource2(name, maxAge);
+        this.names.put(pth, result);
+        return result;
+    }
+
+    private FileResource2 resource(String name) {
+        return names.get(pathFor(name));
+    }
+
+    private synchronized void addPattern(String name) {
+        if (!Arrays.asList(patterns).contains(name)) {
+            String[] nue = Arrays.copyOf(patterns, patterns.length + 1);
+            nue[patterns.length] = name;
+            patterns = nue;
+        }
+    }
+
+    private synchronized void removeAll(String nameOrFolder) {
+        List<String> remaining = new ArrayList<>(patterns.length);
+        for (String pattern : patterns) {
+            if (pattern.equals(nameOrFolder) || pattern.startsWith(nameOrFolder + "/")) {
+                names.remove(pathFor(pattern));
+            } else {
+                remaining.add(pattern);
+            }
+        }
+        patterns = remaining.toArray(new String[remaining.size()]);
+    }
+
+    /**
+     * Keeps the set of files and their contents up to date as the watched
+     * folder changes.
+     */
+    private final class Invalidator implements ResourceWatcher.Listener {
+
+        @Override
+        public void changed(java.nio.file.Path relativePath) {
+            String name = relativePath.toString().replace(File.separatorChar, '/');
+            File f = new File(dir, name);
+            if (f.isDirectory()) {
+                List<String> l = new ArrayList<>();
+                scan(f, name, l);
+                l.forEach(this::fileChanged);
+            } else if (!f.exists()) {
+                removeAll(name);
+            }
+            Precompressed.Encoding enc = Precompressed.Encoding.forSidecarName(f.getName());
+            if (enc != null) {
+                FileResource2 original = resource(name.substring(0, name.length() - enc.suffix.length()));
+                if (original != null) {
+                    original.invalidate();
+                }
+            }
+            if (f.isFile()) {
+                fileChanged(name);
+            }
+        }
+
+        private void fileChanged(String name) {
+            FileResource2 res = resource(name);
+            if (res != null) {
+                res.invalidate();
+            } else {
+                try {
+                    add(name);
+                    addPattern(name);
+                } catch (Exception ex) {
+                    Exceptions.printStackTrace(ex);
+                }
+            }
+        }
+
+        @Override
+        public void overflow() {
+            List<String> l = new ArrayList<>();
+            scan(dir, "", l);
+            for (String pattern : patterns) {
+                if (!l.contains(pattern)) {
+                    removeAll(pattern);
+                }
+            }
+            l.forEach(this::fileChanged);
         }
     }
 
@@ -133,8 +294,10 @@ public final class FileResources implements StaticResources {
         }
         File[] files = dir.listFiles();
         if (files != null) {
-            for (File f : dir.listFiles()) {
+            for (File f : files) {
                 if (f.isFile() && f.canRead()) {
+                    // Sidecars are included - they are served under their own
+                    // names as well as in place of the file they compress
                     result.add(path + (path.isEmpty() ? "" : "/") + f.getName());
                 } else if (f.isDirectory()) {
                     scan(f, path + (path.isEmpty() ? "" : "/") + f.getName(), result);
@@ -156,7 +319,18 @@ public final class FileResources implements StaticResources {
                 Exceptions.chuck(ex);
             }
         }
-        return names.get(path);
+        FileResource2 res = names.get(path);
+        Resource result = res == null ? null : res.snapshot();
+        if (result == null && fingerprints) {
+            result = AssetUrls.fingerprinted(this, path);
+        }
+        return result;
+    }
+
+    @Override
+    public String fingerprint(String path) {
+        FileResource2 res = names.get(path);
+        return res == null ? null : AssetUrls.fingerprint(res.contentHash());
     }
 
     @Override
@@ -172,6 +346,44 @@ public final class FileResources implements StaticResources {
         }
     }
 
+    static boolean check(ByteBuf bytes, ByteBuf compressed) throws Exception {
+        SanityCheckDecoder y = new SanityCheckDecoder();
+        ByteBuf test = Unpooled.buffer(bytes.readableBytes());
+        try {
+            y.decode(null, compressed, Collections.<Object>singletonList(test));
+            byte[] a = new byte[bytes.readableBytes()];
+            bytes.readBytes(a);
+            byte[] b = new byte[test.readableBytes()];
+            test.readBytes(b);
+            if (!Arrays.equals(a, b)) {
+                throw new IllegalStateException("Compressed data differs. Orig length " + a.length
+                        + " result length " + b.length + "\n.  ORIG:\n" + new String(a) + "\n\nNEW:\n" + new String(b));
+            }
+        } finally {
+            test.release();
+        }
+        return true;
+    }
+
+    static ByteBuf mapFile(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < MAP_THRESHOLD) {
+                // Not worth a mapping, and a copy cannot be truncated
+                // out from under a response that is sending it
+                ByteBuffer buf = ByteBuffer.allocate((int) size);
+                while (buf.hasRemaining() && channel.read(buf) >= 0) {
+                    // keep reading
+                }
+                buf.flip();
+                return Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(buf));
+            }
+            // The mapping remains valid after the channel is closed
+            return Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, size)));
+        }
+    }
+
     static class SanityCheckDecoder extends JZlibDecoder {
 
         SanityCheckDecoder() {
@@ -187,27 +399,54 @@ public final class FileResources implements StaticResources {
         }
     }
 
-    private class FileResource2 implements Resource {
+    /**
+     * The bytes of a file as of one point in time, with any compressed
+     * versions of it.
+     */
+    private static final class Content {
 
-        ByteBuf bytes;
-        ByteBuf compressed;
-        private String hash;
+        final ByteBuf bytes;
+        final ByteBuf compressed;
+        final Map<Precompressed.Encoding, ByteBuf> variants;
+        final long lastModified;
+
+        Content(ByteBuf bytes, ByteBuf compressed, Map<Precompressed.Encoding, ByteBuf> variants, long lastModified) {
+            this.bytes = bytes;
+            this.compressed = compressed;
+            this.variants = variants;
+            this.lastModified = lastModified;
+        }
+
+        Content withCompressed(ByteBuf compressed) {
+            return new Content(bytes, compressed, variants, lastModified);
+        }
+    }
+
+    private class FileResource2 {
+
+        // Null until first requested, in lazy mode
+        private volatile Content content;
+        private volatile String hash;
+        private int generation;
         final String name;
-        private int length;
         private final File file;
-        private long lastModified;
         final Duration maxAge;
 
         FileResource2(String name, Duration maxAge) throws Exception {
             Checks.notNull("name", name);
             this.name = name;
             file = new File(dir, name);
-            load();
             this.maxAge = maxAge;
+            if (lazy) {
+                hashInBackground();
+            } else {
+                load();
+            }
         }
 
         private synchronized void load() throws Exception {
             ByteBuf bytes = allocator.directBuffer((int) file.length());
+            String hash;
             try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
                 if (in == null) {
                     throw new FileNotFoundException(name);
@@ -219,107 +458,297 @@ public final class FileResources implements StaticResources {
                     }
                 }
             }
-            lastModified = file.lastModified();
+            long lastModified = file.lastModified();
             bytes.retain();
-            this.bytes = Unpooled.unreleasableBuffer(bytes);
-            if (internalGzip) {
-                int sizeEstimate = (int) Math.ceil(bytes.readableBytes() * 1.001) + 12;
-                ByteBuf compressedBuffer = allocator.directBuffer(sizeEstimate);
-                gzip(bytes, compressedBuffer);
-                bytes.resetReaderIndex();
-                this.compressed = Unpooled.unreleasableBuffer(compressedBuffer);
-                assert check();
-                bytes.resetReaderIndex();
-                compressedBuffer.resetReaderIndex();
+            Map<Precompressed.Encoding, ByteBuf> variants = new EnumMap<>(Precompressed.Encoding.class);
+            for (Precompressed.Encoding enc : Precompressed.Encoding.values()) {
+                File sidecar = enc.existingSidecar(file);
+                if (sidecar != null) {
+                    byte[] variantBytes = Files.readAllBytes(sidecar.toPath());
+                    ByteBuf buf = allocator.directBuffer(variantBytes.length);
+                    buf.writeBytes(variantBytes);
+                    variants.put(enc, Unpooled.unreleasableBuffer(buf));
+                }
+            }
+            ByteBuf compressed;
+            // If there are precompressed versions, we never compress
+            if (internalGzip && variants.isEmpty()) {
+                compressed = gzipped(bytes);
             } else {
                 compressed = null;
             }
             bytes.resetReaderIndex();
-            this.bytes = bytes;
-            length = bytes.readableBytes();
+            this.hash = hash;
+            this.content = new Content(bytes, compressed, variants, lastModified);
         }
 
-        private boolean check() throws Exception {
-            SanityCheckDecoder y = new SanityCheckDecoder();
-            ByteBuf test = allocator.buffer(bytes.readableBytes());
-            try {
-                y.decode(null, compressed, Collections.<Object>singletonList(test));
-                compressed.resetReaderIndex();
-                byte[] a = new byte[bytes.readableBytes()];
-                bytes.readBytes(a);
-                byte[] b = new byte[test.readableBytes()];
-                test.readBytes(b);
-                if (!Arrays.equals(a, b)) {
-                    throw new IllegalStateException("Compressed data differs. Orig length " + a.length
-                            + " result length " + b.length + "\n.  ORIG:\n" + new String(a) + "\n\nNEW:\n" + new String(b));
+        private ByteBuf gzipped(ByteBuf bytes) throws Exception {
+            int sizeEstimate = (int) Math.ceil(bytes.readableBytes() * 1.001) + 12;
+            ByteBuf compressedBuffer = allocator.directBuffer(sizeEstimate);
+            gzip(bytes.duplicate(), compressedBuffer);
+            ByteBuf compressed = Unpooled.unreleasableBuffer(compressedBuffer);
+            assert check(bytes.duplicate(), compressed.duplicate());
+            return compressed;
+        }
+
+        /**
+         * Memory-map the file and its precompressed siblings; the mappings
+         * live until they are garbage collected, so nothing needs releasing.
+         * Small files are copied instead.
+         */
+        private Content map() throws IOException {
+            long lastModified = file.lastModified();
+            ByteBuf bytes = mapFile(file);
+            Map<Precompressed.Encoding, ByteBuf> variants = new EnumMap<>(Precompressed.Encoding.class);
+            for (Precompressed.Encoding enc : Precompressed.Encoding.values()) {
+                File sidecar = enc.existingSidecar(file);
+                if (sidecar != null) {
+                    variants.put(enc, mapFile(sidecar));
                 }
-                bytes.resetReaderIndex();
-            } finally {
-                test.release();
             }
-            return true;
+            return new Content(bytes, null, variants, lastModified);
         }
 
-        @Override
-        public void decorateResponse(HttpEvent evt, String path, Response response, boolean chunked) {
-            // XXX would be nicer not to hit the filesystem every time here
-            if (file.lastModified() != lastModified) {
+        private Content content() {
+            Content result = content;
+            if (result == null || (!watching && file.lastModified() != result.lastModified)) {
+                synchronized (this) {
+                    result = content;
+                    if (result == null || (!watching && file.lastModified() != result.lastModified)) {
+                        try {
+                            if (lazy) {
+                                content = result = map();
+                                if (internalGzip && result.variants.isEmpty()) {
+                                    gzipInBackground(result);
+                                }
+                                if (!watching) {
+                                    hashInBackground();
+                                }
+                            } else {
+                                load();
+                                result = content;
+                            }
+                        } catch (Exception ex) {
+                            if (result == null) {
+                                return Exceptions.chuck(ex);
+                            }
+                            Exceptions.printStackTrace(ex);
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Called when the file or one of its siblings has changed on disk.
+         */
+        void invalidate() {
+            if (lazy) {
+                synchronized (this) {
+                    // Together, so content and hash never disagree
+                    content = null;
+                    hashInBackground();
+                }
+            } else {
                 try {
                     load();
                 } catch (Exception ex) {
                     Exceptions.printStackTrace(ex);
                 }
             }
-            String ua = evt.header("User-Agent");
-            if (ua != null && !ua.contains("MSIE")) {
-//                page.getResponseHeaders().addVaryHeader(Headers.ACCEPT_ENCODING);
-                response.add(Headers.VARY, new HeaderValueType<?>[]{Headers.ACCEPT_ENCODING});
-            }
-            CacheControl cc = new CacheControl(CacheControlTypes.Public, CacheControlTypes.must_revalidate)
-                    .add(CacheControlTypes.max_age, maxAge);
-            response.add(Headers.CACHE_CONTROL, cc)
-                    .add(Headers.LAST_MODIFIED, TimeUtil.fromUnixTimestamp(lastModified).with(MILLI_OF_SECOND, 0))
-                    .add(Headers.ETAG, hash);
-//            page.getReponseHeaders().setContentLength(getLength());
-            MimeType type = getContentType();
-            if (type == null && debug) {
-                System.err.println("Null content type for " + name);
-            }
-            if (type != null) {
-                response.add(Headers.CONTENT_TYPE, type);
-            }
-            if (internalGzip) {
-                // Flag it so the standard compressor ignores us
-                response.add(Headers.header("X-Internal-Compress"), "true");
-            }
-            if (chunked) {
-                response.add(Headers.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED.toString());
-            }
-            if (isGzip(evt)) {
-                response.add(Headers.CONTENT_ENCODING, HttpHeaderValues.GZIP);
-                if (!chunked) {
-                    response.add(Headers.CONTENT_LENGTH, (long) compressed.readableBytes());
+        }
+
+        private void hashInBackground() {
+            int gen;
+            synchronized (this) {
+                gen = ++generation;
+                hash = null;
+            }
+            background.submit(() -> {
+                String result;
+                try (HashingOutputStream hashOut = HashingOutputStream.sha1(Streams.nullOutputStream())) {
+                    try (InputStream in = new FileInputStream(file)) {
+                        Streams.copy(in, hashOut, 8192);
+                    }
+                    result = hashOut.getHashAsString();
+                } catch (IOException ex) {
+                    // Deleted or unreadable - the watcher will deal with it
+                    return;
                 }
-            } else {
-                if (!chunked) {
-                    response.add(Headers.CONTENT_LENGTH, (long) bytes.readableBytes());
+                synchronized (this) {
+                    if (generation == gen) {
+                        hash = result;
+                    }
+                }
+            });
+        }
+
+        private void gzipInBackground(Content c) {
+            background.submit(() -> {
+                try {
+                    ByteBuf compressed = gzipped(c.bytes);
+                    synchronized (this) {
+                        if (content == c) {
+                            content = c.withCompressed(compressed);
+                        }
+                    }
+                } catch (Exception ex) {
+                    Exceptions.printStackTrace(ex);
+                }
+            });
+        }
+
+        /**
+         * Get the hash of the file's content, computing it now if the
+         * background hash has not finished - fingerprinted URLs must not
+         * change unless the content does, as a stat-based ETag would.
+         */
+        String contentHash() {
+            for (;;) {
+                // Loads it again first, if the file has changed
+                Content c = content();
+                int gen;
+                synchronized (this) {
+                    if (content != c) {
+                        // Changed while we were loading it
+                        continue;
+                    }
+                    if (hash != null) {
+                        return hash;
+                    }
+                    gen = generation;
+                }
+                String result;
+                try (HashingOutputStream hashOut = HashingOutputStream.sha1(Streams.nullOutputStream())) {
+                    c.bytes.getBytes(c.bytes.readerIndex(), hashOut, c.bytes.readableBytes());
+                    result = hashOut.getHashAsString();
+                } catch (IOException ex) {
+                    return Exceptions.chuck(ex);
+                }
+                synchronized (this) {
+                    // Unless the file changed meanwhile, save the background
+                    // thread the trouble
+                    if (generation == gen && hash == null) {
+                        hash = result;
+                    }
                 }
+                return result;
             }
-            response.chunked(chunked);
         }
 
-        @Override
-        public void attachBytes(HttpEvent evt, Response response, boolean chunked) {
-            if (isGzip(evt)) {
-                CompressedBytesSender sender = new CompressedBytesSender(compressed.copy(), !evt.requestsConnectionStayOpen(), chunked);
-                response.contentWriter(sender);
-            } else {
-                CompressedBytesSender c = new CompressedBytesSender(bytes.copy(), !evt.requestsConnectionStayOpen(), chunked);
-                response.contentWriter(c);
+        private String etag(Content c) {
+            String result = hash;
+            if (result == null) {
+                // Lazy mode and not hashed yet
+                result = Long.toString(c.lastModified, 36) + "-"
+                        + Integer.toString(c.bytes.readableBytes(), 36);
             }
+            return result;
+        }
+
+        private ByteBuf body(ByteBuf buf) {
+            // Mapped buffers are wrapped as unreleasable, so they can be
+            // shared; the others get released after writing
+            return lazy ? buf.duplicate() : buf.copy();
+        }
+
+        /**
+         * Get a view of the resource as it is now, so the headers and the
+         * bytes sent for one request come from the same version of the file.
+         */
+        Resource snapshot() {
+            return new Snapshot(content());
+        }
+
+        private final class Snapshot implements Resource {
+
+            private final Content c;
+
+            Snapshot(Content c) {
+                this.c = c;
+            }
+
+            @Override
+            public void decorateResponse(HttpEvent evt, String path, Response response, boolean chunked) {
+                Precompressed.Encoding variant = variant(c, evt);
+                String ua = evt.header("User-Agent");
+                if (!c.variants.isEmpty() || (ua != null && !ua.contains("MSIE"))) {
+//                    page.getResponseHeaders().addVaryHeader(Headers.ACCEPT_ENCODING);
+                    response.add(Headers.VARY, new HeaderValueType<?>[]{Headers.ACCEPT_ENCODING});
+                }
+                CacheControl cc = new CacheControl(CacheControlTypes.Public, CacheControlTypes.must_revalidate)
+                        .add(CacheControlTypes.max_age, maxAge);
+                String hash = etag(c);
+                response.add(Headers.CACHE_CONTROL, cc)
+                        .add(Headers.LAST_MODIFIED, TimeUtil.fromUnixTimestamp(c.lastModified).with(MILLI_OF_SECOND, 0))
+                        .add(Headers.ETAG, variant == null ? hash : hash + "-" + variant.headerValue);
+//                page.getReponseHeaders().setContentLength(getLength());
+                MimeType type = getContentType();
+                if (type == null && debug) {
+                    System.err.println("Null content type for " + name);
+                }
+                if (type != null) {
+                    response.add(Headers.CONTENT_TYPE, type);
+                }
+                if (internalGzip || !c.variants.isEmpty()) {
+                    // Flag it so the standard compressor ignores us
+                    response.add(Headers.header("X-Internal-Compress"), "true");
+                }
+                if (chunked) {
+                    response.add(Headers.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED.toString());
+                }
+                if (variant != null) {
+                    response.add(Headers.CONTENT_ENCODING, variant.headerValue);
+                    if (!chunked) {
+                        response.add(Headers.CONTENT_LENGTH, (long) c.variants.get(variant).readableBytes());
+                    }
+                } else if (c.compressed != null && isGzip(evt)) {
+                    response.add(Headers.CONTENT_ENCODING, HttpHeaderValues.GZIP);
+                    if (!chunked) {
+                        response.add(Headers.CONTENT_LENGTH, (long) c.compressed.readableBytes());
+                    }
+                } else {
+                    if (!chunked) {
+                        response.add(Headers.CONTENT_LENGTH, (long) c.bytes.readableBytes());
+                    }
+                }
+                response.chunked(chunked);
+            }
+
+            @Override
+            public void attachBytes(HttpEvent evt, Response response, boolean chunked) {
+                Precompressed.Encoding variant = variant(c, evt);
+                if (variant != null) {
+                    response.contentWriter(new CompressedBytesSender(body(c.variants.get(variant)),
+                            !evt.requestsConnectionStayOpen(), chunked));
+                } else if (c.compressed != null && isGzip(evt)) {
+                    CompressedBytesSender sender = new CompressedBytesSender(body(c.compressed), !evt.requestsConnectionStayOpen(), chunked);
+                    response.contentWriter(sender);
+                } else {
+                    CompressedBytesSender sender = new CompressedBytesSender(body(c.bytes), !evt.requestsConnectionStayOpen(), chunked);
+                    response.contentWriter(sender);
+                }
+            }
+
+            @Override
+            public MimeType getContentType() {
+                return FileResource2.this.getContentType();
+            }
+        }
+
+        private Precompressed.Encoding variant(Content c, HttpEvent evt) {
+            if (c.variants.isEmpty()) {
+                return null;
+            }
+            for (Precompressed.Encoding enc : Precompressed.acceptable(evt.header(Headers.ACCEPT_ENCODING))) {
+                if (c.variants.containsKey(enc)) {
+                    return enc;
+                }
+            }
+            return null;
         }
 
-        @Override
         public MimeType getContentType() {
             MimeType mt = types.get(name);
             return mt;
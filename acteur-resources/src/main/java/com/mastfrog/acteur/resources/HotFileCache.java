@@ -0,0 +1,222 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.resources;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.mastfrog.acteur.resources.DynamicFileResources.FileInfo;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.IllegalReferenceCountException;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Holds the bytes of small, frequently requested files, and their gzipped
+ * form, in direct memory so DynamicFileResources can send them without
+ * touching the disk. A file is only admitted once it has been requested some
+ * number of times, so a crawler fetching many files once does not push out
+ * the handful that are requested constantly; the total size of cached content
+ * is bounded, and an entry is discarded as soon as the cached metadata shows
+ * a different timestamp or length for the file.
+ *
+ * @author Tim Boudreau
+ */
+final class HotFileCache implements AutoCloseable {
+
+    private final Cache<File, HotFile> files;
+    private final Cache<File, AtomicInteger> hits;
+    private final Set<File> loading = ConcurrentHashMap.newKeySet();
+    private final long maxFileSize;
+    private final int minHits;
+    private final Executor background;
+
+    HotFileCache(long maxBytes, long maxFileSize, int minHits, int maxTracked, Executor background) {
+        this.maxFileSize = maxFileSize;
+        this.minHits = minHits;
+        this.background = background;
+        files = CacheBuilder.newBuilder()
+                .concurrencyLevel(5)
+                .maximumWeight(maxBytes)
+                .weigher((File file, HotFile hot) -> hot.weight())
+                .removalListener((RemovalNotification<File, HotFile> notification)
+                        -> notification.getValue().release())
+                .build();
+        hits = CacheBuilder.newBuilder()
+                .concurrencyLevel(5)
+                .maximumSize(maxTracked)
+                .build();
+    }
+
+    /**
+     * Get the cached content of a file, if it is current, counting the
+     * request and loading the file in the background if it has now been
+     * requested often enough.
+     *
+     * @param file The file
+     * @param info Its current metadata
+     * @param compress Whether a gzipped copy should be kept
+     * @return The cached content, or null
+     */
+    HotFile get(File file, FileInfo info, boolean compress) {
+        if (!info.readable || info.length > maxFileSize) {
+            return null;
+        }
+        HotFile result = files.getIfPresent(file);
+        if (result != null) {
+            if (result.isCurrent(info)) {
+                return result;
+            }
+            files.asMap().remove(file, result);
+        }
+        AtomicInteger count = hits.asMap().computeIfAbsent(file, f -> new AtomicInteger());
+        if (count.incrementAndGet() >= minHits && loading.add(file)) {
+            background.execute(() -> {
+                try {
+                    load(file, info, compress);
+                } finally {
+                    loading.remove(file);
+                }
+            });
+        }
+        return null;
+    }
+
+    private void load(File file, FileInfo info, boolean compress) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file.toPath());
+        } catch (IOException ex) {
+            // Deleted or unreadable - the metadata will catch up
+            return;
+        }
+        if (bytes.length != info.length || file.lastModified() != info.lastModified) {
+            // Changed since the metadata was read; try again when it is current
+            return;
+        }
+        ByteBuf gzipped = null;
+        if (compress) {
+            byte[] gz = gzip(bytes);
+            if (gz.length < bytes.length) {
+                gzipped = directCopy(gz);
+            }
+        }
+        files.put(file, new HotFile(info.lastModified, info.length, directCopy(bytes), gzipped));
+    }
+
+    private static ByteBuf directCopy(byte[] bytes) {
+        // Unpooled, since these are long-lived and would otherwise pin
+        // chunks of the pooled allocator's arenas
+        return Unpooled.directBuffer(bytes.length, bytes.length).writeBytes(bytes).asReadOnly();
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out, 8192) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gz.write(bytes);
+        } catch (IOException ex) {
+            // ByteArrayOutputStream does not throw
+            throw new AssertionError(ex);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public void close() {
+        files.invalidateAll();
+        hits.invalidateAll();
+    }
+
+    static final class HotFile {
+
+        private final long lastModified;
+        private final long length;
+        private final ByteBuf content;
+        private final ByteBuf gzipped;
+
+        HotFile(long lastModified, long length, ByteBuf content, ByteBuf gzipped) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.content = content;
+            this.gzipped = gzipped;
+        }
+
+        boolean isCurrent(FileInfo info) {
+            return info.lastModified == lastModified && info.length == length;
+        }
+
+        /**
+         * Get a retained duplicate of the file's bytes, which the caller must
+         * release (writing it to a channel does that).
+         *
+         * @return A buffer, or null if this entry has been evicted
+         */
+        ByteBuf content() {
+            return duplicate(content);
+        }
+
+        /**
+         * Get a retained duplicate of the file's gzipped bytes.
+         *
+         * @return A buffer, or null if this entry has been evicted, or the
+         * file was not worth compressing
+         */
+        ByteBuf gzipped() {
+            return gzipped == null ? null : duplicate(gzipped);
+        }
+
+        private static ByteBuf duplicate(ByteBuf buf) {
+            try {
+                return buf.retainedDuplicate();
+            } catch (IllegalReferenceCountException ex) {
+                // Evicted and released between lookup and use
+                return null;
+            }
+        }
+
+        int weight() {
+            return content.capacity() + (gzipped == null ? 0 : gzipped.capacity());
+        }
+
+        void release() {
+            content.release();
+            if (gzipped != null) {
+                gzipped.release();
+            }
+        }
+    }
+}
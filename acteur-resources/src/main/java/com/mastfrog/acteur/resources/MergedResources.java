@@ -1,4 +1,4 @@
-/* 
+/*
  * The MIT License
  *
  * Copyright 2013 Tim Boudreau.
@@ -23,29 +23,112 @@
  */
 package com.mastfrog.acteur.resources;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
+import com.mastfrog.giulius.annotations.Setting;
+import com.mastfrog.settings.Settings;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * Combines several StaticResources. Delegates which list their resources via
+ * getPatterns() are indexed, so finding the one which serves a path is a
+ * single lookup, and the index is rebuilt if one of them returns a different
+ * set of patterns (as FileResources does when watching for changes);
+ * delegates which cannot list their resources, such as DynamicFileResources,
+ * are asked in turn. Paths nothing serves are remembered for a while, so
+ * floods of requests for nonexistent files stay cheap.
  *
  * @author Tim Boudreau
  */
 public class MergedResources implements StaticResources {
 
+    /**
+     * The maximum number of paths which were not found to remember.
+     */
+    @Setting(value = "The number of paths not found in any of its delegates that MergedResources remembers",
+            type = Setting.ValueType.INTEGER, defaultValue = "10000")
+    public static final String SETTINGS_KEY_NEGATIVE_CACHE_SIZE = "merged.resources.negative.cache.size";
+    private static final int DEFAULT_NEGATIVE_CACHE_SIZE = 10000;
+    /**
+     * How long to remember paths which were not found; this bounds how long
+     * it takes a file newly added to a delegate which is not indexed to be
+     * found.
+     */
+    @Setting(value = "Milliseconds for which MergedResources remembers that a path was not found",
+            type = Setting.ValueType.INTEGER, defaultValue = "5000")
+    public static final String SETTINGS_KEY_NEGATIVE_CACHE_MILLIS = "merged.resources.negative.cache.millis";
+    private static final int DEFAULT_NEGATIVE_CACHE_MILLIS = 5000;
     private final StaticResources[] resources;
+    private final String[][] indexedPatterns;
+    private volatile Map<String, Integer> index;
+    private volatile String[] patterns;
+    private final Cache<String, Boolean> missing;
     private boolean warned;
 
-    @Inject
     public MergedResources(List<StaticResources> all) {
+        this(all, Settings.EMPTY);
+    }
+
+    @Inject
+    public MergedResources(List<StaticResources> all, Settings settings) {
         resources = all.toArray(new StaticResources[all.size()]);
+        indexedPatterns = new String[resources.length][];
+        missing = CacheBuilder.newBuilder()
+                .concurrencyLevel(5)
+                .maximumSize(Math.max(1, settings.getInt(SETTINGS_KEY_NEGATIVE_CACHE_SIZE, DEFAULT_NEGATIVE_CACHE_SIZE)))
+                .expireAfterWrite(Math.max(1, settings.getInt(SETTINGS_KEY_NEGATIVE_CACHE_MILLIS,
+                        DEFAULT_NEGATIVE_CACHE_MILLIS)), TimeUnit.MILLISECONDS)
+                .build();
+        reindex();
     }
 
     @Override
     public Resource get(String path) {
+        if (missing.getIfPresent(path) != null) {
+            return null;
+        }
+        Map<String, Integer> index = index();
+        Integer owner = index.get(path);
+        if (owner == null) {
+            String logicalName = AssetUrls.logicalName(path);
+            if (logicalName != null) {
+                owner = index.get(logicalName);
+            }
+        }
+        // Delegates which are not indexed, and come before the one which
+        // has the path, still get the first chance to serve it
+        int limit = owner == null ? resources.length : owner;
+        for (int i = 0; i < limit; i++) {
+            if (indexedPatterns[i] == null) {
+                Resource result = resources[i].get(path);
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+        if (owner != null) {
+            Resource result = resources[owner].get(path);
+            if (result == null) {
+                // Removed since the index was built
+                result = probeAll(path);
+            }
+            if (result != null) {
+                return result;
+            }
+        }
+        missing.put(path, Boolean.TRUE);
+        return null;
+    }
+
+    private Resource probeAll(String path) {
         for (StaticResources s : resources) {
             Resource result = s.get(path);
             if (result != null) {
@@ -56,23 +139,66 @@ public class MergedResources implements StaticResources {
     }
 
     @Override
-    public String[] getPatterns() {
-        List<String> result = new ArrayList<>();
-        for (StaticResources r : resources) {
-            String[] pats = r.getPatterns();
+    public String fingerprint(String path) {
+        Integer owner = index().get(path);
+        if (owner != null) {
+            return resources[owner].fingerprint(path);
+        }
+        for (StaticResources s : resources) {
+            if (s.get(path) != null) {
+                return s.fingerprint(path);
+            }
+        }
+        return null;
+    }
+
+    private Map<String, Integer> index() {
+        for (int i = 0; i < resources.length; i++) {
+            // Implementations in this package hand out the same array until
+            // something changes, so this is usually an identity check
+            String[] pats = resources[i].getPatterns();
+            if (pats != indexedPatterns[i]) {
+                if (Arrays.equals(pats, indexedPatterns[i])) {
+                    indexedPatterns[i] = pats;
+                    continue;
+                }
+                reindex();
+                break;
+            }
+        }
+        return index;
+    }
+
+    private synchronized void reindex() {
+        Map<String, Integer> result = new HashMap<>();
+        List<String> all = new ArrayList<>();
+        for (int i = 0; i < resources.length; i++) {
+            String[] pats = resources[i].getPatterns();
+            indexedPatterns[i] = pats;
             if (pats != null) {
-                result.addAll(Arrays.asList(r.getPatterns()));
+                for (String pat : pats) {
+                    result.putIfAbsent(pat, i);
+                }
+                all.addAll(Arrays.asList(pats));
             }
         }
         if (!warned) {
             warned = true;
-            Set<String> s = new HashSet<>(result);
-            if (s.size() != result.size()) {
+            Set<String> s = new HashSet<>(all);
+            if (s.size() != all.size()) {
                 if (Boolean.getBoolean("acteur.debug")) {
-                    System.err.println("Duplicate resources in " + result);
+                    System.err.println("Duplicate resources in " + all);
                 }
             }
         }
-        return result.isEmpty() ? null : result.toArray(new String[result.size()]);
+        patterns = all.isEmpty() ? null : all.toArray(new String[all.size()]);
+        index = result;
+        missing.invalidateAll();
+    }
+
+    @Override
+    public String[] getPatterns() {
+        index();
+        return patterns;
     }
 }
@@ -0,0 +1,178 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.resources;
+
+import com.mastfrog.acteur.server.QValues;
+import io.netty.util.AsciiString;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds precompressed siblings of files - <code>foo.js.br</code>,
+ * <code>foo.js.zst</code> or <code>foo.js.gz</code> for <code>foo.js</code>,
+ * as frontend build tools produce - and negotiates which one, if any, to send
+ * for a request's Accept-Encoding header.
+ *
+ * @author Tim Boudreau
+ */
+final class Precompressed {
+
+    private Precompressed() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Supported sidecar encodings, in order of preference when the client
+     * accepts more than one with the same q-value.
+     */
+    enum Encoding {
+        BROTLI("br", ".br"),
+        ZSTD("zstd", ".zst"),
+        GZIP("gzip", ".gz");
+        static final List<String> NAMES;
+        final AsciiString headerValue;
+        final String suffix;
+
+        Encoding(String headerValue, String suffix) {
+            this.headerValue = AsciiString.of(headerValue);
+            this.suffix = suffix;
+        }
+
+        static {
+            List<String> names = new ArrayList<>(3);
+            for (Encoding enc : values()) {
+                names.add(enc.headerValue.toString());
+            }
+            NAMES = Collections.unmodifiableList(names);
+        }
+
+        File sidecar(File file) {
+            return new File(file.getParentFile(), file.getName() + suffix);
+        }
+
+        /**
+         * Get the sidecar file for the passed file, if it exists, is
+         * readable, and is not older than the file.
+         *
+         * @param file A file
+         * @return The sidecar or null
+         */
+        File existingSidecar(File file) {
+            File result = sidecar(file);
+            if (result.isFile() && result.canRead() && result.lastModified() >= file.lastModified()) {
+                return result;
+            }
+            return null;
+        }
+
+        static Encoding forSidecarName(String name) {
+            for (Encoding enc : values()) {
+                if (name.endsWith(enc.suffix) && name.length() > enc.suffix.length()) {
+                    return enc;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Find the sidecar to send for a file, if any.
+     *
+     * @param file The file
+     * @param acceptEncoding The Accept-Encoding header, possibly null
+     * @return A variant, or null if there is no usable sidecar
+     */
+    static Variant find(File file, CharSequence acceptEncoding) {
+        for (Encoding enc : acceptable(acceptEncoding)) {
+            File sidecar = enc.existingSidecar(file);
+            if (sidecar != null) {
+                return new Variant(enc, sidecar, sidecar.length());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the sidecar to send from a set of already-located ones.
+     *
+     * @param sidecars The sidecars of some file
+     * @param acceptEncoding The Accept-Encoding header, possibly null
+     * @return A variant, or null if there is no usable sidecar
+     */
+    static Variant find(Map<Encoding, Variant> sidecars, CharSequence acceptEncoding) {
+        if (sidecars.isEmpty()) {
+            return null;
+        }
+        for (Encoding enc : acceptable(acceptEncoding)) {
+            Variant result = sidecars.get(enc);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the encodings an Accept-Encoding header accepts, best first -
+     * highest q-value, then our order of preference.
+     *
+     * @param acceptEncoding The header value, possibly null
+     * @return A list of encodings
+     */
+    static List<Encoding> acceptable(CharSequence acceptEncoding) {
+        List<String> names = QValues.acceptableEncodings(acceptEncoding, Encoding.NAMES);
+        List<Encoding> result = new ArrayList<>(names.size());
+        for (String name : names) {
+            result.add(Encoding.values()[Encoding.NAMES.indexOf(name)]);
+        }
+        return result;
+    }
+
+    static final class Variant {
+
+        final Encoding encoding;
+        final File file;
+        final long length;
+
+        Variant(Encoding encoding, File file, long length) {
+            this.encoding = encoding;
+            this.file = file;
+            this.length = length;
+        }
+
+        /**
+         * Derive the ETag for this variant from that of the original file,
+         * so each representation has its own.
+         *
+         * @param etag The original's etag
+         * @return An etag
+         */
+        String etag(String etag) {
+            return etag == null ? null : etag + "-" + encoding.headerValue;
+        }
+    }
+}
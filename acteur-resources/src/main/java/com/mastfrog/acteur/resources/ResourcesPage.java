@@ -93,8 +93,11 @@ public class ResourcesPage extends Page {
             path = URLDecoder.decode(path, "UTF-8");
             String[] patterns = res.getPatterns();
             if (patterns != null) {
+                // A fingerprinted URL from AssetUrls matches the pattern of
+                // the resource it names
+                String logicalName = AssetUrls.logicalName(path);
                 for (String pat : res.getPatterns()) {
-                    if (path.equals(pat)) {
+                    if (path.equals(pat) || pat.equals(logicalName)) {
                         Resource r = res.get(path);
                         if (r == null) {
                             reject();
@@ -47,4 +47,17 @@ public interface StaticResources {
 
     String[] getPatterns();
 
+    /**
+     * Get a short string derived from a hash of the current content of a
+     * resource, used by AssetUrls to construct URLs which change when the
+     * content does.
+     *
+     * @param path The path from the base dir to the file
+     * @return A fingerprint, or null if the resource does not exist or this
+     * implementation does not support fingerprinting
+     */
+    default String fingerprint(String path) {
+        return null;
+    }
+
 }
@@ -2,11 +2,13 @@ package com.mastfrog.acteur.resources.markup;
 
 import com.google.inject.name.Named;
 import com.mastfrog.acteur.Closables;
+import com.mastfrog.acteur.resources.ArchiveResources;
 import com.mastfrog.acteur.resources.DynamicFileResources;
 import com.mastfrog.acteur.resources.ExpiresPolicy;
 import com.mastfrog.acteur.resources.FileResources;
 import com.mastfrog.acteur.resources.MimeTypes;
 import com.mastfrog.acteur.resources.StaticResources;
+import static com.mastfrog.acteur.server.ServerModule.BACKGROUND_THREAD_POOL_NAME;
 import com.mastfrog.acteur.spi.ApplicationControl;
 import com.mastfrog.giulius.DeploymentMode;
 import com.mastfrog.giulius.annotations.Setting;
@@ -24,11 +26,14 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.ProtectionDomain;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.zip.GZIPInputStream;
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -54,6 +59,14 @@ import org.xeustechnologies.jtar.TarInputStream;
  * ("html.path") which should be a path to a folder on disk where the html files
  * to serve already are.</li>
  * <li>If the key is not set or it is set but the folder does not exist, look
+ * for an <i>uncompressed</i> tar or zip archive - either at the path in the
+ * setting SETTINGS_KEY_HTML_ARCHIVE_PATH ("html.archive.path"), or named
+ * like the gzipped tar archive described below but ending in
+ * <code>.tar</code> or <code>.zip</code>, in the same package as the
+ * application class. If one is found, its entries are served straight out of
+ * it by {@link ArchiveResources}, without unpacking anything (if it is inside
+ * a JAR, it is copied to the temporary directory once, as a single file).</li>
+ * <li>Otherwise, look
  * for an gzipped tar archive of HTML files (you can create one with the maven
  * assembly plugin) in the same package as the application class - by default it
  * will look for <code>html-files.tar.gz</code> in that package, or you can set
@@ -97,6 +110,13 @@ public class MarkupFiles implements Provider<StaticResources> {
     @Setting("MarkupFiles: Name of the archive of markup to serve (should be in tar.gz format).")
     public static final String SETTINGS_KEY_HTML_ARCHIVE_TAR_GZ_NAME = "archive.tar.gz.name";
     public static final String DEFAULT_HTML_ARCHIVE_TAR_GZ_NAME = "html-files";
+    /**
+     * Path to an uncompressed tar or zip archive of markup files, which will
+     * be served directly from the archive.
+     */
+    @Setting("MarkupFiles: Path to an uncompressed .tar or .zip archive of markup to serve "
+            + "directly from the archive, without unpacking it.")
+    public static final String SETTINGS_KEY_HTML_ARCHIVE_PATH = "html.archive.path";
     /**
      * Name for the &#064;Named binding of a <code>Class</code> object which
      * should be used for locating the html directory and the markup archive.
@@ -116,7 +136,8 @@ public class MarkupFiles implements Provider<StaticResources> {
 
     @Inject
     @SuppressWarnings("unchecked")
-    public MarkupFiles(@Named(GUICE_BINDING_CLASS_RELATIVE_MARKUP) Class type, Settings settings, MimeTypes types, DeploymentMode mode, ByteBufAllocator allocator, ExpiresPolicy policy, ShutdownHookRegistry onShutdown, ApplicationControl ctrl, Provider<Closables> clos) throws Exception {
+    public MarkupFiles(@Named(GUICE_BINDING_CLASS_RELATIVE_MARKUP) Class type, Settings settings, MimeTypes types, DeploymentMode mode, ByteBufAllocator allocator, ExpiresPolicy policy, ShutdownHookRegistry onShutdown, ApplicationControl ctrl, Provider<Closables> clos,
+            @Named(BACKGROUND_THREAD_POOL_NAME) ExecutorService background) throws Exception {
         String jarRelativeFolderName = settings.getString(SETTINGS_KEY_JAR_RELATIVE_FOLDER_NAME, DEFAULT_JAR_RELATIVE_FOLDER_NAME);
         // Find where we're running from and try to look up ../html
         File file = findFolderRelativeToJAR(type, jarRelativeFolderName);
@@ -137,16 +158,20 @@ public class MarkupFiles implements Provider<StaticResources> {
         }
         System.out.println("USING FILE " + file);
         boolean dynResources = file != null || settings.getBoolean(SETTINGS_KEY_USE_DYN_FILE_RESOURCES, DEFAULT_USE_DYN_FILE_RESOURCES);
+        String archiveName = settings.getString(SETTINGS_KEY_HTML_ARCHIVE_TAR_GZ_NAME, DEFAULT_HTML_ARCHIVE_TAR_GZ_NAME);
+        // If that fails, serve an uncompressed archive directly, if there is one
+        File archive = file == null ? findUncompressedArchive(type, archiveName, settings, onShutdown) : null;
         // If that fails, unpack the embedded archive of html into a unique
         // subdir of /tmp and serve from there
-        if (file == null) {
-            String archiveName = settings.getString(SETTINGS_KEY_HTML_ARCHIVE_TAR_GZ_NAME, DEFAULT_HTML_ARCHIVE_TAR_GZ_NAME);
+        if (file == null && archive == null) {
             file = unpackMarkupArchive(type, archiveName, onShutdown, ctrl);
         }
-        if (dynResources) {
-            resources = new DynamicFileResources(file, types, policy, ctrl, allocator, settings, clos);
+        if (archive != null) {
+            resources = new ArchiveResources(archive, types, policy, settings, onShutdown);
+        } else if (dynResources) {
+            resources = new DynamicFileResources(file, types, policy, ctrl, allocator, settings, clos, background, onShutdown);
         } else {
-            resources = new FileResources(file, types, mode, allocator, settings, policy);
+            resources = new FileResources(file, types, mode, allocator, settings, policy, onShutdown);
         }
     }
 
@@ -179,6 +204,39 @@ public class MarkupFiles implements Provider<StaticResources> {
         return result;
     }
 
+    private File findUncompressedArchive(Class<?> relativeTo, String archiveName, Settings settings,
+            ShutdownHookRegistry onShutdown) throws IOException, URISyntaxException {
+        String path = settings.getString(SETTINGS_KEY_HTML_ARCHIVE_PATH);
+        if (path != null) {
+            File f = new File(path);
+            if (!f.isFile()) {
+                throw new FileNotFoundException(SETTINGS_KEY_HTML_ARCHIVE_PATH + " is set, but "
+                        + f + " does not exist");
+            }
+            return f;
+        }
+        if (archiveName.endsWith(".tar.gz")) {
+            archiveName = archiveName.substring(0, archiveName.length() - ".tar.gz".length());
+        }
+        for (String ext : new String[]{".tar", ".zip"}) {
+            URL url = relativeTo.getResource(archiveName + ext);
+            if (url == null) {
+                continue;
+            }
+            if ("file".equals(url.getProtocol())) {
+                return new File(url.toURI());
+            }
+            // Inside a JAR - serving needs positional reads, so copy it out
+            File copy = File.createTempFile("html-", ext);
+            try (InputStream in = url.openStream()) {
+                Files.copy(in, copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            onShutdown.add(copy::delete);
+            return copy;
+        }
+        return null;
+    }
+
     private File unpackMarkupArchive(Class<?> relativeTo, String archiveName, ShutdownHookRegistry onShutdown, ApplicationControl ctrl) throws IOException, FileNotFoundException {
         File tmp = new File(System.getProperty("java.io.tmpdir"));
         String uniq = new RandomStrings().get(7) + "-" + Long.toString(System.currentTimeMillis(), 36);
@@ -0,0 +1,258 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.resources;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.mastfrog.acteur.RequestLogger;
+import com.mastfrog.acteur.resources.ResourcesApp.SilentRequestLogger;
+import static com.mastfrog.acteur.resources.ResourcesPage.SETTINGS_KEY_STATIC_RESOURCES_BASE_URL_PATH;
+import com.mastfrog.acteur.server.ServerModule;
+import com.mastfrog.acteur.util.Server;
+import com.mastfrog.acteur.util.ServerControl;
+import com.mastfrog.giulius.Dependencies;
+import com.mastfrog.giulius.DeploymentMode;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.shutdown.hooks.ShutdownHookRegistry;
+import com.mastfrog.util.net.PortFinder;
+import com.mastfrog.util.streams.Streams;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+import org.xeustechnologies.jtar.TarEntry;
+import org.xeustechnologies.jtar.TarOutputStream;
+
+/**
+ * Tests serving files straight out of uncompressed tar and zip archives.
+ *
+ * @author Tim Boudreau
+ */
+public class ArchiveResourcesTest {
+
+    private static final String INDEX = "<html><body><h1>Index</h1>" + String.join("", java.util.Collections.nCopies(50,
+            "<p>Some markup which is quite compressible</p>")) + "</body></html>\n";
+    private static final String APP = "function hello() { return 'hello'; }\n";
+    private static final String PAGE = "<html><body>A page in a subfolder</body></html>\n";
+    private static final String[] NAMES = {"index.html", "app.js", "app.js.gz", "sub/page.html"};
+    private File dir;
+    private File files;
+
+    @Before
+    public void createFiles() throws IOException {
+        dir = Files.createTempDirectory("ArchiveResourcesTest").toFile();
+        files = new File(dir, "files");
+        assertTrue(new File(files, "sub").mkdirs());
+        write("index.html", INDEX.getBytes(UTF_8));
+        write("app.js", APP.getBytes(UTF_8));
+        write("app.js.gz", gzip(APP.getBytes(UTF_8)));
+        write("sub/page.html", PAGE.getBytes(UTF_8));
+    }
+
+    @After
+    public void deleteDir() throws IOException {
+        try (Stream<Path> all = Files.walk(dir.toPath())) {
+            all.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testTar() throws Throwable {
+        File tar = new File(dir, "html.tar");
+        try (TarOutputStream out = new TarOutputStream(new FileOutputStream(tar))) {
+            out.putNextEntry(new TarEntry(new File(files, "sub"), "./sub/"));
+            for (String name : NAMES) {
+                File f = new File(files, name);
+                out.putNextEntry(new TarEntry(f, "./" + name));
+                out.write(Files.readAllBytes(f.toPath()));
+            }
+        }
+        testArchive(tar);
+    }
+
+    @Test
+    public void testZip() throws Throwable {
+        File zip = new File(dir, "html.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            for (String name : NAMES) {
+                byte[] bytes = Files.readAllBytes(new File(files, name).toPath());
+                ZipEntry entry = new ZipEntry(name);
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(bytes.length);
+                CRC32 crc = new CRC32();
+                crc.update(bytes);
+                entry.setCrc(crc.getValue());
+                // Make the local header's extra field differ in size from
+                // the central directory's
+                entry.setExtra(new byte[]{(byte) 0xCA, (byte) 0xFE, 4, 0, 1, 2, 3, 4});
+                out.putNextEntry(entry);
+                out.write(bytes);
+                out.closeEntry();
+            }
+        }
+        testArchive(zip);
+    }
+
+    @Test
+    public void testCompressedZipRejected() throws Throwable {
+        File zip = new File(dir, "deflated.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry("index.html"));
+            out.write(INDEX.getBytes(UTF_8));
+            out.closeEntry();
+        }
+        try {
+            new ArchiveResources(zip, new MimeTypes(), new DefaultExpiresPolicy(Settings.EMPTY, DeploymentMode.DEVELOPMENT), Settings.EMPTY, null);
+            fail("Deflated entries should be rejected");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("zip -0"));
+        }
+    }
+
+    private void testArchive(File archive) throws Throwable {
+        ArchiveResources direct = new ArchiveResources(archive, new MimeTypes(),
+                new DefaultExpiresPolicy(Settings.EMPTY, DeploymentMode.DEVELOPMENT), Settings.EMPTY, null);
+        assertEquals(Arrays.asList("app.js", "index.html", "sub/page.html"), Arrays.asList(direct.getPatterns()));
+        assertNull("Precompressed copies should not be served under their own names", direct.get("app.js.gz"));
+        assertNotNull(direct.get("sub/page.html"));
+
+        int port = new PortFinder().findAvailableServerPort();
+        Settings settings = Settings.builder()
+                .add("port", port)
+                .add("neverKeepAlive", false)
+                .add("cors.enabled", false)
+                .add(SETTINGS_KEY_STATIC_RESOURCES_BASE_URL_PATH, "static/(.*)")
+                .build();
+        Dependencies deps = new Dependencies(settings, new AbstractModule() {
+            @Override
+            protected void configure() {
+                install(new ServerModule<>(ResourcesApp.class));
+                bind(File.class).toInstance(archive);
+                bind(StaticResources.class).toProvider(ArchiveResourcesProvider.class);
+                bind(RequestLogger.class).to(SilentRequestLogger.class);
+            }
+        });
+        ServerControl ctrl = deps.getInstance(Server.class).start(port);
+        try {
+            String base = "http://localhost:" + port + "/static/";
+            HttpURLConnection conn = get(base + "index.html", null);
+            assertEquals(INDEX, body(conn));
+            String etag = conn.getHeaderField("ETag");
+            assertNotNull(etag);
+
+            conn = get(base + "index.html", "gzip");
+            assertEquals("Should be compressed on the fly", "gzip", conn.getHeaderField("Content-Encoding"));
+            assertEquals(INDEX, body(conn));
+
+            conn = get(base + "app.js", "gzip, br");
+            assertEquals("gzip", conn.getHeaderField("Content-Encoding"));
+            assertTrue(conn.getHeaderField("ETag"), conn.getHeaderField("ETag").contains("-gzip"));
+            assertEquals(APP, body(conn));
+
+            conn = get(base + "app.js", null);
+            assertEquals(APP, body(conn));
+
+            conn = get(base + "sub/page.html", null);
+            assertEquals(PAGE, body(conn));
+
+            conn = (HttpURLConnection) new URL(base + "app.js.gz").openConnection();
+            assertEquals(404, conn.getResponseCode());
+        } finally {
+            ctrl.shutdown(true);
+            deps.shutdown();
+        }
+    }
+
+    @Singleton
+    static final class ArchiveResourcesProvider implements Provider<StaticResources> {
+
+        private final StaticResources resources;
+
+        @Inject
+        ArchiveResourcesProvider(File archive, MimeTypes types, ExpiresPolicy policy, Settings settings,
+                ShutdownHookRegistry onShutdown) throws IOException {
+            resources = new ArchiveResources(archive, types, policy, settings, onShutdown);
+        }
+
+        @Override
+        public StaticResources get() {
+            return resources;
+        }
+    }
+
+    private void write(String name, byte[] bytes) throws IOException {
+        Files.write(new File(files, name).toPath(), bytes);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static HttpURLConnection get(String url, String acceptEncoding) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        if (acceptEncoding != null) {
+            conn.setRequestProperty("Accept-Encoding", acceptEncoding);
+        }
+        assertEquals(url, 200, conn.getResponseCode());
+        return conn;
+    }
+
+    private static String body(HttpURLConnection conn) throws IOException {
+        InputStream raw = conn.getInputStream();
+        if ("gzip".equals(conn.getHeaderField("Content-Encoding"))) {
+            raw = new GZIPInputStream(raw);
+        }
+        try (InputStream in = raw) {
+            return Streams.readString(in, UTF_8);
+        }
+    }
+}
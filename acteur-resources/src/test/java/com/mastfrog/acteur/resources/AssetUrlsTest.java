@@ -0,0 +1,187 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.resources;
+
+import com.google.inject.AbstractModule;
+import com.mastfrog.acteur.RequestLogger;
+import static com.mastfrog.acteur.resources.AssetUrls.SETTINGS_KEY_FINGERPRINT;
+import com.mastfrog.acteur.resources.ResourcesApp.MergedResourcesModule;
+import com.mastfrog.acteur.resources.ResourcesApp.SilentRequestLogger;
+import static com.mastfrog.acteur.resources.ResourcesPage.SETTINGS_KEY_STATIC_RESOURCES_BASE_URL_PATH;
+import com.mastfrog.acteur.server.ServerModule;
+import com.mastfrog.acteur.util.Server;
+import com.mastfrog.acteur.util.ServerControl;
+import com.mastfrog.giulius.Dependencies;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.util.net.PortFinder;
+import com.mastfrog.util.streams.Streams;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests serving resources under fingerprinted URLs.
+ *
+ * @author Tim Boudreau
+ */
+public class AssetUrlsTest {
+
+    private File dir;
+
+    @Before
+    public void createDir() throws IOException {
+        dir = Files.createTempDirectory("AssetUrlsTest").toFile();
+    }
+
+    @After
+    public void deleteDir() throws IOException {
+        try (Stream<Path> all = Files.walk(dir.toPath())) {
+            all.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testNames() {
+        String fp = AssetUrls.fingerprint("some-hash");
+        assertEquals(10, fp.length());
+        assertEquals(fp, AssetUrls.fingerprint("some-hash"));
+        assertNotEquals(fp, AssetUrls.fingerprint("other-hash"));
+        for (String name : new String[]{"app.js", "js/app.min.js", "LICENSE", "dir/.htaccess", "a.b/c"}) {
+            String fingerprinted = AssetUrls.fingerprintedName(name, fp);
+            assertTrue(fingerprinted, fingerprinted.contains(fp));
+            assertEquals(fingerprinted, name, AssetUrls.logicalName(fingerprinted));
+        }
+        assertEquals("js/app.min." + fp + ".js", AssetUrls.fingerprintedName("js/app.min.js", fp));
+        assertNull(AssetUrls.logicalName("js/app.min.js"));
+        assertNull(AssetUrls.logicalName("app.3f9a1c.js"));
+    }
+
+    @Test
+    public void testFingerprintedUrls() throws Throwable {
+        Files.write(new File(dir, "app.js").toPath(), "var x = 1;\n".getBytes(UTF_8));
+        int port = new PortFinder().findAvailableServerPort();
+        Settings settings = Settings.builder()
+                .add("port", port)
+                .add("neverKeepAlive", false)
+                .add("cors.enabled", false)
+                .add(SETTINGS_KEY_STATIC_RESOURCES_BASE_URL_PATH, "static/(.*)")
+                .add(SETTINGS_KEY_FINGERPRINT, true)
+                .build();
+        Dependencies deps = new Dependencies(settings, new AbstractModule() {
+            @Override
+            protected void configure() {
+                install(new ServerModule<>(ResourcesApp.class));
+                bind(File.class).toInstance(dir);
+                bind(StaticResources.class).to(MergedResources.class);
+                bind(ClasspathResourceInfo.class).toInstance(new ClasspathResourceInfo(ResourcesApp.class,
+                        "hello.txt", "another.txt"));
+                bind(new MergedResourcesModule.TL()).toProvider(MergedResourcesModule.P.class);
+                bind(RequestLogger.class).to(SilentRequestLogger.class);
+            }
+        });
+        ServerControl ctrl = deps.getInstance(Server.class).start(port);
+        try {
+            AssetUrls urls = deps.getInstance(AssetUrls.class);
+            String root = "http://localhost:" + port;
+            String hello;
+            try (InputStream in = ResourcesApp.class.getResourceAsStream("hello.txt")) {
+                hello = Streams.readString(in, UTF_8);
+            }
+
+            String helloUrl = urls.url("hello.txt");
+            assertTrue(helloUrl, helloUrl.startsWith("/static/hello.") && helloUrl.endsWith(".txt"));
+            HttpURLConnection conn = get(root + helloUrl);
+            assertEquals(hello, body(conn));
+            assertImmutable(conn, true);
+
+            String appUrl = urls.url("app.js");
+            assertEquals("/static/app.js", AssetUrls.logicalName(appUrl));
+            conn = get(root + appUrl);
+            assertEquals("var x = 1;\n", body(conn));
+            assertImmutable(conn, true);
+
+            conn = get(root + "/static/app.js");
+            assertEquals("var x = 1;\n", body(conn));
+            assertImmutable(conn, false);
+
+            assertEquals("/static/nothing.js", urls.url("nothing.js"));
+
+            File app = new File(dir, "app.js");
+            long lastModified = app.lastModified();
+            Files.write(app.toPath(), "var x = 2;\n".getBytes(UTF_8));
+            assertTrue(app.setLastModified(lastModified + 2000));
+            String newAppUrl = urls.url("app.js");
+            assertNotEquals("URL should change with the content", appUrl, newAppUrl);
+
+            // An out-of-date fingerprint gets current content, but not cached forever
+            conn = get(root + appUrl);
+            assertEquals("var x = 2;\n", body(conn));
+            assertImmutable(conn, false);
+
+            conn = get(root + newAppUrl);
+            assertEquals("var x = 2;\n", body(conn));
+            assertImmutable(conn, true);
+        } finally {
+            ctrl.shutdown(true);
+            deps.shutdown();
+        }
+    }
+
+    private static void assertImmutable(HttpURLConnection conn, boolean immutable) {
+        String cc = conn.getHeaderField("Cache-Control");
+        assertEquals(conn.getURL() + ": " + cc, immutable, cc != null && cc.contains("immutable"));
+        if (immutable) {
+            assertTrue(cc, cc.contains("max-age=31536000"));
+        } else {
+            assertFalse(cc, cc.contains("31536000"));
+        }
+    }
+
+    private static HttpURLConnection get(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        assertEquals(url, 200, conn.getResponseCode());
+        return conn;
+    }
+
+    private static String body(HttpURLConnection conn) throws IOException {
+        try (InputStream in = conn.getInputStream()) {
+            return Streams.readString(in, UTF_8);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.resources;
+
+import com.google.inject.AbstractModule;
+import com.mastfrog.acteur.RequestLogger;
+import com.mastfrog.acteur.resources.ResourcesApp.SilentRequestLogger;
+import static com.mastfrog.acteur.resources.ResourcesPage.SETTINGS_KEY_STATIC_RESOURCES_BASE_URL_PATH;
+import com.mastfrog.acteur.server.ServerModule;
+import com.mastfrog.acteur.util.Server;
+import com.mastfrog.acteur.util.ServerControl;
+import com.mastfrog.giulius.Dependencies;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.util.net.PortFinder;
+import com.mastfrog.util.streams.Streams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests that resources listed in a &#064;ClasspathResourceIndex are served
+ * using the gzipped copies and ETags generated at build time, and others
+ * are still served the old way.
+ *
+ * @author Tim Boudreau
+ */
+@ClasspathResourceIndex({"indexed.txt", "hello.txt", "edited.txt"})
+public class ClasspathResourceIndexTest {
+
+    @Test
+    public void testIndexIsUsed() throws Throwable {
+        String indexedEtag = indexedEtag("indexed.txt");
+        assertNotNull(ClasspathResourceIndexTest.class.getResource("indexed.txt.gz"));
+        // Too small to be worth compressing
+        assertNull(ClasspathResourceIndexTest.class.getResource("hello.txt.gz"));
+
+        String indexed = resource("indexed.txt");
+        int port = new PortFinder().findAvailableServerPort();
+        Dependencies deps = dependencies(port, "indexed.txt", "hello.txt", "another.txt");
+        ServerControl ctrl = deps.getInstance(Server.class).start(port);
+        try {
+            String base = "http://localhost:" + port + "/static/";
+            HttpURLConnection gz = fetch(base + "indexed.txt", "gzip");
+            assertEquals("gzip", gz.getHeaderField("Content-Encoding"));
+            assertEquals('"' + indexedEtag + '"', gz.getHeaderField("ETag"));
+            try (InputStream in = new GZIPInputStream(gz.getInputStream())) {
+                assertEquals(indexed, Streams.readString(in, UTF_8));
+            }
+
+            HttpURLConnection plain = fetch(base + "indexed.txt", null);
+            String enc = plain.getHeaderField("Content-Encoding");
+            assertTrue(enc, enc == null || "identity".equals(enc));
+            assertEquals('"' + indexedEtag + '"', plain.getHeaderField("ETag"));
+            assertEquals(indexed, body(plain));
+
+            // Not in the index - hashed at startup
+            HttpURLConnection another = fetch(base + "another.txt", null);
+            assertEquals(resource("another.txt"), body(another));
+            assertNotNull(another.getHeaderField("ETag"));
+
+            assertEquals(resource("hello.txt"), body(fetch(base + "hello.txt", null)));
+        } finally {
+            ctrl.shutdown(true);
+            deps.shutdown();
+        }
+    }
+
+    @Test
+    public void testSameLengthEditIsNoticed() throws Throwable {
+        String indexedEtag = indexedEtag("edited.txt");
+        // As when a resource is edited and copied to the class output by an
+        // incremental build which does not recompile the annotated class
+        Path file = Paths.get(ClasspathResourceIndexTest.class.getResource("edited.txt").toURI());
+        byte[] original = Files.readAllBytes(file);
+        String edited = new String(original, UTF_8).toUpperCase(Locale.ROOT);
+        assertEquals(original.length, edited.getBytes(UTF_8).length);
+        Files.write(file, edited.getBytes(UTF_8));
+        try {
+            int port = new PortFinder().findAvailableServerPort();
+            Dependencies deps = dependencies(port, "edited.txt");
+            ServerControl ctrl = deps.getInstance(Server.class).start(port);
+            try {
+                String url = "http://localhost:" + port + "/static/edited.txt";
+                HttpURLConnection plain = fetch(url, null);
+                assertEquals(edited, body(plain));
+                assertNotEquals('"' + indexedEtag + '"', plain.getHeaderField("ETag"));
+
+                // Not the build's gzipped copy of the old content
+                HttpURLConnection gz = fetch(url, "gzip");
+                assertEquals(plain.getHeaderField("ETag"), gz.getHeaderField("ETag"));
+                if ("gzip".equals(gz.getHeaderField("Content-Encoding"))) {
+                    try (InputStream in = new GZIPInputStream(gz.getInputStream())) {
+                        assertEquals(edited, Streams.readString(in, UTF_8));
+                    }
+                } else {
+                    assertEquals(edited, body(gz));
+                }
+            } finally {
+                ctrl.shutdown(true);
+                deps.shutdown();
+            }
+        } finally {
+            Files.write(file, original);
+        }
+    }
+
+    private static Dependencies dependencies(int port, String... names) throws IOException {
+        Settings settings = Settings.builder()
+                .add("port", port)
+                .add("neverKeepAlive", false)
+                .add("cors.enabled", false)
+                .add(SETTINGS_KEY_STATIC_RESOURCES_BASE_URL_PATH, "static/(.*)")
+                .build();
+        return new Dependencies(settings, new AbstractModule() {
+            @Override
+            protected void configure() {
+                install(new ServerModule<>(ResourcesApp.class));
+                bind(StaticResources.class).to(ClasspathResources.class);
+                bind(ClasspathResourceInfo.class).toInstance(new ClasspathResourceInfo(
+                        ClasspathResourceIndexTest.class, names));
+                bind(RequestLogger.class).to(SilentRequestLogger.class);
+            }
+        });
+    }
+
+    private static String indexedEtag(String name) throws IOException {
+        String index;
+        try (InputStream in = ClasspathResourceIndexTest.class.getResourceAsStream(ClasspathResourceIndex.INDEX_NAME)) {
+            assertNotNull("No index generated", in);
+            index = Streams.readString(in, UTF_8);
+        }
+        for (String line : index.split("\n")) {
+            if (line.startsWith(name + '\t')) {
+                return line.split("\t")[3];
+            }
+        }
+        throw new AssertionError("No " + name + " in " + index);
+    }
+
+    private static String resource(String name) throws IOException {
+        try (InputStream in = ClasspathResourceIndexTest.class.getResourceAsStream(name)) {
+            return Streams.readString(in, UTF_8);
+        }
+    }
+
+    private static HttpURLConnection fetch(String url, String acceptEncoding) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        if (acceptEncoding != null) {
+            conn.setRequestProperty("Accept-Encoding", acceptEncoding);
+        }
+        assertEquals(url, 200, conn.getResponseCode());
+        return conn;
+    }
+
+    private static String body(HttpURLConnection conn) throws IOException {
+        try (InputStream in = conn.getInputStream()) {
+            return Streams.readString(in, UTF_8);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.resources;
+
+import com.google.inject.AbstractModule;
+import com.mastfrog.acteur.RequestLogger;
+import static com.mastfrog.acteur.resources.DynamicFileResources.SETTINGS_KEY_METADATA_REFRESH_MILLIS;
+import static com.mastfrog.acteur.resources.DynamicFileResources.SETTINGS_KEY_USE_HASH_ETAG;
+import static com.mastfrog.acteur.resources.DynamicFileResources.SETTINGS_KEY_WATCH;
+import com.mastfrog.acteur.resources.ResourcesApp.SilentRequestLogger;
+import static com.mastfrog.acteur.resources.ResourcesPage.SETTINGS_KEY_STATIC_RESOURCES_BASE_URL_PATH;
+import com.mastfrog.acteur.server.ServerModule;
+import com.mastfrog.acteur.util.Server;
+import com.mastfrog.acteur.util.ServerControl;
+import com.mastfrog.giulius.Dependencies;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.settings.SettingsBuilder;
+import com.mastfrog.util.net.PortFinder;
+import com.mastfrog.util.streams.Streams;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that cached file metadata in DynamicFileResources is refreshed when
+ * files change, both periodically and via a WatchService, and that hash
+ * ETags are computed in the background.
+ *
+ * @author Tim Boudreau
+ */
+public class DynamicFileResourcesMetadataTest {
+
+    private static final PortFinder FINDER = new PortFinder();
+    private File dir;
+
+    @Before
+    public void createDir() throws IOException {
+        dir = Files.createTempDirectory("DynamicFileResourcesMetadataTest").toFile();
+    }
+
+    @After
+    public void deleteDir() throws IOException {
+        try (Stream<Path> all = Files.walk(dir.toPath())) {
+            all.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testPeriodicRefresh() throws Throwable {
+        testChangesNoticed(false);
+    }
+
+    @Test
+    public void testWatchService() throws Throwable {
+        testChangesNoticed(true);
+    }
+
+    @Test
+    public void testHashEtagsComputedInBackground() throws Throwable {
+        write("a.txt", "Same content");
+        write("b.txt", "Same content");
+        SettingsBuilder settings = Settings.builder().add(SETTINGS_KEY_USE_HASH_ETAG, true);
+        withServer(settings, base -> {
+            // Until hashed, the ETags are derived from inodes and differ
+            long deadline = System.currentTimeMillis() + 20000;
+            String a, b;
+            do {
+                a = etag(base + "a.txt");
+                b = etag(base + "b.txt");
+            } while (!a.equals(b) && System.currentTimeMillis() < deadline);
+            assertEquals("Same content should get the same hash ETag", a, b);
+        });
+    }
+
+    private void testChangesNoticed(boolean watch) throws Throwable {
+        write("file.txt", "Original content");
+        SettingsBuilder settings = Settings.builder()
+                .add(SETTINGS_KEY_WATCH, watch)
+                // With the WatchService, it should never need a periodic refresh
+                .add(SETTINGS_KEY_METADATA_REFRESH_MILLIS, watch ? 3_600_000 : 50);
+        withServer(settings, base -> {
+            assertEquals("Original content", get(base + "file.txt"));
+            String etag = etag(base + "file.txt");
+            assertNull(get(base + "other.txt"));
+
+            write("file.txt", "Changed, and longer, content");
+            awaitContent(base + "file.txt", "Changed, and longer, content");
+            assertNotEquals(etag, etag(base + "file.txt"));
+
+            // Negative results are cached too
+            write("other.txt", "Created later");
+            awaitContent(base + "other.txt", "Created later");
+
+            Files.delete(new File(dir, "other.txt").toPath());
+            awaitContent(base + "other.txt", null);
+        });
+    }
+
+    interface ServerTest {
+
+        void test(String baseUrl) throws Exception;
+    }
+
+    private void withServer(SettingsBuilder settings, ServerTest test) throws Throwable {
+        int port = FINDER.findAvailableServerPort();
+        settings.add("port", port)
+                .add("neverKeepAlive", false)
+                .add("cors.enabled", false)
+                .add(SETTINGS_KEY_STATIC_RESOURCES_BASE_URL_PATH, "static/(.*)");
+        Dependencies deps = new Dependencies(settings.build(), new AbstractModule() {
+            @Override
+            protected void configure() {
+                install(new ServerModule<>(ResourcesApp.class));
+                bind(File.class).toInstance(dir);
+                bind(StaticResources.class).to(DynamicFileResources.class);
+                bind(RequestLogger.class).to(SilentRequestLogger.class);
+            }
+        });
+        ServerControl ctrl = deps.getInstance(Server.class).start(port);
+        try {
+            test.test("http://localhost:" + port + "/static/");
+        } finally {
+            ctrl.shutdown(true);
+            deps.shutdown();
+        }
+    }
+
+    private void write(String name, String content) throws IOException {
+        File f = new File(dir, name);
+        long before = f.lastModified();
+        Files.write(f.toPath(), content.getBytes(UTF_8));
+        if (f.lastModified() == before) {
+            // Coarse timestamps on some filesystems
+            assertTrue(f.setLastModified(before + 1000));
+        }
+    }
+
+    private static void awaitContent(String url, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 20000;
+        String got;
+        do {
+            try {
+                got = get(url);
+            } catch (IOException ex) {
+                // A file deleted before its cached metadata is refreshed
+                // can abort the response
+                got = ex.toString();
+            }
+            if (expected == null ? got == null : expected.equals(got)) {
+                return;
+            }
+            Thread.sleep(25);
+        } while (System.currentTimeMillis() < deadline);
+        assertEquals(url, expected, got);
+    }
+
+    private static String etag(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        assertEquals(200, conn.getResponseCode());
+        conn.getInputStream().close();
+        return conn.getHeaderField("ETag");
+    }
+
+    private static String get(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        if (conn.getResponseCode() == 404) {
+            return null;
+        }
+        assertEquals(url, 200, conn.getResponseCode());
+        try (InputStream in = conn.getInputStream()) {
+            return Streams.readString(in, UTF_8);
+        }
+    }
+}
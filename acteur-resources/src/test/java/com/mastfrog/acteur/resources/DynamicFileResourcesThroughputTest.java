@@ -0,0 +1,236 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.resources;
+
+import com.google.inject.AbstractModule;
+import com.mastfrog.acteur.RequestLogger;
+import static com.mastfrog.acteur.resources.DynamicFileResources.SETTINGS_KEY_ZERO_COPY;
+import com.mastfrog.acteur.resources.ResourcesApp.SilentRequestLogger;
+import static com.mastfrog.acteur.resources.ResourcesPage.SETTINGS_KEY_STATIC_RESOURCES_BASE_URL_PATH;
+import com.mastfrog.acteur.server.ServerModule;
+import com.mastfrog.acteur.util.Server;
+import com.mastfrog.acteur.util.ServerControl;
+import com.mastfrog.giulius.Dependencies;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.util.net.PortFinder;
+import com.mastfrog.util.streams.Streams;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Serves a large file with and without zero-copy, checking the bytes (and
+ * those of single and multiple range requests) are right; and a large text
+ * file compressed on the fly. Run <code>main()</code> to measure the
+ * throughput of each.
+ *
+ * @author Tim Boudreau
+ */
+public class DynamicFileResourcesThroughputTest {
+
+    private static final int FILE_SIZE = 32 * 1024 * 1024;
+    private static final int ITERATIONS = 8;
+    private static final PortFinder FINDER = new PortFinder();
+    private static File dir;
+    private static File file;
+    private static File textFile;
+    private static byte[] digest;
+
+    @BeforeClass
+    public static void createLargeFile() throws Exception {
+        dir = Files.createTempDirectory("DynamicFileResourcesThroughputTest").toFile();
+        file = new File(dir, "large.bin");
+        byte[] bytes = new byte[FILE_SIZE];
+        new Random(23).nextBytes(bytes);
+        Files.write(file.toPath(), bytes);
+        digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+        textFile = new File(dir, "large.txt");
+        StringBuilder sb = new StringBuilder();
+        Random rnd = new Random(5);
+        while (sb.length() < FILE_SIZE / 2) {
+            sb.append("2026-10-19T00:00:00Z INFO request ").append(rnd.nextInt())
+                    .append(" served in ").append(rnd.nextInt(1000)).append("ms\n");
+        }
+        Files.write(textFile.toPath(), sb.toString().getBytes(ISO_8859_1));
+    }
+
+    @AfterClass
+    public static void deleteLargeFile() throws IOException {
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(textFile.toPath());
+        Files.deleteIfExists(dir.toPath());
+    }
+
+    @Test
+    public void testZeroCopyAndChunkedServeSameBytes() throws Throwable {
+        serve(false, 1);
+        serve(true, 1);
+    }
+
+    public static void main(String[] args) throws Throwable {
+        createLargeFile();
+        try {
+            double chunked = serve(false, ITERATIONS);
+            double zeroCopy = serve(true, ITERATIONS);
+            System.out.println(String.format("DynamicFileResources serving %d MB: zero-copy %.1f MB/s, "
+                    + "chunked %.1f MB/s", FILE_SIZE / (1024 * 1024), zeroCopy, chunked));
+        } finally {
+            deleteLargeFile();
+        }
+    }
+
+    @Test
+    public void testStreamingCompression() throws Throwable {
+        int port = FINDER.findAvailableServerPort();
+        ServerControl ctrl = null;
+        Dependencies deps = dependencies(port, true);
+        try {
+            ctrl = deps.getInstance(Server.class).start(port);
+            URL url = new URL("http://localhost:" + port + "/static/large.txt");
+            byte[] expected = Files.readAllBytes(textFile.toPath());
+            for (String encoding : new String[]{"gzip", "deflate"}) {
+                HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+                conn.setRequestProperty("Accept-Encoding", encoding);
+                assertEquals(200, conn.getResponseCode());
+                assertEquals(encoding, conn.getHeaderField("Content-Encoding"));
+                try (InputStream in = "gzip".equals(encoding)
+                        ? new GZIPInputStream(conn.getInputStream())
+                        : new InflaterInputStream(conn.getInputStream())) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream(expected.length);
+                    Streams.copy(in, out, 8192);
+                    assertArrayEquals("Wrong bytes for " + encoding, expected, out.toByteArray());
+                }
+            }
+        } finally {
+            if (ctrl != null) {
+                ctrl.shutdown(true);
+            }
+            deps.shutdown();
+        }
+    }
+
+    private static Dependencies dependencies(int port, boolean useZeroCopy) throws IOException {
+        Settings settings = Settings.builder()
+                .add("port", port)
+                .add("neverKeepAlive", false)
+                .add("cors.enabled", false)
+                .add(SETTINGS_KEY_STATIC_RESOURCES_BASE_URL_PATH, "static/(.*)")
+                .add(SETTINGS_KEY_ZERO_COPY, useZeroCopy)
+                .build();
+        return new Dependencies(settings, new AbstractModule() {
+            @Override
+            protected void configure() {
+                install(new ServerModule<>(ResourcesApp.class));
+                bind(File.class).toInstance(dir);
+                bind(StaticResources.class).to(DynamicFileResources.class);
+                bind(RequestLogger.class).to(SilentRequestLogger.class);
+            }
+        });
+    }
+
+    private static double serve(boolean useZeroCopy, int iterations) throws Throwable {
+        int port = FINDER.findAvailableServerPort();
+        Dependencies deps = dependencies(port, useZeroCopy);
+        ServerControl ctrl = deps.getInstance(Server.class).start(port);
+        try {
+            URL url = new URL("http://localhost:" + port + "/static/large.bin");
+            // Warm up, and check a range request while we're at it
+            fetch(url);
+            byte[] range = fetch(url, "bytes=1000-1999");
+            assertEquals(1000, range.length);
+            byte[] all = Files.readAllBytes(file.toPath());
+            assertArrayEquals(Arrays.copyOfRange(all, 1000, 2000), range);
+            assertMultipartRanges(url, all);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                byte[] got = fetch(url);
+                assertEquals(FILE_SIZE, got.length);
+                assertArrayEquals("Wrong bytes with zero-copy " + useZeroCopy,
+                        digest, MessageDigest.getInstance("SHA-1").digest(got));
+            }
+            double seconds = (System.nanoTime() - start) / 1_000_000_000D;
+            return ((double) FILE_SIZE * iterations) / (1024 * 1024) / seconds;
+        } finally {
+            ctrl.shutdown(true);
+            deps.shutdown();
+        }
+    }
+
+    private static void assertMultipartRanges(URL url, byte[] all) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestProperty("Range", "bytes=5000-5999,0-99");
+        assertEquals(206, conn.getResponseCode());
+        assertTrue(conn.getContentType(), conn.getContentType().startsWith("multipart/byteranges;"));
+        String body;
+        try (InputStream in = conn.getInputStream()) {
+            body = Streams.readString(in, ISO_8859_1);
+        }
+        String expected = new String(all, ISO_8859_1);
+        String first = "Content-Range: bytes 0-99/" + FILE_SIZE + "\r\n\r\n";
+        String second = "Content-Range: bytes 5000-5999/" + FILE_SIZE + "\r\n\r\n";
+        int firstStart = body.indexOf(first) + first.length();
+        int secondStart = body.indexOf(second) + second.length();
+        assertTrue(body, firstStart > first.length() && secondStart > firstStart);
+        assertEquals(expected.substring(0, 100), body.substring(firstStart, firstStart + 100));
+        assertEquals(expected.substring(5000, 6000), body.substring(secondStart, secondStart + 1000));
+    }
+
+    private static byte[] fetch(URL url) throws IOException {
+        return fetch(url, null);
+    }
+
+    private static byte[] fetch(URL url, String range) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        if (range != null) {
+            conn.setRequestProperty("Range", range);
+        }
+        assertEquals(range == null ? 200 : 206, conn.getResponseCode());
+        try (InputStream in = conn.getInputStream()) {
+            byte[] result = new byte[range == null ? FILE_SIZE : 1000];
+            int count = 0;
+            for (int read; (read = in.read(result, count, result.length - count)) > 0;) {
+                count += read;
+            }
+            assertEquals("Response too long", -1, in.read());
+            return count == result.length ? result : Arrays.copyOf(result, count);
+        }
+    }
+}
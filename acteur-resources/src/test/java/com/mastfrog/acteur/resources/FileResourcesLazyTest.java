@@ -0,0 +1,281 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.resources;
+
+import com.google.inject.AbstractModule;
+import com.mastfrog.acteur.RequestLogger;
+import static com.mastfrog.acteur.resources.FileResources.SETTINGS_KEY_LAZY;
+import com.mastfrog.acteur.resources.ResourcesApp.SilentRequestLogger;
+import static com.mastfrog.acteur.resources.ResourcesPage.SETTINGS_KEY_STATIC_RESOURCES_BASE_URL_PATH;
+import com.mastfrog.acteur.server.ServerModule;
+import com.mastfrog.acteur.util.Server;
+import com.mastfrog.acteur.util.ServerControl;
+import com.mastfrog.giulius.Dependencies;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.util.net.PortFinder;
+import com.mastfrog.util.streams.Streams;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests lazily memory-mapped FileResources, which watch their folder for
+ * changes. Run <code>main()</code> to compare startup cost with the default,
+ * eager mode.
+ *
+ * @author Tim Boudreau
+ */
+public class FileResourcesLazyTest {
+
+    private static final PortFinder FINDER = new PortFinder();
+    private static final int TREE_FILES = 256;
+    private static final int TREE_FILE_SIZE = 64 * 1024;
+    private File dir;
+
+    @Before
+    public void createDir() throws IOException {
+        dir = Files.createTempDirectory("FileResourcesLazyTest").toFile();
+    }
+
+    @After
+    public void deleteDir() throws IOException {
+        try (Stream<Path> all = Files.walk(dir.toPath())) {
+            all.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testChangesArePickedUp() throws Throwable {
+        write("hello.txt", "Hello world");
+        write("sub/other.txt", "Other file");
+        StringBuilder big = new StringBuilder();
+        while (big.length() < 128 * 1024) {
+            big.append("Large enough to be memory-mapped. ");
+        }
+        write("big.txt", big.toString());
+        int port = FINDER.findAvailableServerPort();
+        Dependencies deps = dependencies(port, true);
+        ServerControl ctrl = deps.getInstance(Server.class).start(port);
+        try {
+            String base = "http://localhost:" + port + "/static/";
+            assertEquals("Hello world", get(base + "hello.txt"));
+            assertEquals("Other file", get(base + "sub/other.txt"));
+            assertEquals(big.toString(), get(base + "big.txt"));
+            String etag = etag(base + "hello.txt");
+
+            write("hello.txt", "Goodbye, cruel world");
+            awaitContent(base + "hello.txt", "Goodbye, cruel world");
+            assertNotEquals(etag, etag(base + "hello.txt"));
+
+            write("sub/new.txt", "New file");
+            awaitContent(base + "sub/new.txt", "New file");
+
+            write("newdir/nested.txt", "In a new folder");
+            awaitContent(base + "newdir/nested.txt", "In a new folder");
+
+            Files.delete(new File(dir, "sub/new.txt").toPath());
+            awaitContent(base + "sub/new.txt", null);
+        } finally {
+            ctrl.shutdown(true);
+            deps.shutdown();
+        }
+    }
+
+    @Test
+    public void testLazyAndEagerModesFindSameFiles() throws Throwable {
+        createTree();
+        startup(true);
+        startup(false);
+    }
+
+    @Test
+    public void testFingerprintsDoNotDependOnHashingProgress() throws Throwable {
+        createTree();
+        Map<String, String> lazy = fingerprints(true);
+        assertEquals(lazy, fingerprints(false));
+    }
+
+    private Map<String, String> fingerprints(boolean lazy) throws Throwable {
+        Dependencies deps = dependencies(FINDER.findAvailableServerPort(), lazy);
+        try {
+            // Asked for straight away, while lazy mode is still hashing
+            // in the background
+            FileResources res = deps.getInstance(FileResources.class);
+            Map<String, String> result = new TreeMap<>();
+            for (String name : res.getPatterns()) {
+                result.put(name, res.fingerprint(name));
+            }
+            for (Map.Entry<String, String> e : result.entrySet()) {
+                assertEquals(e.getKey(), e.getValue(), res.fingerprint(e.getKey()));
+            }
+            return result;
+        } finally {
+            deps.shutdown();
+        }
+    }
+
+    public static void main(String[] args) throws Throwable {
+        FileResourcesLazyTest test = new FileResourcesLazyTest();
+        test.createDir();
+        try {
+            test.createTree();
+            // Warm up, so class loading and Guice's own startup are not measured
+            test.startup(true);
+            // Lazy first, since memory the eager mode takes is not given back
+            long before = residentMemory();
+            long lazyNanos = test.startup(true);
+            long lazyRss = residentMemory() - before;
+            before = residentMemory();
+            long eagerNanos = test.startup(false);
+            long eagerRss = residentMemory() - before;
+            System.out.println(String.format("FileResources startup over %d files of %d KB: eager %.1f ms, "
+                    + "lazy %.1f ms; resident memory grew by %d KB in eager mode, %d KB in lazy mode",
+                    TREE_FILES, TREE_FILE_SIZE / 1024, eagerNanos / 1_000_000D, lazyNanos / 1_000_000D,
+                    eagerRss / 1024, lazyRss / 1024));
+        } finally {
+            test.deleteDir();
+        }
+    }
+
+    private void createTree() throws IOException {
+        Random rnd = new Random(42);
+        byte[] bytes = new byte[TREE_FILE_SIZE];
+        for (int i = 0; i < TREE_FILES; i++) {
+            rnd.nextBytes(bytes);
+            File f = new File(dir, "d" + (i % 16) + "/f" + i + ".bin");
+            f.getParentFile().mkdirs();
+            Files.write(f.toPath(), bytes);
+        }
+    }
+
+    private long startup(boolean lazy) throws Throwable {
+        Dependencies deps = dependencies(FINDER.findAvailableServerPort(), lazy);
+        try {
+            long start = System.nanoTime();
+            FileResources res = deps.getInstance(FileResources.class);
+            long result = System.nanoTime() - start;
+            assertEquals(TREE_FILES, res.getPatterns().length);
+            return result;
+        } finally {
+            deps.shutdown();
+        }
+    }
+
+    private static long residentMemory() throws IOException {
+        // Prefer the resident set size, where the OS will tell us
+        File status = new File("/proc/self/status");
+        if (status.exists()) {
+            for (String line : Files.readAllLines(status.toPath(), ISO_8859_1)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        }
+        long result = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            result += pool.getMemoryUsed();
+        }
+        return result;
+    }
+
+    private Dependencies dependencies(int port, boolean lazy) throws IOException {
+        Settings settings = Settings.builder()
+                .add("port", port)
+                .add("neverKeepAlive", false)
+                .add("cors.enabled", false)
+                .add(SETTINGS_KEY_STATIC_RESOURCES_BASE_URL_PATH, "static/(.*)")
+                .add(SETTINGS_KEY_LAZY, lazy)
+                .build();
+        return new Dependencies(settings, new AbstractModule() {
+            @Override
+            protected void configure() {
+                install(new ServerModule<>(ResourcesApp.class));
+                bind(File.class).toInstance(dir);
+                bind(StaticResources.class).to(FileResources.class);
+                bind(RequestLogger.class).to(SilentRequestLogger.class);
+            }
+        });
+    }
+
+    private void write(String name, String content) throws IOException {
+        File f = new File(dir, name);
+        f.getParentFile().mkdirs();
+        long before = f.lastModified();
+        Files.write(f.toPath(), content.getBytes(UTF_8));
+        if (f.lastModified() == before) {
+            // Coarse timestamps on some filesystems
+            f.setLastModified(before + 1000);
+        }
+    }
+
+    private static void awaitContent(String url, String expected) throws Exception {
+        // WatchService delivery is asynchronous, and polls on some platforms
+        long deadline = System.currentTimeMillis() + 20000;
+        String got;
+        do {
+            got = get(url);
+            if (expected == null ? got == null : expected.equals(got)) {
+                return;
+            }
+            Thread.sleep(50);
+        } while (System.currentTimeMillis() < deadline);
+        assertEquals(url, expected, got);
+    }
+
+    private static String etag(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        assertEquals(200, conn.getResponseCode());
+        conn.getInputStream().close();
+        return conn.getHeaderField("ETag");
+    }
+
+    private static String get(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        if (conn.getResponseCode() == 404) {
+            return null;
+        }
+        assertEquals(url, 200, conn.getResponseCode());
+        try (InputStream in = conn.getInputStream()) {
+            return Streams.readString(in, UTF_8);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.resources;
+
+import com.google.inject.AbstractModule;
+import com.mastfrog.acteur.RequestLogger;
+import static com.mastfrog.acteur.resources.DynamicFileResources.SETTINGS_KEY_HOT_CACHE_BYTES;
+import static com.mastfrog.acteur.resources.DynamicFileResources.SETTINGS_KEY_HOT_CACHE_MIN_HITS;
+import static com.mastfrog.acteur.resources.DynamicFileResources.SETTINGS_KEY_METADATA_REFRESH_MILLIS;
+import com.mastfrog.acteur.resources.DynamicFileResources.FileInfo;
+import com.mastfrog.acteur.resources.HotFileCache.HotFile;
+import com.mastfrog.acteur.resources.ResourcesApp.SilentRequestLogger;
+import static com.mastfrog.acteur.resources.ResourcesPage.SETTINGS_KEY_STATIC_RESOURCES_BASE_URL_PATH;
+import com.mastfrog.acteur.server.ServerModule;
+import com.mastfrog.acteur.util.Server;
+import com.mastfrog.acteur.util.ServerControl;
+import com.mastfrog.giulius.Dependencies;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.util.net.PortFinder;
+import com.mastfrog.util.streams.Streams;
+import io.netty.buffer.ByteBuf;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the in-memory cache of small, frequently requested files.
+ *
+ * @author Tim Boudreau
+ */
+public class HotFileCacheTest {
+
+    private static final String CONTENT = "Frequently requested content, frequently requested content, "
+            + "frequently requested content.\n";
+    private File dir;
+
+    @Before
+    public void createDir() throws IOException {
+        dir = Files.createTempDirectory("HotFileCacheTest").toFile();
+    }
+
+    @After
+    public void deleteDir() throws IOException {
+        try (Stream<Path> all = Files.walk(dir.toPath())) {
+            all.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testAdmissionAndInvalidation() throws Throwable {
+        File file = write("hot.txt", CONTENT);
+        File big = write("big.txt", CONTENT + CONTENT);
+        MimeTypes types = new MimeTypes();
+        try (HotFileCache cache = new HotFileCache(1024 * 1024, CONTENT.length(), 3, 100, Runnable::run)) {
+            FileInfo info = FileInfo.stat(file, types, false);
+            assertNull("Admitted before being requested enough", cache.get(file, info, true));
+            assertNull("Admitted before being requested enough", cache.get(file, info, true));
+            // The third request loads it, the fourth finds it
+            assertNull(cache.get(file, info, true));
+            HotFile hot = cache.get(file, info, true);
+            assertNotNull("Not cached after three requests", hot);
+
+            ByteBuf content = hot.content();
+            ByteBuf gzipped = hot.gzipped();
+            try {
+                assertEquals(CONTENT, content.toString(UTF_8));
+                assertTrue("Should be read-only", content.isReadOnly());
+                assertNotNull("Compressible content should have been gzipped", gzipped);
+                byte[] bytes = new byte[gzipped.readableBytes()];
+                gzipped.readBytes(bytes);
+                try (InputStream in = new GZIPInputStream(new java.io.ByteArrayInputStream(bytes))) {
+                    assertEquals(CONTENT, Streams.readString(in, UTF_8));
+                }
+            } finally {
+                content.release();
+                gzipped.release();
+            }
+
+            FileInfo bigInfo = FileInfo.stat(big, types, false);
+            for (int i = 0; i < 5; i++) {
+                assertNull("Files over the size limit should not be cached", cache.get(big, bigInfo, true));
+            }
+
+            write("hot.txt", CONTENT.toUpperCase());
+            FileInfo changed = FileInfo.stat(file, types, false);
+            assertNull("Stale content returned", cache.get(file, changed, true));
+            hot = cache.get(file, changed, true);
+            assertNotNull(hot);
+            content = hot.content();
+            try {
+                assertEquals(CONTENT.toUpperCase(), content.toString(UTF_8));
+            } finally {
+                content.release();
+            }
+        }
+    }
+
+    @Test
+    public void testServedFromMemory() throws Throwable {
+        write("hot.txt", CONTENT);
+        int port = new PortFinder().findAvailableServerPort();
+        Settings settings = Settings.builder()
+                .add("port", port)
+                .add("neverKeepAlive", false)
+                .add("cors.enabled", false)
+                .add(SETTINGS_KEY_STATIC_RESOURCES_BASE_URL_PATH, "static/(.*)")
+                .add(SETTINGS_KEY_HOT_CACHE_BYTES, 1024 * 1024)
+                .add(SETTINGS_KEY_HOT_CACHE_MIN_HITS, 2)
+                .add(SETTINGS_KEY_METADATA_REFRESH_MILLIS, 50)
+                .build();
+        Dependencies deps = new Dependencies(settings, new AbstractModule() {
+            @Override
+            protected void configure() {
+                install(new ServerModule<>(ResourcesApp.class));
+                bind(File.class).toInstance(dir);
+                bind(StaticResources.class).to(DynamicFileResources.class);
+                bind(RequestLogger.class).to(SilentRequestLogger.class);
+            }
+        });
+        ServerControl ctrl = deps.getInstance(Server.class).start(port);
+        try {
+            String url = "http://localhost:" + port + "/static/hot.txt";
+            // Enough requests that later ones are served from memory
+            for (int i = 0; i < 20; i++) {
+                assertEquals(CONTENT, get(url, false));
+                assertEquals(CONTENT, get(url, true));
+            }
+            write("hot.txt", "Changed");
+            long deadline = System.currentTimeMillis() + 20000;
+            String got;
+            do {
+                got = get(url, false);
+            } while (!"Changed".equals(got) && System.currentTimeMillis() < deadline);
+            assertEquals("Changed", got);
+            assertEquals("Changed", get(url, true));
+        } finally {
+            ctrl.shutdown(true);
+            deps.shutdown();
+        }
+    }
+
+    private File write(String name, String content) throws IOException {
+        File f = new File(dir, name);
+        long before = f.lastModified();
+        Files.write(f.toPath(), content.getBytes(UTF_8));
+        if (f.lastModified() == before) {
+            // Coarse timestamps on some filesystems
+            assertTrue(f.setLastModified(before + 1000));
+        }
+        return f;
+    }
+
+    private static String get(String url, boolean gzip) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        if (gzip) {
+            conn.setRequestProperty("Accept-Encoding", "gzip");
+        }
+        assertEquals(200, conn.getResponseCode());
+        InputStream raw = conn.getInputStream();
+        if (gzip) {
+            assertEquals("gzip", conn.getHeaderField("Content-Encoding"));
+            raw = new GZIPInputStream(raw);
+        }
+        try (InputStream in = raw) {
+            return Streams.readString(in, UTF_8);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.resources;
+
+import com.mastfrog.acteur.HttpEvent;
+import com.mastfrog.acteur.Response;
+import com.mastfrog.mime.MimeType;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ * Tests indexed lookup and negative caching in MergedResources.
+ *
+ * @author Tim Boudreau
+ */
+public class MergedResourcesTest {
+
+    @Test
+    public void testIndexedLookup() {
+        FakeResources a = new FakeResources("a.txt", "shared.txt");
+        FakeResources b = new FakeResources("b.txt", "shared.txt");
+        FakeResources c = new FakeResources("c.txt");
+        MergedResources merged = new MergedResources(Arrays.asList(a, b, c));
+
+        assertSame(b.resources.get("b.txt"), merged.get("b.txt"));
+        assertEquals("Only the owner should be asked", 0, a.probes + c.probes);
+        assertEquals(1, b.probes);
+        assertSame("First delegate should win", a.resources.get("shared.txt"), merged.get("shared.txt"));
+        assertEquals(1, a.probes);
+        assertEquals(1, b.probes);
+
+        assertNull(merged.get("nothing.txt"));
+        assertNull(merged.get("nothing.txt"));
+        assertEquals("Indexed delegates should not be asked for paths they do not have",
+                2, a.probes + b.probes + c.probes);
+
+        // A delegate whose set of files changes
+        c.add("new.txt");
+        assertSame(c.resources.get("new.txt"), merged.get("new.txt"));
+        assertEquals(Arrays.asList("a.txt", "shared.txt", "b.txt", "shared.txt", "c.txt", "new.txt"),
+                Arrays.asList(merged.getPatterns()));
+    }
+
+    @Test
+    public void testUnindexedDelegatesAndNegativeCache() {
+        FakeResources dynamic = new FakeResources("dyn.txt");
+        dynamic.indexed = false;
+        FakeResources indexed = new FakeResources("dyn.txt", "other.txt");
+        MergedResources merged = new MergedResources(Arrays.asList(dynamic, indexed));
+
+        assertSame("An unindexed delegate earlier in the list should win",
+                dynamic.resources.get("dyn.txt"), merged.get("dyn.txt"));
+        assertSame(indexed.resources.get("other.txt"), merged.get("other.txt"));
+        assertEquals(2, dynamic.probes);
+        assertEquals(1, indexed.probes);
+
+        assertNull(merged.get("missing.txt"));
+        assertEquals(3, dynamic.probes);
+        for (int i = 0; i < 100; i++) {
+            assertNull(merged.get("missing.txt"));
+        }
+        assertEquals("404s should be cached", 3, dynamic.probes);
+        assertEquals(1, indexed.probes);
+    }
+
+    static final class FakeResources implements StaticResources {
+
+        final Map<String, Resource> resources = new HashMap<>();
+        private String[] patterns;
+        boolean indexed = true;
+        int probes;
+
+        FakeResources(String... names) {
+            patterns = names;
+            for (String name : names) {
+                resources.put(name, new FakeResource());
+            }
+        }
+
+        void add(String name) {
+            resources.put(name, new FakeResource());
+            patterns = Arrays.copyOf(patterns, patterns.length + 1);
+            patterns[patterns.length - 1] = name;
+        }
+
+        @Override
+        public Resource get(String path) {
+            probes++;
+            return resources.get(path);
+        }
+
+        @Override
+        public String[] getPatterns() {
+            return indexed ? patterns : null;
+        }
+    }
+
+    static final class FakeResource implements Resource {
+
+        @Override
+        public void decorateResponse(HttpEvent evt, String path, Response response, boolean chunked) {
+            // do nothing
+        }
+
+        @Override
+        public void attachBytes(HttpEvent evt, Response response, boolean chunked) {
+            // do nothing
+        }
+
+        @Override
+        public MimeType getContentType() {
+            return MimeType.PLAIN_TEXT_UTF_8;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.resources;
+
+import com.google.inject.AbstractModule;
+import com.mastfrog.acteur.RequestLogger;
+import com.mastfrog.acteur.resources.Precompressed.Encoding;
+import static com.mastfrog.acteur.resources.Precompressed.Encoding.BROTLI;
+import static com.mastfrog.acteur.resources.Precompressed.Encoding.GZIP;
+import static com.mastfrog.acteur.resources.Precompressed.Encoding.ZSTD;
+import com.mastfrog.acteur.resources.ResourcesApp.SilentRequestLogger;
+import static com.mastfrog.acteur.resources.ResourcesPage.SETTINGS_KEY_STATIC_RESOURCES_BASE_URL_PATH;
+import com.mastfrog.acteur.server.ServerModule;
+import com.mastfrog.acteur.util.Server;
+import com.mastfrog.acteur.util.ServerControl;
+import com.mastfrog.giulius.Dependencies;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.util.net.PortFinder;
+import com.mastfrog.util.streams.Streams;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import java.nio.file.Files;
+import static java.util.Arrays.asList;
+import java.util.Collections;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class PrecompressedTest {
+
+    private static final String ORIGINAL = "function hello() { return 'hello world hello world hello world'; }\n";
+    private static final String BR = "pretend-this-is-brotli";
+    private static final String GZ = "pretend-this-is-gzip";
+    private static final PortFinder FINDER = new PortFinder();
+    private static File dir;
+
+    @BeforeClass
+    public static void createFiles() throws Exception {
+        dir = Files.createTempDirectory("PrecompressedTest").toFile();
+        File js = new File(dir, "app.js");
+        Files.write(js.toPath(), ORIGINAL.getBytes(ISO_8859_1));
+        Files.write(new File(dir, "app.js.br").toPath(), BR.getBytes(ISO_8859_1));
+        Files.write(new File(dir, "app.js.gz").toPath(), GZ.getBytes(ISO_8859_1));
+        // A stale sidecar should be ignored
+        File css = new File(dir, "app.css");
+        Files.write(css.toPath(), "body { color: red; }".getBytes(ISO_8859_1));
+        File staleCss = new File(dir, "app.css.br");
+        Files.write(staleCss.toPath(), "stale".getBytes(ISO_8859_1));
+        staleCss.setLastModified(css.lastModified() - 60000);
+    }
+
+    @AfterClass
+    public static void deleteFiles() throws IOException {
+        for (File f : dir.listFiles()) {
+            Files.delete(f.toPath());
+        }
+        Files.delete(dir.toPath());
+    }
+
+    @Test
+    public void testNegotiation() {
+        assertEquals(asList(BROTLI, ZSTD, GZIP), Precompressed.acceptable("gzip, deflate, br, zstd"));
+        assertEquals(asList(GZIP, BROTLI), Precompressed.acceptable("gzip;q=1.0, br;q=0.5"));
+        assertEquals(asList(GZIP), Precompressed.acceptable("gzip, br;q=0"));
+        assertEquals(asList(ZSTD, GZIP), Precompressed.acceptable("*;q=0.5, br;q=0, zstd"));
+        assertEquals(Collections.<Encoding>emptyList(), Precompressed.acceptable("identity"));
+        assertEquals(Collections.<Encoding>emptyList(), Precompressed.acceptable(null));
+        assertEquals(asList(GZIP, ZSTD), Precompressed.acceptable("x-gzip, ZSTD;Q=0.5, br;Q=0"));
+        assertEquals(GZIP, Encoding.forSidecarName("foo.js.gz"));
+        assertNull(Encoding.forSidecarName(".gz"));
+        assertNull(Encoding.forSidecarName("foo.js"));
+    }
+
+    @Test
+    public void testDynamicFileResources() throws Throwable {
+        testSidecars(DynamicFileResources.class);
+    }
+
+    @Test
+    public void testFileResources() throws Throwable {
+        testSidecars(FileResources.class);
+    }
+
+    private void testSidecars(Class<? extends StaticResources> type) throws Throwable {
+        int port = FINDER.findAvailableServerPort();
+        Settings settings = Settings.builder()
+                .add("port", port)
+                .add("neverKeepAlive", false)
+                .add("cors.enabled", false)
+                .add(SETTINGS_KEY_STATIC_RESOURCES_BASE_URL_PATH, "static/(.*)")
+                .build();
+        Dependencies deps = new Dependencies(settings, new AbstractModule() {
+            @Override
+            protected void configure() {
+                install(new ServerModule<>(ResourcesApp.class));
+                bind(File.class).toInstance(dir);
+                bind(StaticResources.class).to(type);
+                bind(RequestLogger.class).to(SilentRequestLogger.class);
+            }
+        });
+        ServerControl ctrl = deps.getInstance(Server.class).start(port);
+        try {
+            URL js = new URL("http://localhost:" + port + "/static/app.js");
+            HttpURLConnection br = fetch(js, "gzip, deflate, br");
+            assertEquals(type.getSimpleName(), "br", br.getHeaderField("Content-Encoding"));
+            assertEquals(BR, body(br));
+            assertNotNull(br.getHeaderField("Vary"));
+
+            HttpURLConnection gz = fetch(js, "gzip;q=1.0, br;q=0.5");
+            assertEquals("gzip", gz.getHeaderField("Content-Encoding"));
+            assertEquals(GZ, body(gz));
+
+            // No sidecar in an acceptable encoding - sent as-is, not
+            // compressed on the fly
+            HttpURLConnection plain = fetch(js, "deflate");
+            assertEquals(ORIGINAL, body(plain));
+            String enc = plain.getHeaderField("Content-Encoding");
+            assertTrue(enc, enc == null || "identity".equals(enc));
+
+            String brEtag = br.getHeaderField("ETag");
+            assertNotNull(brEtag);
+            assertNotEquals(brEtag, gz.getHeaderField("ETag"));
+            assertNotEquals(brEtag, plain.getHeaderField("ETag"));
+
+            HttpURLConnection conditional = (HttpURLConnection) js.openConnection();
+            conditional.setRequestProperty("Accept-Encoding", "br");
+            conditional.setRequestProperty("If-None-Match", brEtag);
+            assertEquals(304, conditional.getResponseCode());
+
+            // Sidecars are still served under their own names
+            HttpURLConnection direct = fetch(new URL("http://localhost:" + port + "/static/app.js.gz"), "identity");
+            assertEquals(type.getSimpleName(), GZ, body(direct));
+
+            URL css = new URL("http://localhost:" + port + "/static/app.css");
+            HttpURLConnection stale = fetch(css, "br");
+            assertEquals("body { color: red; }", body(stale));
+            assertNotEquals("br", stale.getHeaderField("Content-Encoding"));
+        } finally {
+            ctrl.shutdown(true);
+            deps.shutdown();
+        }
+    }
+
+    private static HttpURLConnection fetch(URL url, String acceptEncoding) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestProperty("Accept-Encoding", acceptEncoding);
+        assertEquals(200, conn.getResponseCode());
+        return conn;
+    }
+
+    private static String body(HttpURLConnection conn) throws IOException {
+        try (InputStream in = conn.getInputStream()) {
+            return Streams.readString(in, ISO_8859_1);
+        }
+    }
+}
@@ -52,7 +52,6 @@ import com.mastfrog.util.streams.Streams;
 import com.mastfrog.util.thread.Receiver;
 import io.netty.handler.codec.http.HttpResponse;
 import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
-import static io.netty.handler.codec.http.HttpResponseStatus.NOT_IMPLEMENTED;
 import static io.netty.handler.codec.http.HttpResponseStatus.NOT_MODIFIED;
 import static io.netty.handler.codec.http.HttpResponseStatus.OK;
 import static io.netty.handler.codec.http.HttpResponseStatus.PARTIAL_CONTENT;
@@ -282,10 +281,26 @@ public class StaticResourcesTest {
                     .go().await()
                     .assertStatus(REQUESTED_RANGE_NOT_SATISFIABLE);
 
+            // Nearby ranges are merged
             ByteRanges compound = ByteRanges.builder().add(5, 15).add(25, 30).build();
             har.get("static/another.txt")
                     .addHeader(RANGE, compound)
-                    .go().await().assertStatus(NOT_IMPLEMENTED);
+                    .go().await()
+                    .assertStatus(PARTIAL_CONTENT)
+                    .assertContent("is another file.  It has s");
+
+            ByteRanges distant = ByteRanges.builder().add(1200, 1209).add(0, 9).build();
+            String multipart = har.get("static/sub/subfile.txt")
+                    .addHeader(RANGE, distant)
+                    .go().await()
+                    .assertStatus(PARTIAL_CONTENT)
+                    .assertContentContains("Content-Range: bytes 0-9/" + STUFF.length() + "\r\n\r\n"
+                            + STUFF.substring(0, 10) + "\r\n--")
+                    .assertContentContains("Content-Range: bytes 1200-1209/" + STUFF.length() + "\r\n\r\n"
+                            + STUFF.substring(1200, 1210) + "\r\n--")
+                    .content();
+            assertTrue(multipart, multipart.indexOf("bytes 0-9") < multipart.indexOf("bytes 1200-1209"));
+            assertTrue(multipart, multipart.trim().endsWith("--"));
         }
         if (resources instanceof ClasspathResources) {
             // should be server start time since that's all we know
@@ -33,7 +33,9 @@ import com.mastfrog.acteur.server.PathFactory;
 import com.mastfrog.acteur.util.HttpMethod;
 import com.mastfrog.acteurbase.Chain;
 import com.mastfrog.giulius.Dependencies;
+import com.mastfrog.giulius.annotations.Setting;
 import com.mastfrog.mime.MimeType;
+import com.mastfrog.settings.Settings;
 import com.mastfrog.url.Path;
 import com.mastfrog.util.preconditions.Checks;
 import com.mastfrog.util.preconditions.Exceptions;
@@ -70,11 +72,22 @@ import org.netbeans.validation.api.Problem;
 @Singleton
 public class ActeurFactory {
 
+    /**
+     * If true (the default), a page whose methods include GET also answers
+     * HEAD requests; the response carries the headers the GET would, and
+     * no body is rendered.
+     */
+    @Setting(value = "If true, pages which accept GET also answer HEAD requests, without rendering a body",
+            type = Setting.ValueType.BOOLEAN, defaultValue = "true")
+    public static final String SETTINGS_KEY_HEAD_FOR_GET = "head.for.get";
     @Inject
     private Dependencies deps;
     @Inject
     private Charset charset;
     @Inject
+    private Settings settings;
+    private Boolean headForGet;
+    @Inject
     private PathPatterns cache;
 
     @Inject
@@ -108,9 +121,21 @@ public class ActeurFactory {
      */
     public Acteur matchMethods(final boolean notSupp, final Method... methods) {
         if (methods.length == 1) {
-            return new MatchMethod(event, notSupp, charset, methods[0]);
+            return new MatchMethod(event, notSupp, charset, headForGet(), methods[0]);
+        }
+        return new MatchMethods(event, notSupp, charset, headForGet(), methods);
+    }
+
+    private boolean headForGet() {
+        if (headForGet == null) {
+            headForGet = settings.getBoolean(SETTINGS_KEY_HEAD_FOR_GET, true);
         }
-        return new MatchMethods(event, notSupp, charset, methods);
+        return headForGet;
+    }
+
+    static boolean matches(Method method, HttpMethod requested, boolean headForGet) {
+        return method == requested || method.equals(requested)
+                || (headForGet && method == Method.GET && Method.HEAD.is(requested));
     }
 
     static class MatchMethods extends Acteur {
@@ -119,11 +144,17 @@ public class ActeurFactory {
         private final boolean notSupp;
         private final Charset charset;
         private final Method[] methods;
+        private final boolean headForGet;
 
         MatchMethods(Provider<HttpEvent> deps, boolean notSupp, Charset charset, Method... methods) {
+            this(deps, notSupp, charset, true, methods);
+        }
+
+        MatchMethods(Provider<HttpEvent> deps, boolean notSupp, Charset charset, boolean headForGet, Method... methods) {
             this.deps = deps;
             this.notSupp = notSupp;
             this.charset = charset;
+            this.headForGet = headForGet;
             this.methods = methods;
         }
 
@@ -133,7 +164,7 @@ public class ActeurFactory {
 
         private boolean hasMethod(HttpMethod m) {
             for (Method mm : methods) {
-                if (mm == m || mm.equals(m)) {
+                if (matches(mm, m, headForGet)) {
                     return true;
                 }
             }
@@ -172,19 +203,20 @@ public class ActeurFactory {
         private final boolean notSupp;
         private final Charset charset;
         private final Method[] method;
+        private final boolean headForGet;
 
-        MatchMethod(Provider<HttpEvent> deps, boolean notSupp, Charset charset, Method... method) {
+        MatchMethod(Provider<HttpEvent> deps, boolean notSupp, Charset charset, boolean headForGet, Method... method) {
             this.deps = deps;
             this.notSupp = notSupp;
             this.charset = charset;
+            this.headForGet = headForGet;
             this.method = method;
         }
 
         @Override
         public com.mastfrog.acteur.State getState() {
             HttpEvent event = deps.get();
-            HttpMethod mth = event.method();
-            boolean hasMethod = mth == method[0] || method[0].equals(event.method());
+            boolean hasMethod = matches(method[0], event.method(), headForGet);
             add(Headers.ALLOW, method);
             if (notSupp && !hasMethod) {
                 add(Headers.CONTENT_TYPE, MimeType.PLAIN_TEXT_UTF_8.withCharset(charset));
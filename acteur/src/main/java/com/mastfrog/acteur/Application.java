@@ -25,6 +25,7 @@ package com.mastfrog.acteur;
 
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
+import com.mastfrog.acteur.annotations.Cacheable;
 import com.mastfrog.acteur.annotations.Early;
 import com.mastfrog.acteur.debug.Probe;
 import com.mastfrog.acteur.header.entities.CacheControl;
@@ -107,6 +108,8 @@ public class Application implements Iterable<Page> {
     Charset charset;
     @Inject
     CORSResponseDecorator corsDecorator;
+    @Inject
+    ContentNegotiator negotiator;
     @Inject(optional = true)
     private ResponseDecorator responseDecorator;
 
@@ -134,6 +137,10 @@ public class Application implements Iterable<Page> {
 
     private final PathFilters filters = PathFilters.create(this::dependenciesUnsafe);
 
+    private final RequestBodyPolicies bodyPolicies = new RequestBodyPolicies();
+
+    private boolean hasCacheablePages;
+
     private final RequestID.Factory ids = new RequestID.Factory();
 
     /**
@@ -172,6 +179,50 @@ public class Application implements Iterable<Page> {
         return result;
     }
 
+    /**
+     * Determine whether any page declares its own request body limit or
+     * policy with &#064;MaximumRequestBodyLength or &#064;RequestBodyPolicy.
+     *
+     * @return true if some page does
+     */
+    public boolean hasRequestBodyPolicies() {
+        return !bodyPolicies.isEmpty();
+    }
+
+    /**
+     * Determine whether any page is annotated with &#064;Cacheable, and so
+     * whether the response cache has anything to do.
+     *
+     * @return true if there are cacheable pages
+     */
+    boolean hasCacheablePages() {
+        return hasCacheablePages;
+    }
+
+    /**
+     * The largest request body length declared by any page.
+     *
+     * @return A length
+     */
+    public long maxDeclaredRequestBodyLength() {
+        return bodyPolicies.maxDeclared();
+    }
+
+    /**
+     * Get the maximum request body length for a request, from the
+     * &#064;MaximumRequestBodyLength and &#064;RequestBodyPolicy annotations
+     * of the (non-early) pages whose path and method could match it; if
+     * several could, the most permissive wins.
+     *
+     * @param req The request
+     * @param defaultMax The limit for pages which do not declare one
+     * @return The maximum length, 0 if the request may not have a body, or -1
+     * if the body should be passed on without being aggregated
+     */
+    public long maxRequestBodyLength(HttpRequest req, long defaultMax) {
+        return bodyPolicies.limitFor(filters.normalPages().listFor(req), defaultMax);
+    }
+
     List<Object> rawPages() {
         return this.pages;
     }
@@ -285,6 +336,8 @@ public class Application implements Iterable<Page> {
             earlyPages.add(page);
         } else {
             filters.addNormalPage(page);
+            bodyPolicies.add(page);
+            hasCacheablePages |= page.getAnnotation(Cacheable.class) != null;
             pages.add(page);
         }
     }
@@ -296,6 +349,8 @@ public class Application implements Iterable<Page> {
             earlyPages.add(page);
         } else {
             filters.addNormalPage(page);
+            bodyPolicies.add(page.getClass());
+            hasCacheablePages |= page.getClass().getAnnotation(Cacheable.class) != null;
             pages.add(page);
         }
     }
@@ -346,7 +401,7 @@ public class Application implements Iterable<Page> {
     private static final HeaderValueType<CharSequence> X_REQ_PATH = Headers.header(new AsciiString("X-Req-Path"));
     private static final HeaderValueType<CharSequence> X_ACTEUR = Headers.header(new AsciiString("X-Acteur"));
     private static final HeaderValueType<CharSequence> X_PAGE = Headers.header(new AsciiString("X-Page"));
-    private static final HeaderValueType<CharSequence> X_REQ_ID = Headers.header(new AsciiString("X-Req-ID"));
+    static final HeaderValueType<CharSequence> X_REQ_ID = Headers.header(new AsciiString("X-Req-ID"));
 
     HttpResponse _decorateResponse(RequestID id, Event<?> event, Page page, Acteur action, HttpResponse response) {
         Headers.write(Headers.SERVER, getName(), response);
@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur;
+
+import com.google.inject.Singleton;
+import com.mastfrog.acteur.server.IfNoneMatch;
+import com.mastfrog.giulius.annotations.Setting;
+import static com.mastfrog.giulius.annotations.Setting.ValueType.BOOLEAN;
+import com.mastfrog.settings.Settings;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import static io.netty.handler.codec.http.HttpResponseStatus.NOT_MODIFIED;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import javax.inject.Inject;
+
+/**
+ * Gives successful responses to GET and HEAD requests whose body was rendered
+ * into a single buffer a weak ETag computed from the bytes, if the page did
+ * not set one itself, so clients which send it back in
+ * <code>If-None-Match</code> get a bodyless <code>304 Not Modified</code>
+ * instead of the same bytes again. Off unless <code>auto.etag</code> is set.
+ *
+ * @author Tim Boudreau
+ */
+@Singleton
+final class AutoETags {
+
+    @Setting(value = "If true, compute weak ETags for buffered response bodies of pages which do not "
+            + "set their own, and answer matching If-None-Match requests with 304 Not Modified",
+            type = BOOLEAN, defaultValue = "false")
+    static final String SETTINGS_KEY_AUTO_ETAG = "auto.etag";
+    private final boolean enabled;
+
+    @Inject
+    AutoETags(Settings settings) {
+        enabled = settings.getBoolean(SETTINGS_KEY_AUTO_ETAG, false);
+    }
+
+    /**
+     * Add an ETag to the response if it qualifies for one.
+     *
+     * @param evt The request
+     * @param resp The response
+     * @param body Its body, if rendered into a single buffer
+     * @return true if the request's If-None-Match header matches the ETag,
+     * and it should be answered with notModified()
+     */
+    boolean tag(HttpEvent evt, HttpResponse resp, ByteBuf body) {
+        if (!enabled || body == null || !OK.equals(resp.status())) {
+            return false;
+        }
+        HttpMethod method = evt.request().method();
+        if (!HttpMethod.GET.equals(method) && !HttpMethod.HEAD.equals(method)) {
+            return false;
+        }
+        HttpHeaders hdrs = resp.headers();
+        if (hdrs.contains(HttpHeaderNames.ETAG)) {
+            // The page knows better
+            return false;
+        }
+        String etag = etag(body);
+        hdrs.set(HttpHeaderNames.ETAG, etag);
+        return IfNoneMatch.matches(evt.request().headers().get(HttpHeaderNames.IF_NONE_MATCH), etag);
+    }
+
+    /**
+     * Create a 304 response carrying the headers of the response it replaces
+     * which describe the representation.
+     *
+     * @param resp The original response
+     * @return A response with no body
+     */
+    HttpResponse notModified(HttpResponse resp) {
+        HttpHeaders hdrs = new DefaultHttpHeaders(false).set(resp.headers());
+        hdrs.remove(HttpHeaderNames.CONTENT_ENCODING);
+        hdrs.remove(HttpHeaderNames.TRANSFER_ENCODING);
+        hdrs.remove(HttpHeaderNames.CONTENT_TYPE);
+        hdrs.set(HttpHeaderNames.CONTENT_LENGTH, 0);
+        return new DefaultFullHttpResponse(resp.protocolVersion(), NOT_MODIFIED, Unpooled.EMPTY_BUFFER,
+                hdrs, EmptyHttpHeaders.INSTANCE);
+    }
+
+    static String etag(ByteBuf body) {
+        CRC32 crc = new CRC32();
+        if (body.hasArray()) {
+            crc.update(body.array(), body.arrayOffset() + body.readerIndex(), body.readableBytes());
+        } else {
+            for (ByteBuffer nio : body.nioBuffers()) {
+                crc.update(nio);
+            }
+        }
+        return "W/\"" + Long.toString(crc.getValue(), 36) + '-'
+                + Integer.toString(body.readableBytes(), 36) + '"';
+    }
+}
@@ -0,0 +1,577 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur;
+
+import static com.mastfrog.acteur.server.ServerModule.BACKGROUND_THREAD_POOL_NAME;
+import com.mastfrog.giulius.annotations.Setting;
+import static com.mastfrog.giulius.annotations.Setting.ValueType.INTEGER;
+import static com.mastfrog.giulius.annotations.Setting.ValueType.STRING;
+import com.mastfrog.settings.Settings;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpHeaders;
+import static io.netty.handler.codec.http.HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Streams the request body of an &#064;Early page to acteurs as it arrives,
+ * rather than aggregating it in memory. Use it as the page's chunk handler -
+ * <code>&#064;Early(BodyStream.class)</code> - and the acteur chain continues
+ * as soon as it is installed, with the BodyStream available for injection.
+ * <p>
+ * Reading from the socket is demand-driven: automatic reading is turned off
+ * for the channel while the body is being streamed, and more is read only
+ * when {@link #next()} is called and no content is already waiting, so a slow
+ * consumer applies backpressure to the client rather than buffering without
+ * limit. Alternately, {@link #spool()} collects the whole body, in memory up
+ * to <code>body.stream.spill.threshold</code> bytes and in a temporary file
+ * past that; writes to the file happen on the background thread pool, and
+ * reading from the client pauses if they fall too far behind.
+ * <p>
+ * Chunks which have arrived but were never read are released when the
+ * request's {@link Closables} are closed, so a page may respond without
+ * draining the body.
+ *
+ * @author Tim Boudreau
+ */
+public final class BodyStream extends ChunkHandler implements AutoCloseable {
+
+    /**
+     * Bytes of request body {@link #spool()} will hold in memory before
+     * moving it to a temporary file.
+     */
+    @Setting(value = "Bytes of request body BodyStream.spool() holds in memory before writing it to a "
+            + "temporary file", type = INTEGER, defaultValue = "1048576")
+    public static final String SETTINGS_KEY_BODY_STREAM_SPILL_THRESHOLD = "body.stream.spill.threshold";
+    /**
+     * Maximum request body length accepted by a BodyStream before it responds
+     * with 413 Request Entity Too Large and closes the connection; 0 means
+     * unlimited.
+     */
+    @Setting(value = "Maximum bytes of request body a BodyStream accepts before failing with 413 - "
+            + "0 for no limit", type = INTEGER, defaultValue = "0")
+    public static final String SETTINGS_KEY_BODY_STREAM_MAX_LENGTH = "body.stream.max.length";
+    /**
+     * Folder temporary files for spooled request bodies are created in.
+     */
+    @Setting(value = "Folder for temporary files holding spooled request bodies - defaults to "
+            + "java.io.tmpdir", type = STRING)
+    public static final String SETTINGS_KEY_BODY_STREAM_SPILL_DIR = "body.stream.spill.dir";
+    public static final long DEFAULT_BODY_STREAM_SPILL_THRESHOLD = 1024 * 1024;
+
+    private final long spillThreshold;
+    private final long maxLength;
+    private final Path spillDir;
+    private final Executor fileWriter;
+    private final ArrayDeque<ByteBuf> ready = new ArrayDeque<>(4);
+    private ChannelHandlerContext ctx;
+    private CompletableFuture<ByteBuf> waiting;
+    private Spooler spooler;
+    private Throwable failure;
+    private boolean complete;
+    private long received;
+
+    /**
+     * Create a BodyStream which writes spilled bodies to disk on the calling
+     * thread.
+     *
+     * @param settings Settings
+     */
+    public BodyStream(Settings settings) {
+        this(settings, Runnable::run);
+    }
+
+    @Inject
+    public BodyStream(Settings settings, @Named(BACKGROUND_THREAD_POOL_NAME) ExecutorService background) {
+        this(settings, (Executor) background);
+    }
+
+    BodyStream(Settings settings, Executor fileWriter) {
+        this.fileWriter = fileWriter;
+        spillThreshold = settings.getLong(SETTINGS_KEY_BODY_STREAM_SPILL_THRESHOLD, DEFAULT_BODY_STREAM_SPILL_THRESHOLD);
+        maxLength = settings.getLong(SETTINGS_KEY_BODY_STREAM_MAX_LENGTH, 0);
+        String dir = settings.getString(SETTINGS_KEY_BODY_STREAM_SPILL_DIR);
+        spillDir = dir == null ? Paths.get(System.getProperty("java.io.tmpdir")) : Paths.get(dir);
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+        // Process anything that arrived before we were installed
+        super.handlerAdded(ctx);
+        synchronized (this) {
+            if (!complete && failure == null) {
+                ctx.channel().config().setAutoRead(false);
+            }
+        }
+        // Let the acteur chain continue immediately, with this available
+        // for injection
+        resume(this);
+    }
+
+    /**
+     * Get the next chunk of the request body. The returned future completes
+     * with null once the body has been fully read; the caller is responsible
+     * for releasing each buffer. Only one call may be outstanding at a time.
+     *
+     * @return A future
+     */
+    public CompletableFuture<ByteBuf> next() {
+        synchronized (this) {
+            if (failure != null) {
+                CompletableFuture<ByteBuf> result = new CompletableFuture<>();
+                result.completeExceptionally(failure);
+                return result;
+            }
+            if (spooler != null) {
+                throw new IllegalStateException("Already spooling");
+            }
+            if (!ready.isEmpty()) {
+                return CompletableFuture.completedFuture(ready.poll());
+            }
+            if (complete) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (waiting != null) {
+                throw new IllegalStateException("Already waiting for the next chunk");
+            }
+            waiting = new CompletableFuture<>();
+        }
+        CompletableFuture<ByteBuf> result = waiting;
+        ctx.read();
+        return result;
+    }
+
+    /**
+     * Read the entire remaining request body, holding it in memory up to the
+     * spill threshold, and in a temporary file past that. The returned body
+     * must be closed when no longer needed, to release its memory or delete
+     * its file.
+     *
+     * @return A future
+     */
+    public CompletableFuture<SpooledBody> spool() {
+        CompletableFuture<SpooledBody> result = new CompletableFuture<>();
+        ctx.executor().execute(() -> {
+            synchronized (this) {
+                if (failure != null) {
+                    result.completeExceptionally(failure);
+                    return;
+                }
+                if (spooler != null || waiting != null) {
+                    result.completeExceptionally(new IllegalStateException(
+                            "Already " + (spooler != null ? "spooling" : "waiting for the next chunk")));
+                    return;
+                }
+                spooler = new Spooler(result, ctx.alloc().compositeBuffer(Integer.MAX_VALUE));
+                for (ByteBuf buf = ready.poll(); buf != null; buf = ready.poll()) {
+                    try {
+                        spooler.write(buf);
+                    } finally {
+                        buf.release();
+                    }
+                }
+                if (complete) {
+                    spooler.finish();
+                    return;
+                }
+            }
+            // Read as fast as the client sends
+            ctx.channel().config().setAutoRead(true);
+        });
+        return result;
+    }
+
+    /**
+     * The number of bytes of request body received so far.
+     *
+     * @return The count
+     */
+    public synchronized long received() {
+        return received;
+    }
+
+    /**
+     * Determine if the entire request body has been received.
+     *
+     * @return Whether or not the body is complete
+     */
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    protected void onContent(ChannelHandlerContext ctx, ByteBuf chunk, HttpHeaders trailersOrHeaders,
+            boolean done) throws Exception {
+        CompletableFuture<ByteBuf> toComplete = null;
+        ByteBuf delivered = null;
+        synchronized (this) {
+            if (failure != null || complete) {
+                return;
+            }
+            received += chunk.readableBytes();
+            if (maxLength > 0 && received > maxLength) {
+                tooLarge(ctx);
+                return;
+            }
+            if (spooler != null) {
+                spooler.write(chunk);
+            } else if (chunk.isReadable()) {
+                if (waiting != null) {
+                    toComplete = waiting;
+                    delivered = chunk.retain();
+                    waiting = null;
+                } else {
+                    ready.add(chunk.retain());
+                }
+            }
+            if (done) {
+                complete = true;
+                if (waiting != null) {
+                    toComplete = waiting;
+                    waiting = null;
+                }
+                if (spooler != null) {
+                    spooler.finish();
+                }
+            }
+        }
+        if (done) {
+            finished(ctx);
+        }
+        if (toComplete != null) {
+            toComplete.complete(delivered);
+        }
+    }
+
+    private void finished(ChannelHandlerContext ctx) {
+        ctx.channel().config().setAutoRead(true);
+        // Out of the pipeline, so the next request on a keep-alive
+        // connection is not fed to us
+        if (ctx.pipeline().context(this) != null) {
+            ctx.pipeline().remove(this);
+        }
+    }
+
+    private void failed(Throwable err) {
+        CompletableFuture<ByteBuf> wait;
+        Spooler spool;
+        synchronized (this) {
+            if (failure != null) {
+                return;
+            }
+            failure = err;
+            wait = waiting;
+            waiting = null;
+            // A finished spooler's memory or file belongs to its SpooledBody
+            spool = complete ? null : spooler;
+            for (ByteBuf buf = ready.poll(); buf != null; buf = ready.poll()) {
+                buf.release();
+            }
+        }
+        if (spool != null) {
+            spool.fail(err);
+        }
+        if (wait != null) {
+            wait.completeExceptionally(err);
+        }
+    }
+
+    private void tooLarge(ChannelHandlerContext ctx) {
+        IOException err = new IOException("Request body exceeds " + maxLength + " bytes");
+        failed(err);
+        sendErrorAndClose(ctx, REQUEST_ENTITY_TOO_LARGE, err.getMessage());
+    }
+
+    /**
+     * Release any chunks which arrived but were not read, and fail any
+     * read or spool still in progress. Called when the request's Closables
+     * are closed; after this, next() and spool() fail.
+     */
+    @Override
+    public void close() {
+        failed(new IOException("BodyStream closed"));
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        failed(new ClosedChannelException());
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        failed(cause);
+        super.exceptionCaught(ctx, cause);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        synchronized (this) {
+            if (complete || failure != null) {
+                return;
+            }
+        }
+        failed(new IOException("Removed from pipeline before the request body was complete"));
+    }
+
+    private final class Spooler {
+
+        private final CompletableFuture<SpooledBody> future;
+        private final long highWater = Math.max(spillThreshold, 64 * 1024);
+        private CompositeByteBuf memory;
+        private Path file;
+        private FileChannel channel;
+        private long length;
+        // Non-null once spilled; file writes run in order on the background
+        // pool, each chained onto the last
+        private CompletableFuture<Void> fileWrites;
+        private long pendingBytes;
+        private boolean paused;
+        private volatile Throwable writeFailure;
+
+        Spooler(CompletableFuture<SpooledBody> future, CompositeByteBuf memory) {
+            this.future = future;
+            this.memory = memory;
+        }
+
+        // Called with the BodyStream's lock held
+        void write(ByteBuf buf) {
+            int count = buf.readableBytes();
+            length += count;
+            if (fileWrites == null && length > spillThreshold) {
+                CompositeByteBuf toSpill = memory;
+                memory = null;
+                fileWrites = CompletableFuture.completedFuture(null);
+                enqueue(toSpill.readableBytes(), () -> {
+                    try {
+                        file = Files.createTempFile(spillDir, "acteur-body-", ".tmp");
+                        channel = FileChannel.open(file, WRITE);
+                        writeFully(toSpill);
+                    } finally {
+                        toSpill.release();
+                    }
+                });
+            }
+            if (fileWrites != null) {
+                if (count > 0) {
+                    ByteBuf toWrite = buf.retainedDuplicate();
+                    enqueue(count, () -> {
+                        try {
+                            writeFully(toWrite);
+                        } finally {
+                            toWrite.release();
+                        }
+                    });
+                }
+            } else if (count > 0) {
+                memory.addComponent(true, buf.retainedSlice());
+            }
+        }
+
+        private void enqueue(long bytes, FileWrite write) {
+            pendingBytes += bytes;
+            if (!paused && pendingBytes > highWater) {
+                // Let the disk catch up before reading more
+                paused = true;
+                ctx.channel().config().setAutoRead(false);
+            }
+            fileWrites = fileWrites.thenRunAsync(() -> {
+                try {
+                    if (writeFailure == null) {
+                        write.run();
+                    }
+                } catch (IOException | RuntimeException ex) {
+                    writeFailure = ex;
+                    failed(ex);
+                    ctx.channel().close();
+                } finally {
+                    written(bytes);
+                }
+            }, fileWriter);
+        }
+
+        private void written(long bytes) {
+            synchronized (BodyStream.this) {
+                pendingBytes -= bytes;
+                if (paused && pendingBytes <= highWater / 2) {
+                    paused = false;
+                    ctx.channel().config().setAutoRead(true);
+                }
+            }
+        }
+
+        private void writeFully(ByteBuf buf) throws IOException {
+            while (buf.isReadable()) {
+                buf.readBytes(channel, buf.readableBytes());
+            }
+        }
+
+        void finish() {
+            if (fileWrites == null) {
+                future.complete(new SpooledBody(memory, null, length));
+                return;
+            }
+            long len = length;
+            fileWrites = fileWrites.thenRunAsync(() -> {
+                if (writeFailure != null) {
+                    cleanUp(writeFailure);
+                    return;
+                }
+                try {
+                    channel.close();
+                    future.complete(new SpooledBody(null, file, len));
+                } catch (IOException ex) {
+                    writeFailure = ex;
+                    cleanUp(ex);
+                }
+            }, fileWriter);
+        }
+
+        void fail(Throwable err) {
+            synchronized (BodyStream.this) {
+                if (fileWrites != null) {
+                    // Pending writes will be skipped, and the file deleted
+                    // after any in progress is done
+                    if (writeFailure == null) {
+                        writeFailure = err;
+                    }
+                    fileWrites = fileWrites.thenRunAsync(() -> cleanUp(err), fileWriter);
+                    return;
+                }
+                if (memory != null) {
+                    memory.release();
+                    memory = null;
+                }
+            }
+            future.completeExceptionally(err);
+        }
+
+        private void cleanUp(Throwable err) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                    Files.deleteIfExists(file);
+                } catch (IOException ex) {
+                    err.addSuppressed(ex);
+                }
+            }
+            future.completeExceptionally(err);
+        }
+    }
+
+    interface FileWrite {
+
+        void run() throws IOException;
+    }
+
+    /**
+     * A request body which has been completely read, held in memory or in a
+     * temporary file.
+     */
+    public static final class SpooledBody implements AutoCloseable {
+
+        private final ByteBuf memory;
+        private final Path file;
+        private final long length;
+
+        SpooledBody(ByteBuf memory, Path file, long length) {
+            this.memory = memory;
+            this.file = file;
+            this.length = length;
+        }
+
+        /**
+         * The length of the body in bytes.
+         *
+         * @return The length
+         */
+        public long length() {
+            return length;
+        }
+
+        /**
+         * Determine if the body was small enough to be held in memory.
+         *
+         * @return true if it is in memory
+         */
+        public boolean isInMemory() {
+            return file == null;
+        }
+
+        /**
+         * The temporary file the body was spilled to, if it was too large to
+         * hold in memory. Move it elsewhere to keep it past close().
+         *
+         * @return A file or null
+         */
+        public Path file() {
+            return file;
+        }
+
+        /**
+         * Open a stream over the body; may be called more than once.
+         *
+         * @return A stream
+         * @throws IOException If the file cannot be opened
+         */
+        public InputStream openStream() throws IOException {
+            if (file != null) {
+                return Files.newInputStream(file, READ);
+            }
+            return new ByteBufInputStream(memory.duplicate());
+        }
+
+        /**
+         * Release the memory or delete the temporary file holding the body.
+         *
+         * @throws IOException If the file cannot be deleted
+         */
+        @Override
+        public void close() throws IOException {
+            if (memory != null && memory.refCnt() > 0) {
+                memory.release();
+            }
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -23,6 +23,7 @@
  */
 package com.mastfrog.acteur;
 
+import com.mastfrog.acteur.annotations.SingleFlight;
 import com.mastfrog.acteur.auth.AuthenticationActeur;
 import com.mastfrog.acteur.preconditions.Authenticated;
 import com.mastfrog.acteur.preconditions.AuthenticatedIf;
@@ -71,7 +72,8 @@ public final class BuiltInPageAnnotationHandler extends PageAnnotationHandler {
         RequireParametersIfMethodMatches.class, ParametersMustBeNumbersIfPresent.class,
         MinimumRequestBodyLength.class, MaximumRequestBodyLength.class,
         UrlParametersMayNotBeCombined.class, UrlParametersMayNotBeCombinedSets.class, CORS.class,
-        InjectUrlParametersAs.class, com.mastfrog.acteur.preconditions.BasicAuth.class, InjectRequestBodyAs.class
+        InjectUrlParametersAs.class, com.mastfrog.acteur.preconditions.BasicAuth.class, InjectRequestBodyAs.class,
+        SingleFlight.class
     };
 
     @Inject
@@ -179,6 +181,11 @@ public final class BuiltInPageAnnotationHandler extends PageAnnotationHandler {
         if (as != null) {
             acteurs.add(af.injectRequestBodyAsJSON(as.value()));
         }
+        SingleFlight flight = c.getAnnotation(SingleFlight.class);
+        if (flight != null) {
+            acteurs.add(Acteur.wrap(SingleFlightActeur.class, deps));
+            acteurs.add(Acteur.wrap(SingleFlightActeur.Replay.class, deps));
+        }
         return oldSize != acteurs.size();
     }
 }
@@ -23,14 +23,24 @@
  */
 package com.mastfrog.acteur;
 
+import com.mastfrog.acteur.server.EarlyContent;
 import com.mastfrog.acteurbase.Deferral.Resumer;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
 import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 import io.netty.handler.codec.http.LastHttpContent;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * Subclasses of this can be used from the &#064;Early annotation to provide an
@@ -54,12 +64,22 @@ public abstract class ChunkHandler extends SimpleChannelInboundHandler<Object> {
     protected final synchronized void resume(Object... ctx) {
         resumed = true;
         if (resumer != null) {
-            resumer.resume(context);
+            resumer.resume(ctx);
         } else {
             this.context = ctx;
         }
     }
 
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        // The first chunks frequently arrive before the acteur that
+        // installs us has run
+        for (HttpContent held = EarlyContent.poll(ctx.channel()); held != null;
+                held = EarlyContent.poll(ctx.channel())) {
+            channelRead(ctx, held);
+        }
+    }
+
     @Override
     protected final void channelRead0(ChannelHandlerContext ctx, Object msg) throws Exception {
         if (msg instanceof HttpContent) {
@@ -90,4 +110,23 @@ public abstract class ChunkHandler extends SimpleChannelInboundHandler<Object> {
      * @throws Exception If something goes wrong
      */
     protected abstract void onContent(ChannelHandlerContext ctx, ByteBuf chunk, HttpHeaders trailersOrHeaders, boolean done) throws Exception;
+
+    /**
+     * Reject a request whose body is still arriving: send a plain-text error
+     * response and close the connection once it is flushed, since the rest of
+     * the body may still be in flight. For use by handlers which see the body
+     * before any page has responded.
+     *
+     * @param ctx The channel context
+     * @param status The response status
+     * @param message The response body
+     */
+    public static void sendErrorAndClose(ChannelHandlerContext ctx, HttpResponseStatus status, String message) {
+        ByteBuf body = Unpooled.copiedBuffer(message, UTF_8);
+        FullHttpResponse resp = new DefaultFullHttpResponse(HTTP_1_1, status, body);
+        resp.headers().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.TEXT_PLAIN + "; charset=utf-8");
+        resp.headers().set(HttpHeaderNames.CONTENT_LENGTH, body.readableBytes());
+        resp.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+        ctx.writeAndFlush(resp).addListener(ChannelFutureListener.CLOSE);
+    }
 }
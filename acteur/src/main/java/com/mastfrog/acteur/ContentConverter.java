@@ -82,6 +82,17 @@ public class ContentConverter {
         return result;
     }
 
+    /**
+     * Get the codec used to deserialize content of the passed type; returns
+     * the application's default codec unless overridden.
+     *
+     * @param mimeType The content type of the request body, if known
+     * @return A codec
+     */
+    protected Codec codecFor(MimeType mimeType) {
+        return codec;
+    }
+
     private Charset findCharset(MimeType mt) {
         if (mt == null) {
             return charset.get();
@@ -105,7 +116,7 @@ public class ContentConverter {
         if (type.isInterface()) {
             Map<String, Object> m;
             try (InputStream in = new ByteBufInputStream(content)) {
-                m = codec.readValue(in, Map.class);
+                m = codecFor(mimeType).readValue(in, Map.class);
             }
             return toObject(m, type);
         }
@@ -186,13 +197,14 @@ public class ContentConverter {
         if (type == String.class || type == CharSequence.class) {
             return type.cast(toString(buf, findCharset(mimeType)));
         }
+        Codec c = codecFor(mimeType);
         ContentValidationPlugin plugin = plugins.get(type);
         if (plugin != null) {
-            plugin.validate(buf, mimeType, type, codec);
+            plugin.validate(buf, mimeType, type, c);
         }
         buf.resetReaderIndex();
         try (InputStream in = new ByteBufInputStream(buf)) {
-            T result = codec.readValue(in, type);
+            T result = c.readValue(in, type);
             return result;
         } catch (IOException ioe) {
             ioe.printStackTrace();
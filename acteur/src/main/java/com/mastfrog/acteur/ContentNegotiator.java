@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur;
+
+import com.google.inject.ImplementedBy;
+import com.google.inject.Singleton;
+import com.mastfrog.marshallers.netty.NettyContentMarshallers;
+import com.mastfrog.mime.MimeType;
+import com.mastfrog.util.codec.Codec;
+import com.mastfrog.util.preconditions.Checks;
+
+/**
+ * Chooses the format objects attached to a response are serialized in,
+ * typically based on the request's <code>Accept</code> header. The default
+ * implementation does no negotiation, and objects are written using the
+ * application's ObjectMapper; modules which support additional formats bind
+ * their own implementation.
+ *
+ * @author Tim Boudreau
+ */
+@ImplementedBy(ContentNegotiator.NoNegotiation.class)
+public interface ContentNegotiator {
+
+    /**
+     * Choose an encoding for the response to a request.
+     *
+     * @param evt The request
+     * @param responseType The content type already set on the response, if
+     * any
+     * @param message The object that will be marshalled as the response body,
+     * or null if the body will be written by a ResponseWriter
+     * @return An encoding, or null to leave the response as-is
+     */
+    Encoding negotiate(HttpEvent evt, MimeType responseType, Object message);
+
+    /**
+     * The result of negotiation - the content type to send, and the
+     * marshallers and codec to use to write the body.
+     */
+    public static final class Encoding {
+
+        private final MimeType contentType;
+        private final NettyContentMarshallers marshallers;
+        private final Codec codec;
+
+        public Encoding(MimeType contentType, NettyContentMarshallers marshallers, Codec codec) {
+            this.contentType = Checks.notNull("contentType", contentType);
+            this.marshallers = Checks.notNull("marshallers", marshallers);
+            this.codec = Checks.notNull("codec", codec);
+        }
+
+        public MimeType contentType() {
+            return contentType;
+        }
+
+        public NettyContentMarshallers marshallers() {
+            return marshallers;
+        }
+
+        public Codec codec() {
+            return codec;
+        }
+
+        @Override
+        public String toString() {
+            return "Encoding(" + contentType + ")";
+        }
+    }
+
+    @Singleton
+    static final class NoNegotiation implements ContentNegotiator {
+
+        @Override
+        public Encoding negotiate(HttpEvent evt, MimeType responseType, Object message) {
+            return null;
+        }
+    }
+}
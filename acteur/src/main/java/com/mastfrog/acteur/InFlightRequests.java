@@ -0,0 +1,364 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur;
+
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.mastfrog.acteur.annotations.SingleFlight;
+import static com.mastfrog.acteur.server.ServerModule.DELAY_EXECUTOR;
+import static com.mastfrog.acteur.server.ServerModule.X_INTERNAL_COMPRESS;
+import com.mastfrog.acteur.util.RequestID;
+import com.mastfrog.acteurbase.Deferral.Resumer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import static io.netty.handler.codec.http.HttpResponseStatus.NOT_MODIFIED;
+import static io.netty.handler.codec.http.HttpResponseStatus.PRECONDITION_FAILED;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.IllegalReferenceCountException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+
+/**
+ * Tracks requests to pages annotated with &#064;SingleFlight which are being
+ * processed, so that identical requests arriving meanwhile can wait for the
+ * first one's response rather than repeating its work.
+ *
+ * @author Tim Boudreau
+ */
+@Singleton
+final class InFlightRequests {
+
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+    private final Map<RequestID, Flight> byLeader = new ConcurrentHashMap<>();
+    private final Map<RequestID, SharedResponse> delivered = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    @Inject
+    InFlightRequests(@Named(DELAY_EXECUTOR) ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Compute the key identifying requests which may share a response, or
+     * null if this request may not be coalesced with others.
+     *
+     * @param page The page
+     * @param spec Its annotation
+     * @param evt The request
+     * @return A key or null
+     */
+    static String key(Page page, SingleFlight spec, HttpEvent evt) {
+        HttpMethod method = evt.request().method();
+        if (!HttpMethod.GET.equals(method) && !HttpMethod.HEAD.equals(method)) {
+            return null;
+        }
+        HttpHeaders hdrs = evt.request().headers();
+        boolean keyedOnAuth = false;
+        boolean keyedOnCookie = false;
+        StringBuilder sb = new StringBuilder(page.getClass().getName()).append(' ')
+                .append(method.name()).append(' ');
+        String uri = evt.request().uri();
+        int q = spec.ignoreQuery() ? uri.indexOf('?') : -1;
+        sb.append(q < 0 ? uri : uri.substring(0, q));
+        for (String h : spec.keyHeaders()) {
+            keyedOnAuth |= HttpHeaderNames.AUTHORIZATION.contentEqualsIgnoreCase(h);
+            keyedOnCookie |= HttpHeaderNames.COOKIE.contentEqualsIgnoreCase(h);
+            String val = hdrs.get(h);
+            sb.append('\0').append(val == null ? "" : val);
+        }
+        // Never let one user see a response computed for another
+        if ((!keyedOnAuth && hdrs.contains(HttpHeaderNames.AUTHORIZATION))
+                || (!keyedOnCookie && hdrs.contains(HttpHeaderNames.COOKIE))) {
+            return null;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Join the flight for the passed key.
+     *
+     * @param key The key
+     * @param id The request
+     * @param channel Its channel
+     * @return null if this request is the first and should proceed, or the
+     * flight to wait on
+     */
+    Flight join(String key, RequestID id, Channel channel) {
+        Flight created = new Flight(key, id);
+        Flight existing = flights.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+        byLeader.put(id, created);
+        // If the leader is disconnected, its chain will not complete
+        channel.closeFuture().addListener(f -> abandon(id));
+        return null;
+    }
+
+    /**
+     * Called with the response to every request; if the request led a
+     * flight, hands its response to the requests waiting on it.
+     *
+     * @param id The request
+     * @param resp The response, before the application decorated it
+     * @param body The body, if rendered into a single buffer
+     * @param noPayload If the response has no body at all
+     */
+    void complete(RequestID id, HttpResponse resp, ByteBuf body, boolean noPayload) {
+        if (byLeader.isEmpty()) {
+            return;
+        }
+        Flight flight = byLeader.remove(id);
+        if (flight == null) {
+            return;
+        }
+        flights.remove(flight.key, flight);
+        HttpResponseStatus status = resp.status();
+        if ((body == null && !noPayload) || NOT_MODIFIED.equals(status) || PRECONDITION_FAILED.equals(status)
+                || resp.headers().contains(HttpHeaderNames.SET_COOKIE)) {
+            flight.finish(null);
+            return;
+        }
+        SharedResponse shared = new SharedResponse(status, resp.headers(),
+                body == null ? Unpooled.EMPTY_BUFFER : body.retainedDuplicate());
+        try {
+            flight.finish(shared);
+        } finally {
+            shared.release();
+        }
+    }
+
+    /**
+     * Called if a request which may have led a flight ended without a
+     * response from its page; the waiting requests run the page themselves.
+     *
+     * @param id The request
+     */
+    void abandon(RequestID id) {
+        if (byLeader.isEmpty()) {
+            return;
+        }
+        Flight flight = byLeader.remove(id);
+        if (flight != null) {
+            flights.remove(flight.key, flight);
+            flight.finish(null);
+        }
+    }
+
+    /**
+     * Take the response shared with a waiting request, if any.
+     *
+     * @param id The request
+     * @return A response or null
+     */
+    SharedResponse take(RequestID id) {
+        return delivered.isEmpty() ? null : delivered.remove(id);
+    }
+
+    private void discard(RequestID id) {
+        SharedResponse unused = delivered.remove(id);
+        if (unused != null) {
+            unused.release();
+        }
+    }
+
+    final class Flight {
+
+        private final String key;
+        private final RequestID leader;
+        private final List<Waiter> waiters = new ArrayList<>(4);
+        private boolean done;
+        private SharedResponse result;
+
+        Flight(String key, RequestID leader) {
+            this.key = key;
+            this.leader = leader;
+        }
+
+        void await(RequestID id, Channel channel, int timeoutSeconds, Resumer resumer) {
+            Waiter waiter = new Waiter(id, channel, resumer);
+            synchronized (this) {
+                if (!done) {
+                    waiters.add(waiter);
+                    waiter.timeout = scheduler.schedule(() -> {
+                        if (remove(waiter)) {
+                            waiter.resumer.resume();
+                        }
+                    }, Math.max(0, timeoutSeconds), TimeUnit.SECONDS);
+                }
+            }
+            // A waiter whose client went away is dropped, not resumed, and
+            // anything handed to it is released
+            channel.closeFuture().addListener((ChannelFutureListener) f -> {
+                waiter.cancelled = true;
+                remove(waiter);
+                discard(id);
+            });
+            if (waiter.timeout == null) {
+                // Finished between joining and getting here
+                SharedResponse shared;
+                synchronized (this) {
+                    shared = result;
+                }
+                deliver(waiter, shared);
+            }
+        }
+
+        private synchronized boolean remove(Waiter waiter) {
+            boolean result = waiters.remove(waiter);
+            if (result && waiter.timeout != null) {
+                waiter.timeout.cancel(false);
+            }
+            return result;
+        }
+
+        void finish(SharedResponse shared) {
+            List<Waiter> toNotify;
+            synchronized (this) {
+                done = true;
+                // Keep it only for waiters which are still between join()
+                // and await(); they take their own duplicate
+                result = shared == null ? null : shared.retainedDuplicate();
+                toNotify = new ArrayList<>(waiters);
+                waiters.clear();
+            }
+            for (Waiter w : toNotify) {
+                if (w.timeout != null) {
+                    w.timeout.cancel(false);
+                }
+                deliver(w, shared);
+            }
+            if (result != null) {
+                // Let stragglers still get it for a moment, then let go
+                SharedResponse r = result;
+                scheduler.schedule(() -> {
+                    synchronized (this) {
+                        result = null;
+                    }
+                    r.release();
+                }, 1, TimeUnit.SECONDS);
+            }
+        }
+
+        private void deliver(Waiter waiter, SharedResponse shared) {
+            if (waiter.isGone()) {
+                return;
+            }
+            if (shared != null) {
+                SharedResponse copy = shared.retainedDuplicate();
+                if (copy != null) {
+                    delivered.put(waiter.id, copy);
+                }
+            }
+            if (waiter.isGone()) {
+                // The channel closed after finish() took the list of waiters,
+                // and its close listener may already have run
+                discard(waiter.id);
+                return;
+            }
+            waiter.resumer.resume();
+        }
+
+        @Override
+        public String toString() {
+            return "Flight(" + key + " led by " + leader + ")";
+        }
+    }
+
+    private static final class Waiter {
+
+        final RequestID id;
+        final Channel channel;
+        final Resumer resumer;
+        ScheduledFuture<?> timeout;
+        volatile boolean cancelled;
+
+        Waiter(RequestID id, Channel channel, Resumer resumer) {
+            this.id = id;
+            this.channel = channel;
+            this.resumer = resumer;
+        }
+
+        boolean isGone() {
+            return cancelled || !channel.isOpen();
+        }
+    }
+
+    /**
+     * A response computed for one request, to be replayed to others.
+     */
+    static final class SharedResponse {
+
+        final HttpResponseStatus status;
+        final HttpHeaders headers;
+        final ByteBuf body;
+
+        SharedResponse(HttpResponseStatus status, HttpHeaders headers, ByteBuf body) {
+            this.status = status;
+            this.headers = new DefaultHttpHeaders(false).set(headers);
+            // These are recomputed for each response
+            this.headers.remove(HttpHeaderNames.CONTENT_LENGTH);
+            this.headers.remove(HttpHeaderNames.TRANSFER_ENCODING);
+            this.headers.remove(HttpHeaderNames.CONNECTION);
+            this.headers.remove(X_INTERNAL_COMPRESS);
+            if (HttpHeaderValues.IDENTITY.contentEqualsIgnoreCase(
+                    String.valueOf(this.headers.get(HttpHeaderNames.CONTENT_ENCODING)))) {
+                this.headers.remove(HttpHeaderNames.CONTENT_ENCODING);
+            }
+            this.body = body;
+        }
+
+        private SharedResponse(SharedResponse orig, ByteBuf body) {
+            this.status = orig.status;
+            this.headers = orig.headers;
+            this.body = body;
+        }
+
+        SharedResponse retainedDuplicate() {
+            try {
+                return new SharedResponse(this, body.retainedDuplicate());
+            } catch (IllegalReferenceCountException ex) {
+                return null;
+            }
+        }
+
+        void release() {
+            body.release();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * ChunkHandler for &#064;Early pages whose request body is a JSON array of
+ * unbounded size; each element is deserialized and passed to
+ * <code>onElement()</code> as soon as its last byte has arrived, so memory use
+ * is bounded by the size of the largest element rather than the size of the
+ * request. Once the array is closed, the acteur chain is resumed with whatever
+ * <code>onComplete()</code> returns.
+ *
+ * @see JsonChunkHandler
+ * @author Tim Boudreau
+ */
+public abstract class JsonArrayChunkHandler<T> extends JsonChunkHandler<T> {
+
+    private long count;
+
+    protected JsonArrayChunkHandler(ObjectMapper mapper, Class<T> type) {
+        super(mapper, type);
+    }
+
+    protected JsonArrayChunkHandler(ObjectMapper mapper, Class<T> type, long maxBytes) {
+        super(mapper, type, maxBytes);
+    }
+
+    @Override
+    final boolean elementMode() {
+        return true;
+    }
+
+    @Override
+    final void valueParsed(T value) throws Exception {
+        count++;
+        onElement(value);
+    }
+
+    @Override
+    final Object[] completed() throws Exception {
+        return onComplete(count);
+    }
+
+    /**
+     * Called with each element of the array, in order, on the event loop
+     * thread - so do not do blocking work here.
+     *
+     * @param element The element
+     * @throws Exception If something goes wrong, which will result in a
+     * 400 Bad Request response
+     */
+    protected abstract void onElement(T element) throws Exception;
+
+    /**
+     * Called once the closing bracket of the array has been received.
+     *
+     * @param count The number of elements processed
+     * @return Objects to make available for injection into subsequent acteurs
+     * @throws Exception If something goes wrong
+     */
+    protected Object[] onComplete(long count) throws Exception {
+        return new Object[0];
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.mastfrog.util.preconditions.Checks;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
+import static io.netty.handler.codec.http.HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE;
+import java.io.IOException;
+
+/**
+ * ChunkHandler for use with &#064;Early pages, which feeds inbound HTTP chunks
+ * into Jackson's non-blocking parser as they arrive, rather than aggregating
+ * the entire request body into one buffer and parsing it afterwards. When the
+ * request body is complete, the chain is resumed with the deserialized object
+ * available for injection into subsequent acteurs (so its type needs to be
+ * bound in the request scope).
+ * <p>
+ * Subclass this with a concrete type, and inject the ObjectMapper, e.g.
+ * <pre>
+ * static class ThingHandler extends JsonChunkHandler&lt;Thing&gt; {
+ *     &#064;Inject
+ *     ThingHandler(ObjectMapper mapper) {
+ *         super(mapper, Thing.class);
+ *     }
+ * }
+ * </pre> and reference it from the page, as
+ * <code>&#064;Early(value=ThingHandler.class, send100continue=true)</code>.
+ * Since a handler holds parse state, it must not be bound as a singleton.
+ * <p>
+ * Only the tokens of the value being parsed are buffered, never the raw
+ * bytes; to process unbounded arrays one element at a time, use
+ * JsonArrayChunkHandler.
+ *
+ * @author Tim Boudreau
+ */
+public abstract class JsonChunkHandler<T> extends ChunkHandler {
+
+    private final ObjectMapper mapper;
+    private final JavaType type;
+    private final long maxBytes;
+    private JsonParser parser;
+    private ByteArrayFeeder feeder;
+    private TokenBuffer tokens;
+    private byte[] scratch;
+    private int depth;
+    private long received;
+    private boolean rootComplete;
+    private boolean finished;
+    private T value;
+
+    protected JsonChunkHandler(ObjectMapper mapper, Class<T> type) {
+        this(mapper, type, Long.MAX_VALUE);
+    }
+
+    /**
+     * Create a handler.
+     *
+     * @param mapper The object mapper
+     * @param type The type to parse
+     * @param maxBytes The maximum number of bytes of request body to accept
+     * before failing with a 413 response
+     */
+    protected JsonChunkHandler(ObjectMapper mapper, Class<T> type, long maxBytes) {
+        this.mapper = Checks.notNull("mapper", mapper);
+        this.type = mapper.constructType(Checks.notNull("type", type));
+        this.maxBytes = Checks.greaterThanZero("maxBytes", maxBytes);
+    }
+
+    /**
+     * Whether each element of a top-level array is deserialized and passed to
+     * valueParsed() individually, rather than the entire document.
+     *
+     * @return true if elements should be delivered individually
+     */
+    boolean elementMode() {
+        return false;
+    }
+
+    /**
+     * Called with each deserialized value - the root value or, in element
+     * mode, each element of the root array.
+     *
+     * @param value The value
+     * @throws Exception If something goes wrong
+     */
+    void valueParsed(T value) throws Exception {
+        this.value = value;
+    }
+
+    /**
+     * Called once the body has been completely parsed, to compute the objects
+     * the acteur chain should be resumed with.
+     *
+     * @return The objects to make available for injection
+     * @throws Exception If something goes wrong
+     */
+    Object[] completed() throws Exception {
+        if (value == null) {
+            throw new IOException("No JSON content in request body");
+        }
+        return onValue(value);
+    }
+
+    /**
+     * Called when the complete body has been parsed; by default, returns an
+     * array containing only the passed value, so it is available to subsequent
+     * acteurs.
+     *
+     * @param value The value
+     * @return The objects to make available for injection
+     * @throws Exception If something goes wrong
+     */
+    protected Object[] onValue(T value) throws Exception {
+        return new Object[]{value};
+    }
+
+    @Override
+    protected final void onContent(ChannelHandlerContext ctx, ByteBuf chunk, HttpHeaders trailersOrHeaders, boolean done) throws Exception {
+        if (finished) {
+            return;
+        }
+        try {
+            if (parser == null) {
+                parser = mapper.getFactory().createNonBlockingByteArrayParser();
+                feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+            }
+            int length = chunk.readableBytes();
+            received += length;
+            if (received > maxBytes) {
+                fail(ctx, REQUEST_ENTITY_TOO_LARGE, new IOException("Request body exceeds "
+                        + maxBytes + " bytes"));
+                return;
+            }
+            if (length > 0) {
+                // The parser holds a reference to the array until it has
+                // consumed it, which drain() guarantees before we return
+                if (chunk.hasArray()) {
+                    int offset = chunk.arrayOffset() + chunk.readerIndex();
+                    feeder.feedInput(chunk.array(), offset, offset + length);
+                } else {
+                    if (scratch == null || scratch.length < length) {
+                        scratch = new byte[length];
+                    }
+                    chunk.getBytes(chunk.readerIndex(), scratch, 0, length);
+                    feeder.feedInput(scratch, 0, length);
+                }
+                drain();
+            }
+            if (done) {
+                feeder.endOfInput();
+                drain();
+                if (!rootComplete && (depth > 0 || tokens != null)) {
+                    throw new IOException("Unexpected end of JSON content");
+                }
+                finished = true;
+                Object[] ctxObjects = completed();
+                cleanup(ctx);
+                resume(ctxObjects);
+            }
+        } catch (Exception ex) {
+            fail(ctx, BAD_REQUEST, ex);
+        }
+    }
+
+    private void drain() throws Exception {
+        JsonToken tok;
+        while ((tok = parser.nextToken()) != null && tok != JsonToken.NOT_AVAILABLE) {
+            if (rootComplete) {
+                throw new IOException("Unexpected content after end of JSON: " + tok);
+            }
+            boolean elements = elementMode();
+            if (elements && depth == 0) {
+                if (tok != JsonToken.START_ARRAY) {
+                    throw new IOException("Expected a JSON array but got " + tok);
+                }
+                depth++;
+                continue;
+            }
+            if (elements && depth == 1 && tok == JsonToken.END_ARRAY) {
+                depth--;
+                rootComplete = true;
+                continue;
+            }
+            if (tokens == null) {
+                tokens = new TokenBuffer(mapper, false);
+            }
+            tokens.copyCurrentEvent(parser);
+            if (tok.isStructStart()) {
+                depth++;
+            } else if (tok.isStructEnd()) {
+                depth--;
+            }
+            if (depth == (elements ? 1 : 0)) {
+                TokenBuffer buffer = tokens;
+                tokens = null;
+                T obj;
+                try (JsonParser p = buffer.asParser(mapper)) {
+                    obj = mapper.readValue(p, type);
+                }
+                if (!elements) {
+                    rootComplete = true;
+                }
+                valueParsed(obj);
+            }
+        }
+    }
+
+    private void cleanup(ChannelHandlerContext ctx) {
+        tokens = null;
+        scratch = null;
+        if (parser != null) {
+            try {
+                parser.close();
+            } catch (IOException ex) {
+                // do nothing - non-blocking parser has no underlying stream
+            }
+        }
+        // Out of the pipeline, so the next request on a keep-alive
+        // connection is not fed to us
+        if (ctx.pipeline().context(this) != null) {
+            ctx.pipeline().remove(this);
+        }
+    }
+
+    private void fail(ChannelHandlerContext ctx, HttpResponseStatus status, Throwable err) throws Exception {
+        finished = true;
+        cleanup(ctx);
+        onFailure(ctx, status, err);
+    }
+
+    /**
+     * Called if the body is not valid JSON, cannot be deserialized as the
+     * requested type or exceeds the maximum length. The default implementation
+     * sends an error response and closes the connection, since the remainder
+     * of the request body may still be in flight.
+     *
+     * @param ctx The channel context
+     * @param status The suggested response status
+     * @param err The failure
+     * @throws Exception If something goes wrong
+     */
+    protected void onFailure(ChannelHandlerContext ctx, HttpResponseStatus status, Throwable err) throws Exception {
+        String msg = err.getMessage() == null ? err.getClass().getSimpleName() : err.getMessage();
+        sendErrorAndClose(ctx, status, msg);
+    }
+}
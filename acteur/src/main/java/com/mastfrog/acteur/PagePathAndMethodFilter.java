@@ -27,6 +27,7 @@ import com.google.common.collect.Sets;
 import com.mastfrog.acteur.Page.PathPatternInfo;
 import com.mastfrog.acteur.headers.Method;
 import static com.mastfrog.acteur.headers.Method.GET;
+import static com.mastfrog.acteur.headers.Method.HEAD;
 import com.mastfrog.acteur.preconditions.Methods;
 import com.mastfrog.acteur.preconditions.Path;
 import com.mastfrog.acteur.preconditions.PathRegex;
@@ -68,17 +69,27 @@ final class PagePathAndMethodFilter {
     static final boolean DEBUG = Boolean.getBoolean("path.cache.debug");
 
     private final Function<String, String> basePathFilter;
+    private final boolean headForGet;
 
-    PagePathAndMethodFilter(Function<String, String> basePathFilter) {
+    PagePathAndMethodFilter(Function<String, String> basePathFilter, boolean headForGet) {
         this.basePathFilter = basePathFilter;
+        this.headForGet = headForGet;
+    }
+
+    PagePathAndMethodFilter(Function<String, String> basePathFilter) {
+        this(basePathFilter, true);
     }
 
     PagePathAndMethodFilter() {
-        this.basePathFilter = new IdentityFunction();
+        this(new IdentityFunction());
     }
 
     PagePathAndMethodFilter(String basePath) {
-        this(filterForBasePath(basePath));
+        this(basePath, true);
+    }
+
+    PagePathAndMethodFilter(String basePath, boolean headForGet) {
+        this(filterForBasePath(basePath), headForGet);
     }
 
     private static final Function<String, String> filterForBasePath(String basePath) {
@@ -269,7 +280,7 @@ final class PagePathAndMethodFilter {
         }
         boolean added = false;
         if (mths != null) {
-            for (Method mth : mths) {
+            for (Method mth : withImplicitHead(mths)) {
                 ByMethod by = all.get(mth);
                 if (by == null) {
                     by = new ByMethod();
@@ -287,7 +298,7 @@ final class PagePathAndMethodFilter {
         Methods methods = type.getAnnotation(Methods.class);
         boolean added = false;
         if (methods != null) {
-            for (Method mth : methods.value()) {
+            for (Method mth : withImplicitHead(CollectionUtils.toIterable(methods.value()))) {
                 ByMethod by = all.get(mth);
                 if (by == null) {
                     by = new ByMethod();
@@ -301,6 +312,21 @@ final class PagePathAndMethodFilter {
         }
     }
 
+    private Iterable<Method> withImplicitHead(Iterable<Method> mths) {
+        if (!headForGet) {
+            return mths;
+        }
+        List<Method> result = new ArrayList<>(3);
+        for (Method m : mths) {
+            result.add(m);
+        }
+        // Pages which answer GET answer HEAD too, unless they say otherwise
+        if (result.contains(GET) && !result.contains(HEAD)) {
+            result.add(HEAD);
+        }
+        return result;
+    }
+
     void addUnknown(Page pg) {
         unknowns.add(pg);
     }
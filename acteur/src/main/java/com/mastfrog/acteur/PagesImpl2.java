@@ -106,12 +106,19 @@ class PagesImpl2 {
     private final boolean disableFilterPathsAndMethods;
     private final boolean renderStackTraces;
     private final boolean httpCompressorEnabled;
+    private final ResponseCache responseCache;
+    private final InFlightRequests inFlight;
+    private final AutoETags autoETags;
     static final HeaderValueType<CharSequence> X_BODY_GENERATOR = Headers.header(new AsciiString("X-Body-Generator"));
 
     @Inject
     PagesImpl2(Application application, Settings settings, @Named(DELAY_EXECUTOR) ScheduledExecutorService scheduler,
-            DeploymentMode mode, ReentrantScope scope, @Named(ServerModule.BACKGROUND_THREAD_POOL_NAME) ExecutorService exe) {
+            DeploymentMode mode, ReentrantScope scope, @Named(ServerModule.BACKGROUND_THREAD_POOL_NAME) ExecutorService exe,
+            ResponseCache responseCache, InFlightRequests inFlight, AutoETags autoETags) {
         this.application = application;
+        this.responseCache = responseCache;
+        this.inFlight = inFlight;
+        this.autoETags = autoETags;
         this.scheduler = scheduler;
         disableFilterPathsAndMethods = settings.getBoolean(SETTINGS_KEY_DISABLE_FILTER, false);
         renderStackTraces = settings.getBoolean(ServerModule.SETTINGS_KEY_RENDER_STACK_TRACES, !mode.isProduction());
@@ -203,6 +210,14 @@ class PagesImpl2 {
             application.probe.onBeforeRunPage(id, event, pageChain.page);
             pagesIterable = Collections.singleton(pageChain);
         } else {
+            if (event instanceof HttpEvent && !((HttpEvent) event).isPreContent()
+                    && responseCache.trySend(id, (HttpEvent) event, channel)) {
+                // Answered from the response cache without running any pages
+                application.onBeforeRespond(id, event, HttpResponseStatus.OK);
+                releaseRequest(event);
+                latch.countDown();
+                return latch;
+            }
             clos = new Closables(channel, application.control());
             ChainToPageConverter chainConverter = new ChainToPageConverter(id, event, clos);
             boolean early = event instanceof HttpEvent && ((HttpEvent) event).isPreContent();
@@ -223,6 +238,16 @@ class PagesImpl2 {
         return latch;
     }
 
+    private static void releaseRequest(Event<?> event) {
+        Object o = event.request();
+        if (o instanceof ReferenceCounted) {
+            ReferenceCounted rc = (ReferenceCounted) o;
+            if (rc.refCnt() > 0) {
+                rc.release();
+            }
+        }
+    }
+
     static class CancelOnChannelClose implements ChannelFutureListener {
 
         final AtomicBoolean cancelled = new AtomicBoolean();
@@ -295,6 +320,7 @@ class PagesImpl2 {
 
         @Override
         public void onNoResponse() {
+            inFlight.abandon(id);
             application.send404(id, event, channel);
             latch.countDown();
         }
@@ -334,11 +360,23 @@ class PagesImpl2 {
                 application._onBeforeSendResponse(response.status, event, response, state.getActeur(), state.getLockedPage());
                 // Create a netty response
                 HttpResponse httpResponse = response.toResponse(event, application.charset);
+                boolean notModified = event instanceof HttpEvent
+                        && autoETags.tag((HttpEvent) event, httpResponse, response.bufferedPayload());
+                // Hand it to any identical requests waiting on this one
+                inFlight.complete(id, httpResponse, response.bufferedPayload(), response.hasNoPayload());
                 // Allow the application to add headers
                 httpResponse = application._decorateResponse(id, event, state.getLockedPage(), acteur, httpResponse);
                 if (debug && response.hasListener()) {
                     httpResponse.headers().add(X_BODY_GENERATOR.name(), response.listenerString());
                 }
+                if (event instanceof HttpEvent) {
+                    responseCache.offer((HttpEvent) event, state.getLockedPage(), httpResponse, response.bufferedPayload());
+                }
+                if (notModified) {
+                    // The client already has these bytes
+                    httpResponse = autoETags.notModified(httpResponse);
+                    response.discardBufferedPayload();
+                }
 
                 // Abort if the client disconnected
                 if (!channel.isOpen()) {
@@ -368,13 +406,7 @@ class PagesImpl2 {
             } catch (Exception | Error e) {
                 uncaughtException(Thread.currentThread(), e);
             } finally {
-                Object o = event.request();
-                if (o instanceof ReferenceCounted) {
-                    ReferenceCounted rc = (ReferenceCounted) o;
-                    if (rc.refCnt() > 0) {
-                        ((ReferenceCounted) o).release();
-                    }
-                }
+                releaseRequest(event);
             }
         }
 
@@ -444,6 +476,7 @@ class PagesImpl2 {
                     thrwbl.addSuppressed(ex);
                 }
                 application.probe.onThrown(id, event, thrwbl);
+                inFlight.abandon(id);
                 try {
                     if (channel.isOpen()) {
                         HttpResponse resp;
@@ -23,6 +23,7 @@
  */
 package com.mastfrog.acteur;
 
+import static com.mastfrog.acteur.ActeurFactory.SETTINGS_KEY_HEAD_FOR_GET;
 import static com.mastfrog.acteur.server.ServerModule.SETTINGS_KEY_BASE_PATH;
 import com.mastfrog.giulius.Dependencies;
 import com.mastfrog.settings.Settings;
@@ -93,15 +94,15 @@ abstract class PathFilters {
             throw new IllegalStateException("Not yet initialized");
         }
 
-        private PathFilters toInitializedInstance(String basePath) {
-            PagePathAndMethodFilter normal = new PagePathAndMethodFilter(basePath);
+        private PathFilters toInitializedInstance(String basePath, boolean headForGet) {
+            PagePathAndMethodFilter normal = new PagePathAndMethodFilter(basePath, headForGet);
             addToFilter(normalPages, normal);
             PagePathAndMethodFilter early = null;
             if (!earlyPages.isEmpty()) {
-                early = new PagePathAndMethodFilter(basePath);
+                early = new PagePathAndMethodFilter(basePath, headForGet);
                 addToFilter(earlyPages, early);
             }
-            return new InitializedPathFilters(basePath, normal, early);
+            return new InitializedPathFilters(basePath, headForGet, normal, early);
         }
 
         @SuppressWarnings("unchecked")
@@ -142,7 +143,7 @@ abstract class PathFilters {
                     Settings settings = deps.getInstance(Settings.class);
                     if (settings == null) {
                         // possible but unlikely
-                        result = ipf.toInitializedInstance(null);
+                        result = ipf.toInitializedInstance(null, true);
                     } else {
                         String bp = settings.getString(SETTINGS_KEY_BASE_PATH);
                         if (PagePathAndMethodFilter.DEBUG) {
@@ -151,7 +152,8 @@ abstract class PathFilters {
                                     + ipf.normalPages + "\nEarly pages: \n"
                                     + ipf.earlyPages);
                         }
-                        result = ipf.toInitializedInstance(bp);
+                        result = ipf.toInitializedInstance(bp,
+                                settings.getBoolean(SETTINGS_KEY_HEAD_FOR_GET, true));
                     }
                 }
             }
@@ -198,13 +200,16 @@ abstract class PathFilters {
     private static final class InitializedPathFilters extends PathFilters {
 
         private final String basePath;
+        private final boolean headForGet;
 
         private final PagePathAndMethodFilter filter;
         private PagePathAndMethodFilter earlyPageMatcher;
 
         @Inject
-        InitializedPathFilters(String basePath, PagePathAndMethodFilter filter, PagePathAndMethodFilter earlyPageMatcher) {
+        InitializedPathFilters(String basePath, boolean headForGet, PagePathAndMethodFilter filter,
+                PagePathAndMethodFilter earlyPageMatcher) {
             this.basePath = basePath;
+            this.headForGet = headForGet;
             this.filter = filter;
             this.earlyPageMatcher = earlyPageMatcher;
         }
@@ -229,7 +234,7 @@ abstract class PathFilters {
         @Override
         PagePathAndMethodFilter earlyPages() {
             if (earlyPageMatcher == null) {
-                earlyPageMatcher = new PagePathAndMethodFilter(basePath);
+                earlyPageMatcher = new PagePathAndMethodFilter(basePath, headForGet);
             }
             return earlyPageMatcher;
         }
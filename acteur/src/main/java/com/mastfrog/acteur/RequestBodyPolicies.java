@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur;
+
+import com.mastfrog.acteur.preconditions.MaximumRequestBodyLength;
+import com.mastfrog.acteur.preconditions.RequestBodyPolicy;
+import static com.mastfrog.acteur.preconditions.RequestBodyPolicy.Policy.REJECT;
+import static com.mastfrog.acteur.preconditions.RequestBodyPolicy.Policy.STREAM;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-page request body limits and aggregation policies, collected from
+ * &#064;MaximumRequestBodyLength and &#064;RequestBodyPolicy annotations as
+ * pages are added.
+ *
+ * @author Tim Boudreau
+ */
+final class RequestBodyPolicies {
+
+    static final long STREAMED = -1;
+    // Pages with neither annotation use the default passed by the caller
+    private static final long UNDECLARED = -2;
+    private final Map<Class<?>, Long> limits = new ConcurrentHashMap<>();
+    private volatile boolean any;
+    private volatile long maxDeclared;
+
+    void add(Class<?> type) {
+        long limit = declaredLimit(type);
+        if (limit != UNDECLARED) {
+            any = true;
+            maxDeclared = Math.max(maxDeclared, limit);
+        }
+    }
+
+    boolean isEmpty() {
+        return !any;
+    }
+
+    long maxDeclared() {
+        return maxDeclared;
+    }
+
+    /**
+     * Compute the body limit for a request from all the pages it could be
+     * routed to, taking the most permissive, since which page will actually
+     * respond is not known until they run.
+     *
+     * @param candidates Page types or instances
+     * @param defaultMax The limit for pages which do not declare one
+     * @return The maximum body length, 0 to refuse any body, or -1 if the
+     * body should not be aggregated
+     */
+    long limitFor(Iterable<Object> candidates, long defaultMax) {
+        long result = STREAMED;
+        boolean matched = false;
+        for (Object o : candidates) {
+            matched = true;
+            Class<?> type = o instanceof Class<?> ? (Class<?>) o : o.getClass();
+            long limit = limits.computeIfAbsent(type, RequestBodyPolicies::declaredLimit);
+            if (limit != STREAMED) {
+                result = Math.max(result, limit == UNDECLARED ? defaultMax : limit);
+            }
+        }
+        // If nothing matches, the request will get a 404 anyway
+        return matched ? result : defaultMax;
+    }
+
+    private static long declaredLimit(Class<?> type) {
+        RequestBodyPolicy policy = type.getAnnotation(RequestBodyPolicy.class);
+        if (policy != null && policy.value() == STREAM) {
+            return STREAMED;
+        } else if (policy != null && policy.value() == REJECT) {
+            return 0;
+        }
+        MaximumRequestBodyLength max = type.getAnnotation(MaximumRequestBodyLength.class);
+        return max != null ? Math.max(0, max.value()) : UNDECLARED;
+    }
+}
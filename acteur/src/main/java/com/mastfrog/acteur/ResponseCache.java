@@ -0,0 +1,483 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur;
+
+import com.google.inject.Singleton;
+import com.mastfrog.acteur.annotations.Cacheable;
+import com.mastfrog.acteur.server.IfNoneMatch;
+import com.mastfrog.acteur.server.QValues;
+import com.mastfrog.acteur.server.ServerModule;
+import static com.mastfrog.acteur.server.ServerModule.DEFAULT_COMPRESSION_THRESHOLD;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_THRESHOLD;
+import static com.mastfrog.acteur.server.ServerModule.X_INTERNAL_COMPRESS;
+import com.mastfrog.acteur.util.RequestID;
+import com.mastfrog.giulius.annotations.Setting;
+import static com.mastfrog.giulius.annotations.Setting.ValueType.INTEGER;
+import com.mastfrog.settings.Settings;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import static io.netty.handler.codec.http.HttpResponseStatus.NOT_MODIFIED;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import io.netty.util.IllegalReferenceCountException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+import javax.inject.Inject;
+
+/**
+ * Keeps fully encoded responses to GET requests for pages annotated with
+ * &#064;Cacheable, and replays them without running the acteur chain. Entries
+ * are grouped by URI; each group knows which request headers select among its
+ * variants (the page's varyBy() plus whatever the response's Vary header
+ * lists), and groups are evicted least-recently-used first once the total size
+ * of their buffers exceeds the configured limit. Lookups take no lock; only
+ * storing and evicting do. Does nothing unless some page is &#064;Cacheable.
+ *
+ * @author Tim Boudreau
+ */
+@Singleton
+final class ResponseCache {
+
+    @Setting(value = "Maximum bytes of encoded responses to pages annotated with @Cacheable "
+            + "to keep in memory; 0 disables response caching, which is off anyway unless some page "
+            + "is @Cacheable", type = INTEGER, defaultValue = "16777216")
+    static final String SETTINGS_KEY_RESPONSE_CACHE_BYTES = "response.cache.bytes";
+    static final long DEFAULT_RESPONSE_CACHE_BYTES = 16 * 1024 * 1024;
+    @Setting(value = "Responses with bodies larger than this are not kept in the response cache",
+            type = INTEGER, defaultValue = "1048576")
+    static final String SETTINGS_KEY_RESPONSE_CACHE_MAX_ENTRY_BYTES = "response.cache.max.entry.bytes";
+    static final int DEFAULT_RESPONSE_CACHE_MAX_ENTRY_BYTES = 1024 * 1024;
+    // Rough cost of the headers and bookkeeping for an entry
+    private static final int ENTRY_OVERHEAD = 512;
+    private static final String[] NO_HEADERS = new String[0];
+    private static final List<String> GZIP = Collections.singletonList("gzip");
+    private final long maxBytes;
+    private final int maxEntryBytes;
+    private final boolean compress;
+    private final int compressionThreshold;
+    private final boolean enabled;
+    private final Map<String, Variants> entries = new ConcurrentHashMap<>(64);
+    // Guarded by this, as are changes to entries
+    private long totalBytes;
+
+    @Inject
+    ResponseCache(Settings settings, Application application) {
+        maxBytes = settings.getLong(SETTINGS_KEY_RESPONSE_CACHE_BYTES, DEFAULT_RESPONSE_CACHE_BYTES);
+        enabled = maxBytes > 0 && application.hasCacheablePages();
+        maxEntryBytes = settings.getInt(SETTINGS_KEY_RESPONSE_CACHE_MAX_ENTRY_BYTES, DEFAULT_RESPONSE_CACHE_MAX_ENTRY_BYTES);
+        compress = settings.getBoolean(ServerModule.HTTP_COMPRESSION, true);
+        compressionThreshold = settings.getInt(HTTP_COMPRESSION_THRESHOLD, DEFAULT_COMPRESSION_THRESHOLD);
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * If a usable cached response exists for this request, write it to the
+     * channel.
+     *
+     * @param id The request id
+     * @param evt The request
+     * @param channel The channel
+     * @return true if a response was sent and the request needs no further
+     * processing
+     */
+    boolean trySend(RequestID id, HttpEvent evt, Channel channel) {
+        if (!isEnabled() || !isCacheableRequest(evt) || requestsRevalidation(evt)) {
+            return false;
+        }
+        String uri = evt.request().uri();
+        Variants variants = entries.get(uri);
+        if (variants == null) {
+            return false;
+        }
+        String variantKey = variants.keyFor(evt);
+        CachedResponse cached = variants.get(variantKey);
+        if (cached == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now >= cached.expires) {
+            if (now >= cached.staleUntil) {
+                remove(uri, variantKey, cached);
+                return false;
+            }
+            // Stale but revalidatable - the first request to get here runs the
+            // chain and replaces the entry;  everyone else gets the stale copy
+            if (cached.revalidating.compareAndSet(false, true)) {
+                return false;
+            }
+        }
+        variants.lastUsed = System.nanoTime();
+        return cached.send(id, evt, channel, now);
+    }
+
+    /**
+     * Called with each response before it is sent, to store it if the page
+     * which produced it is annotated with &#064;Cacheable and the response
+     * can safely be replayed.
+     *
+     * @param evt The request
+     * @param page The page which produced the response
+     * @param resp The response, after the application has decorated it
+     * @param body The body, if it was rendered into a single buffer
+     */
+    void offer(HttpEvent evt, Page page, HttpResponse resp, ByteBuf body) {
+        if (!isEnabled() || page == null) {
+            return;
+        }
+        Cacheable spec = page.getClass().getAnnotation(Cacheable.class);
+        if (spec == null || !HttpMethod.GET.equals(evt.request().method()) || !isCacheableRequest(evt)) {
+            return;
+        }
+        String uri = evt.request().uri();
+        if (NOT_MODIFIED.equals(resp.status())) {
+            // Says nothing about the body; let the next request for a stale
+            // entry try again
+            Variants variants = entries.get(uri);
+            CachedResponse cached = variants == null ? null : variants.get(variants.keyFor(evt));
+            if (cached != null) {
+                cached.revalidating.set(false);
+            }
+            return;
+        }
+        HttpHeaders hdrs = resp.headers();
+        String[] vary = varyHeaders(spec, hdrs);
+        if (vary == null || !OK.equals(resp.status()) || body == null || body.readableBytes() > maxEntryBytes
+                || !isCacheableResponse(hdrs)) {
+            // Whatever we had for this variant is no longer what the page
+            // would say
+            invalidate(uri, evt);
+            return;
+        }
+        CachedResponse cached = new CachedResponse(spec, hdrs, body, evt);
+        synchronized (this) {
+            Variants variants = entries.get(uri);
+            if (variants == null || !Arrays.equals(variants.varyBy, vary)) {
+                if (variants != null) {
+                    totalBytes -= variants.release();
+                }
+                variants = new Variants(vary);
+                entries.put(uri, variants);
+            }
+            variants.lastUsed = System.nanoTime();
+            CachedResponse old = variants.put(variants.keyFor(evt), cached);
+            totalBytes += cached.weight;
+            if (old != null) {
+                totalBytes -= old.weight;
+                old.release();
+            }
+            evict();
+        }
+    }
+
+    private void invalidate(String uri, HttpEvent evt) {
+        Variants variants = entries.get(uri);
+        if (variants != null) {
+            String variantKey = variants.keyFor(evt);
+            CachedResponse cached = variants.get(variantKey);
+            if (cached != null) {
+                remove(uri, variantKey, cached);
+            }
+        }
+    }
+
+    private void remove(String uri, String variantKey, CachedResponse cached) {
+        synchronized (this) {
+            Variants variants = entries.get(uri);
+            if (variants != null && variants.remove(variantKey, cached)) {
+                totalBytes -= cached.weight;
+                cached.release();
+                if (variants.isEmpty()) {
+                    entries.remove(uri, variants);
+                }
+            }
+        }
+    }
+
+    private void evict() {
+        // Caller holds the lock
+        if (totalBytes <= maxBytes) {
+            return;
+        }
+        List<Map.Entry<String, Variants>> all = new ArrayList<>(entries.entrySet());
+        for (Map.Entry<String, Variants> e : all) {
+            // Requests keep touching lastUsed while we sort
+            e.getValue().evictionOrder = e.getValue().lastUsed;
+        }
+        all.sort((a, b) -> Long.compare(a.getValue().evictionOrder, b.getValue().evictionOrder));
+        for (Iterator<Map.Entry<String, Variants>> it = all.iterator(); totalBytes > maxBytes && it.hasNext();) {
+            Map.Entry<String, Variants> eldest = it.next();
+            if (entries.remove(eldest.getKey(), eldest.getValue())) {
+                totalBytes -= eldest.getValue().release();
+            }
+        }
+    }
+
+    synchronized long size() {
+        return totalBytes;
+    }
+
+    private static boolean isCacheableRequest(HttpEvent evt) {
+        HttpMethod method = evt.request().method();
+        if (!HttpMethod.GET.equals(method) && !HttpMethod.HEAD.equals(method)) {
+            return false;
+        }
+        // Responses to authenticated requests are never shared
+        HttpHeaders hdrs = evt.request().headers();
+        return !hdrs.contains(HttpHeaderNames.AUTHORIZATION) && !hdrs.contains(HttpHeaderNames.COOKIE);
+    }
+
+    private static boolean requestsRevalidation(HttpEvent evt) {
+        String cc = evt.request().headers().get(HttpHeaderNames.CACHE_CONTROL);
+        return cc != null && (containsIgnoreCase(cc, "no-cache") || containsIgnoreCase(cc, "no-store"));
+    }
+
+    private static boolean isCacheableResponse(HttpHeaders hdrs) {
+        if (hdrs.contains(HttpHeaderNames.SET_COOKIE)) {
+            return false;
+        }
+        String cc = hdrs.get(HttpHeaderNames.CACHE_CONTROL);
+        if (cc != null && (containsIgnoreCase(cc, "private") || containsIgnoreCase(cc, "no-store"))) {
+            return false;
+        }
+        // If the application encoded the body itself, we cannot serve it
+        // to clients which did not ask for that encoding
+        String enc = hdrs.get(HttpHeaderNames.CONTENT_ENCODING);
+        return enc == null || HttpHeaderValues.IDENTITY.contentEqualsIgnoreCase(enc);
+    }
+
+    private static boolean containsIgnoreCase(String s, String what) {
+        return s.toLowerCase(Locale.ROOT).contains(what);
+    }
+
+    private static String[] varyHeaders(Cacheable spec, HttpHeaders hdrs) {
+        TreeSet<String> result = new TreeSet<>();
+        for (String h : spec.varyBy()) {
+            result.add(h.toLowerCase(Locale.ROOT).trim());
+        }
+        for (String vary : hdrs.getAll(HttpHeaderNames.VARY)) {
+            for (String h : vary.split(",")) {
+                String name = h.trim().toLowerCase(Locale.ROOT);
+                if ("*".equals(name)) {
+                    return null;
+                }
+                if (!name.isEmpty()) {
+                    result.add(name);
+                }
+            }
+        }
+        // We pick the content encoding ourselves
+        result.remove(HttpHeaderNames.ACCEPT_ENCODING.toString());
+        return result.isEmpty() ? NO_HEADERS : result.toArray(new String[result.size()]);
+    }
+
+    private static boolean acceptsGzip(HttpEvent evt) {
+        return QValues.chooseEncoding(evt.request().headers().get(HttpHeaderNames.ACCEPT_ENCODING), GZIP) != null;
+    }
+
+    private ByteBuf gzip(ByteBuf body) {
+        if (!compress || body.readableBytes() < compressionThreshold) {
+            return null;
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.readableBytes() / 2);
+            try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+                body.getBytes(body.readerIndex(), gz, body.readableBytes());
+            }
+            if (out.size() >= body.readableBytes()) {
+                return null;
+            }
+            return readOnlyCopy(Unpooled.wrappedBuffer(out.toByteArray()));
+        } catch (IOException ex) {
+            // Cannot happen writing to memory; just don't keep a compressed copy
+            return null;
+        }
+    }
+
+    private static ByteBuf readOnlyCopy(ByteBuf buf) {
+        ByteBuf result = Unpooled.directBuffer(buf.readableBytes());
+        result.writeBytes(buf, buf.readerIndex(), buf.readableBytes());
+        return result.asReadOnly();
+    }
+
+    /**
+     * The cached variants of one URI.
+     */
+    private static final class Variants {
+
+        private final String[] varyBy;
+        private final Map<String, CachedResponse> responses = new ConcurrentHashMap<>(4);
+        volatile long lastUsed;
+        // Guarded by the cache's lock
+        long evictionOrder;
+
+        Variants(String[] varyBy) {
+            this.varyBy = varyBy;
+        }
+
+        String keyFor(HttpEvent evt) {
+            if (varyBy.length == 0) {
+                return "";
+            }
+            StringBuilder sb = new StringBuilder();
+            HttpHeaders hdrs = evt.request().headers();
+            for (String h : varyBy) {
+                String val = hdrs.get(h);
+                sb.append(val == null ? "" : val).append('\0');
+            }
+            return sb.toString();
+        }
+
+        CachedResponse get(String key) {
+            return responses.get(key);
+        }
+
+        CachedResponse put(String key, CachedResponse resp) {
+            return responses.put(key, resp);
+        }
+
+        boolean remove(String key, CachedResponse resp) {
+            return responses.remove(key, resp);
+        }
+
+        boolean isEmpty() {
+            return responses.isEmpty();
+        }
+
+        long release() {
+            long result = 0;
+            for (CachedResponse r : responses.values()) {
+                result += r.weight;
+                r.release();
+            }
+            responses.clear();
+            return result;
+        }
+    }
+
+    private final class CachedResponse {
+
+        private final HttpHeaders headers;
+        private final ByteBuf identity;
+        private final ByteBuf gzipped;
+        private final String etag;
+        private final long created;
+        private final long expires;
+        private final long staleUntil;
+        private final long weight;
+        final AtomicBoolean revalidating = new AtomicBoolean();
+
+        CachedResponse(Cacheable spec, HttpHeaders hdrs, ByteBuf body, HttpEvent evt) {
+            headers = new DefaultHttpHeaders(false);
+            headers.set(hdrs);
+            // These are set per-request when the response is replayed
+            headers.remove(HttpHeaderNames.CONTENT_LENGTH);
+            headers.remove(HttpHeaderNames.CONTENT_ENCODING);
+            headers.remove(HttpHeaderNames.TRANSFER_ENCODING);
+            headers.remove(HttpHeaderNames.CONNECTION);
+            headers.remove(HttpHeaderNames.DATE);
+            headers.remove(HttpHeaderNames.AGE);
+            headers.remove(X_INTERNAL_COMPRESS);
+            identity = readOnlyCopy(body);
+            gzipped = gzip(body);
+            if (gzipped != null && !headers.containsValue(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING, true)) {
+                headers.add(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+            }
+            etag = headers.get(HttpHeaderNames.ETAG);
+            created = System.currentTimeMillis();
+            expires = created + TimeUnit.SECONDS.toMillis(Math.max(0, spec.ttl()));
+            staleUntil = expires + TimeUnit.SECONDS.toMillis(Math.max(0, spec.staleWhileRevalidate()));
+            weight = ENTRY_OVERHEAD + identity.capacity() + (gzipped == null ? 0 : gzipped.capacity());
+        }
+
+        boolean send(RequestID id, HttpEvent evt, Channel channel, long now) {
+            boolean head = HttpMethod.HEAD.equals(evt.request().method());
+            HttpHeaders hdrs = headers.copy();
+            DefaultFullHttpResponse resp;
+            if (IfNoneMatch.matches(evt.request().headers().get(HttpHeaderNames.IF_NONE_MATCH), etag)) {
+                hdrs.set(HttpHeaderNames.CONTENT_LENGTH, 0);
+                resp = new DefaultFullHttpResponse(HTTP_1_1, NOT_MODIFIED, Unpooled.EMPTY_BUFFER, hdrs, EmptyHttpHeaders.INSTANCE);
+            } else {
+                ByteBuf body = gzipped != null && acceptsGzip(evt) ? gzipped : identity;
+                ByteBuf content;
+                if (head) {
+                    content = Unpooled.EMPTY_BUFFER;
+                } else {
+                    try {
+                        content = body.retainedDuplicate();
+                    } catch (IllegalReferenceCountException ex) {
+                        // Evicted out from under us
+                        return false;
+                    }
+                }
+                hdrs.set(HttpHeaderNames.CONTENT_LENGTH, body.readableBytes());
+                // Already in its final encoding; the explicit Content-Encoding
+                // keeps the pipeline's compressor away from it
+                hdrs.set(HttpHeaderNames.CONTENT_ENCODING, body == gzipped ? HttpHeaderValues.GZIP : HttpHeaderValues.IDENTITY);
+                resp = new DefaultFullHttpResponse(HTTP_1_1, OK, content, hdrs, EmptyHttpHeaders.INSTANCE);
+            }
+            hdrs.set(HttpHeaderNames.DATE, new Date(now));
+            hdrs.set(HttpHeaderNames.AGE, TimeUnit.MILLISECONDS.toSeconds(Math.max(0, now - created)));
+            hdrs.set(Application.X_REQ_ID.name(), id.stringValue());
+            ChannelFuture fut = channel.writeAndFlush(resp);
+            if (!evt.requestsConnectionStayOpen()) {
+                fut.addListener(ChannelFutureListener.CLOSE);
+            }
+            return true;
+        }
+
+        void release() {
+            identity.release();
+            if (gzipped != null) {
+                gzipped.release();
+            }
+        }
+    }
+}
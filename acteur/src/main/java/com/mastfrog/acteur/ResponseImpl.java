@@ -30,7 +30,9 @@ import com.mastfrog.acteur.ResponseWriter.Output;
 import com.mastfrog.acteur.ResponseWriter.Status;
 import com.mastfrog.acteur.headers.HeaderValueType;
 import com.mastfrog.acteur.headers.Headers;
+import static com.mastfrog.acteur.headers.Headers.ACCEPT;
 import static com.mastfrog.acteur.headers.Headers.CONTENT_TYPE;
+import static com.mastfrog.acteur.headers.Headers.VARY;
 import com.mastfrog.acteur.headers.Method;
 import com.mastfrog.acteur.server.ServerModule;
 import static com.mastfrog.acteur.server.ServerModule.X_INTERNAL_COMPRESS;
@@ -46,6 +48,7 @@ import com.mastfrog.util.collections.CollectionUtils;
 import com.mastfrog.util.thread.ThreadLocalTransfer;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
@@ -67,6 +70,7 @@ import io.netty.handler.codec.http.HttpHeaderValues;
 import static io.netty.handler.codec.http.HttpHeaderValues.IDENTITY;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMessage;
+import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import static io.netty.handler.codec.http.HttpResponseStatus.NOT_MODIFIED;
@@ -78,6 +82,8 @@ import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.codec.http.cookie.Cookie;
 import io.netty.util.AsciiString;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCounted;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.time.Duration;
@@ -113,6 +119,7 @@ final class ResponseImpl extends Response {
     ChannelFutureListener listener;
     private boolean chunked;
     private Duration delay;
+    private HttpHeaders replayedHeaders;
     private static final boolean debug = Boolean.getBoolean("acteur.debug");
 
     static final ThreadLocalTransfer<List<ResponseImpl>> shadowResponses = new ThreadLocalTransfer<>();
@@ -136,6 +143,29 @@ final class ResponseImpl extends Response {
         return message;
     }
 
+    /**
+     * If toResponse() rendered the message into a single buffer which will
+     * be sent once the headers are written, returns that buffer (without
+     * retaining it).
+     *
+     * @return A buffer or null
+     */
+    ByteBuf bufferedPayload() {
+        return listener instanceof SendOneBuffer ? ((SendOneBuffer) listener).buf : null;
+    }
+
+    /**
+     * Release the buffer returned by bufferedPayload(), if any, so that only
+     * headers are sent.
+     */
+    void discardBufferedPayload() {
+        if (listener instanceof SendOneBuffer) {
+            ((SendOneBuffer) listener).buf.release();
+            listener = null;
+            message = null;
+        }
+    }
+
     boolean isModified() {
         return modified;
     }
@@ -166,6 +196,28 @@ final class ResponseImpl extends Response {
             if (other.delay != null) {
                 this.delay = other.delay;
             }
+            if (other.replayedHeaders != null) {
+                replayHeaders(other.replayedHeaders);
+            }
+        }
+    }
+
+    /**
+     * Add headers which were rendered for another response, as-is, without
+     * parsing them into typed values.
+     *
+     * @param headers The headers
+     */
+    void replayHeaders(HttpHeaders headers) {
+        modified = true;
+        replayedHeaders = headers;
+    }
+
+    private void setReplayedHeaders(HttpHeaders hdrs) {
+        // Replace, not add to, anything the response already set, so e.g. a
+        // Date or Server header is not sent twice
+        for (String name : replayedHeaders.names()) {
+            hdrs.set(name, replayedHeaders.getAll(name));
         }
     }
 
@@ -617,7 +669,34 @@ final class ResponseImpl extends Response {
         }
     }
 
-    private ByteBuf writeMessage(Event<?> evt, Charset charset) throws Exception {
+    private ContentNegotiator.Encoding negotiate(Event<?> evt) {
+        if (!(evt instanceof HttpEvent) || message instanceof ByteBuf
+                || (message == null && !(listener instanceof ResponseWriterListener))) {
+            return null;
+        }
+        Page p = Page.get();
+        if (p == null) {
+            return null;
+        }
+        ContentNegotiator.Encoding result = p.getApplication().negotiator.negotiate((HttpEvent) evt, get(CONTENT_TYPE), message);
+        if (result != null) {
+            add(CONTENT_TYPE, result.contentType());
+            HeaderValueType<?>[] vary = get(VARY);
+            if (vary == null) {
+                add(VARY, new HeaderValueType<?>[]{ACCEPT});
+            } else if (!Arrays.asList(vary).contains(ACCEPT)) {
+                HeaderValueType<?>[] newVary = Arrays.copyOf(vary, vary.length + 1);
+                newVary[vary.length] = ACCEPT;
+                add(VARY, newVary);
+            }
+            if (listener instanceof ResponseWriterListener) {
+                ((ResponseWriterListener) listener).negotiated(result.codec());
+            }
+        }
+        return result;
+    }
+
+    private ByteBuf writeMessage(Event<?> evt, Charset charset, ContentNegotiator.Encoding encoding) throws Exception {
         if (message == null) {
             return null;
         }
@@ -628,7 +707,8 @@ final class ResponseImpl extends Response {
         if (p == null) {
             throw new IllegalStateException("Call to write message with Page.set() not called (outside request scope?)");
         }
-        NettyContentMarshallers marshallers = p.getApplication().getDependencies().getInstance(NettyContentMarshallers.class);
+        NettyContentMarshallers marshallers = encoding != null ? encoding.marshallers()
+                : p.getApplication().getDependencies().getInstance(NettyContentMarshallers.class);
         ByteBuf buf = evt.channel().alloc().ioBuffer();
         buf.touch("response-impl-write-message");
         marshallers.write(message, buf, charset);
@@ -663,6 +743,9 @@ final class ResponseImpl extends Response {
 
     public HttpResponse toResponse(Event<?> evt, Charset defaultCharset) throws Exception {
         HttpResponseStatus status = internalStatus();
+        if (evt instanceof HttpEvent && HttpMethod.HEAD.equals(((HttpEvent) evt).request().method())) {
+            return toHeadResponse((HttpEvent) evt, status, defaultCharset);
+        }
         // Log cases where a payload is attached to a status code that cannot have a payload
         // according to the HTTP spec
         if (!canHaveBody(status) && (message != null || listener != null)) {
@@ -673,6 +756,9 @@ final class ResponseImpl extends Response {
                         + " - " + listener);
             }
         }
+        // Let any installed content negotiator pick the format for object payloads
+        // before we look at the content type
+        ContentNegotiator.Encoding encoding = negotiate(evt);
         // Ensure we pass the correct character set based on the MIME type and failing
         // over to the character set the application was configured with (default UTF-8):
         MimeType mimeType = get(CONTENT_TYPE);
@@ -680,7 +766,7 @@ final class ResponseImpl extends Response {
             defaultCharset = mimeType.charset().get();
         }
         // Convert the message payload, if any, into a ByteBuf
-        ByteBuf buf = writeMessage(evt, defaultCharset);
+        ByteBuf buf = writeMessage(evt, defaultCharset, encoding);
         // If this happens, the application is telling the framework to do two contradictory things -
         // you can either send a payload by attaching it to the response, or by attaching a listener
         // which will be notified when the headers have been written (or flushed) to the socket
@@ -694,7 +780,8 @@ final class ResponseImpl extends Response {
         // Figure out if this response cannot possibly be anything more than headers
         boolean noBody = (listener == null && buf == null) || status == NO_CONTENT || status == NOT_MODIFIED;
         boolean hasInternalCompress = has(X_INTERNAL_COMPRESS);
-        boolean hasContentEncoding = has(CONTENT_ENCODING);
+        boolean hasContentEncoding = has(CONTENT_ENCODING)
+                || (replayedHeaders != null && replayedHeaders.contains(CONTENT_ENCODING));
         boolean hasTransferEncoding = has(TRANSFER_ENCODING);
         boolean hasContentLength = false;
 
@@ -732,6 +819,9 @@ final class ResponseImpl extends Response {
                     + " hasTransferEncoding " + hasTransferEncoding + " hasContentEncoding " + hasContentEncoding
                     + " chunked " + chunked + " noBody " + noBody);
         }
+        if (replayedHeaders != null) {
+            setReplayedHeaders(hdrs);
+        }
         if (addIdentityContentEncoding) {
             hdrs.add(CONTENT_ENCODING, IDENTITY);
         }
@@ -792,6 +882,74 @@ final class ResponseImpl extends Response {
         return result;
     }
 
+    /**
+     * Build the response to a HEAD request: the headers a GET would get, but
+     * the message is never rendered and no listener or ResponseWriter is ever
+     * called. Content-Length is sent if the page set it, or if the message's
+     * encoded length can be had without encoding it.
+     */
+    private HttpResponse toHeadResponse(HttpEvent evt, HttpResponseStatus status, Charset charset) {
+        negotiate(evt);
+        MimeType mimeType = get(CONTENT_TYPE);
+        if (mimeType != null && mimeType.charset().isPresent()) {
+            charset = mimeType.charset().get();
+        }
+        boolean canHaveBody = canHaveBody(status);
+        long length = canHaveBody ? encodedLength(message, charset) : -1;
+        if (message instanceof ReferenceCounted) {
+            ((ReferenceCounted) message).release();
+        }
+        message = null;
+        if (listener != CLOSE) {
+            listener = null;
+        }
+        chunked = false;
+        DefaultHttpHeaders hdrs = new DefaultHttpHeaders();
+        boolean hasContentLength = false;
+        for (Entry<?> e : headers) {
+            // No chunks will follow the headers
+            if (e.is(TRANSFER_ENCODING)) {
+                continue;
+            } else if (e.is(CONTENT_LENGTH)) {
+                if (!canHaveBody) {
+                    continue;
+                }
+                hasContentLength = true;
+            }
+            e.write(hdrs);
+        }
+        if (replayedHeaders != null) {
+            setReplayedHeaders(hdrs);
+            hasContentLength |= replayedHeaders.contains(CONTENT_LENGTH);
+        }
+        if (!hasContentLength && length >= 0) {
+            hdrs.set(CONTENT_LENGTH, length);
+        }
+        // HttpContentEncoder passes HEAD responses through untouched, so
+        // nothing would remove this before it reached the client
+        hdrs.remove(X_INTERNAL_COMPRESS);
+        DefaultFullHttpResponse result = new DefaultFullHttpResponse(HTTP_1_1, status, Unpooled.EMPTY_BUFFER,
+                hdrs, EmptyHttpHeaders.INSTANCE);
+        result.touch("response-impl-head");
+        return result;
+    }
+
+    private static long encodedLength(Object message, Charset charset) {
+        if (message instanceof ByteBuf) {
+            return ((ByteBuf) message).readableBytes();
+        } else if (message instanceof byte[]) {
+            return ((byte[]) message).length;
+        } else if (message instanceof CharSequence) {
+            if (CharsetUtil.UTF_8.equals(charset)) {
+                return ByteBufUtil.utf8Bytes((CharSequence) message);
+            } else if (CharsetUtil.US_ASCII.equals(charset) || CharsetUtil.ISO_8859_1.equals(charset)) {
+                return ((CharSequence) message).length();
+            }
+        }
+        // Would have to be marshalled to find out
+        return -1;
+    }
+
     static Set<String> WARNED = ConcurrentHashMap.newKeySet();
 
     static void warn(Event<?> evt) {
@@ -105,6 +105,7 @@ public abstract class ResponseWriter {
         private final Charset charset;
         private final ByteBufAllocator allocator;
         private final Codec mapper;
+        private volatile Codec negotiated;
 
         protected AbstractOutput(Charset charset, ByteBufAllocator allocator, Codec mapper) {
             this.charset = charset;
@@ -112,8 +113,17 @@ public abstract class ResponseWriter {
             this.mapper = mapper;
         }
 
+        void negotiated(Codec codec) {
+            this.negotiated = codec;
+        }
+
         @Override
         public Output writeObject(Object o) throws IOException {
+            Codec codec = negotiated;
+            if (codec != null) {
+                // Possibly a binary format, so not safe to go through a string
+                return write(codec.writeValueAsBytes(o));
+            }
             return write(mapper.writeValueAsString(o));
         }
 
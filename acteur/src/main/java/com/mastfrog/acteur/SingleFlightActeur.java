@@ -0,0 +1,80 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur;
+
+import com.mastfrog.acteur.InFlightRequests.Flight;
+import com.mastfrog.acteur.InFlightRequests.SharedResponse;
+import com.mastfrog.acteur.annotations.SingleFlight;
+import com.mastfrog.acteur.preconditions.Description;
+import com.mastfrog.acteur.util.RequestID;
+import com.mastfrog.acteurbase.Deferral;
+import javax.inject.Inject;
+
+/**
+ * Added to pages annotated with &#064;SingleFlight; lets the first of a set of
+ * identical requests proceed, and parks the rest until it has a response.
+ *
+ * @author Tim Boudreau
+ */
+@Description("Waits for an identical request already in flight")
+final class SingleFlightActeur extends Acteur {
+
+    @Inject
+    SingleFlightActeur(Page page, HttpEvent evt, RequestID id, InFlightRequests inFlight, Deferral defer) {
+        SingleFlight spec = page.getClass().getAnnotation(SingleFlight.class);
+        String key = spec == null ? null : InFlightRequests.key(page, spec, evt);
+        if (key != null) {
+            Flight flight = inFlight.join(key, id, evt.channel());
+            if (flight != null) {
+                defer.defer(resumer -> flight.await(id, evt.channel(), spec.timeout(), resumer));
+            }
+        }
+        next();
+    }
+
+    /**
+     * Follows SingleFlightActeur, and replies with the response of the
+     * request that was waited on, if there is one.
+     */
+    @Description("Replies with the response of an identical request")
+    static final class Replay extends Acteur {
+
+        @Inject
+        Replay(RequestID id, InFlightRequests inFlight) {
+            SharedResponse shared = inFlight.take(id);
+            if (shared == null) {
+                next();
+                return;
+            }
+            // Already rendered; copied verbatim rather than parsed
+            ((ResponseImpl) response()).replayHeaders(shared.headers);
+            if (shared.body.isReadable()) {
+                reply(shared.status, shared.body);
+            } else {
+                shared.release();
+                reply(shared.status);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.annotations;
+
+import com.mastfrog.acteur.preconditions.Description;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotate a page (or an acteur annotated with &#064;HttpCall) with this to
+ * have successful responses to GET requests kept in memory, fully encoded, and
+ * replayed for identical requests without running the acteur chain at all.
+ * Requests are considered identical if they have the same method, URI
+ * (including the query string) and values for the headers named in
+ * <code>varyBy()</code> and any <code>Vary</code> header on the response.
+ * <p>
+ * Requests bearing an <code>Authorization</code> or <code>Cookie</code>
+ * header are never answered from, or stored in, the cache, nor are responses
+ * which set cookies, are marked <code>private</code> or
+ * <code>no-store</code>, or whose body is written incrementally by a listener
+ * rather than attached to the response. The memory used is bounded by the
+ * setting <code>response.cache.bytes</code>.
+ *
+ * @author Tim Boudreau
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Description("Marks an HTTP call whose responses to GET requests may be cached "
+        + "in memory by the server and replayed for identical requests without "
+        + "running its acteurs")
+public @interface Cacheable {
+
+    /**
+     * The number of seconds a cached response may be served for.
+     *
+     * @return A number of seconds
+     */
+    int ttl() default 60;
+
+    /**
+     * Names of request headers whose values, in addition to the method and
+     * URI, select which cached response is used.
+     *
+     * @return Header names
+     */
+    String[] varyBy() default {};
+
+    /**
+     * The number of seconds after the ttl expires during which the stale
+     * response may still be served, while a single request runs the acteur
+     * chain to replace it.
+     *
+     * @return A number of seconds
+     */
+    int staleWhileRevalidate() default 0;
+}
@@ -25,10 +25,12 @@ package com.mastfrog.acteur.annotations;
 
 import com.mastfrog.acteur.Acteur;
 import com.mastfrog.acteur.ChunkHandler;
+import com.mastfrog.acteur.Closables;
 import com.mastfrog.acteur.HttpEvent;
 import com.mastfrog.acteur.Page;
 import com.mastfrog.acteur.headers.Method;
 import com.mastfrog.acteur.preconditions.Description;
+import com.mastfrog.acteur.server.EarlyContent;
 import com.mastfrog.acteur.server.PipelineDecorator;
 import com.mastfrog.acteur.spi.ApplicationControl;
 import com.mastfrog.acteurbase.Deferral;
@@ -49,7 +51,8 @@ import javax.inject.Inject;
 public class InstallChunkHandler extends Acteur {
 
     @Inject
-    InstallChunkHandler(Page page, Deferral defer, HttpEvent evt, Dependencies deps, ApplicationControl ctrl) {
+    InstallChunkHandler(Page page, Deferral defer, HttpEvent evt, Dependencies deps, ApplicationControl ctrl,
+            Closables closables) {
         Object[] inject = new Object[0];
         if (Method.POST.equals(evt.method()) || Method.PUT.equals(evt.method()) || HttpMethod.PATCH.equals(evt.method())) {
 
@@ -63,18 +66,31 @@ public class InstallChunkHandler extends Acteur {
 
             if (early.value() != ChunkHandler.class) {
                 ChunkHandler ch = deps.getInstance(early.value());
+                if (ch instanceof AutoCloseable) {
+                    // Let it release whatever the page did not consume
+                    closables.add((AutoCloseable) ch);
+                }
                 ctx.pipeline().addAfter(PipelineDecorator.PRE_CONTENT_PAGE_HANDLER, ch.getClass().getSimpleName(), ch);
                 // Set the resumer in deferred code to ensure it can't be called before we have exited this acteur constructor
                 defer.defer(ch::setResumer);
+            } else {
+                discardEarlyContent(ctx);
             }
 
             if (early.send100continue()) {
                 send100Continue(ctx);
             }
+        } else {
+            discardEarlyContent(evt.ctx());
         }
         next(inject);
     }
 
+    private static void discardEarlyContent(ChannelHandlerContext ctx) {
+        // Nothing will consume content held for the page
+        ctx.channel().eventLoop().execute(() -> EarlyContent.discard(ctx.channel()));
+    }
+
     private static void send100Continue(ChannelHandlerContext ctx) {
         HttpResponse response = new DefaultHttpResponse(HTTP_1_1, CONTINUE);
         ctx.writeAndFlush(response);
@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.annotations;
+
+import com.mastfrog.acteur.preconditions.Description;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotate a page (or an acteur annotated with &#064;HttpCall) with this to
+ * coalesce identical GET or HEAD requests which arrive while one is already
+ * being processed: the first runs the page's acteurs, and the rest wait for
+ * it and are sent its response. Requests are identical if they are for the
+ * same page, method and URI (optionally ignoring the query string), and have
+ * the same values for the headers named in <code>keyHeaders()</code>.
+ * <p>
+ * Whatever the first request produces is shared - including error responses,
+ * so a failing backend is not hit once per waiting request - except for
+ * <code>304 Not Modified</code> and <code>412 Precondition Failed</code>
+ * responses, which depend on the conditional headers of that particular
+ * request, responses which set cookies, and responses whose body is written
+ * by a listener rather than attached to the response. In those cases, or if the first request is
+ * rejected by the page, is disconnected, or takes longer than
+ * <code>timeout()</code>, the waiting requests run the page's acteurs
+ * themselves. A waiting request whose connection is closed is simply
+ * dropped.
+ * <p>
+ * Requests bearing an <code>Authorization</code> or <code>Cookie</code>
+ * header are never coalesced unless that header is one of the
+ * <code>keyHeaders()</code>.
+ *
+ * @author Tim Boudreau
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Description("Coalesces identical concurrent GET requests to an HTTP call, so "
+        + "only one runs its acteurs and the rest are sent its response")
+public @interface SingleFlight {
+
+    /**
+     * Names of request headers whose values are part of the key which
+     * determines if two requests are identical.
+     *
+     * @return Header names
+     */
+    String[] keyHeaders() default {};
+
+    /**
+     * If true, requests which differ only in their query string are treated
+     * as identical.
+     *
+     * @return Whether to ignore the query
+     */
+    boolean ignoreQuery() default false;
+
+    /**
+     * The number of seconds a request will wait for an identical request
+     * already in flight before running the page's acteurs itself.
+     *
+     * @return A number of seconds
+     */
+    int timeout() default 30;
+}
@@ -0,0 +1,64 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.preconditions;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation which can appear on a Page or an Acteur with the &#064;HttpCall
+ * annotation, determining how the server's aggregator treats its request
+ * body. Together with &#064;MaximumRequestBodyLength, which sets a per-route
+ * limit in place of <code>maxContentLength</code>, it is applied as soon as
+ * the request line and headers are read, so an oversized or unwanted body is
+ * refused with 413 before any of it is buffered.
+ *
+ * @author Tim Boudreau
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Description("How the request body is handled")
+public @interface RequestBodyPolicy {
+
+    Policy value();
+
+    enum Policy {
+        /**
+         * Aggregate the body into a single buffer before running the page -
+         * the default.
+         */
+        AGGREGATE,
+        /**
+         * Pass the request and its content chunks on without aggregating
+         * them, as when <code>aggregateChunks</code> is false.
+         */
+        STREAM,
+        /**
+         * Refuse any request with a non-empty body.
+         */
+        REJECT
+    }
+}
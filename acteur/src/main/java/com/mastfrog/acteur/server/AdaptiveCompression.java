@@ -0,0 +1,260 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.server;
+
+import static com.mastfrog.acteur.server.ServerModule.DEFAULT_COMPRESSION_ADAPTIVE_LARGE_RESPONSE;
+import static com.mastfrog.acteur.server.ServerModule.DEFAULT_COMPRESSION_ADAPTIVE_MIN_LEVEL;
+import static com.mastfrog.acteur.server.ServerModule.DEFAULT_COMPRESSION_ADAPTIVE_SKIP_LOAD;
+import static com.mastfrog.acteur.server.ServerModule.DEFAULT_COMPRESSION_BROTLI_QUALITY;
+import static com.mastfrog.acteur.server.ServerModule.DEFAULT_COMPRESSION_LEVEL;
+import static com.mastfrog.acteur.server.ServerModule.DEFAULT_COMPRESSION_MEMORY_LEVEL;
+import static com.mastfrog.acteur.server.ServerModule.DEFAULT_COMPRESSION_WINDOW_BITS;
+import static com.mastfrog.acteur.server.ServerModule.DEFAULT_COMPRESSION_ZSTD_LEVEL;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_ADAPTIVE;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_ADAPTIVE_LARGE_RESPONSE;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_ADAPTIVE_MAX_LEVEL;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_ADAPTIVE_MIN_LEVEL;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_ADAPTIVE_SKIP_LOAD;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_BROTLI_QUALITY;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_LEVEL;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_MEMORY_LEVEL;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_WINDOW_BITS;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_ZSTD_LEVEL;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.util.preconditions.ConfigurationError;
+import io.netty.channel.ChannelHandler;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.compression.ZstdEncoder;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Chooses the HTTP compression level per-response when
+ * <code>compression.adaptive</code> is set, trading compression ratio for CPU
+ * as load rises, and skipping compression altogether past
+ * <code>compression.adaptive.skip.load</code>. Load is the greater of the
+ * process's CPU load (sampled at most every 250ms) and the backlog of tasks
+ * on the event loop writing the response.
+ * <p>
+ * Inject this to report what the compressor is doing - the levels it picks
+ * are counted and available from {@link #count(int)},
+ * {@link #lastLevel()} and {@link #skipped()}.
+ *
+ * @author Tim Boudreau
+ */
+@Singleton
+public final class AdaptiveCompression {
+
+    private static final long SAMPLE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(250);
+    // Number of pending event loop tasks treated as a fully loaded event loop
+    private static final int FULL_BACKLOG = 256;
+    private final boolean enabled;
+    private final int minLevel;
+    private final int maxLevel;
+    private final double skipLoad;
+    private final int largeResponse;
+    private final int windowBits;
+    private final int memLevel;
+    private final int brotliQuality;
+    private final int zstdLevel;
+    private final DoubleSupplier cpuLoad;
+    private final AtomicLongArray counts = new AtomicLongArray(10);
+    private final LongAdder skipped = new LongAdder();
+    private volatile int lastLevel = -1;
+    private volatile long lastSample = System.nanoTime() - SAMPLE_INTERVAL;
+    private volatile double lastCpuLoad;
+
+    @Inject
+    AdaptiveCompression(Settings settings) {
+        this(settings, processCpuLoad());
+    }
+
+    AdaptiveCompression(Settings settings, DoubleSupplier cpuLoad) {
+        this.cpuLoad = cpuLoad;
+        enabled = settings.getBoolean(HTTP_COMPRESSION_ADAPTIVE, false);
+        int level = settings.getInt(HTTP_COMPRESSION_LEVEL, DEFAULT_COMPRESSION_LEVEL);
+        minLevel = settings.getInt(HTTP_COMPRESSION_ADAPTIVE_MIN_LEVEL, DEFAULT_COMPRESSION_ADAPTIVE_MIN_LEVEL);
+        maxLevel = settings.getInt(HTTP_COMPRESSION_ADAPTIVE_MAX_LEVEL, Math.max(level, minLevel));
+        skipLoad = settings.getDouble(HTTP_COMPRESSION_ADAPTIVE_SKIP_LOAD, DEFAULT_COMPRESSION_ADAPTIVE_SKIP_LOAD);
+        largeResponse = settings.getInt(HTTP_COMPRESSION_ADAPTIVE_LARGE_RESPONSE, DEFAULT_COMPRESSION_ADAPTIVE_LARGE_RESPONSE);
+        windowBits = settings.getInt(HTTP_COMPRESSION_WINDOW_BITS, DEFAULT_COMPRESSION_WINDOW_BITS);
+        memLevel = settings.getInt(HTTP_COMPRESSION_MEMORY_LEVEL, DEFAULT_COMPRESSION_MEMORY_LEVEL);
+        brotliQuality = settings.getInt(HTTP_COMPRESSION_BROTLI_QUALITY, DEFAULT_COMPRESSION_BROTLI_QUALITY);
+        zstdLevel = settings.getInt(HTTP_COMPRESSION_ZSTD_LEVEL, DEFAULT_COMPRESSION_ZSTD_LEVEL);
+        if (minLevel < 1 || maxLevel > 9 || minLevel > maxLevel) {
+            throw new ConfigurationError(HTTP_COMPRESSION_ADAPTIVE_MIN_LEVEL + " and "
+                    + HTTP_COMPRESSION_ADAPTIVE_MAX_LEVEL + " must be between 1 and 9, and min may not be "
+                    + "greater than max, but they are " + minLevel + " and " + maxLevel);
+        }
+        if (skipLoad <= 0 || skipLoad > 1) {
+            throw new ConfigurationError(HTTP_COMPRESSION_ADAPTIVE_SKIP_LOAD
+                    + " must be > 0 and <= 1 but is " + skipLoad);
+        }
+    }
+
+    private static DoubleSupplier processCpuLoad() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            com.sun.management.OperatingSystemMXBean sunOs = (com.sun.management.OperatingSystemMXBean) os;
+            return sunOs::getProcessCpuLoad;
+        }
+        int cpus = Runtime.getRuntime().availableProcessors();
+        return () -> os.getSystemLoadAverage() / cpus;
+    }
+
+    /**
+     * Determine if adaptive compression is turned on.
+     *
+     * @return True if it is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The compression level most recently chosen, or -1 if compression was
+     * skipped or nothing has been compressed yet.
+     *
+     * @return A level
+     */
+    public int lastLevel() {
+        return lastLevel;
+    }
+
+    /**
+     * The number of responses compressed at the passed level.
+     *
+     * @param level A level from 1 to 9
+     * @return A count
+     */
+    public long count(int level) {
+        return level < 0 || level >= counts.length() ? 0 : counts.get(level);
+    }
+
+    /**
+     * The number of compressible responses which were sent uncompressed
+     * because load exceeded the skip threshold.
+     *
+     * @return A count
+     */
+    public long skipped() {
+        return skipped.sum();
+    }
+
+    /**
+     * The most recently sampled process CPU load, from 0 to 1.
+     *
+     * @return The load
+     */
+    public double cpuLoad() {
+        long now = System.nanoTime();
+        if (now - lastSample >= SAMPLE_INTERVAL) {
+            lastSample = now;
+            double load = cpuLoad.getAsDouble();
+            // Negative if the platform cannot tell us
+            lastCpuLoad = Double.isNaN(load) || load < 0 ? 0 : Math.min(1, load);
+        }
+        return lastCpuLoad;
+    }
+
+    double load(EventExecutor executor) {
+        double result = cpuLoad();
+        if (executor instanceof SingleThreadEventExecutor) {
+            int pending = ((SingleThreadEventExecutor) executor).pendingTasks();
+            result = Math.max(result, Math.min(1D, pending / (double) FULL_BACKLOG));
+        }
+        return result;
+    }
+
+    /**
+     * Pick a compression level for a response, and record it.
+     *
+     * @param load The current load
+     * @param contentLength The content length, or -1 if unknown
+     * @return A level, or -1 if the response should not be compressed
+     */
+    int level(double load, long contentLength) {
+        if (load >= skipLoad) {
+            skipped.increment();
+            lastLevel = -1;
+            return -1;
+        }
+        int span = maxLevel - minLevel;
+        int result = maxLevel - (int) Math.round(span * (load / skipLoad));
+        if (contentLength < 0 || contentLength >= largeResponse) {
+            result--;
+        }
+        result = Math.max(minLevel, Math.min(maxLevel, result));
+        counts.incrementAndGet(result);
+        lastLevel = result;
+        return result;
+    }
+
+    /**
+     * Create an encoder for the passed content-encoding. Brotli and zstd use
+     * their own configured level, reduced by however many steps the chosen
+     * level is below the maximum.
+     *
+     * @param encoding The encoding
+     * @param level The level, as returned by level()
+     * @return An encoder
+     */
+    ChannelHandler encoder(String encoding, int level) {
+        int reduction = maxLevel - level;
+        switch (encoding) {
+            case "gzip":
+                return ZlibCodecFactory.newZlibEncoder(ZlibWrapper.GZIP, level, windowBits, memLevel);
+            case "deflate":
+                return ZlibCodecFactory.newZlibEncoder(ZlibWrapper.ZLIB, level, windowBits, memLevel);
+            case "br":
+                return PipelineFactoryImpl.BrotliSupport.encoder(Math.max(1, brotliQuality - reduction));
+            case "zstd":
+                return new ZstdEncoder(Math.max(1, zstdLevel - reduction),
+                        PipelineFactoryImpl.ZSTD_BLOCK_SIZE, PipelineFactoryImpl.ZSTD_MAX_ENCODE_SIZE);
+            default:
+                throw new IllegalArgumentException("Unknown encoding " + encoding);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("AdaptiveCompression(")
+                .append(minLevel).append('-').append(maxLevel)
+                .append(" last=").append(lastLevel)
+                .append(" skipped=").append(skipped());
+        for (int i = minLevel; i <= maxLevel; i++) {
+            sb.append(' ').append(i).append('=').append(counts.get(i));
+        }
+        return sb.append(')').toString();
+    }
+}
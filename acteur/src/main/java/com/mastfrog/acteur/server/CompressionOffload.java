@@ -0,0 +1,194 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+
+/**
+ * Compresses large responses on a dedicated thread pool rather than the
+ * channel's event loop, so one multi-megabyte response does not stall every
+ * other connection sharing that event loop. Shared by all channels;
+ * SelectiveCompressor holds the per-channel state and keeps writes that
+ * arrive while a job is running queued, so they go out in order.
+ * <p>
+ * The number of jobs queued or running is bounded; when the limit is reached,
+ * responses are compressed on the event loop as they would be without
+ * offloading.
+ *
+ * @author Tim Boudreau
+ */
+final class CompressionOffload {
+
+    private final Executor executor;
+    private final int threshold;
+    private final Semaphore permits;
+
+    CompressionOffload(Executor executor, int threshold, int maxPending) {
+        this.executor = executor;
+        this.threshold = threshold;
+        this.permits = new Semaphore(maxPending);
+    }
+
+    boolean shouldOffload(long contentLength) {
+        return contentLength >= threshold;
+    }
+
+    Job newJob(String encoding, ChannelHandler encoder, ChannelHandlerContext ctx) {
+        return new Job(encoding, encoder, ctx.alloc().compositeBuffer(Integer.MAX_VALUE));
+    }
+
+    /**
+     * Run the job's encoder over its collected content in the background, and
+     * pass the result (or failure) to the callback on the channel's event
+     * loop.
+     */
+    void compress(Job job, ChannelHandlerContext ctx, BiConsumer<ByteBuf, Throwable> onDone) {
+        Runnable run = () -> {
+            ByteBuf result = null;
+            Throwable thrown = null;
+            try {
+                result = encode(job.encoder, job.input);
+            } catch (Exception | Error e) {
+                thrown = e;
+            } finally {
+                job.input.release();
+            }
+            ByteBuf res = result;
+            Throwable th = thrown;
+            ctx.executor().execute(() -> onDone.accept(res, th));
+        };
+        if (permits.tryAcquire()) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        run.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+                return;
+            } catch (RejectedExecutionException ex) {
+                permits.release();
+            }
+        }
+        run.run();
+    }
+
+    static ByteBuf encode(ChannelHandler encoder, ByteBuf input) {
+        EmbeddedChannel channel = new EmbeddedChannel(encoder);
+        try {
+            channel.writeOutbound(input.retain());
+            channel.finish();
+            CompositeByteBuf result = channel.alloc().compositeBuffer(Integer.MAX_VALUE);
+            for (ByteBuf buf = channel.readOutbound(); buf != null; buf = channel.readOutbound()) {
+                if (buf.isReadable()) {
+                    result.addComponent(true, buf);
+                } else {
+                    buf.release();
+                }
+            }
+            return result;
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    /**
+     * A response whose content is being collected or compressed.
+     */
+    static final class Job {
+
+        final String encoding;
+        private final ChannelHandler encoder;
+        private final CompositeByteBuf input;
+        private final List<ChannelPromise> promises = new ArrayList<>(2);
+        private HttpHeaders trailers;
+        private boolean complete;
+
+        Job(String encoding, ChannelHandler encoder, CompositeByteBuf input) {
+            this.encoding = encoding;
+            this.encoder = encoder;
+            this.input = input;
+        }
+
+        boolean isCollecting() {
+            return !complete;
+        }
+
+        /**
+         * Take ownership of a chunk of the response body.
+         *
+         * @return true if this was the last chunk
+         */
+        boolean add(HttpContent content, ChannelPromise promise) {
+            try {
+                input.addComponent(true, content.content().retain());
+            } finally {
+                content.release();
+            }
+            promises.add(promise);
+            if (content instanceof LastHttpContent) {
+                trailers = ((LastHttpContent) content).trailingHeaders();
+                complete = true;
+            }
+            return complete;
+        }
+
+        HttpHeaders trailers() {
+            return trailers;
+        }
+
+        List<ChannelPromise> promises() {
+            return promises;
+        }
+
+        void fail(Throwable cause) {
+            for (ChannelPromise p : promises) {
+                p.tryFailure(cause);
+            }
+        }
+
+        void discard(Throwable cause) {
+            if (!complete) {
+                ReferenceCountUtil.safeRelease(input);
+            }
+            fail(cause);
+        }
+    }
+}
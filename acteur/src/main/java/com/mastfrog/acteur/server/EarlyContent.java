@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.server;
+
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.util.AttributeKey;
+import java.util.ArrayDeque;
+
+/**
+ * Holds request body content that arrives for an &#064;Early page before its
+ * ChunkHandler has been installed - the page's acteurs run on another thread,
+ * and the first chunks very often arrive in the same read as the headers.
+ * Past a small limit, reading from the socket is suspended until a handler
+ * takes the content.
+ * <p>
+ * ChunkHandler takes care of draining this when it is added to the pipeline;
+ * this is only of interest to code that installs its own handlers for early
+ * requests.
+ *
+ * @author Tim Boudreau
+ */
+public final class EarlyContent {
+
+    private static final AttributeKey<EarlyContent> KEY = AttributeKey.valueOf(EarlyContent.class, "early");
+    // Stop reading past this many bytes
+    private static final int MAX_HELD_BYTES = 64 * 1024;
+    private final ArrayDeque<HttpContent> content = new ArrayDeque<>(4);
+    private long bytes;
+    private boolean suspendedReads;
+
+    private EarlyContent() {
+    }
+
+    static void start(Channel channel) {
+        discard(channel);
+        channel.attr(KEY).set(new EarlyContent());
+    }
+
+    static boolean offer(Channel channel, HttpContent msg) {
+        EarlyContent held = channel.attr(KEY).get();
+        if (held == null) {
+            return false;
+        }
+        held.content.add(msg);
+        held.bytes += msg.content().readableBytes();
+        if (held.bytes > MAX_HELD_BYTES && !held.suspendedReads && channel.config().isAutoRead()) {
+            held.suspendedReads = true;
+            channel.config().setAutoRead(false);
+        }
+        return true;
+    }
+
+    /**
+     * Take the next held chunk of content, if any; once none remain, content
+     * is no longer held for this request, and reading is resumed if it was
+     * suspended. Must be called on the channel's event loop.
+     *
+     * @param channel A channel
+     * @return A chunk the caller is responsible for releasing, or null
+     */
+    public static HttpContent poll(Channel channel) {
+        EarlyContent held = channel.attr(KEY).get();
+        if (held == null) {
+            return null;
+        }
+        HttpContent result = held.content.poll();
+        if (result == null) {
+            channel.attr(KEY).set(null);
+            held.resume(channel);
+        }
+        return result;
+    }
+
+    /**
+     * Discard any held content, stop holding content for the current
+     * request, and resume reading if it was suspended.
+     *
+     * @param channel A channel
+     */
+    public static void discard(Channel channel) {
+        EarlyContent held = channel.attr(KEY).getAndSet(null);
+        if (held != null) {
+            for (HttpContent c = held.content.poll(); c != null; c = held.content.poll()) {
+                c.release();
+            }
+            held.resume(channel);
+        }
+    }
+
+    private void resume(Channel channel) {
+        if (suspendedReads) {
+            suspendedReads = false;
+            channel.config().setAutoRead(true);
+        }
+    }
+}
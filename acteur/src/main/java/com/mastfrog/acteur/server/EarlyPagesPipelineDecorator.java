@@ -28,9 +28,11 @@ import com.mastfrog.acteur.Application;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpRequest;
+import io.netty.util.ReferenceCountUtil;
 import javax.inject.Inject;
 
 /**
@@ -51,7 +53,9 @@ class EarlyPagesPipelineDecorator implements PipelineDecorator {
     @Override
     public void onCreatePipeline(ChannelPipeline pipeline) {
         if (handler != null) {
-            pipeline.addAfter(DECODER, PRE_CONTENT_PAGE_HANDLER, handler);
+            // Chunk handlers should see decompressed content
+            pipeline.addAfter(pipeline.get(DECOMPRESSOR) != null ? DECOMPRESSOR : DECODER,
+                    PRE_CONTENT_PAGE_HANDLER, handler);
 //            pipeline.remove(AGGREGATOR);
             // XXX HttpContentEncoder is in the wrong state for an early response, and complains
             // that we have not yet received a request. So it's this or manually set its state
@@ -67,7 +71,7 @@ class EarlyPagesPipelineDecorator implements PipelineDecorator {
 
     @Singleton
     @Sharable
-    static final class Handler extends SimpleChannelInboundHandler<HttpRequest> {
+    static final class Handler extends ChannelInboundHandlerAdapter {
 
         private final Application application;
         private final UpstreamHandlerImpl upstream;
@@ -78,17 +82,33 @@ class EarlyPagesPipelineDecorator implements PipelineDecorator {
         }
 
         @Override
-        public boolean acceptInboundMessage(Object msg) throws Exception {
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
             if (msg instanceof HttpRequest) {
+                // Anything left over from a previous early request that
+                // never installed a chunk handler
+                EarlyContent.discard(ctx.channel());
                 HttpRequest r = (HttpRequest) msg;
-                return application.isEarlyPageMatch(r);
+                if (application.isEarlyPageMatch(r)) {
+                    // Hold any content that arrives before the page gets
+                    // around to installing its ChunkHandler
+                    EarlyContent.start(ctx.channel());
+                    try {
+                        upstream.handleHttpRequest(ctx, r, true);
+                    } finally {
+                        ReferenceCountUtil.release(msg);
+                    }
+                    return;
+                }
+            } else if (msg instanceof HttpContent && EarlyContent.offer(ctx.channel(), (HttpContent) msg)) {
+                return;
             }
-            return false;
+            ctx.fireChannelRead(msg);
         }
 
         @Override
-        protected void channelRead0(ChannelHandlerContext ctx, HttpRequest msg) throws Exception {
-            upstream.handleHttpRequest(ctx, msg, true);
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            EarlyContent.discard(ctx.channel());
+            super.channelInactive(ctx);
         }
     }
 }
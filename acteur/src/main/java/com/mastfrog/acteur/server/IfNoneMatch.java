@@ -0,0 +1,66 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.server;
+
+/**
+ * Compares an If-None-Match request header with an ETag, so that every
+ * place which answers conditional requests with 304 Not Modified agrees on
+ * what matches.
+ *
+ * @author Tim Boudreau
+ */
+public final class IfNoneMatch {
+
+    private IfNoneMatch() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Determine if an If-None-Match header matches an ETag, using the weak
+     * comparison RFC 7232 section 3.2 calls for - <code>W/"x"</code> matches
+     * <code>"x"</code> - and treating <code>*</code> as matching anything.
+     *
+     * @param ifNoneMatch The header value, possibly a comma-delimited list,
+     * possibly null
+     * @param etag The ETag of the response, possibly null
+     * @return true if the response should be a 304
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        String tag = stripWeak(etag);
+        for (String seq : ifNoneMatch.split(",")) {
+            String candidate = seq.trim();
+            if ("*".equals(candidate) || tag.equals(stripWeak(candidate))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
@@ -40,6 +40,10 @@ public interface PipelineDecorator {
      * Name of the pipeline's HttpObjectDecoder
      */
     public static final String DECODER = "decoder";
+    /**
+     * Name of the pipeline's request body decompressor, if any
+     */
+    public static final String DECOMPRESSOR = "inflater";
     /**
      * Name of the pipeline's HttpObjectAggregator
      */
@@ -48,6 +52,11 @@ public interface PipelineDecorator {
      * Name of the pipeline's HttpObjectEncoder
      */
     public static final String ENCODER = "encoder";
+    /**
+     * Name of the handler which answers requests for StaticResponses, if any
+     * have been registered
+     */
+    public static final String STATIC_RESPONSES = "static-responses";
     /**
      * Name of the pipeline's compressor, if any
      */
@@ -24,18 +24,34 @@
 package com.mastfrog.acteur.server;
 
 import com.google.inject.Provider;
+import com.google.inject.name.Named;
 import com.mastfrog.acteur.Application;
+import static com.mastfrog.acteur.server.ServerModule.DEFAULT_COMPRESSION_BROTLI_QUALITY;
+import static com.mastfrog.acteur.server.ServerModule.DEFAULT_COMPRESSION_ENCODINGS;
 import static com.mastfrog.acteur.server.ServerModule.DEFAULT_COMPRESSION_LEVEL;
+import static com.mastfrog.acteur.server.ServerModule.COMPRESSION_THREAD_POOL_NAME;
 import static com.mastfrog.acteur.server.ServerModule.DEFAULT_COMPRESSION_MEMORY_LEVEL;
+import static com.mastfrog.acteur.server.ServerModule.DEFAULT_COMPRESSION_OFFLOAD_MAX_PENDING;
 import static com.mastfrog.acteur.server.ServerModule.DEFAULT_COMPRESSION_THRESHOLD;
 import static com.mastfrog.acteur.server.ServerModule.DEFAULT_COMPRESSION_WINDOW_BITS;
+import static com.mastfrog.acteur.server.ServerModule.DEFAULT_COMPRESSION_ZSTD_LEVEL;
 import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_BROTLI_QUALITY;
 import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_CHECK_RESPONSE_CONTENT_TYPE;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_ENCODINGS;
 import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_LEVEL;
 import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_MEMORY_LEVEL;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_OFFLOAD_MAX_PENDING;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_OFFLOAD_THRESHOLD;
 import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_THRESHOLD;
 import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_WINDOW_BITS;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_ZSTD_LEVEL;
+import static com.mastfrog.acteur.server.ServerModule.DEFAULT_REQUEST_DECOMPRESSION_MAX_LENGTH;
+import static com.mastfrog.acteur.server.ServerModule.DEFAULT_REQUEST_DECOMPRESSION_MAX_RATIO;
 import static com.mastfrog.acteur.server.ServerModule.MAX_CONTENT_LENGTH;
+import static com.mastfrog.acteur.server.ServerModule.REQUEST_DECOMPRESSION;
+import static com.mastfrog.acteur.server.ServerModule.REQUEST_DECOMPRESSION_MAX_LENGTH;
+import static com.mastfrog.acteur.server.ServerModule.REQUEST_DECOMPRESSION_MAX_RATIO;
 import static com.mastfrog.acteur.server.ServerModule.SETTINGS_KEY_MAX_CHUNK_SIZE;
 import static com.mastfrog.acteur.server.ServerModule.SETTINGS_KEY_MAX_HEADER_BUFFER_SIZE;
 import static com.mastfrog.acteur.server.ServerModule.SETTINGS_KEY_MAX_REQUEST_LINE_LENGTH;
@@ -50,18 +66,40 @@ import static com.mastfrog.giulius.annotations.Setting.ValueType.BOOLEAN;
 import com.mastfrog.settings.Settings;
 import com.mastfrog.util.preconditions.ConfigurationError;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.compression.Brotli;
+import io.netty.handler.codec.compression.BrotliOptions;
+import io.netty.handler.codec.compression.CompressionOptions;
+import io.netty.handler.codec.compression.DeflateOptions;
+import io.netty.handler.codec.compression.GzipOptions;
+import io.netty.handler.codec.compression.StandardCompressionOptions;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
 import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.compression.Zstd;
+import io.netty.handler.codec.compression.ZstdEncoder;
+import io.netty.handler.codec.compression.ZstdOptions;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
 import io.netty.handler.codec.http.FullHttpMessage;
+import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpContentCompressor;
 import io.netty.handler.codec.http.HttpHeaderNames;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONNECTION;
 import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_LENGTH;
 import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderValues;
 import io.netty.handler.codec.http.HttpMessage;
 import io.netty.handler.codec.http.HttpObject;
 import io.netty.handler.codec.http.HttpObjectAggregator;
@@ -69,10 +107,25 @@ import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpRequestDecoder;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseEncoder;
+import static io.netty.handler.codec.http.HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 import io.netty.util.AsciiString;
 import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
 import io.netty.util.ReferenceCounted;
+import io.netty.util.concurrent.PromiseNotifier;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -99,6 +152,7 @@ class PipelineFactoryImpl extends ChannelInitializer<SocketChannel> {
     private final ActeurSslConfig sslConfigProvider;
     boolean useSsl;
     private final EarlyPagesPipelineDecorator earlyPages;
+    private final StaticResponses staticResponses;
     private final Application application;
     private final int maxInitialLineLength;
     private final int maxHeadersSize;
@@ -109,14 +163,24 @@ class PipelineFactoryImpl extends ChannelInitializer<SocketChannel> {
     private final int compressionThreshold;
     private final boolean compressionCheckContentType;
     private final boolean compressionDebug;
+    private final CompressionOptions[] compressionOptions;
+    private final List<String> compressionEncodings;
+    private final AdaptiveCompression adaptiveCompression;
+    private final CompressionOffload compressionOffload;
+    private final boolean requestDecompression;
+    private final long requestDecompressionMaxLength;
+    private final long requestDecompressionMaxRatio;
 
     @Inject
     PipelineFactoryImpl(Provider<ChannelHandler> handler,
             Provider<ApplicationControl> app, Settings settings,
             PipelineDecorator decorator, ActeurSslConfig sslConfigProvider,
             EarlyPagesPipelineDecorator earlyPages,
-            Application application) {
+            Application application, AdaptiveCompression adaptiveCompression,
+            @Named(COMPRESSION_THREAD_POOL_NAME) Provider<ExecutorService> compressionThreads,
+            StaticResponses staticResponses) {
         this.decorator = decorator;
+        this.staticResponses = staticResponses;
         this.handler = handler;
         this.app = app;
         this.sslConfigProvider = sslConfigProvider;
@@ -140,6 +204,179 @@ class PipelineFactoryImpl extends ChannelInitializer<SocketChannel> {
         if (compressionThreshold < 0) {
             throw new ConfigurationError(HTTP_COMPRESSION_THRESHOLD + " may not be < 0 but is " + compressionThreshold);
         }
+        int brotliQuality = fetchIntFromSettingsWithRangeCheck(HTTP_COMPRESSION_BROTLI_QUALITY, settings, 0, 11, DEFAULT_COMPRESSION_BROTLI_QUALITY);
+        int zstdLevel = fetchIntFromSettingsWithRangeCheck(HTTP_COMPRESSION_ZSTD_LEVEL, settings, 1, 22, DEFAULT_COMPRESSION_ZSTD_LEVEL);
+        List<String> encodings = new ArrayList<>();
+        List<CompressionOptions> options = new ArrayList<>();
+        for (String enc : settings.getString(HTTP_COMPRESSION_ENCODINGS, DEFAULT_COMPRESSION_ENCODINGS).split(",")) {
+            enc = enc.trim().toLowerCase();
+            if (enc.isEmpty() || encodings.contains(enc)) {
+                continue;
+            }
+            CompressionOptions opts = compressionOptions(enc, compressionLevel, compressionWindowBits,
+                    compressionMemLevel, brotliQuality, zstdLevel);
+            if (opts != null) {
+                encodings.add(enc);
+                options.add(opts);
+            } else if (compressionDebug) {
+                System.out.println("Compression library for " + enc + " not available - will not use it");
+            }
+        }
+        if (httpCompression && options.isEmpty()) {
+            throw new ConfigurationError("None of the encodings in " + HTTP_COMPRESSION_ENCODINGS + " are usable: "
+                    + settings.getString(HTTP_COMPRESSION_ENCODINGS));
+        }
+        compressionEncodings = Collections.unmodifiableList(encodings);
+        compressionOptions = options.toArray(new CompressionOptions[options.size()]);
+        this.adaptiveCompression = adaptiveCompression.isEnabled() ? adaptiveCompression : null;
+        int offloadThreshold = settings.getInt(HTTP_COMPRESSION_OFFLOAD_THRESHOLD, 0);
+        if (httpCompression && offloadThreshold > 0) {
+            int maxPending = settings.getInt(HTTP_COMPRESSION_OFFLOAD_MAX_PENDING, DEFAULT_COMPRESSION_OFFLOAD_MAX_PENDING);
+            if (maxPending < 1) {
+                throw new ConfigurationError(HTTP_COMPRESSION_OFFLOAD_MAX_PENDING + " must be > 0 but is " + maxPending);
+            }
+            compressionOffload = new CompressionOffload(compressionThreads.get(), offloadThreshold, maxPending);
+        } else {
+            compressionOffload = null;
+        }
+        requestDecompression = settings.getBoolean(REQUEST_DECOMPRESSION, false);
+        requestDecompressionMaxLength = settings.getLong(REQUEST_DECOMPRESSION_MAX_LENGTH, DEFAULT_REQUEST_DECOMPRESSION_MAX_LENGTH);
+        requestDecompressionMaxRatio = settings.getLong(REQUEST_DECOMPRESSION_MAX_RATIO, DEFAULT_REQUEST_DECOMPRESSION_MAX_RATIO);
+        if (requestDecompressionMaxLength < 0 || requestDecompressionMaxRatio < 0) {
+            throw new ConfigurationError(REQUEST_DECOMPRESSION_MAX_LENGTH + " and " + REQUEST_DECOMPRESSION_MAX_RATIO
+                    + " may not be negative");
+        }
+    }
+
+    static CompressionOptions compressionOptions(String encoding, int level, int windowBits, int memLevel,
+            int brotliQuality, int zstdLevel) {
+        switch (encoding) {
+            case "br":
+                // Isolated so brotli4j classes are only touched if present
+                return Brotli.isAvailable() ? BrotliSupport.options(brotliQuality) : null;
+            case "zstd":
+                return Zstd.isAvailable() ? StandardCompressionOptions.zstd(zstdLevel, ZSTD_BLOCK_SIZE, ZSTD_MAX_ENCODE_SIZE) : null;
+            case "gzip":
+                return StandardCompressionOptions.gzip(level, windowBits, memLevel);
+            case "deflate":
+                return StandardCompressionOptions.deflate(level, windowBits, memLevel);
+            default:
+                throw new ConfigurationError("Unknown encoding '" + encoding + "' in " + HTTP_COMPRESSION_ENCODINGS
+                        + " - supported values are br, zstd, gzip and deflate");
+        }
+    }
+
+    // Same as Netty's defaults
+    static final int ZSTD_BLOCK_SIZE = 64 * 1024;
+    static final int ZSTD_MAX_ENCODE_SIZE = 32 * 1024 * 1024;
+
+    /**
+     * Isolates references to brotli4j classes, so they are only loaded if
+     * Brotli is actually available.
+     */
+    static final class BrotliSupport {
+
+        static BrotliOptions options(int quality) {
+            return StandardCompressionOptions.brotli(
+                    new com.aayushatharva.brotli4j.encoder.Encoder.Parameters().setQuality(quality));
+        }
+
+        static ChannelHandler encoder(BrotliOptions options) {
+            return new BrotliStreamEncoder(options.parameters());
+        }
+
+        static ChannelHandler encoder(int quality) {
+            return new BrotliStreamEncoder(new com.aayushatharva.brotli4j.encoder.Encoder.Parameters()
+                    .setQuality(quality));
+        }
+
+        /**
+         * Netty 4.1.87's BrotliEncoder writes the final block of the stream
+         * from a task scheduled when it is removed, which is too late when it
+         * lives in HttpContentCompressor's embedded channel - the response
+         * body is left truncated. This encoder writes it when the channel is
+         * closed, the same way JdkZlibEncoder writes the gzip footer.
+         */
+        static final class BrotliStreamEncoder extends ChannelOutboundHandlerAdapter {
+
+            private final com.aayushatharva.brotli4j.encoder.Encoder.Parameters parameters;
+            private com.aayushatharva.brotli4j.encoder.BrotliOutputStream stream;
+            private ChannelHandlerContext ctx;
+            private ByteBuf target;
+            private final OutputStream sink = new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    target().writeByte(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    target().writeBytes(b, off, len);
+                }
+            };
+
+            BrotliStreamEncoder(com.aayushatharva.brotli4j.encoder.Encoder.Parameters parameters) {
+                this.parameters = parameters;
+            }
+
+            private ByteBuf target() {
+                if (target == null) {
+                    target = ctx.alloc().buffer();
+                }
+                return target;
+            }
+
+            private ByteBuf takeOutput() {
+                ByteBuf result = target;
+                target = null;
+                return result == null ? Unpooled.EMPTY_BUFFER : result;
+            }
+
+            @Override
+            public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+                this.ctx = ctx;
+            }
+
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+                if (!(msg instanceof ByteBuf)) {
+                    ctx.write(msg, promise);
+                    return;
+                }
+                ByteBuf buf = (ByteBuf) msg;
+                try {
+                    if (stream == null) {
+                        stream = new com.aayushatharva.brotli4j.encoder.BrotliOutputStream(sink, parameters);
+                    }
+                    buf.readBytes(stream, buf.readableBytes());
+                } finally {
+                    buf.release();
+                }
+                ctx.write(takeOutput(), promise);
+            }
+
+            @Override
+            public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+                if (stream != null) {
+                    stream.close();
+                    stream = null;
+                    ctx.writeAndFlush(takeOutput());
+                }
+                ctx.close(promise);
+            }
+
+            @Override
+            public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+                if (stream != null) {
+                    try {
+                        stream.close();
+                    } finally {
+                        stream = null;
+                        takeOutput().release();
+                    }
+                }
+            }
+        }
     }
 
     private static int fetchIntFromSettingsWithRangeCheck(String name, Settings settings, int min, int max, int def) {
@@ -173,15 +410,25 @@ class PipelineFactoryImpl extends ChannelInitializer<SocketChannel> {
 
         pipeline.addLast(PipelineDecorator.DECODER, decoder);
         pipeline.addLast(PipelineDecorator.ENCODER, encoder);
+        if (requestDecompression) {
+            // After the encoder, so it can send an error response; ahead of the
+            // aggregator, so maxContentLength applies to the decompressed body
+            pipeline.addLast(PipelineDecorator.DECOMPRESSOR, new RequestDecompressor(
+                    requestDecompressionMaxLength, requestDecompressionMaxRatio));
+        }
         if (aggregateChunks) {
-            ChannelHandler aggregator = hasEarly ? new SelectiveAggregator(maxContentLength, application)
+            ChannelHandler aggregator = hasEarly || application.hasRequestBodyPolicies()
+                    ? new SelectiveAggregator(maxContentLength, application)
                     : new Agg(maxContentLength);
             pipeline.addLast(PipelineDecorator.AGGREGATOR, aggregator);
         }
+        if (!staticResponses.isEmpty()) {
+            // Ahead of the compressor, so what it writes bypasses it
+            pipeline.addLast(PipelineDecorator.STATIC_RESPONSES, new StaticResponseHandler(staticResponses));
+        }
         if (httpCompression) {
-            ChannelHandler compressor = new SelectiveCompressor(compressionLevel, compressionWindowBits,
-                    compressionMemLevel, compressionThreshold, compressionCheckContentType,
-                    compressionDebug);
+            ChannelHandler compressor = new SelectiveCompressor(compressionEncodings, compressionOptions,
+                    compressionThreshold, compressionCheckContentType, compressionDebug, adaptiveCompression, compressionOffload);
             pipeline.addLast(PipelineDecorator.COMPRESSOR, compressor);
         }
         pipeline.addLast(PipelineDecorator.HANDLER, handler.get());
@@ -251,23 +498,213 @@ class PipelineFactoryImpl extends ChannelInitializer<SocketChannel> {
         private final int compressionThreshold;
         private final boolean compressionCheckContentType;
         private final boolean debug;
-
-        SelectiveCompressor(int compressionLevel, int windowBits, int memLevel, int compressionThreshold,
-                boolean compressionCheckContentType, boolean compressionDebug) {
-            super(compressionLevel, windowBits, memLevel);
+        private final List<String> encodings;
+        private final Map<String, CompressionOptions> optionsForEncoding = new HashMap<>();
+        private final AdaptiveCompression adaptive;
+        private final CompressionOffload offload;
+        private final ArrayDeque<PendingWrite> deferred = new ArrayDeque<>();
+        private CompressionOffload.Job job;
+        private boolean flushDeferred;
+        private ChannelHandlerContext ctx;
+
+        /**
+         * Create a compressor.
+         *
+         * @param encodings The names of the content-encodings corresponding
+         * to the passed options, in order of preference
+         * @param options The compression options
+         * @param compressionThreshold Content-Length below which not to
+         * compress
+         * @param compressionCheckContentType Whether to skip media types
+         * @param compressionDebug Print debug output
+         * @param adaptive If non-null, used to pick the compression level
+         * for each response
+         * @param offload If non-null, used to compress large responses off
+         * of the event loop
+         */
+        SelectiveCompressor(List<String> encodings, CompressionOptions[] options, int compressionThreshold,
+                boolean compressionCheckContentType, boolean compressionDebug, AdaptiveCompression adaptive,
+                CompressionOffload offload) {
+            // We apply the threshold ourselves, based on Content-Length
+            super(0, options);
+            this.encodings = encodings;
             this.compressionThreshold = compressionThreshold;
             this.compressionCheckContentType = compressionCheckContentType;
             this.debug = compressionDebug;
+            this.adaptive = adaptive;
+            this.offload = offload;
+            for (int i = 0; i < options.length; i++) {
+                optionsForEncoding.put(encodings.get(i), options[i]);
+            }
+        }
+
+        private ChannelHandler encoderFor(String encoding) {
+            CompressionOptions opts = optionsForEncoding.get(encoding);
+            if (opts instanceof BrotliOptions) {
+                // Netty's BrotliEncoder truncates responses - see BrotliStreamEncoder
+                return BrotliSupport.encoder((BrotliOptions) opts);
+            } else if (opts instanceof ZstdOptions) {
+                ZstdOptions zstd = (ZstdOptions) opts;
+                return new ZstdEncoder(zstd.compressionLevel(), zstd.blockSize(), zstd.maxEncodeSize());
+            }
+            DeflateOptions deflate = (DeflateOptions) opts;
+            return ZlibCodecFactory.newZlibEncoder(opts instanceof GzipOptions ? ZlibWrapper.GZIP : ZlibWrapper.ZLIB,
+                    deflate.compressionLevel(), deflate.windowBits(), deflate.memLevel());
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+            if (job != null) {
+                if (job.isCollecting() && msg instanceof HttpContent) {
+                    CompressionOffload.Job current = job;
+                    if (current.add((HttpContent) msg, promise)) {
+                        offload.compress(current, ctx, (compressed, thrown) -> {
+                            offloadDone(ctx, current, compressed, thrown);
+                        });
+                    }
+                } else {
+                    // Anything else waits until the offloaded response
+                    // has been written
+                    deferred.add(new PendingWrite(msg, promise, false));
+                }
+                return;
+            }
+            if (offload != null && msg instanceof FullHttpResponse) {
+                FullHttpResponse full = (FullHttpResponse) msg;
+                if (offload.shouldOffload(full.content().readableBytes())) {
+                    // Split it so the body can be collected like any other
+                    // response content, if beginEncode decides to offload it
+                    HttpHeaders hdrs = full.headers();
+                    if (!hdrs.contains(CONTENT_LENGTH)) {
+                        hdrs.set(CONTENT_LENGTH, full.content().readableBytes());
+                    }
+                    write(ctx, new DefaultHttpResponse(full.protocolVersion(), full.status(), hdrs),
+                            ctx.newPromise());
+                    write(ctx, new DefaultLastHttpContent(full.content(), full.trailingHeaders()), promise);
+                    return;
+                }
+            }
+            super.write(ctx, msg, promise);
+        }
+
+        /**
+         * Write a response which must not be compressed and is written from
+         * ahead of this handler in the pipeline, such as one of the
+         * StaticResponses, behind any earlier response whose compression is
+         * still in progress, rather than letting it overtake that one.
+         *
+         * @param msg The response
+         * @param promise The promise to complete once it is written
+         * @return true if it was queued; false if nothing is pending, and the
+         * caller should write it itself
+         */
+        boolean writeAfterPending(Object msg, ChannelPromise promise) {
+            if (job == null) {
+                return false;
+            }
+            deferred.add(new PendingWrite(msg, promise, true));
+            flushDeferred = true;
+            return true;
+        }
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) throws Exception {
+            if (job != null) {
+                flushDeferred = true;
+                return;
+            }
+            ctx.flush();
+        }
+
+        private void offloadDone(ChannelHandlerContext ctx, CompressionOffload.Job completed,
+                ByteBuf compressed, Throwable thrown) {
+            if (job != completed) {
+                // Channel closed while compressing
+                ReferenceCountUtil.safeRelease(compressed);
+                return;
+            }
+            job = null;
+            if (thrown != null) {
+                completed.fail(thrown);
+                discardDeferred(thrown);
+                ctx.close();
+                return;
+            }
+            List<ChannelPromise> promises = completed.promises();
+            ChannelPromise bodyPromise = ctx.newPromise();
+            for (ChannelPromise p : promises.subList(0, promises.size() - 1)) {
+                bodyPromise.addListener(new PromiseNotifier<>(p));
+            }
+            try {
+                // We are in pass-through state as far as HttpContentEncoder is
+                // concerned, so these are written as-is, and the last content
+                // resets its state for the next response
+                super.write(ctx, new DefaultHttpContent(compressed), bodyPromise);
+                super.write(ctx, new DefaultLastHttpContent(Unpooled.EMPTY_BUFFER, completed.trailers()),
+                        promises.get(promises.size() - 1));
+                while (!deferred.isEmpty() && (job == null || job.isCollecting())) {
+                    PendingWrite pending = deferred.poll();
+                    if (!pending.bypass) {
+                        write(ctx, pending.msg, pending.promise);
+                    } else if (job == null) {
+                        ctx.write(pending.msg, pending.promise);
+                    } else {
+                        // Still behind the response now being collected
+                        deferred.addFirst(pending);
+                        break;
+                    }
+                }
+            } catch (Exception ex) {
+                ctx.fireExceptionCaught(ex);
+            }
+            if (flushDeferred) {
+                flushDeferred = false;
+                ctx.flush();
+            }
+        }
+
+        private void discardDeferred(Throwable cause) {
+            for (PendingWrite pending = deferred.poll(); pending != null; pending = deferred.poll()) {
+                ReferenceCountUtil.safeRelease(pending.msg);
+                pending.promise.tryFailure(cause);
+            }
+        }
+
+        private void discardOffload() {
+            if (job != null) {
+                ClosedChannelException ex = new ClosedChannelException();
+                job.discard(ex);
+                job = null;
+                discardDeferred(ex);
+            }
         }
 
         @Override
-        protected ZlibWrapper determineWrapper(String acceptEncoding) {
-            ZlibWrapper result = super.determineWrapper(acceptEncoding);
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            discardOffload();
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+            discardOffload();
+            super.handlerRemoved(ctx);
+        }
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+            this.ctx = ctx;
+            super.handlerAdded(ctx);
+        }
+
+        @Override
+        protected String determineEncoding(String acceptEncoding) {
+            String result = QValues.chooseEncoding(acceptEncoding, encodings);
             if (debug) {
                 if (result != null) {
-                    System.out.println("Using ZlibWrapper " + result.name() + " for " + acceptEncoding);
+                    System.out.println("Using encoding " + result + " for " + acceptEncoding);
                 } else {
-                    System.out.println("Did not find ZlibWrapper for " + acceptEncoding + " - will not compress");
+                    System.out.println("Did not find encoding for " + acceptEncoding + " - will not compress");
                 }
             }
             return result;
@@ -302,6 +739,24 @@ class PipelineFactoryImpl extends ChannelInitializer<SocketChannel> {
                 System.out.println("beginEncode " + acceptEncoding + " of " + headers);
             }
 
+            // Removed before anything else, so it never reaches the client
+            if (hdrs.contains(X_INTERNAL_COMPRESS)) {
+                if (debug) {
+                    System.out.println("Found X-Internal-Compress header, not compressing.");
+                }
+                hdrs.remove(X_INTERNAL_COMPRESS);
+                return null;
+            }
+            // A response already in a real encoding, such as a cached or
+            // precompressed gzip body, must not be compressed again; identity
+            // is what ResponseImpl marks ordinary buffered responses with
+            String contentEncoding = hdrs.get(HttpHeaderNames.CONTENT_ENCODING);
+            if (contentEncoding != null && !HttpHeaderValues.IDENTITY.contentEqualsIgnoreCase(contentEncoding)) {
+                if (debug) {
+                    System.out.println("Content-Encoding already set, not compressing.");
+                }
+                return null;
+            }
             // Note we cannot test for content length in chunked responses - they get the default
             // behavior of HttpContentCompressor
             if (contentLength != null) {
@@ -312,13 +767,6 @@ class PipelineFactoryImpl extends ChannelInitializer<SocketChannel> {
                     return null;
                 }
             }
-            if (hdrs.contains(X_INTERNAL_COMPRESS)) {
-                if (debug) {
-                    System.out.println("Found X-Internal-Compress header, not compressing.");
-                }
-                hdrs.remove(X_INTERNAL_COMPRESS);
-                return null;
-            }
             if (compressionCheckContentType) {
                 String contentType = hdrs.get(HttpHeaderNames.CONTENT_TYPE);
                 if (contentType != null) {
@@ -334,70 +782,189 @@ class PipelineFactoryImpl extends ChannelInitializer<SocketChannel> {
                 ((ReferenceCounted) headers).touch("selective-compressor-encode");
             }
 
-            Result result = super.beginEncode(headers, acceptEncoding);
-            if (result != null) {
+            String encoding = determineEncoding(acceptEncoding);
+            if (encoding == null) {
+                return null;
+            }
+            ChannelHandler encoder;
+            if (adaptive != null) {
+                int level = adaptive.level(adaptive.load(ctx.executor()),
+                        contentLength == null ? -1 : contentLength);
+                if (debug) {
+                    System.out.println("Adaptive compression level " + level + " for " + encoding);
+                }
+                if (level < 0) {
+                    return null;
+                }
+                encoder = adaptive.encoder(encoding, level);
+            } else {
+                encoder = encoderFor(encoding);
+            }
+            if (offload != null && contentLength != null && offload.shouldOffload(contentLength)
+                    && HttpVersion.HTTP_1_1.equals(headers.protocolVersion())) {
+                if (debug) {
+                    System.out.println("Offloading compression of " + contentLength + " bytes");
+                }
+                // Send the headers as they would be for a compressed response,
+                // and let HttpContentEncoder pass through the content, which
+                // write() will collect and hand off to the compression threads
+                hdrs.remove(CONTENT_LENGTH);
+                hdrs.set(HttpHeaderNames.CONTENT_ENCODING, encoding);
+                hdrs.set(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
                 if (ACTEUR_DEBUG) {
-                    // Ensures responses indicate if they were compressed by this compressor, even if
-                    // they are received by a decoder that transparently decompresses them
                     hdrs.add(COMPRESS_DEBUG_HEADER, TRUE);
                 }
-            } else if (debug) {
-                System.out.println("Compressor returned null, not compressing.");
+                job = offload.newJob(encoding, encoder, ctx);
+                return null;
+            }
+            Result result = new Result(encoding, new EmbeddedChannel(ctx.channel().id(),
+                    ctx.channel().metadata().hasDisconnect(), ctx.channel().config(), encoder));
+            if (ACTEUR_DEBUG) {
+                // Ensures responses indicate if they were compressed by this compressor, even if
+                // they are received by a decoder that transparently decompresses them
+                hdrs.add(COMPRESS_DEBUG_HEADER, TRUE);
             }
             return result;
         }
     }
 
+    private static final class PendingWrite {
+
+        final Object msg;
+        final ChannelPromise promise;
+        // Written as-is, bypassing the encoder
+        final boolean bypass;
+
+        PendingWrite(Object msg, ChannelPromise promise, boolean bypass) {
+            this.msg = msg;
+            this.promise = promise;
+            this.bypass = bypass;
+        }
+    }
+
     private static final AsciiString COMPRESS_DEBUG_HEADER = AsciiString.of("X-Compressed");
     private static final AsciiString TRUE = AsciiString.of("1");
     static final AttributeKey<Boolean> EARLY_KEY = AttributeKey.newInstance(SelectiveAggregator.class.getSimpleName());
 
+    /**
+     * Aggregator which passes through requests for early pages and pages
+     * whose &#064;RequestBodyPolicy is STREAM, and applies per-route body
+     * limits as soon as a request's headers arrive: requests whose
+     * Content-Length is too large get a 413 without any of the body being
+     * read, and chunked requests get one (and the connection is closed) as
+     * soon as they exceed the limit.
+     */
     static final class SelectiveAggregator extends HttpObjectAggregator {
 
         static final ThreadLocalValue<ChannelHandlerContext> localCtx = ThreadLocalValue.create();
         private final Application app;
         private final boolean hasEarlyPages;
+        private final boolean hasBodyPolicies;
+        private final int defaultMaxContentLength;
+        // Per-request state; the pipeline is per-channel
+        private int routeMaxContentLength;
+        private boolean countChunks;
+        private long received;
+        private boolean refused;
 
         public SelectiveAggregator(int maxContentLength, Application app) {
-            super(maxContentLength);
+            // The aggregator's own limit must allow the largest route's
+            super(app.hasRequestBodyPolicies()
+                    ? (int) Math.min(Integer.MAX_VALUE, Math.max(maxContentLength, app.maxDeclaredRequestBodyLength()))
+                    : maxContentLength);
             this.app = app;
             hasEarlyPages = app.hasEarlyPages();
+            hasBodyPolicies = app.hasRequestBodyPolicies();
+            defaultMaxContentLength = maxContentLength;
+            routeMaxContentLength = maxContentLength;
         }
 
         @Override
         public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-            if (!hasEarlyPages) {
+            if (!hasEarlyPages && !hasBodyPolicies) {
                 super.channelRead(ctx, msg);
                 return;
             }
+            if (hasBodyPolicies && !checkBodyLength(ctx, msg)) {
+                return;
+            }
             try (QuietAutoClosable cl = localCtx.setTo(ctx)) {
                 super.channelRead(ctx, msg);
             }
         }
 
+        private boolean checkBodyLength(ChannelHandlerContext ctx, Object msg) {
+            if (msg instanceof HttpRequest) {
+                refused = false;
+                received = 0;
+                return true;
+            }
+            if (refused) {
+                ReferenceCountUtil.release(msg);
+                return false;
+            }
+            if (countChunks && msg instanceof HttpContent) {
+                received += ((HttpContent) msg).content().readableBytes();
+                if (received > routeMaxContentLength) {
+                    refused = true;
+                    ReferenceCountUtil.release(msg);
+                    // Part of the body has been read, so the connection cannot be reused
+                    FullHttpResponse resp = new DefaultFullHttpResponse(HTTP_1_1, REQUEST_ENTITY_TOO_LARGE, Unpooled.EMPTY_BUFFER);
+                    resp.headers().set(CONTENT_LENGTH, 0);
+                    resp.headers().set(CONNECTION, HttpHeaderValues.CLOSE);
+                    ctx.writeAndFlush(resp).addListener(ChannelFutureListener.CLOSE);
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        protected boolean isContentLengthInvalid(HttpMessage start, int maxContentLength) {
+            return super.isContentLengthInvalid(start, Math.min(maxContentLength, routeMaxContentLength));
+        }
+
+        @Override
+        protected Object newContinueResponse(HttpMessage start, int maxContentLength, ChannelPipeline pipeline) {
+            return super.newContinueResponse(start, Math.min(maxContentLength, routeMaxContentLength), pipeline);
+        }
+
+        private boolean mayHaveBody(HttpRequest req) {
+            return HttpUtil.isTransferEncodingChunked(req) || req.headers().contains(CONTENT_LENGTH);
+        }
+
         @Override
         public boolean acceptInboundMessage(Object msg) throws Exception {
             if (msg instanceof ReferenceCounted) {
                 ((ReferenceCounted) msg).touch("selective-agg-accept-inbound");
             }
-            if (!hasEarlyPages) {
+            if (!hasEarlyPages && !hasBodyPolicies) {
                 return super.acceptInboundMessage(msg);
             }
             if (super.acceptInboundMessage(msg)) {
                 ChannelHandlerContext ctx = localCtx.get();
                 assert ctx != null : "No context";
-                Boolean e = ctx.channel().attr(EARLY_KEY).get();
-                if (e != null && e) {
-                    return false;
-                }
+                // Decided afresh for each request, since a keep-alive
+                // connection may carry early and normal ones
                 if (msg instanceof HttpRequest) {
                     HttpRequest req = (HttpRequest) msg;
-                    if (app.isEarlyPageMatch(req)) {
+                    routeMaxContentLength = defaultMaxContentLength;
+                    countChunks = false;
+                    if (hasEarlyPages && app.isEarlyPageMatch(req)) {
                         ctx.channel().attr(EARLY_KEY).set(true);
                         return false;
-                    } else {
-                        ctx.channel().attr(EARLY_KEY).set(false);
                     }
+                    if (hasBodyPolicies && mayHaveBody(req)) {
+                        long max = app.maxRequestBodyLength(req, defaultMaxContentLength);
+                        if (max < 0) {
+                            // Streamed, like an early page
+                            ctx.channel().attr(EARLY_KEY).set(true);
+                            return false;
+                        }
+                        routeMaxContentLength = (int) Math.min(Integer.MAX_VALUE, max);
+                        countChunks = !req.headers().contains(CONTENT_LENGTH);
+                    }
+                    ctx.channel().attr(EARLY_KEY).set(false);
                 } else {
                     Boolean early = ctx.channel().attr(EARLY_KEY).get();
                     if (early != null && early) {
@@ -0,0 +1,161 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parses the q-values of content negotiation headers such as Accept and
+ * Accept-Encoding, so the compressor, precompressed static files and content
+ * negotiators all agree on what a client asked for.
+ *
+ * @author Tim Boudreau
+ */
+public final class QValues {
+
+    private QValues() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Get the value of one comma-delimited element of a header, without its
+     * parameters - e.g. <code>gzip</code> for <code>gzip;q=0.5</code>.
+     *
+     * @param element An element of the header
+     * @return The element's value, trimmed
+     */
+    public static String value(String element) {
+        int ix = element.indexOf(';');
+        return (ix < 0 ? element : element.substring(0, ix)).trim();
+    }
+
+    /**
+     * Get the q-value of one comma-delimited element of a header.
+     *
+     * @param element An element of the header
+     * @return The q-value - 1 if there is none, 0 if it is malformed
+     */
+    public static float quality(String element) {
+        float result = 1F;
+        int ix = element.indexOf(';');
+        while (ix >= 0) {
+            int next = element.indexOf(';', ix + 1);
+            String param = (next < 0 ? element.substring(ix + 1) : element.substring(ix + 1, next)).trim();
+            if (param.length() > 1 && (param.charAt(0) == 'q' || param.charAt(0) == 'Q')
+                    && param.charAt(1) == '=') {
+                try {
+                    result = Float.parseFloat(param.substring(2).trim());
+                } catch (NumberFormatException ex) {
+                    result = 0F;
+                }
+            }
+            ix = next;
+        }
+        return result;
+    }
+
+    /**
+     * Get the encodings an Accept-Encoding header accepts, best first -
+     * highest q-value, then whichever comes first in the passed list.
+     * Encodings the header does not mention get the q-value of
+     * <code>*</code>, if present; <code>x-gzip</code> is treated as
+     * <code>gzip</code>.
+     *
+     * @param acceptEncoding The header value, possibly null
+     * @param supported Supported encodings, lower case, in order of preference
+     * @return A list of encodings, possibly empty
+     */
+    public static List<String> acceptableEncodings(CharSequence acceptEncoding, List<String> supported) {
+        if (acceptEncoding == null || acceptEncoding.length() == 0) {
+            return Collections.emptyList();
+        }
+        float[] qs = encodingQualities(acceptEncoding, supported);
+        List<String> result = new ArrayList<>(qs.length);
+        for (;;) {
+            int best = best(qs);
+            if (best < 0) {
+                return result;
+            }
+            result.add(supported.get(best));
+            qs[best] = 0F;
+        }
+    }
+
+    /**
+     * Pick the encoding with the highest q-value in an Accept-Encoding
+     * header, preferring whichever comes first in the passed list when
+     * more than one has the same q-value.
+     *
+     * @param acceptEncoding The header value, possibly null
+     * @param supported Supported encodings, lower case, in order of preference
+     * @return An encoding or null
+     */
+    public static String chooseEncoding(CharSequence acceptEncoding, List<String> supported) {
+        if (acceptEncoding == null || acceptEncoding.length() == 0) {
+            return null;
+        }
+        int best = best(encodingQualities(acceptEncoding, supported));
+        return best < 0 ? null : supported.get(best);
+    }
+
+    private static float[] encodingQualities(CharSequence acceptEncoding, List<String> supported) {
+        float[] qs = new float[supported.size()];
+        Arrays.fill(qs, -1F);
+        float starQ = -1F;
+        for (String part : acceptEncoding.toString().split(",")) {
+            float q = quality(part);
+            String name = value(part).toLowerCase(Locale.US);
+            if ("*".equals(name)) {
+                starQ = q;
+                continue;
+            } else if ("x-gzip".equals(name)) {
+                name = "gzip";
+            }
+            int pos = supported.indexOf(name);
+            if (pos >= 0) {
+                qs[pos] = Math.max(qs[pos], q);
+            }
+        }
+        for (int i = 0; i < qs.length; i++) {
+            if (qs[i] < 0F) {
+                qs[i] = starQ;
+            }
+        }
+        return qs;
+    }
+
+    private static int best(float[] qs) {
+        int best = -1;
+        for (int i = 0; i < qs.length; i++) {
+            if (qs[i] > 0F && (best < 0 || qs[i] > qs[best])) {
+                best = i;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.server;
+
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.mastfrog.acteur.ChunkHandler;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.compression.Zstd;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpContentDecompressor;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
+import static io.netty.handler.codec.http.HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE;
+import io.netty.util.ReferenceCountUtil;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Decompresses request bodies according to their Content-Encoding, ahead of
+ * the aggregator and early-page chunk handlers, refusing bodies which
+ * decompress to more than a maximum length or by more than a maximum ratio
+ * with 413 Request Entity Too Large. Netty's HttpContentDecompressor handles
+ * gzip, deflate and br (if brotli4j is present); zstd is added here, since
+ * Netty 4.1.87 has no zstd decoder.
+ * <p>
+ * Limits are enforced as each decompressed buffer is produced, and anything
+ * past the limit is discarded immediately, so a decompression bomb costs at
+ * most the output of one inbound chunk.
+ *
+ * @author Tim Boudreau
+ */
+final class RequestDecompressor extends HttpContentDecompressor {
+
+    // Below this, a high ratio is just a compressible body
+    static final long RATIO_FLOOR = 64 * 1024;
+    private final long maxLength;
+    private final long maxRatio;
+    private long compressed;
+    private long decompressed;
+    private boolean exceeded;
+    private Throwable decodeFailure;
+    private boolean failed;
+
+    RequestDecompressor(long maxLength, long maxRatio) {
+        this.maxLength = maxLength;
+        this.maxRatio = maxRatio;
+    }
+
+    @Override
+    protected EmbeddedChannel newContentDecoder(String contentEncoding) throws Exception {
+        EmbeddedChannel result;
+        if ("zstd".equalsIgnoreCase(contentEncoding) && Zstd.isAvailable()) {
+            result = new EmbeddedChannel(ctx.channel().id(), ctx.channel().metadata().hasDisconnect(),
+                    ctx.channel().config(), new ZstdStreamDecoder());
+        } else {
+            result = super.newContentDecoder(contentEncoding);
+        }
+        if (result != null) {
+            result.pipeline().addLast(new Limiter());
+        }
+        return result;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, HttpObject msg, List<Object> out) throws Exception {
+        if (failed) {
+            // The response has been sent and the channel is closing
+            return;
+        }
+        if (msg instanceof HttpRequest) {
+            compressed = 0;
+            decompressed = 0;
+        }
+        if (msg instanceof HttpContent) {
+            compressed += ((HttpContent) msg).content().readableBytes();
+        }
+        try {
+            super.decode(ctx, msg, out);
+        } catch (DecoderException ex) {
+            decodeFailure = ex;
+        }
+        if (decodeFailure != null) {
+            fail(ctx, out, BAD_REQUEST, "Invalid compressed request body: " + decodeFailure.getMessage());
+        } else if (exceeded) {
+            fail(ctx, out, REQUEST_ENTITY_TOO_LARGE, "Decompressed request body too large ("
+                    + decompressed + " bytes from " + compressed + ")");
+        }
+    }
+
+    private void fail(ChannelHandlerContext ctx, List<Object> out, HttpResponseStatus status, String msg) {
+        failed = true;
+        for (Object o : out) {
+            ReferenceCountUtil.release(o);
+        }
+        out.clear();
+        ChunkHandler.sendErrorAndClose(ctx, status, msg);
+    }
+
+    boolean isOverLimit(long decompressed, long compressed) {
+        if (maxLength > 0 && decompressed > maxLength) {
+            return true;
+        }
+        return maxRatio > 0 && decompressed > RATIO_FLOOR && decompressed > compressed * maxRatio;
+    }
+
+    /**
+     * Sits at the end of each decoder's pipeline, counting output and
+     * discarding anything past the limits. Also catches decoding failures,
+     * which would otherwise be rethrown again when the decoder is cleaned up
+     * after the connection is closed.
+     */
+    private final class Limiter extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (msg instanceof ByteBuf && !exceeded) {
+                decompressed += ((ByteBuf) msg).readableBytes();
+                exceeded = isOverLimit(decompressed, compressed);
+            }
+            if (exceeded) {
+                ReferenceCountUtil.release(msg);
+                return;
+            }
+            ctx.fireChannelRead(msg);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+            if (decodeFailure == null) {
+                decodeFailure = cause;
+            }
+        }
+    }
+
+    /**
+     * Streaming zstd decoder using zstd-jni, which emits output a buffer at a
+     * time as it is produced; only loaded if zstd-jni is available.
+     */
+    static final class ZstdStreamDecoder extends ChannelInboundHandlerAdapter {
+
+        static final int OUTPUT_BUFFER_SIZE = 32 * 1024;
+        private ZstdDecompressCtx zstd = new ZstdDecompressCtx();
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (!(msg instanceof ByteBuf)) {
+                ctx.fireChannelRead(msg);
+                return;
+            }
+            ByteBuf in = (ByteBuf) msg;
+            ByteBuf direct = in;
+            try {
+                if (!in.isDirect() || in.nioBufferCount() != 1) {
+                    direct = ctx.alloc().directBuffer(in.readableBytes());
+                    direct.writeBytes(in, in.readerIndex(), in.readableBytes());
+                }
+                ByteBuffer src = direct.nioBuffer(direct.readerIndex(), direct.readableBytes());
+                boolean outputFull;
+                do {
+                    ByteBuf out = ctx.alloc().directBuffer(OUTPUT_BUFFER_SIZE, OUTPUT_BUFFER_SIZE);
+                    ByteBuffer dst = out.nioBuffer(0, OUTPUT_BUFFER_SIZE);
+                    try {
+                        zstd.decompressDirectByteBufferStream(dst, src);
+                    } catch (RuntimeException ex) {
+                        out.release();
+                        throw new DecoderException(ex);
+                    }
+                    int produced = dst.position();
+                    outputFull = produced == OUTPUT_BUFFER_SIZE;
+                    if (produced > 0) {
+                        out.writerIndex(produced);
+                        ctx.fireChannelRead(out);
+                    } else {
+                        out.release();
+                    }
+                } while (src.hasRemaining() || outputFull);
+            } finally {
+                if (direct != in) {
+                    direct.release();
+                }
+                in.release();
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            close();
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+            close();
+        }
+
+        private void close() {
+            if (zstd != null) {
+                zstd.close();
+                zstd = null;
+            }
+        }
+    }
+}
@@ -34,6 +34,7 @@ import com.google.inject.TypeLiteral;
 import com.google.inject.name.Names;
 import com.mastfrog.acteur.Acteur;
 import com.mastfrog.acteur.Application;
+import com.mastfrog.acteur.BodyStream;
 import com.mastfrog.acteur.BuiltInPageAnnotationHandler;
 import com.mastfrog.acteur.Closables;
 import com.mastfrog.acteur.DeferredComputationResult;
@@ -190,6 +191,121 @@ public class ServerModule<A extends Application> extends AbstractModule {
             + "types (jpg, gz, etc.)", type = Setting.ValueType.BOOLEAN)
     public static final String HTTP_COMPRESSION_CHECK_RESPONSE_CONTENT_TYPE = "compression.check.content.type";
 
+    /**
+     * Comma-delimited list of the content-encodings the response compressor
+     * may use, in the server's order of preference, which is used when a
+     * client's <code>Accept-Encoding</code> header gives more than one the
+     * same q-value. Supported values are <code>br</code>, <code>zstd</code>,
+     * <code>gzip</code> and <code>deflate</code>; brotli and zstd are only
+     * used if brotli4j (with the native library for the platform) or zstd-jni
+     * respectively are on the classpath, and are skipped otherwise.
+     */
+    @Setting(value = "Comma-delimited list of HTTP content-encodings to use for response compression, "
+            + "in order of preference - br, zstd, gzip, deflate - brotli and zstd require brotli4j "
+            + "and zstd-jni on the classpath", type = Setting.ValueType.STRING, defaultValue = "br,zstd,gzip,deflate")
+    public static final String HTTP_COMPRESSION_ENCODINGS = "compression.encodings";
+    /**
+     * Brotli quality level (0-11) used for HTTP compression when the client
+     * accepts <code>br</code>; the default is 4, which compresses better than
+     * gzip at level 6 at similar cost.
+     */
+    @Setting(value = "Brotli quality for HTTP compression (0-11)", type = Setting.ValueType.INTEGER, defaultValue = "4")
+    public static final String HTTP_COMPRESSION_BROTLI_QUALITY = "compression.brotli.quality";
+    /**
+     * Zstd compression level (1-22) used for HTTP compression when the client
+     * accepts <code>zstd</code>.
+     */
+    @Setting(value = "Zstd level for HTTP compression (1-22)", type = Setting.ValueType.INTEGER, defaultValue = "3")
+    public static final String HTTP_COMPRESSION_ZSTD_LEVEL = "compression.zstd.level";
+    /**
+     * If true, the compression level is chosen per-response, between
+     * <code>compression.adaptive.min.level</code> and
+     * <code>compression.adaptive.max.level</code>, based on current CPU and
+     * event loop load and the size of the response, and compression is
+     * skipped entirely when load exceeds
+     * <code>compression.adaptive.skip.load</code>.
+     *
+     * @see AdaptiveCompression
+     */
+    @Setting(value = "If true, pick the HTTP compression level per-response based on current "
+            + "CPU and event loop load", type = Setting.ValueType.BOOLEAN, defaultValue = "false")
+    public static final String HTTP_COMPRESSION_ADAPTIVE = "compression.adaptive";
+    /**
+     * The compression level (1-9) used for adaptive compression under heavy
+     * load.
+     */
+    @Setting(value = "Lowest compression level (1-9) adaptive compression will use under load",
+            type = Setting.ValueType.INTEGER, defaultValue = "1")
+    public static final String HTTP_COMPRESSION_ADAPTIVE_MIN_LEVEL = "compression.adaptive.min.level";
+    /**
+     * The compression level (1-9) used for adaptive compression when the
+     * server is idle; defaults to the value of <code>compression.level</code>.
+     */
+    @Setting(value = "Highest compression level (1-9) adaptive compression will use when idle - "
+            + "defaults to compression.level", type = Setting.ValueType.INTEGER)
+    public static final String HTTP_COMPRESSION_ADAPTIVE_MAX_LEVEL = "compression.adaptive.max.level";
+    /**
+     * Load, as a fraction from 0 to 1, above which adaptive compression stops
+     * compressing responses altogether.
+     */
+    @Setting(value = "Load (0.0-1.0) above which adaptive compression skips compressing responses",
+            type = Setting.ValueType.FLOAT, defaultValue = "0.95")
+    public static final String HTTP_COMPRESSION_ADAPTIVE_SKIP_LOAD = "compression.adaptive.skip.load";
+    /**
+     * Responses with a Content-Length at or above this size (or with no
+     * Content-Length) are compressed one level lower than the load alone would
+     * dictate, since their cost grows with their size.
+     */
+    @Setting(value = "Content-Length at or above which adaptive compression uses one level less",
+            type = Setting.ValueType.INTEGER, defaultValue = "262144")
+    public static final String HTTP_COMPRESSION_ADAPTIVE_LARGE_RESPONSE = "compression.adaptive.large.response";
+    /**
+     * Responses with a Content-Length at or above this many bytes are
+     * compressed on the <code>compressionThreads</code> thread pool rather
+     * than on the channel's event loop, so one large response does not delay
+     * every other connection on that event loop; 0 (the default) disables
+     * this.
+     */
+    @Setting(value = "Content-Length at or above which responses are compressed on a background "
+            + "thread pool instead of the event loop - 0 to disable", type = Setting.ValueType.INTEGER,
+            defaultValue = "0")
+    public static final String HTTP_COMPRESSION_OFFLOAD_THRESHOLD = "compression.offload.threshold";
+    /**
+     * The maximum number of responses which may be queued or being
+     * compressed on the <code>compressionThreads</code> pool; past this,
+     * responses are compressed on the event loop.
+     */
+    @Setting(value = "Maximum number of responses queued for background compression before falling "
+            + "back to compressing on the event loop", type = Setting.ValueType.INTEGER, defaultValue = "64")
+    public static final String HTTP_COMPRESSION_OFFLOAD_MAX_PENDING = "compression.offload.max.pending";
+    /**
+     * If true, request bodies with a <code>Content-Encoding</code> of gzip,
+     * deflate, br or zstd (the latter two if their libraries are on the
+     * classpath) are decompressed in the pipeline, before aggregation or
+     * early-page chunk handlers see them, so maxContentLength applies to the
+     * decompressed size.
+     */
+    @Setting(value = "Decompress request bodies with a gzip, deflate, br or zstd Content-Encoding "
+            + "before aggregating them or passing them to early pages", type = Setting.ValueType.BOOLEAN,
+            defaultValue = "false")
+    public static final String REQUEST_DECOMPRESSION = "request.decompression";
+    /**
+     * The maximum decompressed length of a request body, past which the
+     * request fails with 413 Request Entity Too Large and the connection is
+     * closed; 0 for no limit beyond maxContentLength.
+     */
+    @Setting(value = "Maximum decompressed length of a compressed request body before failing with "
+            + "413 - 0 for no limit", type = Setting.ValueType.INTEGER, defaultValue = "16777216")
+    public static final String REQUEST_DECOMPRESSION_MAX_LENGTH = "request.decompression.max.length";
+    /**
+     * The maximum ratio of decompressed to compressed bytes in a request
+     * body, a sign of a decompression bomb; only checked once a body has
+     * decompressed to more than 64Kb. 0 disables the check.
+     */
+    @Setting(value = "Maximum ratio of decompressed to compressed bytes in a request body before "
+            + "failing with 413 - 0 for no limit", type = Setting.ValueType.INTEGER, defaultValue = "100")
+    public static final String REQUEST_DECOMPRESSION_MAX_RATIO = "request.decompression.max.ratio";
+
     /**
      * Default value for settings key <code>compression.level</code>
      *
@@ -215,6 +331,66 @@ public class ServerModule<A extends Application> extends AbstractModule {
      * @see com.mastfrog.acteur.server.ServerModule.HTTP_THRESHOLD
      */
     public static final int DEFAULT_COMPRESSION_THRESHOLD = 256;
+    /**
+     * Default value for settings key <code>compression.encodings</code>
+     *
+     * @see com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_ENCODINGS
+     */
+    public static final String DEFAULT_COMPRESSION_ENCODINGS = "br,zstd,gzip,deflate";
+    /**
+     * Default value for settings key <code>compression.brotli.quality</code>
+     *
+     * @see com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_BROTLI_QUALITY
+     */
+    public static final int DEFAULT_COMPRESSION_BROTLI_QUALITY = 4;
+    /**
+     * Default value for settings key <code>compression.zstd.level</code>
+     *
+     * @see com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_ZSTD_LEVEL
+     */
+    public static final int DEFAULT_COMPRESSION_ZSTD_LEVEL = 3;
+    /**
+     * Default value for settings key
+     * <code>compression.adaptive.min.level</code>
+     *
+     * @see com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_ADAPTIVE_MIN_LEVEL
+     */
+    public static final int DEFAULT_COMPRESSION_ADAPTIVE_MIN_LEVEL = 1;
+    /**
+     * Default value for settings key
+     * <code>compression.adaptive.skip.load</code>
+     *
+     * @see com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_ADAPTIVE_SKIP_LOAD
+     */
+    public static final double DEFAULT_COMPRESSION_ADAPTIVE_SKIP_LOAD = 0.95;
+    /**
+     * Default value for settings key
+     * <code>compression.adaptive.large.response</code>
+     *
+     * @see com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_ADAPTIVE_LARGE_RESPONSE
+     */
+    public static final int DEFAULT_COMPRESSION_ADAPTIVE_LARGE_RESPONSE = 256 * 1024;
+    /**
+     * Default value for settings key
+     * <code>compression.offload.max.pending</code>
+     *
+     * @see com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_OFFLOAD_MAX_PENDING
+     */
+    public static final int DEFAULT_COMPRESSION_OFFLOAD_MAX_PENDING = 64;
+    /**
+     * Default value for settings key
+     * <code>request.decompression.max.length</code>
+     *
+     * @see com.mastfrog.acteur.server.ServerModule.REQUEST_DECOMPRESSION_MAX_LENGTH
+     */
+    public static final int DEFAULT_REQUEST_DECOMPRESSION_MAX_LENGTH = 16 * 1024 * 1024;
+    /**
+     * Default value for settings key
+     * <code>request.decompression.max.ratio</code>
+     *
+     * @see com.mastfrog.acteur.server.ServerModule.REQUEST_DECOMPRESSION_MAX_RATIO
+     */
+    public static final int DEFAULT_REQUEST_DECOMPRESSION_MAX_RATIO = 100;
     /**
      * If set in settings, only this IP address will be bound when starting the
      * server.
@@ -322,6 +498,12 @@ public class ServerModule<A extends Application> extends AbstractModule {
      * with.
      */
     public static final String SCOPED_BACKGROUND_THREAD_POOL_NAME = "scopedBackground";
+    /**
+     * Name of the &#064;Named thread pool used to compress large responses
+     * when <code>compression.offload.threshold</code> is set; its thread
+     * count can be set with the same settings key.
+     */
+    public static final String COMPRESSION_THREAD_POOL_NAME = "compressionThreads";
 
     /**
      * Property name for setting which byte buffer allocator Netty uses (heap,
@@ -776,6 +958,7 @@ public class ServerModule<A extends Application> extends AbstractModule {
         configureThreadPool(threads, WORKER_THREADS);
         configureThreadPool(threads, BACKGROUND_THREAD_POOL_NAME);
         configureThreadPool(threads, DELAY_EXECUTOR);
+        configureThreadPool(threads, COMPRESSION_THREAD_POOL_NAME);
         return threads;
     }
 
@@ -818,6 +1001,10 @@ public class ServerModule<A extends Application> extends AbstractModule {
                 bldr.withDefaultThreadCount(8)
                         .withThreadPoolType(ThreadPoolType.SCHEDULED);
                 break;
+            case COMPRESSION_THREAD_POOL_NAME:
+                bldr.withDefaultThreadCount(Math.max(1, Runtime.getRuntime().availableProcessors() / 2))
+                        .standard();
+                break;
             default:
                 throw new IllegalArgumentException("Unknown thread pool binding " + pool);
         }
@@ -840,7 +1027,8 @@ public class ServerModule<A extends Application> extends AbstractModule {
         ));
 
         scope.bindTypes(binder(), Event.class, HttpEvent.class, RequestID.class, WebSocketEvent.class,
-                Page.class, BasicCredentials.class, Closables.class, DeferredComputationResult.class);
+                Page.class, BasicCredentials.class, Closables.class, DeferredComputationResult.class,
+                BodyStream.class);
         @SuppressWarnings("deprecation")
         com.mastfrog.acteur.ImplicitBindings implicit = appType.getAnnotation(com.mastfrog.acteur.ImplicitBindings.class);
         if (implicit != null) {
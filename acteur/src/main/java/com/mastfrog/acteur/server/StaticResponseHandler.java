@@ -0,0 +1,88 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.server;
+
+import com.mastfrog.acteur.server.PipelineFactoryImpl.SelectiveCompressor;
+import com.mastfrog.acteur.server.StaticResponses.StaticResponse;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * Sits ahead of the compressor and the dispatch handler, and answers requests
+ * for StaticResponses directly on the event loop - after any earlier response
+ * the compressor is still compressing, so a pipelined request cannot be
+ * answered out of order.
+ *
+ * @author Tim Boudreau
+ */
+final class StaticResponseHandler extends ChannelInboundHandlerAdapter {
+
+    private final StaticResponses responses;
+    // If chunks are not aggregated, the content following a request we
+    // answered is ours to discard
+    private boolean discardingContent;
+    // Added to the pipeline after us, so looked up on first use
+    private SelectiveCompressor compressor;
+    private boolean compressorLookedUp;
+
+    StaticResponseHandler(StaticResponses responses) {
+        this.responses = responses;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (discardingContent && msg instanceof HttpContent) {
+            discardingContent = !(msg instanceof LastHttpContent);
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        if (msg instanceof HttpRequest) {
+            HttpRequest request = (HttpRequest) msg;
+            StaticResponse response = responses.find(request);
+            if (response != null) {
+                discardingContent = !(msg instanceof FullHttpRequest);
+                try {
+                    response.write(ctx, request, compressor(ctx));
+                } finally {
+                    ReferenceCountUtil.release(msg);
+                }
+                return;
+            }
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    private SelectiveCompressor compressor(ChannelHandlerContext ctx) {
+        if (!compressorLookedUp) {
+            compressor = ctx.pipeline().get(SelectiveCompressor.class);
+            compressorLookedUp = true;
+        }
+        return compressor;
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.server;
+
+import com.google.inject.Singleton;
+import com.mastfrog.acteur.server.PipelineFactoryImpl.SelectiveCompressor;
+import static com.mastfrog.acteur.server.ServerModule.DEFAULT_COMPRESSION_THRESHOLD;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_THRESHOLD;
+import com.mastfrog.mime.MimeType;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.util.preconditions.Checks;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import static io.netty.handler.codec.http.HttpResponseStatus.NOT_MODIFIED;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import io.netty.handler.codec.http.HttpUtil;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import io.netty.util.AsciiString;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+import javax.inject.Inject;
+
+/**
+ * Responses which never change - health checks, robots.txt, a favicon, fixed
+ * JSON stubs - which are encoded once when added, and written straight from
+ * the event loop by the first handler in the pipeline after the request is
+ * decoded, without creating an event, running any pages, or being logged.
+ * Inject this into your Application's constructor and add to it there.
+ * <p>
+ * Responses are matched by exact path (ignoring any query string), and served
+ * for GET and HEAD requests. Each gets an ETag, is answered with a
+ * <code>304 Not Modified</code> for a matching <code>If-None-Match</code>, and
+ * if HTTP compression is enabled and it is large enough, a gzipped variant is
+ * kept for clients which accept it.
+ *
+ * @author Tim Boudreau
+ */
+@Singleton
+public final class StaticResponses {
+
+    private static final List<String> GZIP = Collections.singletonList("gzip");
+    private static final AsciiString[] NOT_MODIFIED_HEADERS = {HttpHeaderNames.CACHE_CONTROL,
+        HttpHeaderNames.CONTENT_LOCATION, HttpHeaderNames.EXPIRES, HttpHeaderNames.VARY};
+    private final Map<String, StaticResponse> responses = new ConcurrentHashMap<>();
+    private final boolean compress;
+    private final int compressionThreshold;
+
+    @Inject
+    StaticResponses(Settings settings) {
+        compress = settings.getBoolean(HTTP_COMPRESSION, true);
+        compressionThreshold = settings.getInt(HTTP_COMPRESSION_THRESHOLD, DEFAULT_COMPRESSION_THRESHOLD);
+    }
+
+    /**
+     * Add a response.
+     *
+     * @param path The path, as it appears in the request
+     * @param contentType The content type
+     * @param body The body, which will be encoded using the content type's
+     * character set, or UTF-8
+     * @return this
+     */
+    public StaticResponses add(String path, MimeType contentType, CharSequence body) {
+        Checks.notNull("body", body);
+        return add(path, contentType, body.toString().getBytes(contentType.charset().orElse(UTF_8)));
+    }
+
+    /**
+     * Add a response.
+     *
+     * @param path The path, as it appears in the request
+     * @param contentType The content type
+     * @param body The body
+     * @return this
+     */
+    public StaticResponses add(String path, MimeType contentType, byte[] body) {
+        return add(path, OK, contentType, body, Collections.emptyMap());
+    }
+
+    /**
+     * Add a response.
+     *
+     * @param path The path, as it appears in the request
+     * @param status The response status
+     * @param contentType The content type
+     * @param body The body
+     * @param headers Any additional headers, such as Cache-Control
+     * @return this
+     */
+    public StaticResponses add(String path, HttpResponseStatus status, MimeType contentType, byte[] body,
+            Map<? extends CharSequence, ? extends CharSequence> headers) {
+        Checks.notNull("path", path);
+        Checks.notNull("status", status);
+        Checks.notNull("contentType", contentType);
+        Checks.notNull("body", body);
+        Checks.notNull("headers", headers);
+        if (!path.startsWith("/")) {
+            path = "/" + path;
+        }
+        responses.put(path, new StaticResponse(status, contentType, body, headers));
+        return this;
+    }
+
+    /**
+     * Remove a response.
+     *
+     * @param path The path
+     * @return true if something was removed
+     */
+    public boolean remove(String path) {
+        return responses.remove(path.startsWith("/") ? path : "/" + path) != null;
+    }
+
+    public boolean isEmpty() {
+        return responses.isEmpty();
+    }
+
+    StaticResponse find(HttpRequest request) {
+        if (responses.isEmpty()) {
+            return null;
+        }
+        HttpMethod method = request.method();
+        if (method != HttpMethod.GET && method != HttpMethod.HEAD) {
+            return null;
+        }
+        String uri = request.uri();
+        int q = uri.indexOf('?');
+        return responses.get(q < 0 ? uri : uri.substring(0, q));
+    }
+
+    private ByteBuf gzip(byte[] body) {
+        if (!compress || body.length < compressionThreshold) {
+            return null;
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length);
+            try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+                gz.write(body);
+            }
+            return out.size() < body.length ? permanentBuffer(out.toByteArray()) : null;
+        } catch (IOException ex) {
+            // Writing to memory - cannot happen
+            return null;
+        }
+    }
+
+    private static ByteBuf permanentBuffer(byte[] bytes) {
+        ByteBuf buf = Unpooled.directBuffer(bytes.length).writeBytes(bytes);
+        return Unpooled.unreleasableBuffer(buf.asReadOnly());
+    }
+
+    private static String etag(byte[] body) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(body);
+            return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(hash) + '"';
+        } catch (NoSuchAlgorithmException ex) {
+            return '"' + Integer.toString(Arrays.hashCode(body), 36) + '"';
+        }
+    }
+
+    final class StaticResponse {
+
+        private final HttpResponseStatus status;
+        private final ByteBuf identity;
+        private final ByteBuf gzipped;
+        private final HttpHeaders identityHeaders;
+        private final HttpHeaders gzipHeaders;
+        private final String etag;
+
+        StaticResponse(HttpResponseStatus status, MimeType contentType, byte[] body,
+                Map<? extends CharSequence, ? extends CharSequence> headers) {
+            this.status = status;
+            identity = permanentBuffer(body);
+            gzipped = gzip(body);
+            etag = etag(body);
+            HttpHeaders common = new DefaultHttpHeaders(true);
+            for (Map.Entry<? extends CharSequence, ? extends CharSequence> e : headers.entrySet()) {
+                common.add(e.getKey(), e.getValue());
+            }
+            common.set(HttpHeaderNames.CONTENT_TYPE, contentType.toString());
+            common.set(HttpHeaderNames.ETAG, etag);
+            if (gzipped != null) {
+                common.add(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+            }
+            identityHeaders = common.copy()
+                    .set(HttpHeaderNames.CONTENT_LENGTH, identity.readableBytes())
+                    .set(HttpHeaderNames.CONTENT_ENCODING, HttpHeaderValues.IDENTITY);
+            gzipHeaders = gzipped == null ? null : common.copy()
+                    .set(HttpHeaderNames.CONTENT_LENGTH, gzipped.readableBytes())
+                    .set(HttpHeaderNames.CONTENT_ENCODING, HttpHeaderValues.GZIP);
+        }
+
+        void write(ChannelHandlerContext ctx, HttpRequest request, SelectiveCompressor compressor) {
+            HttpHeaders reqHeaders = request.headers();
+            boolean head = request.method() == HttpMethod.HEAD;
+            DefaultFullHttpResponse resp;
+            if (OK.equals(status) && IfNoneMatch.matches(reqHeaders.get(HttpHeaderNames.IF_NONE_MATCH), etag)) {
+                HttpHeaders hdrs = new DefaultHttpHeaders(false)
+                        .set(HttpHeaderNames.ETAG, etag)
+                        .set(HttpHeaderNames.CONTENT_LENGTH, 0);
+                // The headers RFC 7232 section 4.1 says a 304 must repeat
+                for (AsciiString name : NOT_MODIFIED_HEADERS) {
+                    if (identityHeaders.contains(name)) {
+                        hdrs.set(name, identityHeaders.getAll(name));
+                    }
+                }
+                resp = new DefaultFullHttpResponse(HTTP_1_1, NOT_MODIFIED, Unpooled.EMPTY_BUFFER,
+                        hdrs, EmptyHttpHeaders.INSTANCE);
+            } else {
+                boolean useGzip = gzipped != null
+                        && QValues.chooseEncoding(reqHeaders.get(HttpHeaderNames.ACCEPT_ENCODING), GZIP) != null;
+                ByteBuf body = useGzip ? gzipped : identity;
+                resp = new DefaultFullHttpResponse(HTTP_1_1, status,
+                        head ? Unpooled.EMPTY_BUFFER : body.retainedDuplicate(),
+                        (useGzip ? gzipHeaders : identityHeaders).copy(), EmptyHttpHeaders.INSTANCE);
+            }
+            resp.headers().set(HttpHeaderNames.DATE, httpDate());
+            boolean keepAlive = HttpUtil.isKeepAlive(request);
+            if (!keepAlive) {
+                resp.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+            }
+            ChannelPromise promise = ctx.newPromise();
+            if (!keepAlive) {
+                promise.addListener(ChannelFutureListener.CLOSE);
+            }
+            if (compressor == null || !compressor.writeAfterPending(resp, promise)) {
+                ctx.writeAndFlush(resp, promise);
+            }
+        }
+    }
+
+    private static volatile CachedDate cachedDate = new CachedDate(0);
+
+    private static AsciiString httpDate() {
+        // Formatting a date for every response is measurable; it only
+        // changes once a second
+        long seconds = System.currentTimeMillis() / 1000;
+        CachedDate d = cachedDate;
+        if (d.seconds != seconds) {
+            cachedDate = d = new CachedDate(seconds);
+        }
+        return d.formatted;
+    }
+
+    private static final class CachedDate {
+
+        final long seconds;
+        final AsciiString formatted;
+
+        CachedDate(long seconds) {
+            this.seconds = seconds;
+            formatted = AsciiString.of(DateFormatter.format(new Date(seconds * 1000)));
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur;
+
+import com.mastfrog.acteur.AutoETagTest.AEM;
+import com.mastfrog.acteur.headers.HeaderValueType;
+import com.mastfrog.acteur.headers.Headers;
+import com.mastfrog.acteur.preconditions.Path;
+import com.mastfrog.acteur.server.IfNoneMatch;
+import com.mastfrog.acteur.server.ServerModule;
+import com.mastfrog.giulius.tests.GuiceRunner;
+import com.mastfrog.giulius.tests.TestWith;
+import com.mastfrog.netty.http.test.harness.TestHarness;
+import com.mastfrog.netty.http.test.harness.TestHarnessModule;
+import static io.netty.handler.codec.http.HttpResponseStatus.NOT_MODIFIED;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import java.time.Duration;
+import java.util.Collections;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests automatic weak ETags for buffered responses.
+ *
+ * @author Tim Boudreau
+ */
+@TestWith({TestHarnessModule.class, AEM.class, SilentRequestLogger.class})
+@RunWith(GuiceRunner.class)
+public class AutoETagTest {
+
+    // Headers.IF_NONE_MATCH would quote the already-quoted weak etag
+    private static final HeaderValueType<CharSequence> RAW_IF_NONE_MATCH = Headers.header("If-None-Match");
+    private final Duration timeout = Duration.ofMinutes(1);
+
+    @Test
+    public void testETagIsComputedAndHonored(TestHarness harn) throws Throwable {
+        CharSequence etag = harn.get("json").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("{\"hello\":\"world\"}")
+                .getHeader(Headers.ETAG);
+        assertTrue("Not a weak etag: " + etag, etag != null && etag.toString().startsWith("W/\""));
+        harn.get("json").addHeader(RAW_IF_NONE_MATCH, etag).setTimeout(timeout).go().await()
+                .assertStatus(NOT_MODIFIED);
+        harn.get("json").addHeader(RAW_IF_NONE_MATCH, "W/\"nope\"").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("{\"hello\":\"world\"}");
+        // Pages which set their own are left alone
+        CharSequence own = harn.get("own").setTimeout(timeout).go().await()
+                .assertStatus(OK).getHeader(Headers.ETAG);
+        // the client-side header parser strips the quotes
+        assertEquals("mine", own.toString());
+    }
+
+    @Test
+    public void testMatching() {
+        assertTrue(IfNoneMatch.matches("\"a\", W/\"b\"", "W/\"b\""));
+        assertTrue(IfNoneMatch.matches("\"b\"", "W/\"b\""));
+        assertTrue(IfNoneMatch.matches("*", "W/\"b\""));
+        assertTrue(!IfNoneMatch.matches("\"c\"", "W/\"b\""));
+        assertTrue(!IfNoneMatch.matches(null, "W/\"b\""));
+    }
+
+    static final class AEM extends ServerModule<AEApp> {
+
+        AEM() {
+            super(AEApp.class, 2, 2, 3);
+        }
+    }
+
+    private static class AEApp extends Application {
+
+        AEApp() {
+            add(JsonPage.class);
+            add(OwnETagPage.class);
+        }
+
+        @Path("/json")
+        static class JsonPage extends Page {
+
+            JsonPage() {
+                add(JsonActeur.class);
+            }
+        }
+
+        static class JsonActeur extends Acteur {
+
+            JsonActeur() {
+                ok(Collections.singletonMap("hello", "world"));
+            }
+        }
+
+        @Path("/own")
+        static class OwnETagPage extends Page {
+
+            OwnETagPage() {
+                add(OwnETagActeur.class);
+            }
+        }
+
+        static class OwnETagActeur extends Acteur {
+
+            OwnETagActeur() {
+                add(Headers.ETAG, "\"mine\"");
+                ok("mine");
+            }
+        }
+    }
+}
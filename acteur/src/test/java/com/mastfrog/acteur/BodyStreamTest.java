@@ -0,0 +1,256 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur;
+
+import com.mastfrog.acteur.BodyStream.SpooledBody;
+import static com.mastfrog.acteur.BodyStream.SETTINGS_KEY_BODY_STREAM_MAX_LENGTH;
+import static com.mastfrog.acteur.BodyStream.SETTINGS_KEY_BODY_STREAM_SPILL_THRESHOLD;
+import com.mastfrog.settings.SettingsBuilder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpResponse;
+import static io.netty.handler.codec.http.HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.channels.ClosedChannelException;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class BodyStreamTest {
+
+    @Test
+    public void testChunksAreReadOnDemand() throws Exception {
+        BodyStream body = new BodyStream(new SettingsBuilder().build());
+        List<Object> resumed = new ArrayList<>();
+        body.setResumer(objs -> resumed.addAll(Arrays.asList(objs)));
+        EmbeddedChannel ch = new EmbeddedChannel(body);
+        assertEquals("Chain should continue as soon as the stream is installed",
+                Arrays.asList(body), resumed);
+        assertFalse("Reads should be demand-driven", ch.config().isAutoRead());
+
+        CompletableFuture<ByteBuf> first = body.next();
+        assertFalse(first.isDone());
+        ch.writeInbound(new DefaultHttpContent(buf("abc")));
+        assertEquals("abc", string(first.get()));
+
+        ch.writeInbound(new DefaultHttpContent(buf("def")));
+        ch.writeInbound(new DefaultLastHttpContent(buf("ghi")));
+        assertTrue(body.isComplete());
+        assertEquals(9, body.received());
+        assertTrue("Reads should resume once the body is complete", ch.config().isAutoRead());
+        assertNull("Should be out of the pipeline", ch.pipeline().get(BodyStream.class));
+
+        assertEquals("def", string(body.next().get()));
+        assertEquals("ghi", string(body.next().get()));
+        assertNull(body.next().get());
+        assertFalse(ch.finishAndReleaseAll());
+    }
+
+    @Test
+    public void testSpoolInMemory() throws Exception {
+        BodyStream body = new BodyStream(new SettingsBuilder()
+                .add(SETTINGS_KEY_BODY_STREAM_SPILL_THRESHOLD, "1000").build());
+        EmbeddedChannel ch = new EmbeddedChannel(body);
+        ch.writeInbound(new DefaultHttpContent(buf("hello ")));
+        CompletableFuture<SpooledBody> fut = body.spool();
+        ch.runPendingTasks();
+        assertTrue("Spooling should read as fast as possible", ch.config().isAutoRead());
+        ch.writeInbound(new DefaultLastHttpContent(buf("world")));
+        try (SpooledBody spooled = fut.get()) {
+            assertTrue(spooled.isInMemory());
+            assertNull(spooled.file());
+            assertEquals(11, spooled.length());
+            assertEquals("hello world", new String(read(spooled.openStream()), UTF_8));
+            assertEquals("Stream should be re-openable", "hello world", new String(read(spooled.openStream()), UTF_8));
+        }
+        ch.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testSpoolSpillsToDisk() throws Exception {
+        BodyStream body = new BodyStream(new SettingsBuilder()
+                .add(SETTINGS_KEY_BODY_STREAM_SPILL_THRESHOLD, "64").build());
+        EmbeddedChannel ch = new EmbeddedChannel(body);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < 5; i++) {
+            byte[] bytes = ("chunk-" + i + "-0123456789\n").getBytes(UTF_8);
+            expected.write(bytes);
+            ch.writeInbound(new DefaultHttpContent(Unpooled.wrappedBuffer(bytes)));
+        }
+        CompletableFuture<SpooledBody> fut = body.spool();
+        ch.runPendingTasks();
+        for (int i = 5; i < 20; i++) {
+            byte[] bytes = ("chunk-" + i + "-0123456789\n").getBytes(UTF_8);
+            expected.write(bytes);
+            ch.writeInbound(i == 19 ? new DefaultLastHttpContent(Unpooled.wrappedBuffer(bytes))
+                    : new DefaultHttpContent(Unpooled.wrappedBuffer(bytes)));
+        }
+        Path file;
+        try (SpooledBody spooled = fut.get()) {
+            assertFalse(spooled.isInMemory());
+            file = spooled.file();
+            assertNotNull(file);
+            assertTrue(Files.exists(file));
+            assertEquals(expected.size(), spooled.length());
+            assertArrayEquals(expected.toByteArray(), read(spooled.openStream()));
+        }
+        assertFalse("Temp file should be deleted on close", Files.exists(file));
+        ch.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testSpillWritesOffTheEventLoop() throws Exception {
+        ExecutorService exe = Executors.newSingleThreadExecutor();
+        try {
+            List<Thread> writers = new ArrayList<>();
+            BodyStream body = new BodyStream(new SettingsBuilder()
+                    .add(SETTINGS_KEY_BODY_STREAM_SPILL_THRESHOLD, "16").build(), run -> {
+                        exe.execute(() -> {
+                            writers.add(Thread.currentThread());
+                            run.run();
+                        });
+                    });
+            EmbeddedChannel ch = new EmbeddedChannel(body);
+            CompletableFuture<SpooledBody> fut = body.spool();
+            ch.runPendingTasks();
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            for (int i = 0; i < 10; i++) {
+                byte[] bytes = ("chunk-" + i + "-0123456789\n").getBytes(UTF_8);
+                expected.write(bytes);
+                ch.writeInbound(i == 9 ? new DefaultLastHttpContent(Unpooled.wrappedBuffer(bytes))
+                        : new DefaultHttpContent(Unpooled.wrappedBuffer(bytes)));
+            }
+            try (SpooledBody spooled = fut.get(10, TimeUnit.SECONDS)) {
+                assertFalse(spooled.isInMemory());
+                assertArrayEquals(expected.toByteArray(), read(spooled.openStream()));
+            }
+            assertFalse("File writes should run on the executor", writers.isEmpty());
+            for (Thread t : writers) {
+                assertFalse(t == Thread.currentThread());
+            }
+            ch.finishAndReleaseAll();
+        } finally {
+            exe.shutdown();
+        }
+    }
+
+    @Test
+    public void testCloseReleasesUnreadChunks() throws Exception {
+        BodyStream body = new BodyStream(new SettingsBuilder().build());
+        EmbeddedChannel ch = new EmbeddedChannel(body);
+        ByteBuf first = buf("abc");
+        ByteBuf last = buf("def");
+        ch.writeInbound(new DefaultHttpContent(first));
+        ch.writeInbound(new DefaultLastHttpContent(last));
+        assertTrue(body.isComplete());
+        assertNull("Should be out of the pipeline", ch.pipeline().get(BodyStream.class));
+        assertEquals("Unread chunks should be held", 1, first.refCnt());
+        // As the request's Closables would
+        body.close();
+        assertEquals(0, first.refCnt());
+        assertEquals(0, last.refCnt());
+        assertTrue(body.next().isCompletedExceptionally());
+        ch.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testMaxLength() throws Exception {
+        BodyStream body = new BodyStream(new SettingsBuilder()
+                .add(SETTINGS_KEY_BODY_STREAM_MAX_LENGTH, "10").build());
+        EmbeddedChannel ch = new EmbeddedChannel(body);
+        CompletableFuture<ByteBuf> fut = body.next();
+        ch.writeInbound(new DefaultHttpContent(buf("0123456789abcdef")));
+        FullHttpResponse resp = ch.readOutbound();
+        assertNotNull(resp);
+        assertEquals(REQUEST_ENTITY_TOO_LARGE, resp.status());
+        resp.release();
+        assertFalse(ch.isOpen());
+        try {
+            fut.get();
+            fail("Should have failed");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause().getMessage(), ex.getCause().getMessage().contains("10 bytes"));
+        }
+    }
+
+    @Test
+    public void testPendingReadFailsWhenChannelCloses() throws Exception {
+        BodyStream body = new BodyStream(new SettingsBuilder().build());
+        EmbeddedChannel ch = new EmbeddedChannel(body);
+        CompletableFuture<ByteBuf> fut = body.next();
+        ch.close();
+        assertTrue(fut.isCompletedExceptionally());
+        assertSame(fut.handle((b, thrown) -> thrown.getClass()).get(),
+                ClosedChannelException.class);
+    }
+
+    static ByteBuf buf(String s) {
+        return Unpooled.copiedBuffer(s, UTF_8);
+    }
+
+    static String string(ByteBuf buf) {
+        try {
+            return buf.toString(UTF_8);
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static byte[] read(InputStream in) throws Exception {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] b = new byte[256];
+            int count;
+            while ((count = stream.read(b)) > 0) {
+                out.write(b, 0, count);
+            }
+            return out.toByteArray();
+        }
+    }
+}
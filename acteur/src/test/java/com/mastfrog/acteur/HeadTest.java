@@ -0,0 +1,195 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur;
+
+import com.mastfrog.acteur.HeadTest.HM;
+import com.mastfrog.acteur.headers.Headers;
+import com.mastfrog.acteur.headers.Method;
+import com.mastfrog.acteur.preconditions.Methods;
+import com.mastfrog.acteur.preconditions.Path;
+import com.mastfrog.acteur.server.ServerModule;
+import static com.mastfrog.acteur.server.ServerModule.X_INTERNAL_COMPRESS_HEADER;
+import com.mastfrog.giulius.tests.GuiceRunner;
+import com.mastfrog.giulius.tests.TestWith;
+import com.mastfrog.netty.http.test.harness.TestHarness;
+import com.mastfrog.netty.http.test.harness.TestHarness.CallResult;
+import com.mastfrog.netty.http.test.harness.TestHarnessModule;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests that GET pages answer HEAD without rendering a body.
+ *
+ * @author Tim Boudreau
+ */
+@TestWith({TestHarnessModule.class, HM.class, SilentRequestLogger.class})
+@RunWith(GuiceRunner.class)
+public class HeadTest {
+
+    private static final String TEXT = "Hello, wörld";
+    static final AtomicInteger writes = new AtomicInteger();
+    private final Duration timeout = Duration.ofMinutes(1);
+
+    @Test
+    public void testHeadSkipsBody(TestHarness harn) throws Throwable {
+        CallResult head = harn.head("text").setTimeout(timeout).go().await().assertStatus(OK);
+        assertEquals(TEXT.getBytes("UTF-8").length, head.getHeader(Headers.CONTENT_LENGTH).intValue());
+        assertNull("Internal header sent to client", head.getHeader(X_INTERNAL_COMPRESS_HEADER));
+        assertNull(harn.head("internal").setTimeout(timeout).go().await()
+                .assertStatus(OK).getHeader(X_INTERNAL_COMPRESS_HEADER));
+        harn.get("text").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent(TEXT);
+
+        harn.head("streamed").setTimeout(timeout).go().await().assertStatus(OK);
+        assertEquals("ResponseWriter was called for HEAD", 0, writes.get());
+        harn.get("streamed").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("streamed");
+        assertEquals(1, writes.get());
+    }
+
+    @Test
+    public void testHeadSpecificPageWins(TestHarness harn) throws Throwable {
+        assertNull(harn.get("both").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("get").getHeader(Headers.header("X-Head")));
+        harn.head("both").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertHeader(Headers.header("X-Head"), "yes");
+    }
+
+    static final class HM extends ServerModule<HApp> {
+
+        HM() {
+            super(HApp.class, 2, 2, 3);
+        }
+    }
+
+    private static class HApp extends Application {
+
+        HApp() {
+            add(TextPage.class);
+            add(InternalPage.class);
+            add(StreamedPage.class);
+            add(HeadOnlyPage.class);
+            add(GetOnlyPage.class);
+        }
+
+        @Path("/text")
+        @Methods(Method.GET)
+        static class TextPage extends Page {
+
+            TextPage() {
+                add(TextActeur.class);
+            }
+        }
+
+        static class TextActeur extends Acteur {
+
+            TextActeur() {
+                ok(TEXT);
+            }
+        }
+
+        @Path("/internal")
+        @Methods(Method.GET)
+        static class InternalPage extends Page {
+
+            InternalPage() {
+                add(InternalActeur.class);
+            }
+        }
+
+        static class InternalActeur extends Acteur {
+
+            InternalActeur() {
+                add(X_INTERNAL_COMPRESS_HEADER, "true");
+                ok(TEXT);
+            }
+        }
+
+        @Path("/streamed")
+        @Methods(Method.GET)
+        static class StreamedPage extends Page {
+
+            StreamedPage() {
+                add(StreamedActeur.class);
+            }
+        }
+
+        static class StreamedActeur extends Acteur {
+
+            StreamedActeur() {
+                ok();
+                setChunked(true);
+                setResponseWriter(CountingWriter.class);
+            }
+        }
+
+        @Path("/both")
+        @Methods(Method.HEAD)
+        static class HeadOnlyPage extends Page {
+
+            HeadOnlyPage() {
+                add(HeadActeur.class);
+            }
+        }
+
+        static class HeadActeur extends Acteur {
+
+            HeadActeur() {
+                add(Headers.header("X-Head"), "yes");
+                ok();
+            }
+        }
+
+        @Path("/both")
+        @Methods(Method.GET)
+        static class GetOnlyPage extends Page {
+
+            GetOnlyPage() {
+                add(GetActeur.class);
+            }
+        }
+
+        static class GetActeur extends Acteur {
+
+            GetActeur() {
+                ok("get");
+            }
+        }
+    }
+
+    static class CountingWriter extends ResponseWriter {
+
+        @Override
+        public Status write(Event<?> evt, Output out) throws Exception {
+            writes.incrementAndGet();
+            out.write("streamed");
+            return Status.DONE;
+        }
+    }
+}
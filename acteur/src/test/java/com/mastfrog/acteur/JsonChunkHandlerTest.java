@@ -0,0 +1,205 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpResponse;
+import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
+import static io.netty.handler.codec.http.HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class JsonChunkHandlerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void testObjectSplitAcrossChunks() throws Throwable {
+        Thing expected = new Thing("hello é world", 23, Arrays.asList("a", "b", "c"));
+        byte[] json = MAPPER.writeValueAsBytes(expected);
+        for (int chunkSize : new int[]{1, 2, 3, 7, json.length}) {
+            ThingHandler handler = new ThingHandler(Long.MAX_VALUE);
+            List<Object> resumed = new ArrayList<>();
+            handler.setResumer(objs -> resumed.addAll(Arrays.asList(objs)));
+            EmbeddedChannel ch = new EmbeddedChannel(handler);
+            feed(ch, json, chunkSize, false);
+            assertTrue("Resumed early with chunk size " + chunkSize, resumed.isEmpty());
+            ch.writeInbound(new DefaultLastHttpContent());
+            assertEquals(1, resumed.size());
+            assertEquals("Chunk size " + chunkSize, expected, resumed.get(0));
+            assertNull("Handler should have removed itself", ch.pipeline().get(ThingHandler.class));
+            assertNull(ch.readOutbound());
+        }
+    }
+
+    @Test
+    public void testArrayElementsDeliveredIncrementally() throws Throwable {
+        List<Thing> things = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            things.add(new Thing("thing-" + i, i, Arrays.asList("x" + i)));
+        }
+        byte[] json = MAPPER.writeValueAsBytes(things);
+        ThingsHandler handler = new ThingsHandler();
+        List<Object> resumed = new ArrayList<>();
+        handler.setResumer(objs -> resumed.addAll(Arrays.asList(objs)));
+        EmbeddedChannel ch = new EmbeddedChannel(handler);
+        feed(ch, Arrays.copyOfRange(json, 0, json.length / 2), 64, false);
+        assertFalse(handler.received.isEmpty());
+        assertTrue(handler.received.size() < things.size());
+        assertEquals(things.subList(0, handler.received.size()), handler.received);
+        feed(ch, Arrays.copyOfRange(json, json.length / 2, json.length), 5, true);
+        assertEquals(things, handler.received);
+        assertEquals(Arrays.asList(50L), resumed);
+    }
+
+    @Test
+    public void testInvalidJsonGetsBadRequest() throws Throwable {
+        ThingHandler handler = new ThingHandler(Long.MAX_VALUE);
+        List<Object> resumed = new ArrayList<>();
+        handler.setResumer(objs -> resumed.addAll(Arrays.asList(objs)));
+        EmbeddedChannel ch = new EmbeddedChannel(handler);
+        feed(ch, "{\"name\": \"foo\", ]".getBytes(UTF_8), 4, true);
+        FullHttpResponse resp = ch.readOutbound();
+        assertNotNull(resp);
+        assertEquals(BAD_REQUEST, resp.status());
+        resp.release();
+        assertTrue(resumed.isEmpty());
+        assertFalse(ch.isOpen());
+    }
+
+    @Test
+    public void testTrailingGarbageGetsBadRequest() throws Throwable {
+        ThingHandler handler = new ThingHandler(Long.MAX_VALUE);
+        EmbeddedChannel ch = new EmbeddedChannel(handler);
+        feed(ch, "{\"name\": \"foo\"} {}".getBytes(UTF_8), 3, true);
+        FullHttpResponse resp = ch.readOutbound();
+        assertNotNull(resp);
+        assertEquals(BAD_REQUEST, resp.status());
+        resp.release();
+    }
+
+    @Test
+    public void testMaxBytes() throws Throwable {
+        ThingHandler handler = new ThingHandler(10);
+        EmbeddedChannel ch = new EmbeddedChannel(handler);
+        feed(ch, MAPPER.writeValueAsBytes(new Thing("abcdefghijklmnop", 1, null)), 4, true);
+        FullHttpResponse resp = ch.readOutbound();
+        assertNotNull(resp);
+        assertEquals(REQUEST_ENTITY_TOO_LARGE, resp.status());
+        resp.release();
+    }
+
+    private static void feed(EmbeddedChannel ch, byte[] bytes, int chunkSize, boolean last) {
+        for (int i = 0; i < bytes.length; i += chunkSize) {
+            if (!ch.isOpen()) {
+                return;
+            }
+            ByteBuf buf = Unpooled.directBuffer(chunkSize);
+            buf.writeBytes(bytes, i, Math.min(chunkSize, bytes.length - i));
+            ch.writeInbound(new DefaultHttpContent(buf));
+        }
+        if (last && ch.isOpen()) {
+            ch.writeInbound(new DefaultLastHttpContent());
+        }
+    }
+
+    static final class ThingHandler extends JsonChunkHandler<Thing> {
+
+        ThingHandler(long maxBytes) {
+            super(MAPPER, Thing.class, maxBytes);
+        }
+    }
+
+    static final class ThingsHandler extends JsonArrayChunkHandler<Thing> {
+
+        final List<Thing> received = new ArrayList<>();
+
+        ThingsHandler() {
+            super(MAPPER, Thing.class);
+        }
+
+        @Override
+        protected void onElement(Thing element) throws Exception {
+            received.add(element);
+        }
+
+        @Override
+        protected Object[] onComplete(long count) throws Exception {
+            return new Object[]{count};
+        }
+    }
+
+    public static final class Thing {
+
+        public String name;
+        public int count;
+        public List<String> tags;
+
+        public Thing() {
+        }
+
+        Thing(String name, int count, List<String> tags) {
+            this.name = name;
+            this.count = count;
+            this.tags = tags;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Thing)) {
+                return false;
+            }
+            Thing t = (Thing) o;
+            return count == t.count && name.equals(t.name)
+                    && (tags == null ? t.tags == null : tags.equals(t.tags));
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode() + 71 * count;
+        }
+
+        @Override
+        public String toString() {
+            return name + ":" + count + ":" + tags;
+        }
+    }
+}
@@ -0,0 +1,399 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur;
+
+import com.google.inject.Inject;
+import com.mastfrog.acteur.ResponseCacheTest.RCM;
+import com.mastfrog.acteur.annotations.Cacheable;
+import com.mastfrog.acteur.headers.HeaderValueType;
+import com.mastfrog.acteur.headers.Headers;
+import static com.mastfrog.acteur.headers.Headers.SET_COOKIE_B;
+import com.mastfrog.acteur.preconditions.Methods;
+import com.mastfrog.acteur.preconditions.Path;
+import com.mastfrog.acteur.server.ServerModule;
+import static com.mastfrog.acteur.server.ServerModule.X_INTERNAL_COMPRESS_HEADER;
+import com.mastfrog.giulius.tests.GuiceRunner;
+import com.mastfrog.giulius.tests.TestWith;
+import com.mastfrog.netty.http.test.harness.TestHarness;
+import com.mastfrog.netty.http.test.harness.TestHarness.CallResult;
+import com.mastfrog.netty.http.test.harness.TestHarnessModule;
+import static com.mastfrog.acteur.headers.Method.GET;
+import static com.mastfrog.acteur.headers.Method.HEAD;
+import static io.netty.handler.codec.http.HttpResponseStatus.NOT_MODIFIED;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import io.netty.handler.codec.http.cookie.DefaultCookie;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests the response cache used for pages annotated with &#064;Cacheable.
+ *
+ * @author Tim Boudreau
+ */
+@TestWith({TestHarnessModule.class, RCM.class, SilentRequestLogger.class})
+@RunWith(GuiceRunner.class)
+public class ResponseCacheTest {
+
+    private static final HeaderValueType<CharSequence> X_LANG = Headers.header("X-Lang");
+    private static final AtomicInteger COUNTED = new AtomicInteger();
+    private static final AtomicInteger VARIED = new AtomicInteger();
+    private static final AtomicInteger COOKIES = new AtomicInteger();
+    private static final AtomicInteger LARGE = new AtomicInteger();
+    private static final AtomicInteger RESPONSE_VARIED = new AtomicInteger();
+    private static final AtomicInteger TAGGED = new AtomicInteger();
+    private static final AtomicInteger STALE = new AtomicInteger();
+    private static final AtomicInteger ENCODED = new AtomicInteger();
+    private static final CountDownLatch REVALIDATING = new CountDownLatch(1);
+    private static final CountDownLatch FINISH_REVALIDATING = new CountDownLatch(1);
+    private static final HeaderValueType<CharSequence> RAW_IF_NONE_MATCH = Headers.header("If-None-Match");
+    private static final String PADDING = String.join("", Collections.nCopies(100, "0123456789"));
+    // Still over the compression threshold once gzipped
+    private static final String NOISE = noise(1200);
+    private final Duration timeout = Duration.ofMinutes(1);
+
+    @Test
+    public void testResponsesAreReplayed(TestHarness harn) throws Throwable {
+        harn.get("counted").setTimeout(timeout).go().await().assertStatus(OK).assertContent("counted 1");
+        harn.get("counted").setTimeout(timeout).go().await().assertStatus(OK).assertContent("counted 1")
+                .assertHasHeader(Headers.AGE);
+        // The query is part of the key
+        harn.get("counted").addQueryPair("x", "y").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("counted 2");
+        // Authenticated requests always run the page
+        harn.get("counted").basicAuthentication("joe", "blow").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("counted 3");
+        harn.get("counted").withCookie("hey", "you").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("counted 4");
+        harn.head("counted").setTimeout(timeout).go().await().assertStatus(OK);
+        harn.get("counted").setTimeout(timeout).go().await().assertStatus(OK).assertContent("counted 1");
+    }
+
+    @Test
+    public void testVaryBy(TestHarness harn) throws Throwable {
+        harn.get("varied").addHeader(X_LANG, "en").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("en 1");
+        harn.get("varied").addHeader(X_LANG, "fr").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("fr 2");
+        harn.get("varied").addHeader(X_LANG, "en").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("en 1");
+        harn.get("varied").addHeader(X_LANG, "fr").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("fr 2");
+    }
+
+    @Test
+    public void testResponsesSettingCookiesAreNotCached(TestHarness harn) throws Throwable {
+        harn.get("cookie").setTimeout(timeout).go().await().assertStatus(OK).assertContent("cookie 1");
+        harn.get("cookie").setTimeout(timeout).go().await().assertStatus(OK).assertContent("cookie 2");
+    }
+
+    @Test
+    public void testResponseVaryHeaderSelectsVariant(TestHarness harn) throws Throwable {
+        harn.get("responseVaried").addHeader(X_LANG, "en").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("en 1");
+        harn.get("responseVaried").addHeader(X_LANG, "fr").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("fr 2");
+        harn.get("responseVaried").addHeader(X_LANG, "en").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("en 1");
+        harn.get("responseVaried").addHeader(X_LANG, "fr").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("fr 2");
+    }
+
+    @Test
+    public void testIfNoneMatchGetsNotModified(TestHarness harn) throws Throwable {
+        harn.get("tagged").setTimeout(timeout).go().await().assertStatus(OK).assertContent("tagged 1");
+        harn.get("tagged").addHeader(RAW_IF_NONE_MATCH, "\"tag\"").setTimeout(timeout).go().await()
+                .assertStatus(NOT_MODIFIED);
+        harn.get("tagged").addHeader(RAW_IF_NONE_MATCH, "\"other\", W/\"tag\"").setTimeout(timeout).go().await()
+                .assertStatus(NOT_MODIFIED);
+        harn.get("tagged").addHeader(RAW_IF_NONE_MATCH, "\"other\"").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("tagged 1");
+        assertEquals(1, TAGGED.get());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted(TestHarness harn) throws Throwable {
+        // Each entry weighs over 1Kb, and response.cache.bytes is 4Kb
+        harn.get("large").addQueryPair("n", "1").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("1 " + PADDING);
+        harn.get("large").addQueryPair("n", "2").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("2 " + PADDING);
+        harn.get("large").addQueryPair("n", "1").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("1 " + PADDING);
+        harn.get("large").addQueryPair("n", "3").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("3 " + PADDING);
+        // n=2 was least recently used, and is gone
+        harn.get("large").addQueryPair("n", "1").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("1 " + PADDING);
+        harn.get("large").addQueryPair("n", "2").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("4 " + PADDING);
+    }
+
+    @Test
+    public void testStaleWhileRevalidate(TestHarness harn) throws Throwable {
+        harn.get("stale").setTimeout(timeout).go().await().assertStatus(OK).assertContent("stale 1");
+        Thread.sleep(1100);
+        // The first request after expiry runs the page, and is held there
+        CallResult revalidation = harn.get("stale").setTimeout(timeout).go();
+        assertTrue(REVALIDATING.await(30, TimeUnit.SECONDS));
+        try {
+            // Meanwhile everyone else gets the stale copy
+            harn.get("stale").setTimeout(timeout).go().await().assertStatus(OK).assertContent("stale 1");
+        } finally {
+            FINISH_REVALIDATING.countDown();
+        }
+        revalidation.await().assertStatus(OK).assertContent("stale 2");
+        harn.get("stale").setTimeout(timeout).go().await().assertStatus(OK).assertContent("stale 2");
+        assertEquals(2, STALE.get());
+    }
+
+    @Test
+    public void testReplaysAreSentInTheirFinalEncoding(TestHarness harn) throws Throwable {
+        String expect = "encoded 1 " + NOISE;
+        assertEquals(expect, body(harn.get("encoded").addHeader(Headers.ACCEPT_ENCODING, "gzip")
+                .setTimeout(timeout).go().await().assertStatus(OK)));
+        // Replayed gzipped, and not compressed a second time by the pipeline
+        CallResult gz = harn.get("encoded").addHeader(Headers.ACCEPT_ENCODING, "x-gzip, GZIP").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertHeader(Headers.CONTENT_ENCODING, "gzip");
+        assertEquals(expect, body(gz));
+        assertNull(gz.getHeader(X_INTERNAL_COMPRESS_HEADER));
+        // q=0 means not acceptable
+        CallResult identity = harn.get("encoded").addHeader(Headers.ACCEPT_ENCODING, "gzip;q=0")
+                .setTimeout(timeout).go().await().assertStatus(OK).assertContent(expect);
+        assertEquals(expect.length(), identity.getHeader(Headers.CONTENT_LENGTH).intValue());
+        assertNull(harn.head("encoded").addHeader(Headers.ACCEPT_ENCODING, "gzip").setTimeout(timeout).go().await()
+                .assertStatus(OK).getHeader(X_INTERNAL_COMPRESS_HEADER));
+        // Below the compression threshold
+        for (int i = 0; i < 2; i++) {
+            assertNull(harn.get("encoded").addQueryPair("small", "true").setTimeout(timeout).go().await()
+                    .assertStatus(OK).assertContent("small").getHeader(X_INTERNAL_COMPRESS_HEADER));
+        }
+        assertEquals(2, ENCODED.get());
+    }
+
+    private static String noise(int length) {
+        Random rnd = new Random(1234);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('!' + rnd.nextInt(94)));
+        }
+        return sb.toString();
+    }
+
+    private static String body(CallResult res) throws Throwable {
+        byte[] bytes = res.content(byte[].class);
+        if (!"gzip".equals(String.valueOf(res.getHeader(Headers.CONTENT_ENCODING)))) {
+            return new String(bytes, UTF_8);
+        }
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[512];
+            for (int count; (count = in.read(buf)) > 0;) {
+                out.write(buf, 0, count);
+            }
+            return new String(out.toByteArray(), UTF_8);
+        }
+    }
+
+    static final class RCM extends ServerModule<RCApp> {
+
+        RCM() {
+            super(RCApp.class, 2, 2, 3);
+        }
+    }
+
+    private static class RCApp extends Application {
+
+        RCApp() {
+            add(CountedPage.class);
+            add(VariedPage.class);
+            add(CookiePage.class);
+            add(ResponseVariedPage.class);
+            add(TaggedPage.class);
+            add(LargePage.class);
+            add(StalePage.class);
+            add(EncodedPage.class);
+        }
+
+        @Path("/encoded")
+        @Methods({GET, HEAD})
+        @Cacheable(ttl = 600)
+        static class EncodedPage extends Page {
+
+            EncodedPage() {
+                add(EncodedActeur.class);
+            }
+        }
+
+        static class EncodedActeur extends Acteur {
+
+            @Inject
+            EncodedActeur(HttpEvent evt) {
+                int run = ENCODED.incrementAndGet();
+                ok(evt.urlParameter("small") != null ? "small" : "encoded " + run + " " + NOISE);
+            }
+        }
+
+        @Path("/responseVaried")
+        @Methods(GET)
+        @Cacheable(ttl = 600)
+        static class ResponseVariedPage extends Page {
+
+            ResponseVariedPage() {
+                add(ResponseVariedActeur.class);
+            }
+        }
+
+        static class ResponseVariedActeur extends Acteur {
+
+            @Inject
+            ResponseVariedActeur(HttpEvent evt) {
+                add(Headers.header("Vary"), "X-Lang");
+                ok(evt.header("X-Lang") + " " + RESPONSE_VARIED.incrementAndGet());
+            }
+        }
+
+        @Path("/tagged")
+        @Methods(GET)
+        @Cacheable(ttl = 600)
+        static class TaggedPage extends Page {
+
+            TaggedPage() {
+                add(TaggedActeur.class);
+            }
+        }
+
+        static class TaggedActeur extends Acteur {
+
+            TaggedActeur() {
+                add(Headers.header("ETag"), "\"tag\"");
+                ok("tagged " + TAGGED.incrementAndGet());
+            }
+        }
+
+        @Path("/large")
+        @Methods(GET)
+        @Cacheable(ttl = 600)
+        static class LargePage extends Page {
+
+            LargePage() {
+                add(LargeActeur.class);
+            }
+        }
+
+        static class LargeActeur extends Acteur {
+
+            LargeActeur() {
+                ok(LARGE.incrementAndGet() + " " + PADDING);
+            }
+        }
+
+        @Path("/stale")
+        @Methods(GET)
+        @Cacheable(ttl = 1, staleWhileRevalidate = 600)
+        static class StalePage extends Page {
+
+            StalePage() {
+                add(StaleActeur.class);
+            }
+        }
+
+        static class StaleActeur extends Acteur {
+
+            StaleActeur() throws InterruptedException {
+                int count = STALE.incrementAndGet();
+                if (count == 2) {
+                    REVALIDATING.countDown();
+                    FINISH_REVALIDATING.await(30, TimeUnit.SECONDS);
+                }
+                ok("stale " + count);
+            }
+        }
+
+        @Path("/counted")
+        @Methods({GET, HEAD})
+        @Cacheable(ttl = 600)
+        static class CountedPage extends Page {
+
+            CountedPage() {
+                add(CountedActeur.class);
+            }
+        }
+
+        static class CountedActeur extends Acteur {
+
+            CountedActeur() {
+                ok("counted " + COUNTED.incrementAndGet());
+            }
+        }
+
+        @Path("/varied")
+        @Methods(GET)
+        @Cacheable(ttl = 600, varyBy = "X-Lang")
+        static class VariedPage extends Page {
+
+            VariedPage() {
+                add(VariedActeur.class);
+            }
+        }
+
+        static class VariedActeur extends Acteur {
+
+            @Inject
+            VariedActeur(HttpEvent evt) {
+                ok(evt.header("X-Lang") + " " + VARIED.incrementAndGet());
+            }
+        }
+
+        @Path("/cookie")
+        @Methods(GET)
+        @Cacheable(ttl = 600)
+        static class CookiePage extends Page {
+
+            CookiePage() {
+                add(CookieActeur.class);
+            }
+        }
+
+        static class CookieActeur extends Acteur {
+
+            CookieActeur() {
+                add(SET_COOKIE_B, new DefaultCookie("visit", "1"));
+                ok("cookie " + COOKIES.incrementAndGet());
+            }
+        }
+    }
+}
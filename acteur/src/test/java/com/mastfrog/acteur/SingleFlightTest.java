@@ -0,0 +1,330 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur;
+
+import static com.mastfrog.acteur.headers.Method.GET;
+import com.mastfrog.acteur.SingleFlightTest.SFM;
+import com.mastfrog.acteur.InFlightRequests.Flight;
+import com.mastfrog.acteur.InFlightRequests.SharedResponse;
+import com.mastfrog.acteur.annotations.SingleFlight;
+import com.mastfrog.acteur.headers.Headers;
+import com.mastfrog.acteur.preconditions.Methods;
+import com.mastfrog.acteur.preconditions.Path;
+import com.mastfrog.acteur.server.ServerModule;
+import com.mastfrog.acteur.util.RequestID;
+import com.mastfrog.giulius.tests.GuiceRunner;
+import com.mastfrog.giulius.tests.TestWith;
+import com.mastfrog.netty.http.test.harness.TestHarness;
+import com.mastfrog.netty.http.test.harness.TestHarness.CallResult;
+import com.mastfrog.netty.http.test.harness.TestHarnessModule;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import static io.netty.handler.codec.http.HttpResponseStatus.INTERNAL_SERVER_ERROR;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import static io.netty.handler.codec.http.HttpResponseStatus.SERVICE_UNAVAILABLE;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests coalescing of concurrent requests to pages annotated with
+ * &#064;SingleFlight.
+ *
+ * @author Tim Boudreau
+ */
+@TestWith({TestHarnessModule.class, SFM.class, SilentRequestLogger.class})
+@RunWith(GuiceRunner.class)
+public class SingleFlightTest {
+
+    private static final AtomicInteger RUNS = new AtomicInteger();
+    private static final AtomicInteger FAILING_RUNS = new AtomicInteger();
+    private static final AtomicInteger THROWING_RUNS = new AtomicInteger();
+    private static final AtomicInteger TIMEOUT_RUNS = new AtomicInteger();
+    private static final AtomicInteger CANCEL_RUNS = new AtomicInteger();
+    private final Duration timeout = Duration.ofMinutes(1);
+
+    @Test
+    public void testConcurrentRequestsShareOneResponse(TestHarness harn) throws Throwable {
+        List<CallResult> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(harn.get("slow").setTimeout(timeout).go());
+        }
+        for (CallResult res : results) {
+            res.await().assertStatus(OK).assertContent("slow 1");
+        }
+        assertEquals(1, RUNS.get());
+        // Authenticated requests are not coalesced
+        CallResult a = harn.get("slow").setTimeout(timeout).go();
+        CallResult b = harn.get("slow").basicAuthentication("joe", "blow").setTimeout(timeout).go();
+        a.await().assertStatus(OK);
+        b.await().assertStatus(OK);
+        assertEquals(3, RUNS.get());
+    }
+
+    @Test
+    public void testErrorResponsesAreShared(TestHarness harn) throws Throwable {
+        List<CallResult> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(harn.get("failing").setTimeout(timeout).go());
+        }
+        for (CallResult res : results) {
+            res.await().assertStatus(SERVICE_UNAVAILABLE).assertContent("down 1");
+            // Replayed headers replace, rather than duplicate, the response's own
+            int count = 0;
+            for (CharSequence val : res.getHeaders(Headers.header("X-Run"))) {
+                assertEquals("1", val.toString());
+                count++;
+            }
+            assertEquals(1, count);
+        }
+        assertEquals(1, FAILING_RUNS.get());
+    }
+
+    @Test
+    public void testExceptionResponseIsShared(TestHarness harn) throws Throwable {
+        CallResult first = harn.get("throwing").setTimeout(timeout).go();
+        awaitStarted(THROWING_RUNS);
+        List<CallResult> waiters = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            waiters.add(harn.get("throwing").setTimeout(timeout).go());
+        }
+        first.await().assertStatus(INTERNAL_SERVER_ERROR).assertContentContains("Backend unavailable");
+        // The error response rendered for the exception is what the waiters
+        // get, rather than each of them hitting the failing backend again
+        for (CallResult res : waiters) {
+            res.await().assertStatus(INTERNAL_SERVER_ERROR).assertContentContains("Backend unavailable");
+        }
+        assertEquals(1, THROWING_RUNS.get());
+        harn.get("throwing").setTimeout(timeout).go().await().assertStatus(OK).assertContent("recovered 2");
+    }
+
+    @Test
+    public void testWaitersRunThePageAfterTimeout(TestHarness harn) throws Throwable {
+        List<CallResult> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            results.add(harn.get("timeout").setTimeout(timeout).go());
+        }
+        Set<String> contents = new HashSet<>();
+        for (CallResult res : results) {
+            res.await().assertStatus(OK);
+            contents.add(res.content());
+        }
+        // Each waiter gave up on the first request and got its own response
+        assertEquals(contents.toString(), 3, contents.size());
+        assertEquals(3, TIMEOUT_RUNS.get());
+    }
+
+    @Test
+    public void testCancelledWaiterDoesNotAffectOthers(TestHarness harn) throws Throwable {
+        CallResult first = harn.get("cancel").setTimeout(timeout).go();
+        awaitStarted(CANCEL_RUNS);
+        CallResult a = harn.get("cancel").setTimeout(timeout).go();
+        CallResult b = harn.get("cancel").setTimeout(timeout).go();
+        CallResult c = harn.get("cancel").setTimeout(timeout).go();
+        Thread.sleep(300);
+        b.cancel();
+        first.await().assertStatus(OK).assertContent("cancel 1");
+        a.await().assertStatus(OK).assertContent("cancel 1");
+        c.await().assertStatus(OK).assertContent("cancel 1");
+        assertEquals(1, CANCEL_RUNS.get());
+    }
+
+    @Test
+    public void testWaiterClosedDuringFinishIsNotDelivered() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            InFlightRequests inFlight = new InFlightRequests(scheduler);
+            RequestID.Factory ids = new RequestID.Factory();
+            RequestID leader = ids.next();
+            RequestID first = ids.next();
+            RequestID second = ids.next();
+            EmbeddedChannel secondChannel = new EmbeddedChannel();
+            assertNull(inFlight.join("k", leader, new EmbeddedChannel()));
+            Flight flight = inFlight.join("k", first, new EmbeddedChannel());
+            assertNotNull(flight);
+            assertEquals(flight, inFlight.join("k", second, secondChannel));
+            AtomicInteger resumed = new AtomicInteger();
+            // The second waiter's client goes away after finish() has taken
+            // the list of waiters, but before the second is delivered to
+            flight.await(first, new EmbeddedChannel(), 30, args -> {
+                resumed.incrementAndGet();
+                secondChannel.close();
+            });
+            flight.await(second, secondChannel, 30, args -> resumed.incrementAndGet());
+            ByteBuf body = Unpooled.copiedBuffer("hello", UTF_8);
+            inFlight.complete(leader, new DefaultHttpResponse(HTTP_1_1, OK, new DefaultHttpHeaders()), body, false);
+            assertEquals(1, resumed.get());
+            assertNull(inFlight.take(second));
+            SharedResponse shared = inFlight.take(first);
+            assertNotNull(shared);
+            assertEquals("hello", shared.body.toString(UTF_8));
+            shared.release();
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static void awaitStarted(AtomicInteger runs) throws InterruptedException {
+        // Ensure the first request is the one leading the flight
+        while (runs.get() == 0) {
+            Thread.sleep(20);
+        }
+    }
+
+    static final class SFM extends ServerModule<SFApp> {
+
+        SFM() {
+            super(SFApp.class, 2, 2, 3);
+        }
+    }
+
+    private static class SFApp extends Application {
+
+        SFApp() {
+            add(SlowPage.class);
+            add(FailingPage.class);
+            add(ThrowingPage.class);
+            add(TimeoutPage.class);
+            add(CancelPage.class);
+        }
+
+        @Path("/slow")
+        @Methods(GET)
+        @SingleFlight
+        static class SlowPage extends Page {
+
+            SlowPage() {
+                add(SlowActeur.class);
+            }
+        }
+
+        static class SlowActeur extends Acteur {
+
+            SlowActeur() throws InterruptedException {
+                int run = RUNS.incrementAndGet();
+                // Give the other requests time to arrive and wait on this one
+                Thread.sleep(1500);
+                ok("slow " + run);
+            }
+        }
+
+        @Path("/failing")
+        @Methods(GET)
+        @SingleFlight
+        static class FailingPage extends Page {
+
+            FailingPage() {
+                add(FailingActeur.class);
+            }
+        }
+
+        static class FailingActeur extends Acteur {
+
+            FailingActeur() throws InterruptedException {
+                int run = FAILING_RUNS.incrementAndGet();
+                Thread.sleep(1500);
+                add(Headers.header("X-Run"), Integer.toString(run));
+                reply(SERVICE_UNAVAILABLE, "down " + run);
+            }
+        }
+
+        @Path("/throwing")
+        @Methods(GET)
+        @SingleFlight
+        static class ThrowingPage extends Page {
+
+            ThrowingPage() {
+                add(ThrowingActeur.class);
+            }
+        }
+
+        static class ThrowingActeur extends Acteur {
+
+            ThrowingActeur() throws InterruptedException {
+                int run = THROWING_RUNS.incrementAndGet();
+                if (run == 1) {
+                    Thread.sleep(1500);
+                    throw new IllegalStateException("Backend unavailable");
+                }
+                ok("recovered " + run);
+            }
+        }
+
+        @Path("/timeout")
+        @Methods(GET)
+        @SingleFlight(timeout = 1)
+        static class TimeoutPage extends Page {
+
+            TimeoutPage() {
+                add(TimeoutActeur.class);
+            }
+        }
+
+        static class TimeoutActeur extends Acteur {
+
+            TimeoutActeur() throws InterruptedException {
+                int run = TIMEOUT_RUNS.incrementAndGet();
+                if (run == 1) {
+                    // Longer than the waiters are willing to wait
+                    Thread.sleep(4000);
+                }
+                ok("timeout " + run);
+            }
+        }
+
+        @Path("/cancel")
+        @Methods(GET)
+        @SingleFlight
+        static class CancelPage extends Page {
+
+            CancelPage() {
+                add(CancelActeur.class);
+            }
+        }
+
+        static class CancelActeur extends Acteur {
+
+            CancelActeur() throws InterruptedException {
+                int run = CANCEL_RUNS.incrementAndGet();
+                Thread.sleep(1500);
+                ok("cancel " + run);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.server;
+
+import com.mastfrog.acteur.BodyStream;
+import com.mastfrog.settings.SettingsBuilder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.HttpContent;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class EarlyContentTest {
+
+    @Test
+    public void testContentHeldUntilChunkHandlerInstalled() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel();
+        EarlyContent.start(ch);
+        byte[] big = new byte[70000];
+        Arrays.fill(big, (byte) 'x');
+        assertTrue(EarlyContent.offer(ch, new DefaultHttpContent(Unpooled.copiedBuffer("first", UTF_8))));
+        assertTrue(ch.config().isAutoRead());
+        assertTrue(EarlyContent.offer(ch, new DefaultHttpContent(Unpooled.wrappedBuffer(big))));
+        assertFalse("Reads should stop once too much is held", ch.config().isAutoRead());
+
+        BodyStream body = new BodyStream(new SettingsBuilder().build());
+        ch.pipeline().addLast(body);
+        assertFalse("Nothing should be held once a handler is installed",
+                EarlyContent.offer(ch, new DefaultHttpContent(Unpooled.EMPTY_BUFFER)));
+        ByteBuf first = body.next().get();
+        assertEquals("first", first.toString(UTF_8));
+        first.release();
+        ByteBuf second = body.next().get();
+        assertEquals(big.length, second.readableBytes());
+        second.release();
+        assertEquals(5 + big.length, body.received());
+        ch.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testDiscard() {
+        EmbeddedChannel ch = new EmbeddedChannel();
+        EarlyContent.start(ch);
+        HttpContent content = new DefaultHttpContent(Unpooled.wrappedBuffer(new byte[100000]));
+        assertTrue(EarlyContent.offer(ch, content));
+        assertFalse(ch.config().isAutoRead());
+        EarlyContent.discard(ch);
+        assertEquals(0, content.refCnt());
+        assertTrue(ch.config().isAutoRead());
+        assertNull(EarlyContent.poll(ch));
+        assertFalse(EarlyContent.offer(ch, new DefaultHttpContent(Unpooled.EMPTY_BUFFER)));
+        ch.finishAndReleaseAll();
+    }
+}
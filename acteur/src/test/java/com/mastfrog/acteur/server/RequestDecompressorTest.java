@@ -0,0 +1,189 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.Zstd;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
+import static io.netty.handler.codec.http.HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import io.netty.util.ReferenceCountUtil;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.zip.GZIPOutputStream;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class RequestDecompressorTest {
+
+    @Test
+    public void testGzip() throws Throwable {
+        byte[] body = sample();
+        assertArrayEquals(body, roundTrip("gzip", gzip(body)));
+    }
+
+    @Test
+    public void testZstd() throws Throwable {
+        if (!Zstd.isAvailable()) {
+            return;
+        }
+        byte[] body = sample();
+        assertArrayEquals(body, roundTrip("zstd", com.github.luben.zstd.Zstd.compress(body)));
+    }
+
+    @Test
+    public void testUncompressedPassesThrough() throws Throwable {
+        byte[] body = sample();
+        assertArrayEquals(body, roundTrip(null, body));
+    }
+
+    @Test
+    public void testRatioLimit() throws Throwable {
+        // 8Mb of zeros gzips to about 8Kb
+        byte[] bomb = gzip(new byte[8 * 1024 * 1024]);
+        EmbeddedChannel ch = new EmbeddedChannel(new RequestDecompressor(0, 100));
+        ch.writeInbound(request("gzip"));
+        feed(ch, bomb, 1024);
+        FullHttpResponse resp = ch.readOutbound();
+        assertNotNull(resp);
+        assertEquals(REQUEST_ENTITY_TOO_LARGE, resp.status());
+        resp.release();
+        assertFalse(ch.isOpen());
+        long passed = drain(ch);
+        assertTrue("Too much passed through: " + passed, passed <= 1024 * 100 + 65536);
+    }
+
+    @Test
+    public void testLengthLimit() throws Throwable {
+        byte[] body = sample();
+        EmbeddedChannel ch = new EmbeddedChannel(new RequestDecompressor(body.length / 2, 0));
+        ch.writeInbound(request("gzip"));
+        feed(ch, gzip(body), 64);
+        FullHttpResponse resp = ch.readOutbound();
+        assertNotNull(resp);
+        assertEquals(REQUEST_ENTITY_TOO_LARGE, resp.status());
+        resp.release();
+        assertTrue(drain(ch) <= body.length / 2);
+    }
+
+    @Test
+    public void testCorruptBody() throws Throwable {
+        EmbeddedChannel ch = new EmbeddedChannel(new RequestDecompressor(0, 0));
+        ch.writeInbound(request("gzip"));
+        feed(ch, "this is not gzip at all, not even slightly".getBytes(UTF_8), 8);
+        FullHttpResponse resp = ch.readOutbound();
+        assertNotNull(resp);
+        assertEquals(BAD_REQUEST, resp.status());
+        resp.release();
+        assertFalse(ch.isOpen());
+        drain(ch);
+    }
+
+    private static byte[] roundTrip(String encoding, byte[] compressed) {
+        EmbeddedChannel ch = new EmbeddedChannel(new RequestDecompressor(
+                ServerModule.DEFAULT_REQUEST_DECOMPRESSION_MAX_LENGTH, ServerModule.DEFAULT_REQUEST_DECOMPRESSION_MAX_RATIO));
+        ch.writeInbound(request(encoding));
+        feed(ch, compressed, 100);
+        assertNull(ch.readOutbound());
+        HttpRequest req = ch.readInbound();
+        assertNotNull(req);
+        assertNull("Content-Encoding should be removed", req.headers().get(HttpHeaderNames.CONTENT_ENCODING));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Object o = ch.readInbound(); o != null; o = ch.readInbound()) {
+            ByteBuf buf = ((HttpContent) o).content();
+            byte[] bytes = new byte[buf.readableBytes()];
+            buf.readBytes(bytes);
+            out.write(bytes, 0, bytes.length);
+            ReferenceCountUtil.release(o);
+        }
+        ch.finishAndReleaseAll();
+        return out.toByteArray();
+    }
+
+    private static long drain(EmbeddedChannel ch) {
+        long result = 0;
+        for (Object o = ch.readInbound(); o != null; o = ch.readInbound()) {
+            if (o instanceof HttpContent) {
+                result += ((HttpContent) o).content().readableBytes();
+            }
+            ReferenceCountUtil.release(o);
+        }
+        ch.finishAndReleaseAll();
+        return result;
+    }
+
+    private static HttpRequest request(String encoding) {
+        HttpRequest req = new DefaultHttpRequest(HTTP_1_1, HttpMethod.POST, "/upload");
+        if (encoding != null) {
+            req.headers().set(HttpHeaderNames.CONTENT_ENCODING, encoding);
+        }
+        req.headers().set(HttpHeaderNames.TRANSFER_ENCODING, "chunked");
+        return req;
+    }
+
+    private static void feed(EmbeddedChannel ch, byte[] bytes, int chunkSize) {
+        for (int i = 0; i < bytes.length && ch.isOpen(); i += chunkSize) {
+            ch.writeInbound(new DefaultHttpContent(Unpooled.wrappedBuffer(bytes, i, Math.min(chunkSize, bytes.length - i))));
+        }
+        if (ch.isOpen()) {
+            ch.writeInbound(new DefaultLastHttpContent());
+        }
+    }
+
+    private static byte[] sample() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append("{\"id\":").append(i).append(",\"name\":\"item-").append(i * 31).append("\"}\n");
+        }
+        return sb.toString().getBytes(UTF_8);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.server;
+
+import com.mastfrog.acteur.Acteur;
+import com.mastfrog.acteur.Application;
+import com.mastfrog.acteur.Page;
+import static com.mastfrog.acteur.headers.Method.GET;
+import static com.mastfrog.acteur.headers.Method.POST;
+import com.mastfrog.acteur.preconditions.MaximumRequestBodyLength;
+import com.mastfrog.acteur.preconditions.Methods;
+import com.mastfrog.acteur.preconditions.Path;
+import com.mastfrog.acteur.preconditions.RequestBodyPolicy;
+import static com.mastfrog.acteur.preconditions.RequestBodyPolicy.Policy.REJECT;
+import static com.mastfrog.acteur.preconditions.RequestBodyPolicy.Policy.STREAM;
+import com.mastfrog.acteur.server.PipelineFactoryImpl.SelectiveAggregator;
+import com.mastfrog.giulius.Dependencies;
+import com.mastfrog.settings.SettingsBuilder;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import static io.netty.handler.codec.http.HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import io.netty.util.ReferenceCountUtil;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class SelectiveAggregatorTest {
+
+    private static final int DEFAULT_MAX = 1000;
+    private Dependencies deps;
+    private Application app;
+
+    @Before
+    public void setup() throws Exception {
+        deps = new Dependencies(new SettingsBuilder().build(), new ServerModule<>(BodyPolicyApp.class));
+        app = deps.getInstance(Application.class);
+    }
+
+    @After
+    public void tearDown() {
+        deps.shutdown();
+    }
+
+    @Test
+    public void testDeclaredPolicies() {
+        assertTrue(app.hasRequestBodyPolicies());
+        assertEquals(5000, app.maxDeclaredRequestBodyLength());
+        assertEquals(DEFAULT_MAX, app.maxRequestBodyLength(request(POST_METHOD, "/small", 0), DEFAULT_MAX));
+        assertEquals(5000, app.maxRequestBodyLength(request(POST_METHOD, "/big", 0), DEFAULT_MAX));
+        assertEquals(0, app.maxRequestBodyLength(request(POST_METHOD, "/none", 0), DEFAULT_MAX));
+        assertEquals(-1, app.maxRequestBodyLength(request(POST_METHOD, "/stream", 0), DEFAULT_MAX));
+    }
+
+    @Test
+    public void testContentLengthCheckedBeforeBodyIsRead() {
+        EmbeddedChannel ch = new EmbeddedChannel(new SelectiveAggregator(DEFAULT_MAX, app));
+        ch.writeInbound(request(POST_METHOD, "/small", 2000));
+        assertTooLarge(ch);
+        assertNull(ch.readInbound());
+        ch.finishAndReleaseAll();
+
+        ch = new EmbeddedChannel(new SelectiveAggregator(DEFAULT_MAX, app));
+        ch.writeInbound(request(POST_METHOD, "/big", 6000));
+        assertTooLarge(ch);
+        ch.finishAndReleaseAll();
+
+        ch = new EmbeddedChannel(new SelectiveAggregator(DEFAULT_MAX, app));
+        ch.writeInbound(request(POST_METHOD, "/none", 10));
+        assertTooLarge(ch);
+        ch.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testRouteLimitAboveDefault() {
+        EmbeddedChannel ch = new EmbeddedChannel(new SelectiveAggregator(DEFAULT_MAX, app));
+        ch.writeInbound(request(POST_METHOD, "/big", 2000));
+        ch.writeInbound(new DefaultLastHttpContent(Unpooled.wrappedBuffer(new byte[2000])));
+        FullHttpRequest full = ch.readInbound();
+        assertNotNull(full);
+        assertEquals(2000, full.content().readableBytes());
+        full.release();
+        assertNull(ch.readOutbound());
+        ch.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testChunkedBodyRefusedOnceOverLimit() {
+        EmbeddedChannel ch = new EmbeddedChannel(new SelectiveAggregator(DEFAULT_MAX, app));
+        ch.writeInbound(request(POST_METHOD, "/small", -1));
+        ch.writeInbound(new DefaultHttpContent(Unpooled.wrappedBuffer(new byte[600])));
+        assertNull(ch.readOutbound());
+        ch.writeInbound(new DefaultHttpContent(Unpooled.wrappedBuffer(new byte[600])));
+        assertTooLarge(ch);
+        assertFalse(ch.isOpen());
+        assertNull(ch.readInbound());
+        ch.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testStreamedAndRejectedBodies() {
+        EmbeddedChannel ch = new EmbeddedChannel(new SelectiveAggregator(DEFAULT_MAX, app));
+        ch.writeInbound(request(POST_METHOD, "/stream", -1));
+        ch.writeInbound(new DefaultHttpContent(Unpooled.wrappedBuffer(new byte[3000])));
+        ch.writeInbound(new DefaultLastHttpContent());
+        Object req = ch.readInbound();
+        assertTrue(req instanceof HttpRequest);
+        assertFalse("Should not be aggregated", req instanceof FullHttpRequest);
+        Object content = ch.readInbound();
+        assertEquals(3000, ((HttpContent) content).content().readableBytes());
+        ReferenceCountUtil.release(content);
+        ReferenceCountUtil.release(ch.readInbound());
+
+        // A body-less request to a route which refuses bodies is fine, and
+        // the next request on the connection is aggregated again
+        ch.writeInbound(request(HttpMethod.GET, "/none", 0));
+        ch.writeInbound(new DefaultLastHttpContent());
+        FullHttpRequest full = ch.readInbound();
+        assertNotNull(full);
+        full.release();
+        assertNull(ch.readOutbound());
+        ch.finishAndReleaseAll();
+    }
+
+    private static final HttpMethod POST_METHOD = HttpMethod.POST;
+
+    private static void assertTooLarge(EmbeddedChannel ch) {
+        FullHttpResponse resp = ch.readOutbound();
+        assertNotNull("No response", resp);
+        assertEquals(REQUEST_ENTITY_TOO_LARGE, resp.status());
+        resp.release();
+    }
+
+    private static HttpRequest request(HttpMethod method, String uri, int contentLength) {
+        HttpRequest req = new DefaultHttpRequest(HTTP_1_1, method, uri);
+        if (contentLength > 0) {
+            req.headers().set(HttpHeaderNames.CONTENT_LENGTH, contentLength);
+        } else if (contentLength < 0) {
+            req.headers().set(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+        }
+        return req;
+    }
+
+    static final class BodyPolicyApp extends Application {
+
+        BodyPolicyApp() {
+            add(SmallPage.class);
+            add(BigPage.class);
+            add(NoBodyPage.class);
+            add(StreamPage.class);
+        }
+    }
+
+    @Path("/small")
+    @Methods(POST)
+    static final class SmallPage extends Page {
+
+        SmallPage() {
+            add(OkActeur.class);
+        }
+    }
+
+    @Path("/big")
+    @Methods(POST)
+    @MaximumRequestBodyLength(5000)
+    static final class BigPage extends Page {
+
+        BigPage() {
+            add(OkActeur.class);
+        }
+    }
+
+    @Path("/none")
+    @Methods({GET, POST})
+    @RequestBodyPolicy(REJECT)
+    static final class NoBodyPage extends Page {
+
+        NoBodyPage() {
+            add(OkActeur.class);
+        }
+    }
+
+    @Path("/stream")
+    @Methods(POST)
+    @RequestBodyPolicy(STREAM)
+    static final class StreamPage extends Page {
+
+        StreamPage() {
+            add(OkActeur.class);
+        }
+    }
+
+    static final class OkActeur extends Acteur {
+
+        OkActeur() {
+            ok();
+        }
+    }
+}
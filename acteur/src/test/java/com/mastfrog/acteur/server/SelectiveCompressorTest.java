@@ -0,0 +1,538 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.server;
+
+import com.aayushatharva.brotli4j.decoder.Decoder;
+import com.aayushatharva.brotli4j.decoder.DecoderJNI;
+import com.aayushatharva.brotli4j.decoder.DirectDecompress;
+import com.github.luben.zstd.ZstdInputStream;
+import com.mastfrog.acteur.server.PipelineFactoryImpl.SelectiveCompressor;
+import static com.mastfrog.acteur.server.QValues.acceptableEncodings;
+import static com.mastfrog.acteur.server.QValues.chooseEncoding;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_ADAPTIVE;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_ADAPTIVE_LARGE_RESPONSE;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_ADAPTIVE_MAX_LEVEL;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_ADAPTIVE_MIN_LEVEL;
+import static com.mastfrog.acteur.server.ServerModule.HTTP_COMPRESSION_ADAPTIVE_SKIP_LOAD;
+import static com.mastfrog.acteur.server.ServerModule.X_INTERNAL_COMPRESS;
+import com.mastfrog.mime.MimeType;
+import com.mastfrog.settings.SettingsBuilder;
+import com.mastfrog.util.preconditions.ConfigurationError;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.CompressionOptions;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import static io.netty.handler.codec.http.HttpHeaderNames.ACCEPT_ENCODING;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_ENCODING;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_LENGTH;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
+import static io.netty.handler.codec.http.HttpMethod.GET;
+import io.netty.handler.codec.http.HttpResponse;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class SelectiveCompressorTest {
+
+    private static final List<String> ALL = Arrays.asList("br", "zstd", "gzip", "deflate");
+    private static final String[] SAMPLES = {"sample.json", "sample.html", "sample.js"};
+
+    @Test
+    public void testChooseEncoding() {
+        assertNull(chooseEncoding(null, ALL));
+        assertNull(chooseEncoding("", ALL));
+        assertNull(chooseEncoding("identity", ALL));
+        assertEquals("gzip", chooseEncoding("gzip", ALL));
+        assertEquals("gzip", chooseEncoding("x-gzip", ALL));
+        assertEquals("br", chooseEncoding("gzip, deflate, br", ALL));
+        assertEquals("zstd", chooseEncoding("gzip, deflate, br;q=0.5, zstd", ALL));
+        assertEquals("gzip", chooseEncoding("gzip;q=1.0, br;q=0.9", ALL));
+        assertEquals("deflate", chooseEncoding("gzip;q=0, deflate", ALL));
+        assertEquals("br", chooseEncoding("*", ALL));
+        assertEquals("zstd", chooseEncoding("br;q=0, *", ALL));
+        assertNull(chooseEncoding("br;q=0, *;q=0", ALL));
+        assertEquals("deflate", chooseEncoding("gzip;q=garbage, deflate;q=0.1", ALL));
+        // server preference breaks ties
+        assertEquals("gzip", chooseEncoding("br, gzip", Arrays.asList("gzip", "br")));
+        assertNull(chooseEncoding("br", Arrays.asList("gzip", "deflate")));
+        assertEquals("deflate", chooseEncoding("GZIP;Q=0.2, Deflate ; level=1; q=0.5", ALL));
+    }
+
+    @Test
+    public void testAcceptableEncodings() {
+        assertEquals(Arrays.asList("zstd", "gzip", "br"),
+                acceptableEncodings("br;q=0.1, x-gzip;q=0.5, zstd, deflate;q=0", ALL));
+        assertEquals(Arrays.asList("gzip", "br", "zstd", "deflate"),
+                acceptableEncodings("gzip, *;q=0.5", ALL));
+        assertEquals(Arrays.<String>asList(), acceptableEncodings("identity", ALL));
+    }
+
+    @Test
+    public void testAllEncodingsRoundTrip() throws Exception {
+        // br and zstd depend on native libraries which may not exist for
+        // this platform; the pure-Java ones always must
+        List<String> available = available();
+        assertTrue("gzip and deflate should always be available: " + available,
+                available.containsAll(Arrays.asList("gzip", "deflate")));
+        for (String sample : SAMPLES) {
+            byte[] body = sample(sample);
+            for (String enc : available) {
+                Encoded e = encode(compressor(0, false, enc), enc, body, "text/plain", false);
+                assertEquals(enc, e.contentEncoding);
+                assertArrayEquals(enc + " did not round trip for " + sample, body, decompress(enc, e.body));
+                assertTrue(enc + " did not compress " + sample, e.body.length < body.length / 2);
+            }
+        }
+    }
+
+    /**
+     * Prints the compressed size and CPU time per response of each available
+     * encoding for the sample files.
+     *
+     * @param args Optionally, the number of iterations
+     * @throws Exception If something goes wrong
+     */
+    public static void main(String[] args) throws Exception {
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        for (String sample : SAMPLES) {
+            byte[] body = sample(sample);
+            System.out.println(sample + " - " + body.length + " bytes");
+            for (String enc : available()) {
+                byte[] compressed = null;
+                long cpuStart = mx.getCurrentThreadCpuTime();
+                for (int i = 0; i < iterations; i++) {
+                    compressed = encode(compressor(0, false, enc), enc, body, "text/plain", false).body;
+                }
+                long cpuMicros = (mx.getCurrentThreadCpuTime() - cpuStart) / (iterations * 1000L);
+                System.out.println(String.format("  %-8s %7d bytes  %5.1f%%  %6d us cpu", enc,
+                        compressed.length, 100D * compressed.length / body.length, cpuMicros));
+            }
+        }
+    }
+
+    @Test
+    public void testThresholdInternalCompressAndContentTypeStillApply() throws Exception {
+        byte[] body = sample("sample.json");
+        for (String enc : available()) {
+            Encoded e = encode(compressor(body.length + 1, false, ALL.toArray(new String[0])), enc, body, "application/json", false);
+            assertNull("Compressed below threshold with " + enc, e.contentEncoding);
+            assertArrayEquals(body, e.body);
+
+            e = encode(compressor(0, false, ALL.toArray(new String[0])), enc, body, "application/json", true);
+            assertNull("Compressed despite " + X_INTERNAL_COMPRESS + " with " + enc, e.contentEncoding);
+            assertFalse(e.internalCompressHeaderPresent);
+
+            e = encode(compressor(0, true, ALL.toArray(new String[0])), enc, body, "image/png", false);
+            assertNull("Compressed image with " + enc, e.contentEncoding);
+
+            e = encode(compressor(0, true, ALL.toArray(new String[0])), enc, body, "application/json", false);
+            assertEquals(enc, e.contentEncoding);
+        }
+    }
+
+    @Test
+    public void testExistingContentEncodingIsRespected() throws Exception {
+        byte[] body = sample("sample.json");
+        for (String enc : available()) {
+            // ResponseImpl marks ordinary buffered responses identity
+            Encoded e = encode(compressor(0, false, ALL.toArray(new String[0])), enc, body,
+                    "application/json", false, "identity");
+            assertEquals(enc, e.contentEncoding);
+            assertArrayEquals(body, decompress(enc, e.body));
+
+            // Already encoded, e.g. a cached gzip variant
+            e = encode(compressor(0, false, ALL.toArray(new String[0])), enc, body,
+                    "application/json", false, "gzip");
+            assertEquals("gzip", e.contentEncoding);
+            assertArrayEquals(body, e.body);
+
+            // Stripped even when the body is too small to compress
+            e = encode(compressor(body.length + 1, false, ALL.toArray(new String[0])), enc, body,
+                    "application/json", true);
+            assertFalse(e.internalCompressHeaderPresent);
+        }
+    }
+
+    @Test
+    public void testAdaptiveLevels() throws Exception {
+        AdaptiveCompression adaptive = new AdaptiveCompression(new SettingsBuilder()
+                .add(HTTP_COMPRESSION_ADAPTIVE, "true")
+                .add(HTTP_COMPRESSION_ADAPTIVE_MIN_LEVEL, "1")
+                .add(HTTP_COMPRESSION_ADAPTIVE_MAX_LEVEL, "9")
+                .add(HTTP_COMPRESSION_ADAPTIVE_SKIP_LOAD, "0.8")
+                .add(HTTP_COMPRESSION_ADAPTIVE_LARGE_RESPONSE, "1000")
+                .build(), () -> 0);
+        assertTrue(adaptive.isEnabled());
+        assertEquals(9, adaptive.level(0, 100));
+        assertEquals(9, adaptive.lastLevel());
+        assertEquals(5, adaptive.level(0.4, 100));
+        assertEquals(1, adaptive.level(0.79, 100));
+        assertEquals("Large responses should get one level less", 8, adaptive.level(0, 1000));
+        assertEquals("Chunked responses should get one level less", 8, adaptive.level(0, -1));
+        assertEquals("Level should not drop below min", 1, adaptive.level(0.79, -1));
+        assertEquals(-1, adaptive.level(0.8, 100));
+        assertEquals(-1, adaptive.lastLevel());
+        assertEquals(1, adaptive.skipped());
+        assertEquals(1, adaptive.count(9));
+        assertEquals(2, adaptive.count(8));
+        assertEquals(2, adaptive.count(1));
+        assertEquals(0, adaptive.count(7));
+    }
+
+    @Test(expected = ConfigurationError.class)
+    public void testAdaptiveLevelsValidated() throws Exception {
+        new AdaptiveCompression(new SettingsBuilder()
+                .add(HTTP_COMPRESSION_ADAPTIVE_MIN_LEVEL, "7")
+                .add(HTTP_COMPRESSION_ADAPTIVE_MAX_LEVEL, "3")
+                .build());
+    }
+
+    @Test
+    public void testAdaptiveCompressorFollowsLoad() throws Exception {
+        byte[] body = sample("sample.json");
+        double[] load = new double[1];
+        for (String enc : available()) {
+            AdaptiveCompression adaptive = new AdaptiveCompression(new SettingsBuilder()
+                    .add(HTTP_COMPRESSION_ADAPTIVE, "true")
+                    .add(HTTP_COMPRESSION_ADAPTIVE_MAX_LEVEL, "9")
+                    .build(), () -> load[0]);
+            load[0] = 0;
+            Encoded idle = encode(compressor(0, false, adaptive, enc), enc, body, "application/json", false);
+            assertEquals(enc, idle.contentEncoding);
+            assertEquals(9, adaptive.lastLevel());
+            assertArrayEquals(body, decompress(enc, idle.body));
+
+            // The load is sampled at most every 250ms
+            Thread.sleep(260);
+            load[0] = 0.99;
+            Encoded busy = encode(compressor(0, false, adaptive, enc), enc, body, "application/json", false);
+            assertNull("Should not compress under load with " + enc, busy.contentEncoding);
+            assertArrayEquals(body, busy.body);
+            assertEquals(1, adaptive.skipped());
+            assertEquals(1, adaptive.count(9));
+        }
+    }
+
+    @Test
+    public void testOffloadedCompressionPreservesOrder() throws Exception {
+        byte[] big = sample("sample.json");
+        byte[] small = sample("sample.js");
+        List<Runnable> jobs = new ArrayList<>();
+        CompressionOffload offload = new CompressionOffload(jobs::add, big.length, 4);
+        File file = File.createTempFile("SelectiveCompressorTest", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "region".getBytes(UTF_8));
+        EmbeddedChannel ch = new EmbeddedChannel(compressor(0, false, null, offload, "gzip"));
+        try {
+            for (int i = 0; i < 2; i++) {
+                DefaultFullHttpRequest req = new DefaultFullHttpRequest(HTTP_1_1, GET, "/" + i);
+                req.headers().set(ACCEPT_ENCODING, "gzip");
+                ch.writeInbound(req);
+                ReferenceCountUtil.release(ch.readInbound());
+            }
+            ChannelFuture bigFuture = ch.writeAndFlush(response(big));
+            ChannelFuture smallFuture = ch.writeAndFlush(response(small));
+            ChannelFuture regionFuture = ch.writeAndFlush(new DefaultFileRegion(file, 0, file.length()));
+            assertEquals(1, jobs.size());
+            assertNull("Nothing should be written until the large response is compressed", ch.readOutbound());
+            assertFalse(bigFuture.isDone());
+            assertFalse(smallFuture.isDone());
+
+            jobs.remove(0).run();
+            ch.runPendingTasks();
+            assertTrue(jobs.isEmpty());
+            assertTrue(bigFuture.isSuccess());
+            assertTrue(smallFuture.isSuccess());
+            assertTrue(regionFuture.isSuccess());
+
+            HttpResponse first = ch.readOutbound();
+            assertEquals("gzip", first.headers().get(CONTENT_ENCODING));
+            assertFalse(first.headers().contains(CONTENT_LENGTH));
+            assertArrayEquals(big, decompress("gzip", readBody(ch)));
+
+            HttpResponse second = ch.readOutbound();
+            assertEquals("gzip", second.headers().get(CONTENT_ENCODING));
+            assertArrayEquals(small, decompress("gzip", readBody(ch)));
+
+            Object region = ch.readOutbound();
+            assertTrue("Expected FileRegion last but got " + region, region instanceof FileRegion);
+            ReferenceCountUtil.release(region);
+            assertNull(ch.readOutbound());
+        } finally {
+            ch.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testStaticResponseWaitsForOffloadedCompression() throws Exception {
+        byte[] big = sample("sample.json");
+        List<Runnable> jobs = new ArrayList<>();
+        CompressionOffload offload = new CompressionOffload(jobs::add, big.length, 4);
+        StaticResponses statics = new StaticResponses(new SettingsBuilder().build());
+        statics.add("/static", MimeType.PLAIN_TEXT_UTF_8, "static");
+        EmbeddedChannel ch = new EmbeddedChannel(new StaticResponseHandler(statics),
+                compressor(0, false, null, offload, "gzip"));
+        try {
+            DefaultFullHttpRequest req = new DefaultFullHttpRequest(HTTP_1_1, GET, "/dynamic");
+            req.headers().set(ACCEPT_ENCODING, "gzip");
+            ch.writeInbound(req);
+            ReferenceCountUtil.release(ch.readInbound());
+            ChannelFuture bigFuture = ch.writeAndFlush(response(big));
+            assertEquals(1, jobs.size());
+            ch.writeInbound(new DefaultFullHttpRequest(HTTP_1_1, GET, "/static"));
+            assertNull("Static response overtook one being compressed", ch.readOutbound());
+
+            jobs.remove(0).run();
+            ch.runPendingTasks();
+            assertTrue(bigFuture.isSuccess());
+            HttpResponse first = ch.readOutbound();
+            assertEquals("gzip", first.headers().get(CONTENT_ENCODING));
+            assertArrayEquals(big, decompress("gzip", readBody(ch)));
+            FullHttpResponse second = ch.readOutbound();
+            assertEquals("static", second.content().toString(UTF_8));
+            second.release();
+            assertNull(ch.readOutbound());
+        } finally {
+            ch.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testOffloadFallsBackToEventLoopWhenRejected() throws Exception {
+        byte[] body = sample("sample.html");
+        CompressionOffload offload = new CompressionOffload(r -> {
+            throw new RejectedExecutionException();
+        }, 1, 4);
+        EmbeddedChannel ch = new EmbeddedChannel(compressor(0, false, null, offload, "gzip"));
+        try {
+            DefaultFullHttpRequest req = new DefaultFullHttpRequest(HTTP_1_1, GET, "/");
+            req.headers().set(ACCEPT_ENCODING, "gzip");
+            ch.writeInbound(req);
+            ReferenceCountUtil.release(ch.readInbound());
+            ChannelFuture fut = ch.writeAndFlush(response(body));
+            ch.runPendingTasks();
+            assertTrue(fut.isSuccess());
+            HttpResponse resp = ch.readOutbound();
+            assertEquals("gzip", resp.headers().get(CONTENT_ENCODING));
+            assertArrayEquals(body, decompress("gzip", readBody(ch)));
+        } finally {
+            ch.finishAndReleaseAll();
+        }
+    }
+
+    private static FullHttpResponse response(byte[] body) {
+        FullHttpResponse resp = new DefaultFullHttpResponse(HTTP_1_1, OK, Unpooled.wrappedBuffer(body));
+        resp.headers().set(CONTENT_LENGTH, body.length);
+        resp.headers().set(CONTENT_TYPE, "text/plain");
+        return resp;
+    }
+
+    private static byte[] readBody(EmbeddedChannel ch) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (;;) {
+            HttpContent content = ch.readOutbound();
+            assertNotNull("Response ended without LastHttpContent", content);
+            try {
+                ByteBuf buf = content.content();
+                byte[] bytes = new byte[buf.readableBytes()];
+                buf.getBytes(buf.readerIndex(), bytes);
+                out.write(bytes);
+                if (content instanceof LastHttpContent) {
+                    return out.toByteArray();
+                }
+            } finally {
+                content.release();
+            }
+        }
+    }
+
+    private static List<String> available() {
+        List<String> result = new ArrayList<>();
+        for (String enc : ALL) {
+            if (PipelineFactoryImpl.compressionOptions(enc, 6, 15, 8, 4, 3) != null) {
+                result.add(enc);
+            }
+        }
+        return result;
+    }
+
+    private static SelectiveCompressor compressor(int threshold, boolean checkContentType, String... encodings) {
+        return compressor(threshold, checkContentType, null, null, encodings);
+    }
+
+    private static SelectiveCompressor compressor(int threshold, boolean checkContentType,
+            AdaptiveCompression adaptive, String... encodings) {
+        return compressor(threshold, checkContentType, adaptive, null, encodings);
+    }
+
+    private static SelectiveCompressor compressor(int threshold, boolean checkContentType,
+            AdaptiveCompression adaptive, CompressionOffload offload, String... encodings) {
+        List<String> names = new ArrayList<>();
+        List<CompressionOptions> options = new ArrayList<>();
+        for (String enc : encodings) {
+            CompressionOptions opts = PipelineFactoryImpl.compressionOptions(enc, 6, 15, 8, 4, 3);
+            if (opts != null) {
+                names.add(enc);
+                options.add(opts);
+            }
+        }
+        return new SelectiveCompressor(names, options.toArray(new CompressionOptions[0]),
+                threshold, checkContentType, false, adaptive, offload);
+    }
+
+    private static Encoded encode(SelectiveCompressor compressor, String acceptEncoding, byte[] body,
+            String contentType, boolean internalCompress) throws IOException {
+        return encode(compressor, acceptEncoding, body, contentType, internalCompress, null);
+    }
+
+    private static Encoded encode(SelectiveCompressor compressor, String acceptEncoding, byte[] body,
+            String contentType, boolean internalCompress, String contentEncoding) throws IOException {
+        EmbeddedChannel ch = new EmbeddedChannel(compressor);
+        try {
+            DefaultFullHttpRequest req = new DefaultFullHttpRequest(HTTP_1_1, GET, "/");
+            req.headers().set(ACCEPT_ENCODING, acceptEncoding);
+            ch.writeInbound(req);
+            ReferenceCountUtil.release(ch.readInbound());
+            FullHttpResponse resp = new DefaultFullHttpResponse(HTTP_1_1, OK, Unpooled.wrappedBuffer(body));
+            resp.headers().set(CONTENT_LENGTH, body.length);
+            resp.headers().set(CONTENT_TYPE, contentType);
+            if (internalCompress) {
+                resp.headers().set(X_INTERNAL_COMPRESS, "true");
+            }
+            if (contentEncoding != null) {
+                resp.headers().set(CONTENT_ENCODING, contentEncoding);
+            }
+            ch.writeOutbound(resp);
+            Encoded result = new Encoded();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Object msg;
+            while ((msg = ch.readOutbound()) != null) {
+                try {
+                    if (msg instanceof HttpResponse) {
+                        HttpResponse r = (HttpResponse) msg;
+                        result.contentEncoding = r.headers().get(CONTENT_ENCODING);
+                        result.internalCompressHeaderPresent = r.headers().contains(X_INTERNAL_COMPRESS);
+                    }
+                    if (msg instanceof HttpContent) {
+                        ByteBuf buf = ((HttpContent) msg).content();
+                        byte[] bytes = new byte[buf.readableBytes()];
+                        buf.getBytes(buf.readerIndex(), bytes);
+                        out.write(bytes);
+                    }
+                } finally {
+                    ReferenceCountUtil.release(msg);
+                }
+            }
+            assertNotNull(result);
+            result.body = out.toByteArray();
+            return result;
+        } finally {
+            ch.finishAndReleaseAll();
+        }
+    }
+
+    private static byte[] decompress(String encoding, byte[] data) throws IOException {
+        if ("br".equals(encoding)) {
+            DirectDecompress result = Decoder.decompress(data);
+            assertEquals(DecoderJNI.Status.DONE, result.getResultStatus());
+            return result.getDecompressedData();
+        }
+        InputStream in;
+        switch (encoding) {
+            case "gzip":
+                in = new GZIPInputStream(new ByteArrayInputStream(data));
+                break;
+            case "deflate":
+                in = new InflaterInputStream(new ByteArrayInputStream(data));
+                break;
+            case "zstd":
+                in = new ZstdInputStream(new ByteArrayInputStream(data));
+                break;
+            default:
+                throw new AssertionError(encoding);
+        }
+        try (InputStream stream = in) {
+            return readAll(stream);
+        }
+    }
+
+    private static byte[] sample(String name) throws IOException {
+        try (InputStream in = SelectiveCompressorTest.class.getResourceAsStream("compression/" + name)) {
+            assertNotNull("Missing sample " + name, in);
+            return readAll(in);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int count;
+        while ((count = in.read(buf)) > 0) {
+            out.write(buf, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    private static final class Encoded {
+
+        String contentEncoding;
+        boolean internalCompressHeaderPresent;
+        byte[] body;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.server;
+
+import com.google.inject.Inject;
+import com.mastfrog.acteur.Acteur;
+import com.mastfrog.acteur.Application;
+import com.mastfrog.acteur.Page;
+import com.mastfrog.acteur.SilentRequestLogger;
+import com.mastfrog.acteur.headers.Headers;
+import com.mastfrog.acteur.preconditions.Path;
+import com.mastfrog.acteur.server.StaticResponsesTest.SRM;
+import com.mastfrog.giulius.tests.GuiceRunner;
+import com.mastfrog.giulius.tests.TestWith;
+import com.mastfrog.mime.MimeType;
+import com.mastfrog.netty.http.test.harness.TestHarness;
+import com.mastfrog.netty.http.test.harness.TestHarnessModule;
+import static io.netty.handler.codec.http.HttpResponseStatus.NOT_MODIFIED;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests that StaticResponses are served without running any pages.
+ *
+ * @author Tim Boudreau
+ */
+@TestWith({TestHarnessModule.class, SRM.class, SilentRequestLogger.class})
+@RunWith(GuiceRunner.class)
+public class StaticResponsesTest {
+
+    private static final AtomicInteger PAGE_RUNS = new AtomicInteger();
+    // SHA-1 of "cached", as StaticResponses computes it
+    private static final String CACHED_ETAG = etag("cached");
+    private static final String BIG = String.join("", Collections.nCopies(100, "0123456789"));
+    private final Duration timeout = Duration.ofMinutes(1);
+
+    @Test
+    public void testStaticResponsesBypassPages(TestHarness harn) throws Throwable {
+        CharSequence etag = harn.get("health").setTimeout(timeout).go().await()
+                .assertStatus(OK)
+                .assertContent("{\"status\":\"ok\"}")
+                .assertHeader(Headers.CONTENT_TYPE, MimeType.JSON_UTF_8)
+                .getHeader(Headers.ETAG);
+        assertNotNull(etag);
+        harn.get("health").addQueryPair("verbose", "true").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent("{\"status\":\"ok\"}");
+        harn.head("health").setTimeout(timeout).go().await().assertStatus(OK);
+        harn.get("health").addHeader(Headers.IF_NONE_MATCH, etag).setTimeout(timeout).go().await()
+                .assertStatus(NOT_MODIFIED);
+        // Weak comparison, and the 304 repeats the caching headers
+        CharSequence cc = harn.get("cached").addHeader(Headers.header("If-None-Match"), "W/" + CACHED_ETAG)
+                .setTimeout(timeout).go().await()
+                .assertStatus(NOT_MODIFIED)
+                .getHeader(Headers.header("Cache-Control"));
+        assertEquals("max-age=60", cc.toString());
+        assertEquals(0, PAGE_RUNS.get());
+        // Other paths still reach the application
+        harn.get("other").setTimeout(timeout).go().await().assertStatus(OK).assertContent("page");
+        assertEquals(1, PAGE_RUNS.get());
+    }
+
+    @Test
+    public void testGzipVariantHonorsQValues(TestHarness harn) throws Throwable {
+        harn.get("big").addHeader(Headers.ACCEPT_ENCODING, "GZIP").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertHeader(Headers.CONTENT_ENCODING, "gzip");
+        harn.get("big").addHeader(Headers.ACCEPT_ENCODING, "gzip;q=0, identity").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent(BIG).assertHeader(Headers.CONTENT_ENCODING, "identity");
+        harn.get("big").addHeader(Headers.ACCEPT_ENCODING, "nogzip").setTimeout(timeout).go().await()
+                .assertStatus(OK).assertContent(BIG).assertHeader(Headers.CONTENT_ENCODING, "identity");
+    }
+
+    private static String etag(String body) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(body.getBytes(UTF_8));
+            return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(hash) + '"';
+        } catch (NoSuchAlgorithmException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
+    static final class SRM extends ServerModule<SRApp> {
+
+        SRM() {
+            super(SRApp.class, 2, 2, 3);
+        }
+    }
+
+    private static class SRApp extends Application {
+
+        @Inject
+        SRApp(StaticResponses statics) {
+            statics.add("/health", MimeType.JSON_UTF_8, "{\"status\":\"ok\"}");
+            statics.add("/cached", OK, MimeType.PLAIN_TEXT_UTF_8, "cached".getBytes(UTF_8),
+                    Collections.singletonMap("Cache-Control", "max-age=60"));
+            statics.add("/big", MimeType.PLAIN_TEXT_UTF_8, BIG);
+            add(AnyPage.class);
+        }
+
+        @Path({"/health", "/other"})
+        static class AnyPage extends Page {
+
+            AnyPage() {
+                add(AnyActeur.class);
+            }
+        }
+
+        static class AnyActeur extends Acteur {
+
+            AnyActeur() {
+                PAGE_RUNS.incrementAndGet();
+                ok("page");
+            }
+        }
+    }
+}
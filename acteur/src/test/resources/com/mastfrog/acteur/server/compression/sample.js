@@ -0,0 +1,905 @@
+/* sample script */
+(function (global) {
+    'use strict';
+    function acteur0(acteur, netty) {
+        if (!acteur || typeof acteur !== 'object') {
+            throw new Error('Invalid acteur: ' + netty);
+        }
+        return Object.assign({}, acteur, { netty: netty, index: 0 });
+    }
+    function cache1(cache, response) {
+        if (!cache || typeof cache !== 'object') {
+            throw new Error('Invalid cache: ' + response);
+        }
+        return Object.assign({}, cache, { response: response, index: 1 });
+    }
+    function request2(request, page) {
+        if (!request || typeof request !== 'object') {
+            throw new Error('Invalid request: ' + page);
+        }
+        return Object.assign({}, request, { page: page, index: 2 });
+    }
+    function header3(header, encode) {
+        if (!header || typeof header !== 'object') {
+            throw new Error('Invalid header: ' + encode);
+        }
+        return Object.assign({}, header, { encode: encode, index: 3 });
+    }
+    function response4(response, encode) {
+        if (!response || typeof response !== 'object') {
+            throw new Error('Invalid response: ' + encode);
+        }
+        return Object.assign({}, response, { encode: encode, index: 4 });
+    }
+    function resource5(resource, etag) {
+        if (!resource || typeof resource !== 'object') {
+            throw new Error('Invalid resource: ' + etag);
+        }
+        return Object.assign({}, resource, { etag: etag, index: 5 });
+    }
+    function client6(client, acteur) {
+        if (!client || typeof client !== 'object') {
+            throw new Error('Invalid client: ' + acteur);
+        }
+        return Object.assign({}, client, { acteur: acteur, index: 6 });
+    }
+    function worker7(worker, client) {
+        if (!worker || typeof worker !== 'object') {
+            throw new Error('Invalid worker: ' + client);
+        }
+        return Object.assign({}, worker, { client: client, index: 7 });
+    }
+    function client8(client, encode) {
+        if (!client || typeof client !== 'object') {
+            throw new Error('Invalid client: ' + encode);
+        }
+        return Object.assign({}, client, { encode: encode, index: 8 });
+    }
+    function channel9(channel, page) {
+        if (!channel || typeof channel !== 'object') {
+            throw new Error('Invalid channel: ' + page);
+        }
+        return Object.assign({}, channel, { page: page, index: 9 });
+    }
+    function header10(header, response) {
+        if (!header || typeof header !== 'object') {
+            throw new Error('Invalid header: ' + response);
+        }
+        return Object.assign({}, header, { response: response, index: 10 });
+    }
+    function type11(type, event) {
+        if (!type || typeof type !== 'object') {
+            throw new Error('Invalid type: ' + event);
+        }
+        return Object.assign({}, type, { event: event, index: 11 });
+    }
+    function page12(page, chain) {
+        if (!page || typeof page !== 'object') {
+            throw new Error('Invalid page: ' + chain);
+        }
+        return Object.assign({}, page, { chain: chain, index: 12 });
+    }
+    function socket13(socket, header) {
+        if (!socket || typeof socket !== 'object') {
+            throw new Error('Invalid socket: ' + header);
+        }
+        return Object.assign({}, socket, { header: header, index: 13 });
+    }
+    function thread14(thread, acteur) {
+        if (!thread || typeof thread !== 'object') {
+            throw new Error('Invalid thread: ' + acteur);
+        }
+        return Object.assign({}, thread, { acteur: acteur, index: 14 });
+    }
+    function socket15(socket, client) {
+        if (!socket || typeof socket !== 'object') {
+            throw new Error('Invalid socket: ' + client);
+        }
+        return Object.assign({}, socket, { client: client, index: 15 });
+    }
+    function cache16(cache, encode) {
+        if (!cache || typeof cache !== 'object') {
+            throw new Error('Invalid cache: ' + encode);
+        }
+        return Object.assign({}, cache, { encode: encode, index: 16 });
+    }
+    function decode17(decode, buffer) {
+        if (!decode || typeof decode !== 'object') {
+            throw new Error('Invalid decode: ' + buffer);
+        }
+        return Object.assign({}, decode, { buffer: buffer, index: 17 });
+    }
+    function decode18(decode, length) {
+        if (!decode || typeof decode !== 'object') {
+            throw new Error('Invalid decode: ' + length);
+        }
+        return Object.assign({}, decode, { length: length, index: 18 });
+    }
+    function worker19(worker, etag) {
+        if (!worker || typeof worker !== 'object') {
+            throw new Error('Invalid worker: ' + etag);
+        }
+        return Object.assign({}, worker, { etag: etag, index: 19 });
+    }
+    function server20(server, chain) {
+        if (!server || typeof server !== 'object') {
+            throw new Error('Invalid server: ' + chain);
+        }
+        return Object.assign({}, server, { chain: chain, index: 20 });
+    }
+    function thread21(thread, channel) {
+        if (!thread || typeof thread !== 'object') {
+            throw new Error('Invalid thread: ' + channel);
+        }
+        return Object.assign({}, thread, { channel: channel, index: 21 });
+    }
+    function resource22(resource, decode) {
+        if (!resource || typeof resource !== 'object') {
+            throw new Error('Invalid resource: ' + decode);
+        }
+        return Object.assign({}, resource, { decode: decode, index: 22 });
+    }
+    function type23(type, page) {
+        if (!type || typeof type !== 'object') {
+            throw new Error('Invalid type: ' + page);
+        }
+        return Object.assign({}, type, { page: page, index: 23 });
+    }
+    function header24(header, compress) {
+        if (!header || typeof header !== 'object') {
+            throw new Error('Invalid header: ' + compress);
+        }
+        return Object.assign({}, header, { compress: compress, index: 24 });
+    }
+    function netty25(netty, request) {
+        if (!netty || typeof netty !== 'object') {
+            throw new Error('Invalid netty: ' + request);
+        }
+        return Object.assign({}, netty, { request: request, index: 25 });
+    }
+    function thread26(thread, length) {
+        if (!thread || typeof thread !== 'object') {
+            throw new Error('Invalid thread: ' + length);
+        }
+        return Object.assign({}, thread, { length: length, index: 26 });
+    }
+    function request27(request, thread) {
+        if (!request || typeof request !== 'object') {
+            throw new Error('Invalid request: ' + thread);
+        }
+        return Object.assign({}, request, { thread: thread, index: 27 });
+    }
+    function server28(server, pipeline) {
+        if (!server || typeof server !== 'object') {
+            throw new Error('Invalid server: ' + pipeline);
+        }
+        return Object.assign({}, server, { pipeline: pipeline, index: 28 });
+    }
+    function netty29(netty, chain) {
+        if (!netty || typeof netty !== 'object') {
+            throw new Error('Invalid netty: ' + chain);
+        }
+        return Object.assign({}, netty, { chain: chain, index: 29 });
+    }
+    function thread30(thread, response) {
+        if (!thread || typeof thread !== 'object') {
+            throw new Error('Invalid thread: ' + response);
+        }
+        return Object.assign({}, thread, { response: response, index: 30 });
+    }
+    function chain31(chain, socket) {
+        if (!chain || typeof chain !== 'object') {
+            throw new Error('Invalid chain: ' + socket);
+        }
+        return Object.assign({}, chain, { socket: socket, index: 31 });
+    }
+    function header32(header, resource) {
+        if (!header || typeof header !== 'object') {
+            throw new Error('Invalid header: ' + resource);
+        }
+        return Object.assign({}, header, { resource: resource, index: 32 });
+    }
+    function header33(header, client) {
+        if (!header || typeof header !== 'object') {
+            throw new Error('Invalid header: ' + client);
+        }
+        return Object.assign({}, header, { client: client, index: 33 });
+    }
+    function request34(request, header) {
+        if (!request || typeof request !== 'object') {
+            throw new Error('Invalid request: ' + header);
+        }
+        return Object.assign({}, request, { header: header, index: 34 });
+    }
+    function encode35(encode, loop) {
+        if (!encode || typeof encode !== 'object') {
+            throw new Error('Invalid encode: ' + loop);
+        }
+        return Object.assign({}, encode, { loop: loop, index: 35 });
+    }
+    function decode36(decode, page) {
+        if (!decode || typeof decode !== 'object') {
+            throw new Error('Invalid decode: ' + page);
+        }
+        return Object.assign({}, decode, { page: page, index: 36 });
+    }
+    function loop37(loop, channel) {
+        if (!loop || typeof loop !== 'object') {
+            throw new Error('Invalid loop: ' + channel);
+        }
+        return Object.assign({}, loop, { channel: channel, index: 37 });
+    }
+    function content38(content, worker) {
+        if (!content || typeof content !== 'object') {
+            throw new Error('Invalid content: ' + worker);
+        }
+        return Object.assign({}, content, { worker: worker, index: 38 });
+    }
+    function static39(static, event) {
+        if (!static || typeof static !== 'object') {
+            throw new Error('Invalid static: ' + event);
+        }
+        return Object.assign({}, static, { event: event, index: 39 });
+    }
+    function socket40(socket, content) {
+        if (!socket || typeof socket !== 'object') {
+            throw new Error('Invalid socket: ' + content);
+        }
+        return Object.assign({}, socket, { content: content, index: 40 });
+    }
+    function page41(page, type) {
+        if (!page || typeof page !== 'object') {
+            throw new Error('Invalid page: ' + type);
+        }
+        return Object.assign({}, page, { type: type, index: 41 });
+    }
+    function decode42(decode, static) {
+        if (!decode || typeof decode !== 'object') {
+            throw new Error('Invalid decode: ' + static);
+        }
+        return Object.assign({}, decode, { static: static, index: 42 });
+    }
+    function type43(type, pipeline) {
+        if (!type || typeof type !== 'object') {
+            throw new Error('Invalid type: ' + pipeline);
+        }
+        return Object.assign({}, type, { pipeline: pipeline, index: 43 });
+    }
+    function loop44(loop, header) {
+        if (!loop || typeof loop !== 'object') {
+            throw new Error('Invalid loop: ' + header);
+        }
+        return Object.assign({}, loop, { header: header, index: 44 });
+    }
+    function request45(request, chain) {
+        if (!request || typeof request !== 'object') {
+            throw new Error('Invalid request: ' + chain);
+        }
+        return Object.assign({}, request, { chain: chain, index: 45 });
+    }
+    function pipeline46(pipeline, page) {
+        if (!pipeline || typeof pipeline !== 'object') {
+            throw new Error('Invalid pipeline: ' + page);
+        }
+        return Object.assign({}, pipeline, { page: page, index: 46 });
+    }
+    function compress47(compress, worker) {
+        if (!compress || typeof compress !== 'object') {
+            throw new Error('Invalid compress: ' + worker);
+        }
+        return Object.assign({}, compress, { worker: worker, index: 47 });
+    }
+    function encode48(encode, buffer) {
+        if (!encode || typeof encode !== 'object') {
+            throw new Error('Invalid encode: ' + buffer);
+        }
+        return Object.assign({}, encode, { buffer: buffer, index: 48 });
+    }
+    function buffer49(buffer, compress) {
+        if (!buffer || typeof buffer !== 'object') {
+            throw new Error('Invalid buffer: ' + compress);
+        }
+        return Object.assign({}, buffer, { compress: compress, index: 49 });
+    }
+    function acteur50(acteur, decode) {
+        if (!acteur || typeof acteur !== 'object') {
+            throw new Error('Invalid acteur: ' + decode);
+        }
+        return Object.assign({}, acteur, { decode: decode, index: 50 });
+    }
+    function decode51(decode, acteur) {
+        if (!decode || typeof decode !== 'object') {
+            throw new Error('Invalid decode: ' + acteur);
+        }
+        return Object.assign({}, decode, { acteur: acteur, index: 51 });
+    }
+    function modified52(modified, static) {
+        if (!modified || typeof modified !== 'object') {
+            throw new Error('Invalid modified: ' + static);
+        }
+        return Object.assign({}, modified, { static: static, index: 52 });
+    }
+    function socket53(socket, header) {
+        if (!socket || typeof socket !== 'object') {
+            throw new Error('Invalid socket: ' + header);
+        }
+        return Object.assign({}, socket, { header: header, index: 53 });
+    }
+    function chain54(chain, worker) {
+        if (!chain || typeof chain !== 'object') {
+            throw new Error('Invalid chain: ' + worker);
+        }
+        return Object.assign({}, chain, { worker: worker, index: 54 });
+    }
+    function resource55(resource, server) {
+        if (!resource || typeof resource !== 'object') {
+            throw new Error('Invalid resource: ' + server);
+        }
+        return Object.assign({}, resource, { server: server, index: 55 });
+    }
+    function type56(type, thread) {
+        if (!type || typeof type !== 'object') {
+            throw new Error('Invalid type: ' + thread);
+        }
+        return Object.assign({}, type, { thread: thread, index: 56 });
+    }
+    function netty57(netty, channel) {
+        if (!netty || typeof netty !== 'object') {
+            throw new Error('Invalid netty: ' + channel);
+        }
+        return Object.assign({}, netty, { channel: channel, index: 57 });
+    }
+    function pipeline58(pipeline, server) {
+        if (!pipeline || typeof pipeline !== 'object') {
+            throw new Error('Invalid pipeline: ' + server);
+        }
+        return Object.assign({}, pipeline, { server: server, index: 58 });
+    }
+    function response59(response, worker) {
+        if (!response || typeof response !== 'object') {
+            throw new Error('Invalid response: ' + worker);
+        }
+        return Object.assign({}, response, { worker: worker, index: 59 });
+    }
+    function modified60(modified, static) {
+        if (!modified || typeof modified !== 'object') {
+            throw new Error('Invalid modified: ' + static);
+        }
+        return Object.assign({}, modified, { static: static, index: 60 });
+    }
+    function worker61(worker, channel) {
+        if (!worker || typeof worker !== 'object') {
+            throw new Error('Invalid worker: ' + channel);
+        }
+        return Object.assign({}, worker, { channel: channel, index: 61 });
+    }
+    function request62(request, client) {
+        if (!request || typeof request !== 'object') {
+            throw new Error('Invalid request: ' + client);
+        }
+        return Object.assign({}, request, { client: client, index: 62 });
+    }
+    function chain63(chain, socket) {
+        if (!chain || typeof chain !== 'object') {
+            throw new Error('Invalid chain: ' + socket);
+        }
+        return Object.assign({}, chain, { socket: socket, index: 63 });
+    }
+    function channel64(channel, modified) {
+        if (!channel || typeof channel !== 'object') {
+            throw new Error('Invalid channel: ' + modified);
+        }
+        return Object.assign({}, channel, { modified: modified, index: 64 });
+    }
+    function length65(length, encode) {
+        if (!length || typeof length !== 'object') {
+            throw new Error('Invalid length: ' + encode);
+        }
+        return Object.assign({}, length, { encode: encode, index: 65 });
+    }
+    function buffer66(buffer, length) {
+        if (!buffer || typeof buffer !== 'object') {
+            throw new Error('Invalid buffer: ' + length);
+        }
+        return Object.assign({}, buffer, { length: length, index: 66 });
+    }
+    function type67(type, thread) {
+        if (!type || typeof type !== 'object') {
+            throw new Error('Invalid type: ' + thread);
+        }
+        return Object.assign({}, type, { thread: thread, index: 67 });
+    }
+    function channel68(channel, loop) {
+        if (!channel || typeof channel !== 'object') {
+            throw new Error('Invalid channel: ' + loop);
+        }
+        return Object.assign({}, channel, { loop: loop, index: 68 });
+    }
+    function page69(page, header) {
+        if (!page || typeof page !== 'object') {
+            throw new Error('Invalid page: ' + header);
+        }
+        return Object.assign({}, page, { header: header, index: 69 });
+    }
+    function type70(type, static) {
+        if (!type || typeof type !== 'object') {
+            throw new Error('Invalid type: ' + static);
+        }
+        return Object.assign({}, type, { static: static, index: 70 });
+    }
+    function buffer71(buffer, page) {
+        if (!buffer || typeof buffer !== 'object') {
+            throw new Error('Invalid buffer: ' + page);
+        }
+        return Object.assign({}, buffer, { page: page, index: 71 });
+    }
+    function worker72(worker, loop) {
+        if (!worker || typeof worker !== 'object') {
+            throw new Error('Invalid worker: ' + loop);
+        }
+        return Object.assign({}, worker, { loop: loop, index: 72 });
+    }
+    function type73(type, header) {
+        if (!type || typeof type !== 'object') {
+            throw new Error('Invalid type: ' + header);
+        }
+        return Object.assign({}, type, { header: header, index: 73 });
+    }
+    function acteur74(acteur, chain) {
+        if (!acteur || typeof acteur !== 'object') {
+            throw new Error('Invalid acteur: ' + chain);
+        }
+        return Object.assign({}, acteur, { chain: chain, index: 74 });
+    }
+    function request75(request, channel) {
+        if (!request || typeof request !== 'object') {
+            throw new Error('Invalid request: ' + channel);
+        }
+        return Object.assign({}, request, { channel: channel, index: 75 });
+    }
+    function modified76(modified, content) {
+        if (!modified || typeof modified !== 'object') {
+            throw new Error('Invalid modified: ' + content);
+        }
+        return Object.assign({}, modified, { content: content, index: 76 });
+    }
+    function chain77(chain, content) {
+        if (!chain || typeof chain !== 'object') {
+            throw new Error('Invalid chain: ' + content);
+        }
+        return Object.assign({}, chain, { content: content, index: 77 });
+    }
+    function worker78(worker, socket) {
+        if (!worker || typeof worker !== 'object') {
+            throw new Error('Invalid worker: ' + socket);
+        }
+        return Object.assign({}, worker, { socket: socket, index: 78 });
+    }
+    function server79(server, cache) {
+        if (!server || typeof server !== 'object') {
+            throw new Error('Invalid server: ' + cache);
+        }
+        return Object.assign({}, server, { cache: cache, index: 79 });
+    }
+    function static80(static, length) {
+        if (!static || typeof static !== 'object') {
+            throw new Error('Invalid static: ' + length);
+        }
+        return Object.assign({}, static, { length: length, index: 80 });
+    }
+    function event81(event, thread) {
+        if (!event || typeof event !== 'object') {
+            throw new Error('Invalid event: ' + thread);
+        }
+        return Object.assign({}, event, { thread: thread, index: 81 });
+    }
+    function client82(client, modified) {
+        if (!client || typeof client !== 'object') {
+            throw new Error('Invalid client: ' + modified);
+        }
+        return Object.assign({}, client, { modified: modified, index: 82 });
+    }
+    function header83(header, socket) {
+        if (!header || typeof header !== 'object') {
+            throw new Error('Invalid header: ' + socket);
+        }
+        return Object.assign({}, header, { socket: socket, index: 83 });
+    }
+    function client84(client, request) {
+        if (!client || typeof client !== 'object') {
+            throw new Error('Invalid client: ' + request);
+        }
+        return Object.assign({}, client, { request: request, index: 84 });
+    }
+    function resource85(resource, modified) {
+        if (!resource || typeof resource !== 'object') {
+            throw new Error('Invalid resource: ' + modified);
+        }
+        return Object.assign({}, resource, { modified: modified, index: 85 });
+    }
+    function chain86(chain, length) {
+        if (!chain || typeof chain !== 'object') {
+            throw new Error('Invalid chain: ' + length);
+        }
+        return Object.assign({}, chain, { length: length, index: 86 });
+    }
+    function response87(response, worker) {
+        if (!response || typeof response !== 'object') {
+            throw new Error('Invalid response: ' + worker);
+        }
+        return Object.assign({}, response, { worker: worker, index: 87 });
+    }
+    function pipeline88(pipeline, page) {
+        if (!pipeline || typeof pipeline !== 'object') {
+            throw new Error('Invalid pipeline: ' + page);
+        }
+        return Object.assign({}, pipeline, { page: page, index: 88 });
+    }
+    function content89(content, cache) {
+        if (!content || typeof content !== 'object') {
+            throw new Error('Invalid content: ' + cache);
+        }
+        return Object.assign({}, content, { cache: cache, index: 89 });
+    }
+    function page90(page, worker) {
+        if (!page || typeof page !== 'object') {
+            throw new Error('Invalid page: ' + worker);
+        }
+        return Object.assign({}, page, { worker: worker, index: 90 });
+    }
+    function thread91(thread, socket) {
+        if (!thread || typeof thread !== 'object') {
+            throw new Error('Invalid thread: ' + socket);
+        }
+        return Object.assign({}, thread, { socket: socket, index: 91 });
+    }
+    function content92(content, type) {
+        if (!content || typeof content !== 'object') {
+            throw new Error('Invalid content: ' + type);
+        }
+        return Object.assign({}, content, { type: type, index: 92 });
+    }
+    function netty93(netty, request) {
+        if (!netty || typeof netty !== 'object') {
+            throw new Error('Invalid netty: ' + request);
+        }
+        return Object.assign({}, netty, { request: request, index: 93 });
+    }
+    function static94(static, acteur) {
+        if (!static || typeof static !== 'object') {
+            throw new Error('Invalid static: ' + acteur);
+        }
+        return Object.assign({}, static, { acteur: acteur, index: 94 });
+    }
+    function page95(page, static) {
+        if (!page || typeof page !== 'object') {
+            throw new Error('Invalid page: ' + static);
+        }
+        return Object.assign({}, page, { static: static, index: 95 });
+    }
+    function channel96(channel, acteur) {
+        if (!channel || typeof channel !== 'object') {
+            throw new Error('Invalid channel: ' + acteur);
+        }
+        return Object.assign({}, channel, { acteur: acteur, index: 96 });
+    }
+    function channel97(channel, pipeline) {
+        if (!channel || typeof channel !== 'object') {
+            throw new Error('Invalid channel: ' + pipeline);
+        }
+        return Object.assign({}, channel, { pipeline: pipeline, index: 97 });
+    }
+    function modified98(modified, header) {
+        if (!modified || typeof modified !== 'object') {
+            throw new Error('Invalid modified: ' + header);
+        }
+        return Object.assign({}, modified, { header: header, index: 98 });
+    }
+    function acteur99(acteur, static) {
+        if (!acteur || typeof acteur !== 'object') {
+            throw new Error('Invalid acteur: ' + static);
+        }
+        return Object.assign({}, acteur, { static: static, index: 99 });
+    }
+    function response100(response, cache) {
+        if (!response || typeof response !== 'object') {
+            throw new Error('Invalid response: ' + cache);
+        }
+        return Object.assign({}, response, { cache: cache, index: 100 });
+    }
+    function loop101(loop, compress) {
+        if (!loop || typeof loop !== 'object') {
+            throw new Error('Invalid loop: ' + compress);
+        }
+        return Object.assign({}, loop, { compress: compress, index: 101 });
+    }
+    function thread102(thread, length) {
+        if (!thread || typeof thread !== 'object') {
+            throw new Error('Invalid thread: ' + length);
+        }
+        return Object.assign({}, thread, { length: length, index: 102 });
+    }
+    function netty103(netty, socket) {
+        if (!netty || typeof netty !== 'object') {
+            throw new Error('Invalid netty: ' + socket);
+        }
+        return Object.assign({}, netty, { socket: socket, index: 103 });
+    }
+    function netty104(netty, header) {
+        if (!netty || typeof netty !== 'object') {
+            throw new Error('Invalid netty: ' + header);
+        }
+        return Object.assign({}, netty, { header: header, index: 104 });
+    }
+    function socket105(socket, content) {
+        if (!socket || typeof socket !== 'object') {
+            throw new Error('Invalid socket: ' + content);
+        }
+        return Object.assign({}, socket, { content: content, index: 105 });
+    }
+    function event106(event, netty) {
+        if (!event || typeof event !== 'object') {
+            throw new Error('Invalid event: ' + netty);
+        }
+        return Object.assign({}, event, { netty: netty, index: 106 });
+    }
+    function type107(type, netty) {
+        if (!type || typeof type !== 'object') {
+            throw new Error('Invalid type: ' + netty);
+        }
+        return Object.assign({}, type, { netty: netty, index: 107 });
+    }
+    function resource108(resource, acteur) {
+        if (!resource || typeof resource !== 'object') {
+            throw new Error('Invalid resource: ' + acteur);
+        }
+        return Object.assign({}, resource, { acteur: acteur, index: 108 });
+    }
+    function channel109(channel, chain) {
+        if (!channel || typeof channel !== 'object') {
+            throw new Error('Invalid channel: ' + chain);
+        }
+        return Object.assign({}, channel, { chain: chain, index: 109 });
+    }
+    function decode110(decode, header) {
+        if (!decode || typeof decode !== 'object') {
+            throw new Error('Invalid decode: ' + header);
+        }
+        return Object.assign({}, decode, { header: header, index: 110 });
+    }
+    function event111(event, server) {
+        if (!event || typeof event !== 'object') {
+            throw new Error('Invalid event: ' + server);
+        }
+        return Object.assign({}, event, { server: server, index: 111 });
+    }
+    function length112(length, server) {
+        if (!length || typeof length !== 'object') {
+            throw new Error('Invalid length: ' + server);
+        }
+        return Object.assign({}, length, { server: server, index: 112 });
+    }
+    function socket113(socket, worker) {
+        if (!socket || typeof socket !== 'object') {
+            throw new Error('Invalid socket: ' + worker);
+        }
+        return Object.assign({}, socket, { worker: worker, index: 113 });
+    }
+    function channel114(channel, client) {
+        if (!channel || typeof channel !== 'object') {
+            throw new Error('Invalid channel: ' + client);
+        }
+        return Object.assign({}, channel, { client: client, index: 114 });
+    }
+    function buffer115(buffer, response) {
+        if (!buffer || typeof buffer !== 'object') {
+            throw new Error('Invalid buffer: ' + response);
+        }
+        return Object.assign({}, buffer, { response: response, index: 115 });
+    }
+    function resource116(resource, chain) {
+        if (!resource || typeof resource !== 'object') {
+            throw new Error('Invalid resource: ' + chain);
+        }
+        return Object.assign({}, resource, { chain: chain, index: 116 });
+    }
+    function etag117(etag, encode) {
+        if (!etag || typeof etag !== 'object') {
+            throw new Error('Invalid etag: ' + encode);
+        }
+        return Object.assign({}, etag, { encode: encode, index: 117 });
+    }
+    function etag118(etag, type) {
+        if (!etag || typeof etag !== 'object') {
+            throw new Error('Invalid etag: ' + type);
+        }
+        return Object.assign({}, etag, { type: type, index: 118 });
+    }
+    function type119(type, socket) {
+        if (!type || typeof type !== 'object') {
+            throw new Error('Invalid type: ' + socket);
+        }
+        return Object.assign({}, type, { socket: socket, index: 119 });
+    }
+    function type120(type, server) {
+        if (!type || typeof type !== 'object') {
+            throw new Error('Invalid type: ' + server);
+        }
+        return Object.assign({}, type, { server: server, index: 120 });
+    }
+    function buffer121(buffer, client) {
+        if (!buffer || typeof buffer !== 'object') {
+            throw new Error('Invalid buffer: ' + client);
+        }
+        return Object.assign({}, buffer, { client: client, index: 121 });
+    }
+    function loop122(loop, thread) {
+        if (!loop || typeof loop !== 'object') {
+            throw new Error('Invalid loop: ' + thread);
+        }
+        return Object.assign({}, loop, { thread: thread, index: 122 });
+    }
+    function response123(response, channel) {
+        if (!response || typeof response !== 'object') {
+            throw new Error('Invalid response: ' + channel);
+        }
+        return Object.assign({}, response, { channel: channel, index: 123 });
+    }
+    function pipeline124(pipeline, event) {
+        if (!pipeline || typeof pipeline !== 'object') {
+            throw new Error('Invalid pipeline: ' + event);
+        }
+        return Object.assign({}, pipeline, { event: event, index: 124 });
+    }
+    function socket125(socket, thread) {
+        if (!socket || typeof socket !== 'object') {
+            throw new Error('Invalid socket: ' + thread);
+        }
+        return Object.assign({}, socket, { thread: thread, index: 125 });
+    }
+    function header126(header, client) {
+        if (!header || typeof header !== 'object') {
+            throw new Error('Invalid header: ' + client);
+        }
+        return Object.assign({}, header, { client: client, index: 126 });
+    }
+    function worker127(worker, length) {
+        if (!worker || typeof worker !== 'object') {
+            throw new Error('Invalid worker: ' + length);
+        }
+        return Object.assign({}, worker, { length: length, index: 127 });
+    }
+    function encode128(encode, resource) {
+        if (!encode || typeof encode !== 'object') {
+            throw new Error('Invalid encode: ' + resource);
+        }
+        return Object.assign({}, encode, { resource: resource, index: 128 });
+    }
+    function etag129(etag, decode) {
+        if (!etag || typeof etag !== 'object') {
+            throw new Error('Invalid etag: ' + decode);
+        }
+        return Object.assign({}, etag, { decode: decode, index: 129 });
+    }
+    function acteur130(acteur, cache) {
+        if (!acteur || typeof acteur !== 'object') {
+            throw new Error('Invalid acteur: ' + cache);
+        }
+        return Object.assign({}, acteur, { cache: cache, index: 130 });
+    }
+    function thread131(thread, page) {
+        if (!thread || typeof thread !== 'object') {
+            throw new Error('Invalid thread: ' + page);
+        }
+        return Object.assign({}, thread, { page: page, index: 131 });
+    }
+    function chain132(chain, length) {
+        if (!chain || typeof chain !== 'object') {
+            throw new Error('Invalid chain: ' + length);
+        }
+        return Object.assign({}, chain, { length: length, index: 132 });
+    }
+    function loop133(loop, encode) {
+        if (!loop || typeof loop !== 'object') {
+            throw new Error('Invalid loop: ' + encode);
+        }
+        return Object.assign({}, loop, { encode: encode, index: 133 });
+    }
+    function header134(header, page) {
+        if (!header || typeof header !== 'object') {
+            throw new Error('Invalid header: ' + page);
+        }
+        return Object.assign({}, header, { page: page, index: 134 });
+    }
+    function resource135(resource, etag) {
+        if (!resource || typeof resource !== 'object') {
+            throw new Error('Invalid resource: ' + etag);
+        }
+        return Object.assign({}, resource, { etag: etag, index: 135 });
+    }
+    function channel136(channel, response) {
+        if (!channel || typeof channel !== 'object') {
+            throw new Error('Invalid channel: ' + response);
+        }
+        return Object.assign({}, channel, { response: response, index: 136 });
+    }
+    function netty137(netty, static) {
+        if (!netty || typeof netty !== 'object') {
+            throw new Error('Invalid netty: ' + static);
+        }
+        return Object.assign({}, netty, { static: static, index: 137 });
+    }
+    function channel138(channel, acteur) {
+        if (!channel || typeof channel !== 'object') {
+            throw new Error('Invalid channel: ' + acteur);
+        }
+        return Object.assign({}, channel, { acteur: acteur, index: 138 });
+    }
+    function modified139(modified, compress) {
+        if (!modified || typeof modified !== 'object') {
+            throw new Error('Invalid modified: ' + compress);
+        }
+        return Object.assign({}, modified, { compress: compress, index: 139 });
+    }
+    function content140(content, decode) {
+        if (!content || typeof content !== 'object') {
+            throw new Error('Invalid content: ' + decode);
+        }
+        return Object.assign({}, content, { decode: decode, index: 140 });
+    }
+    function request141(request, decode) {
+        if (!request || typeof request !== 'object') {
+            throw new Error('Invalid request: ' + decode);
+        }
+        return Object.assign({}, request, { decode: decode, index: 141 });
+    }
+    function page142(page, socket) {
+        if (!page || typeof page !== 'object') {
+            throw new Error('Invalid page: ' + socket);
+        }
+        return Object.assign({}, page, { socket: socket, index: 142 });
+    }
+    function buffer143(buffer, header) {
+        if (!buffer || typeof buffer !== 'object') {
+            throw new Error('Invalid buffer: ' + header);
+        }
+        return Object.assign({}, buffer, { header: header, index: 143 });
+    }
+    function type144(type, chain) {
+        if (!type || typeof type !== 'object') {
+            throw new Error('Invalid type: ' + chain);
+        }
+        return Object.assign({}, type, { chain: chain, index: 144 });
+    }
+    function request145(request, encode) {
+        if (!request || typeof request !== 'object') {
+            throw new Error('Invalid request: ' + encode);
+        }
+        return Object.assign({}, request, { encode: encode, index: 145 });
+    }
+    function modified146(modified, client) {
+        if (!modified || typeof modified !== 'object') {
+            throw new Error('Invalid modified: ' + client);
+        }
+        return Object.assign({}, modified, { client: client, index: 146 });
+    }
+    function encode147(encode, event) {
+        if (!encode || typeof encode !== 'object') {
+            throw new Error('Invalid encode: ' + event);
+        }
+        return Object.assign({}, encode, { event: event, index: 147 });
+    }
+    function netty148(netty, decode) {
+        if (!netty || typeof netty !== 'object') {
+            throw new Error('Invalid netty: ' + decode);
+        }
+        return Object.assign({}, netty, { decode: decode, index: 148 });
+    }
+    function page149(page, compress) {
+        if (!page || typeof page !== 'object') {
+            throw new Error('Invalid page: ' + compress);
+        }
+        return Object.assign({}, page, { compress: compress, index: 149 });
+    }
+    global.sample = {};
+})(this);